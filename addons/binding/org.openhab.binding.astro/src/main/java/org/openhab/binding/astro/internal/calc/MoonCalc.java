@@ -44,6 +44,24 @@ public class MoonCalc {
 	protected static final int ECLIPSE_MODE_TOTAL = 1;
 	protected static final int ECLIPSE_MODE_RING = 2;
 
+	// coefficients of the periodic terms for the distance of the moon
+	private static final int[] KD = new int[] { 0, 2, 2, 0, 0, 0, 2, 2, 2, 2, 0, 1, 0, 2, 0, 0, 4, 0, 4, 2, 2, 1, 1, 2,
+			2, 4, 2, 0, 2, 2, 1, 2, 0, 0, 2, 2, 2, 4, 0, 3, 2, 4, 0, 2, 2, 2, 4, 0, 4, 1, 2, 0, 1, 3, 4, 2, 0, 1, 2,
+			2 };
+	private static final int[] KM = new int[] { 0, 0, 0, 0, 1, 0, 0, -1, 0, -1, 1, 0, 1, 0, 0, 0, 0, 0, 0, 1, 1, 0, 1,
+			-1, 0, 0, 0, 1, 0, -1, 0, -2, 1, 2, -2, 0, 0, -1, 0, 0, 1, -1, 2, 2, 1, -1, 0, 0, -1, 0, 1, 0, 1, 0, 0, -1,
+			2, 1, 0, 0 };
+	private static final int[] KM1 = new int[] { 1, -1, 0, 2, 0, 0, -2, -1, 1, 0, -1, 0, 1, 0, 1, 1, -1, 3, -2, -1, 0,
+			-1, 0, 1, 2, 0, -3, -2, -1, -2, 1, 0, 2, 0, -1, 1, 0, -1, 2, -1, 1, -2, -1, -1, -2, 0, 1, 4, 0, -2, 0, 2, 1,
+			-2, -3, 2, 1, -1, 3, -1 };
+	private static final int[] KF = new int[] { 0, 0, 0, 0, 0, 2, 0, 0, 0, 0, 0, 0, 0, -2, 2, -2, 0, 0, 0, 0, 0, 0, 0,
+			0, 0, 0, 0, 0, 2, 0, 0, 0, 0, 0, 0, -2, 2, 0, 2, 0, 0, 0, 0, 0, 0, -2, 0, 0, 0, 0, -2, -2, 0, 0, 0, 0, 0, 0,
+			0, -2 };
+	private static final int[] KR = new int[] { -20905355, -3699111, -2955968, -569925, 48888, -3149, 246158, -152138,
+			-170733, -204586, -129620, 108743, 104755, 10321, 0, 79661, -34782, -23210, -21636, 24208, 30824, -8379,
+			-16675, -12831, -10445, -11650, 14403, -7003, 0, 10056, 6322, -9884, 5751, 0, -4950, 4130, 0, -3958, 0,
+			3258, 2616, -1897, -2117, 2354, 0, 0, -1423, -1117, -1571, -1739, 0, -4421, 0, 0, 0, 0, 1165, 0, 0, 8752 };
+
 	/**
 	 * Calculates all moon data at the specified coordinates
 	 */
@@ -360,15 +378,15 @@ public class MoonCalc {
 	}
 
 	/**
-	 * Calculates the next moon phase.
+	 * Calculates the next moon phase. Steps through the lunations instead of the
+	 * days, each lunation has exactly one phase of each kind.
 	 */
 	private double getNextPhase(Calendar cal, double midnightJd, double mode) {
-		double tz = 0;
+		double k = Math.floor(var_k(cal, 0));
 		double phaseJd = 0;
 		do {
-			double k = var_k(cal, tz);
-			tz += 1;
 			phaseJd = calcMoonPhase(k, mode);
+			k += 1;
 		} while (phaseJd <= midnightJd);
 		return phaseJd;
 	}
@@ -377,26 +395,25 @@ public class MoonCalc {
 	 * Calculates the previous moon phase.
 	 */
 	public double getPreviousPhase(Calendar cal, double jd, double mode) {
-		double tz = 0;
+		double k = Math.floor(var_k(cal, 0));
 		double phaseJd = 0;
 		do {
-			double k = var_k(cal, tz);
-			tz -= 1;
 			phaseJd = calcMoonPhase(k, mode);
+			k -= 1;
 		} while (phaseJd > jd);
 		return phaseJd;
 	}
 
 	/**
-	 * Calculates the next eclipse.
+	 * Calculates the next eclipse. Steps through the lunations, an eclipse is
+	 * only possible at a new or full moon.
 	 */
 	protected double getEclipse(Calendar cal, double type, double midnightJd, int mode) {
-		double tz = 0;
+		double k = Math.floor(var_k(cal, 0));
 		double eclipseJd = 0;
 		do {
-			double k = var_k(cal, tz);
-			tz += 1;
 			eclipseJd = getEclipse(k, type, mode);
+			k += 1;
 		} while (eclipseJd <= midnightJd);
 		return eclipseJd;
 	}
@@ -615,22 +632,9 @@ public class MoonCalc {
 	}
 
 	private double getCoefficient(double d, double m, double m1, double f) {
-		int[] kd = new int[] { 0, 2, 2, 0, 0, 0, 2, 2, 2, 2, 0, 1, 0, 2, 0, 0, 4, 0, 4, 2, 2, 1, 1, 2, 2, 4, 2, 0, 2,
-				2, 1, 2, 0, 0, 2, 2, 2, 4, 0, 3, 2, 4, 0, 2, 2, 2, 4, 0, 4, 1, 2, 0, 1, 3, 4, 2, 0, 1, 2, 2 };
-		int[] km = new int[] { 0, 0, 0, 0, 1, 0, 0, -1, 0, -1, 1, 0, 1, 0, 0, 0, 0, 0, 0, 1, 1, 0, 1, -1, 0, 0, 0, 1,
-				0, -1, 0, -2, 1, 2, -2, 0, 0, -1, 0, 0, 1, -1, 2, 2, 1, -1, 0, 0, -1, 0, 1, 0, 1, 0, 0, -1, 2, 1, 0, 0 };
-		int[] km1 = new int[] { 1, -1, 0, 2, 0, 0, -2, -1, 1, 0, -1, 0, 1, 0, 1, 1, -1, 3, -2, -1, 0, -1, 0, 1, 2, 0,
-				-3, -2, -1, -2, 1, 0, 2, 0, -1, 1, 0, -1, 2, -1, 1, -2, -1, -1, -2, 0, 1, 4, 0, -2, 0, 2, 1, -2, -3, 2,
-				1, -1, 3, -1 };
-		int[] kf = new int[] { 0, 0, 0, 0, 0, 2, 0, 0, 0, 0, 0, 0, 0, -2, 2, -2, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 2,
-				0, 0, 0, 0, 0, 0, -2, 2, 0, 2, 0, 0, 0, 0, 0, 0, -2, 0, 0, 0, 0, -2, -2, 0, 0, 0, 0, 0, 0, 0, -2 };
-		int[] kr = new int[] { -20905355, -3699111, -2955968, -569925, 48888, -3149, 246158, -152138, -170733, -204586,
-				-129620, 108743, 104755, 10321, 0, 79661, -34782, -23210, -21636, 24208, 30824, -8379, -16675, -12831,
-				-10445, -11650, 14403, -7003, 0, 10056, 6322, -9884, 5751, 0, -4950, 4130, 0, -3958, 0, 3258, 2616,
-				-1897, -2117, 2354, 0, 0, -1423, -1117, -1571, -1739, 0, -4421, 0, 0, 0, 0, 1165, 0, 0, 8752 };
 		double sr = 0;
 		for (int t = 0; t < 60; t++) {
-			sr += kr[t] * CS(kd[t] * d + km[t] * m + km1[t] * m1 + kf[t] * f);
+			sr += KR[t] * CS(KD[t] * d + KM[t] * m + KM1[t] * m1 + KF[t] * f);
 		}
 		return sr;
 	}
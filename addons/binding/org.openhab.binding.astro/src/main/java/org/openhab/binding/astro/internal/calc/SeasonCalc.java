@@ -22,6 +22,7 @@ import org.openhab.binding.astro.internal.util.DateTimeUtils;
  */
 public class SeasonCalc {
 	private int currentYear;
+	private boolean currentSouthernHemisphere;
 	private Season currentSeason;
 
 	/**
@@ -31,7 +32,7 @@ public class SeasonCalc {
 		int year = calendar.get(Calendar.YEAR);
 		boolean isSouthernHemisphere = latitude < 0.0;
 		Season season = currentSeason;
-		if (currentYear != year) {
+		if (currentYear != year || currentSouthernHemisphere != isSouthernHemisphere) {
 			season = new Season();
 			if (!isSouthernHemisphere) {
 				season.setSpring(calcEquiSol(0, year));
@@ -46,6 +47,7 @@ public class SeasonCalc {
 			}
 			currentSeason = season;
 			currentYear = year;
+			currentSouthernHemisphere = isSouthernHemisphere;
 		}
 
 		season.setName(!isSouthernHemisphere ? getCurrentSeasonNameNorthern(calendar) : getCurrentSeasonNameSouthern(calendar));
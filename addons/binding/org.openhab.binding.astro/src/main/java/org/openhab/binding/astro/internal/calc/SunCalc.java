@@ -51,6 +51,11 @@ public class SunCalc {
 	private static final int CURVE_TIME_INTERVAL = 20; // 20 minutes
 	private static final double JD_ONE_MINUTE_FRACTION = 1.0 / 60 / 24;
 
+	// zodiac and seasons are calculated once per year
+	private MoonCalc moonCalc = new MoonCalc();
+	private SunZodiacCalc zodiacCalc = new SunZodiacCalc();
+	private SeasonCalc seasonCalc = new SeasonCalc();
+
 	/**
 	 * Calculates the sun position (azimuth and elevation).
 	 */
@@ -75,17 +80,23 @@ public class SunCalc {
 	}
 
 	/**
-	 * Returns true, if the sun is up all day (no rise and set).
+	 * Returns true, if the sun is up all day (no rise and set). Samples the
+	 * elevation on julian dates, without any calendar arithmetic.
 	 */
 	private boolean isSunUpAllDay(Calendar calendar, double latitude, double longitude) {
-		Calendar cal = DateTimeUtils.truncateToMidnight(calendar);
-		Sun sun = new Sun();
+		double lw = -longitude * DEG2RAD;
+		double phi = latitude * DEG2RAD;
+		double midnight = DateTimeUtils.midnightDateToJulianDate(calendar);
 		for (int minutes = 0; minutes <= MINUTES_PER_DAY; minutes += CURVE_TIME_INTERVAL) {
-			setPositionalInfo(cal, latitude, longitude, sun);
-			if (sun.getPosition().getElevation() < SUN_ANGLE) {
+			double j = midnight + minutes * JD_ONE_MINUTE_FRACTION;
+			double m = getSolarMeanAnomaly(j);
+			double lsun = getEclipticLongitude(m, getEquationOfCenter(m));
+			double d = getSunDeclination(lsun);
+			double a = getRightAscension(lsun);
+			double th = getSiderealTime(j, lw);
+			if (getElevation(th, a, phi, d) / DEG2RAD < SUN_ANGLE) {
 				return false;
 			}
-			cal.add(Calendar.MINUTE, CURVE_TIME_INTERVAL);
 		}
 		return true;
 	}
@@ -191,20 +202,15 @@ public class SunCalc {
 
 		// eclipse
 		SunEclipse eclipse = sun.getEclipse();
-		MoonCalc mc = new MoonCalc();
-
-		double partial = mc.getEclipse(calendar, MoonCalc.ECLIPSE_TYPE_SUN, j, MoonCalc.ECLIPSE_MODE_PARTIAL);
+		double partial = moonCalc.getEclipse(calendar, MoonCalc.ECLIPSE_TYPE_SUN, j, MoonCalc.ECLIPSE_MODE_PARTIAL);
 		eclipse.setPartial(DateTimeUtils.toCalendar(partial));
-		double ring = mc.getEclipse(calendar, MoonCalc.ECLIPSE_TYPE_SUN, j, MoonCalc.ECLIPSE_MODE_RING);
+		double ring = moonCalc.getEclipse(calendar, MoonCalc.ECLIPSE_TYPE_SUN, j, MoonCalc.ECLIPSE_MODE_RING);
 		eclipse.setRing(DateTimeUtils.toCalendar(ring));
-		double total = mc.getEclipse(calendar, MoonCalc.ECLIPSE_TYPE_SUN, j, MoonCalc.ECLIPSE_MODE_TOTAL);
+		double total = moonCalc.getEclipse(calendar, MoonCalc.ECLIPSE_TYPE_SUN, j, MoonCalc.ECLIPSE_MODE_TOTAL);
 		eclipse.setTotal(DateTimeUtils.toCalendar(total));
-		
-        SunZodiacCalc zodiacCalc = new SunZodiacCalc();
-        sun.setZodiac(zodiacCalc.getZodiac(calendar));
 
-        SeasonCalc seasonCalc = new SeasonCalc();
-        sun.setSeason(seasonCalc.getSeason(calendar, latitude));
+		sun.setZodiac(zodiacCalc.getZodiac(calendar));
+		sun.setSeason(seasonCalc.getSeason(calendar, latitude));
 
 		return sun;
 	}
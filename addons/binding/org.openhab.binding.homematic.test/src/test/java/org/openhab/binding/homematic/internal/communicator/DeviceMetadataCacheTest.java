@@ -0,0 +1,244 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.homematic.internal.communicator;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+import org.openhab.binding.homematic.internal.model.HmChannel;
+import org.openhab.binding.homematic.internal.model.HmDatapoint;
+import org.openhab.binding.homematic.internal.model.HmDevice;
+import org.openhab.binding.homematic.internal.model.HmInterface;
+import org.openhab.binding.homematic.internal.model.HmParamsetType;
+import org.openhab.binding.homematic.internal.model.HmValueType;
+
+/**
+ * Encode/decode round trips of the metadata stored in the {@link DeviceMetadataCache}.
+ *
+ * @author agent - Initial contribution
+ */
+public class DeviceMetadataCacheTest {
+    private static final String KEY = "RF:HM-CC-RT-DN:1.4:10:4";
+
+    private static HmDatapoint createDatapoint(HmParamsetType paramsetType, String name, HmValueType type,
+            Number minValue, Number maxValue, Object defaultValue) {
+        HmDatapoint dp = new HmDatapoint();
+        dp.setParamsetType(paramsetType);
+        dp.setName(name);
+        dp.setType(type);
+        dp.setMinValue(minValue);
+        dp.setMaxValue(maxValue);
+        dp.setDefaultValue(defaultValue);
+        dp.setReadable(true);
+        return dp;
+    }
+
+    private static List<HmDatapoint> createDatapoints() {
+        List<HmDatapoint> datapoints = new ArrayList<HmDatapoint>();
+
+        HmDatapoint temperature = createDatapoint(HmParamsetType.VALUES, "SET_TEMPERATURE", HmValueType.FLOAT, 4.5,
+                30.5, 20.0);
+        temperature.setUnit("°C");
+        temperature.setDescription("Solltemperatur");
+        datapoints.add(temperature);
+
+        HmDatapoint mode = createDatapoint(HmParamsetType.VALUES, "CONTROL_MODE", HmValueType.ENUM, 0, 3, 0);
+        mode.setOptions(new String[] { "AUTO-MODE", "MANU-MODE", "PARTY-MODE", "BOOST-MODE" });
+        mode.setReadOnly(true);
+        datapoints.add(mode);
+
+        datapoints.add(createDatapoint(HmParamsetType.VALUES, "BOOST_MODE", HmValueType.ACTION, null, null, true));
+        datapoints.add(createDatapoint(HmParamsetType.VALUES, "PARTY_START_TIME", HmValueType.INTEGER, 0, 1410, 0));
+        datapoints.add(createDatapoint(HmParamsetType.MASTER, "WEEK_PROGRAM_POINTER", HmValueType.ENUM, 0, 2, 0));
+        datapoints.add(createDatapoint(HmParamsetType.MASTER, "SHOW_WEEKDAY", HmValueType.STRING, null, null,
+                "SATURDAY"));
+
+        HmDatapoint empty = createDatapoint(HmParamsetType.MASTER, "EMPTY_OPTIONS", HmValueType.ENUM, null, null,
+                null);
+        empty.setOptions(new String[0]);
+        empty.setReadable(false);
+        datapoints.add(empty);
+        return datapoints;
+    }
+
+    private static HmDatapoint find(List<HmDatapoint> datapoints, HmParamsetType paramsetType, String name) {
+        for (HmDatapoint dp : datapoints) {
+            if (dp.getParamsetType() == paramsetType && dp.getName().equals(name)) {
+                return dp;
+            }
+        }
+        fail("Datapoint " + paramsetType + ":" + name + " not found");
+        return null;
+    }
+
+    private static void assertDatapointsEqual(List<HmDatapoint> expected, List<HmDatapoint> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (HmDatapoint expectedDp : expected) {
+            HmDatapoint dp = find(actual, expectedDp.getParamsetType(), expectedDp.getName());
+            assertEquals(expectedDp.getDescription(), dp.getDescription());
+            assertEquals(expectedDp.getUnit(), dp.getUnit());
+            assertEquals(expectedDp.getType(), dp.getType());
+            assertArrayEquals(expectedDp.getOptions(), dp.getOptions());
+            assertEquals(expectedDp.getMinValue(), dp.getMinValue());
+            assertEquals(expectedDp.getMaxValue(), dp.getMaxValue());
+            assertEquals(expectedDp.getDefaultValue(), dp.getDefaultValue());
+            assertEquals(expectedDp.isReadOnly(), dp.isReadOnly());
+            assertEquals(expectedDp.isReadable(), dp.isReadable());
+            assertEquals(expectedDp.getDefaultValue(), dp.getValue());
+            assertFalse(dp.isVirtual());
+        }
+    }
+
+    private static File createTempFile() throws IOException {
+        File file = File.createTempFile("homematic", ".metadata");
+        file.delete();
+        return file;
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        DeviceMetadataCache cache = new DeviceMetadataCache(createTempFile());
+        List<HmDatapoint> datapoints = createDatapoints();
+        assertTrue(cache.put(KEY, datapoints));
+        assertDatapointsEqual(datapoints, cache.get(KEY));
+    }
+
+    @Test
+    public void testDecodedDatapointsAreNewInstances() throws Exception {
+        DeviceMetadataCache cache = new DeviceMetadataCache(createTempFile());
+        cache.put(KEY, createDatapoints());
+        List<HmDatapoint> first = cache.get(KEY);
+        List<HmDatapoint> second = cache.get(KEY);
+        for (HmDatapoint dp : first) {
+            assertFalse(second.contains(dp));
+        }
+    }
+
+    @Test
+    public void testVirtualDatapointsAreNotCached() throws Exception {
+        DeviceMetadataCache cache = new DeviceMetadataCache(createTempFile());
+        List<HmDatapoint> datapoints = createDatapoints();
+        List<HmDatapoint> withVirtual = new ArrayList<HmDatapoint>(datapoints);
+        HmDatapoint virtual = createDatapoint(HmParamsetType.VALUES, "RSSI", HmValueType.INTEGER, null, null, 0);
+        virtual.setVirtual(true);
+        withVirtual.add(virtual);
+
+        cache.put(KEY, withVirtual);
+        assertDatapointsEqual(datapoints, cache.get(KEY));
+        // the virtual datapoint does not change the metadata
+        assertFalse(cache.put(KEY, datapoints));
+    }
+
+    @Test
+    public void testChangeDetection() throws Exception {
+        DeviceMetadataCache cache = new DeviceMetadataCache(createTempFile());
+        List<HmDatapoint> datapoints = createDatapoints();
+        assertTrue(cache.put(KEY, datapoints));
+
+        // same metadata in a different order
+        List<HmDatapoint> reversed = new ArrayList<HmDatapoint>(datapoints);
+        Collections.reverse(reversed);
+        assertFalse(cache.put(KEY, reversed));
+
+        // same metadata, decoded from the cache
+        assertFalse(cache.put(KEY, cache.get(KEY)));
+
+        // changed maximum value
+        find(datapoints, HmParamsetType.VALUES, "SET_TEMPERATURE").setMaxValue(31.0);
+        assertTrue(cache.put(KEY, datapoints));
+        assertEquals(31.0, find(cache.get(KEY), HmParamsetType.VALUES, "SET_TEMPERATURE").getMaxValue());
+    }
+
+    @Test
+    public void testEmptyChannel() throws Exception {
+        DeviceMetadataCache cache = new DeviceMetadataCache(createTempFile());
+        cache.put(KEY, new ArrayList<HmDatapoint>());
+        assertTrue(cache.get(KEY).isEmpty());
+        assertNull(cache.get("RF:HM-CC-RT-DN:1.4:10:5"));
+    }
+
+    @Test
+    public void testSaveAndLoad() throws Exception {
+        File file = createTempFile();
+        try {
+            DeviceMetadataCache cache = new DeviceMetadataCache(file);
+            List<HmDatapoint> datapoints = createDatapoints();
+            cache.put(KEY, datapoints);
+            cache.put("RF:HM-LC-Sw1-FM:2.5:5:1", datapoints.subList(0, 2));
+            cache.save();
+            assertTrue(file.exists());
+
+            DeviceMetadataCache loaded = new DeviceMetadataCache(file);
+            loaded.load();
+            assertDatapointsEqual(datapoints, loaded.get(KEY));
+            assertDatapointsEqual(datapoints.subList(0, 2), loaded.get("RF:HM-LC-Sw1-FM:2.5:5:1"));
+            assertFalse(loaded.put(KEY, datapoints));
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testRetainAll() throws Exception {
+        File file = createTempFile();
+        try {
+            DeviceMetadataCache cache = new DeviceMetadataCache(file);
+            cache.put(KEY, createDatapoints());
+            cache.put("RF:HM-LC-Sw1-FM:2.5:5:1", createDatapoints());
+            cache.retainAll(Collections.singleton(KEY));
+            cache.save();
+
+            DeviceMetadataCache loaded = new DeviceMetadataCache(file);
+            loaded.load();
+            assertNotNull(loaded.get(KEY));
+            assertNull(loaded.get("RF:HM-LC-Sw1-FM:2.5:5:1"));
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testUnknownFileFormatIsIgnored() throws Exception {
+        File file = createTempFile();
+        try {
+            try (FileOutputStream fos = new FileOutputStream(file)) {
+                fos.write("no metadata cache".getBytes("UTF-8"));
+            }
+            DeviceMetadataCache cache = new DeviceMetadataCache(file);
+            cache.load();
+            assertNull(cache.get(KEY));
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testKey() {
+        HmDevice device = new HmDevice();
+        device.setHmInterface(HmInterface.RF);
+        device.setType("HM-CC-RT-DN");
+        device.setFirmware("1.4");
+        device.setVersion(10);
+        HmChannel channel = new HmChannel();
+        channel.setNumber(4);
+        channel.setDevice(device);
+        assertEquals(KEY, DeviceMetadataCache.getKey(channel));
+
+        // a firmware update must not reuse the cached metadata
+        device.setFirmware("1.5");
+        assertFalse(KEY.equals(DeviceMetadataCache.getKey(channel)));
+    }
+}
@@ -0,0 +1,237 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.homematic.internal.communicator.client;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+import org.openhab.binding.homematic.internal.common.HomematicConfig;
+import org.openhab.binding.homematic.internal.communicator.message.RpcRequest;
+import org.openhab.binding.homematic.internal.model.HmChannel;
+import org.openhab.binding.homematic.internal.model.HmDatapoint;
+import org.openhab.binding.homematic.internal.model.HmDevice;
+import org.openhab.binding.homematic.internal.model.HmInterface;
+import org.openhab.binding.homematic.internal.model.HmParamsetType;
+import org.openhab.binding.homematic.internal.model.HmValueType;
+
+/**
+ * Loading of the values of several channels with system.multicall requests.
+ *
+ * @author agent - Initial contribution
+ */
+public class RpcClientTest {
+    private static final String DEVICE_ADDRESS = "LEQ0123456";
+
+    /**
+     * A request which only records the method name and arguments.
+     */
+    private static class TestRpcRequest implements RpcRequest {
+        private String methodName;
+        private List<Object> args = new ArrayList<Object>();
+
+        public TestRpcRequest(String methodName) {
+            this.methodName = methodName;
+        }
+
+        @Override
+        public void addArg(Object arg) {
+            args.add(arg);
+        }
+
+        @Override
+        public byte[] createMessage() {
+            return new byte[0];
+        }
+
+        @Override
+        public String getMethodName() {
+            return methodName;
+        }
+    }
+
+    /**
+     * A client which answers the requests like a Homematic gateway, getParamset calls for the failing channels are
+     * answered with faults.
+     */
+    private static class TestRpcClient extends RpcClient {
+        private Set<String> failingAddresses = new HashSet<String>();
+        private boolean multicallFailing;
+        private List<String> sentMethods = new ArrayList<String>();
+
+        public TestRpcClient(String... failingAddresses) {
+            super(new HomematicConfig());
+            Collections.addAll(this.failingAddresses, failingAddresses);
+        }
+
+        @Override
+        public void dispose() {
+        }
+
+        @Override
+        protected RpcRequest createRpcRequest(String methodName) {
+            return new TestRpcRequest(methodName);
+        }
+
+        @Override
+        protected String getRpcCallbackUrl() {
+            return "http://127.0.0.1:9125";
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        protected Object[] sendMessage(int port, RpcRequest request) throws IOException {
+            TestRpcRequest testRequest = (TestRpcRequest) request;
+            sentMethods.add(testRequest.methodName);
+            if ("system.listMethods".equals(testRequest.methodName)) {
+                return new Object[] { new Object[] { "getParamset", "system.multicall" } };
+            } else if ("system.multicall".equals(testRequest.methodName)) {
+                if (multicallFailing) {
+                    throw new IOException("Connection reset");
+                }
+                List<Map<String, Object>> calls = (List<Map<String, Object>>) testRequest.args.get(0);
+                Object[] results = new Object[calls.size()];
+                for (int i = 0; i < calls.size(); i++) {
+                    List<Object> params = (List<Object>) calls.get(i).get("params");
+                    try {
+                        results[i] = getParamset((String) params.get(0), (String) params.get(1));
+                    } catch (IOException ex) {
+                        Map<String, Object> fault = new HashMap<String, Object>();
+                        fault.put("faultCode", -1);
+                        fault.put("faultString", ex.getMessage());
+                        results[i] = fault;
+                    }
+                }
+                return new Object[] { results };
+            } else if ("getParamset".equals(testRequest.methodName)) {
+                return getParamset((String) testRequest.args.get(0), (String) testRequest.args.get(1));
+            }
+            throw new IOException("Unknown method " + testRequest.methodName);
+        }
+
+        private Object[] getParamset(String address, String paramsetType) throws IOException {
+            if (failingAddresses.contains(address)) {
+                throw new IOException("Failure");
+            }
+            Map<String, Object> values = new HashMap<String, Object>();
+            values.put(HmParamsetType.MASTER.toString().equals(paramsetType) ? "AES_ACTIVE" : "STATE", true);
+            return new Object[] { values };
+        }
+
+        private int count(String methodName) {
+            return Collections.frequency(sentMethods, methodName);
+        }
+    }
+
+    private static HmDevice createDevice(int channelCount) {
+        HmDevice device = new HmDevice();
+        device.setAddress(DEVICE_ADDRESS);
+        device.setHmInterface(HmInterface.RF);
+        for (int number = 0; number < channelCount; number++) {
+            HmChannel channel = new HmChannel();
+            channel.setNumber(number);
+            device.addChannel(channel);
+            channel.addDatapoint(createDatapoint(HmParamsetType.MASTER, "AES_ACTIVE"));
+            channel.addDatapoint(createDatapoint(HmParamsetType.VALUES, "STATE"));
+        }
+        return device;
+    }
+
+    private static HmDatapoint createDatapoint(HmParamsetType paramsetType, String name) {
+        HmDatapoint dp = new HmDatapoint();
+        dp.setParamsetType(paramsetType);
+        dp.setName(name);
+        dp.setType(HmValueType.BOOL);
+        dp.setReadable(true);
+        return dp;
+    }
+
+    private static boolean isLoaded(HmChannel channel) {
+        for (HmDatapoint dp : channel.getDatapoints().values()) {
+            if (!Boolean.TRUE.equals(dp.getValue())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void assertOnlyFailed(HmDevice device, Map<HmChannel, IOException> failedChannels,
+            int... failedNumbers) {
+        Set<HmChannel> expected = new HashSet<HmChannel>();
+        for (int number : failedNumbers) {
+            expected.add(device.getChannel(number));
+        }
+        assertEquals(expected, failedChannels.keySet());
+        for (HmChannel channel : device.getChannels()) {
+            assertEquals(!expected.contains(channel), isLoaded(channel));
+        }
+    }
+
+    @Test
+    public void testAllChannelsLoaded() throws Exception {
+        TestRpcClient client = new TestRpcClient();
+        HmDevice device = createDevice(4);
+        Map<HmChannel, IOException> failedChannels = new HashMap<HmChannel, IOException>();
+
+        int requests = client.setChannelDatapointValues(device.getChannels(), 20, failedChannels);
+        assertOnlyFailed(device, failedChannels);
+        assertEquals(1, requests);
+        assertEquals(1, client.count("system.multicall"));
+        assertEquals(0, client.count("getParamset"));
+    }
+
+    @Test
+    public void testFailingChannelDoesNotStopOtherChannels() throws Exception {
+        TestRpcClient client = new TestRpcClient(DEVICE_ADDRESS + ":1");
+        HmDevice device = createDevice(4);
+        Map<HmChannel, IOException> failedChannels = new HashMap<HmChannel, IOException>();
+
+        int requests = client.setChannelDatapointValues(device.getChannels(), 20, failedChannels);
+        assertOnlyFailed(device, failedChannels, 1);
+        assertEquals("Failure", failedChannels.get(device.getChannel(1)).getMessage());
+        // the VALUES call of the failed channel is not sent again after its MASTER call failed
+        assertEquals(1, client.count("getParamset"));
+        assertEquals(2, requests);
+    }
+
+    @Test
+    public void testFailingMulticallFallsBackToSingleCalls() throws Exception {
+        TestRpcClient client = new TestRpcClient(DEVICE_ADDRESS + ":0", DEVICE_ADDRESS + ":2");
+        client.multicallFailing = true;
+        HmDevice device = createDevice(4);
+        Map<HmChannel, IOException> failedChannels = new HashMap<HmChannel, IOException>();
+
+        int requests = client.setChannelDatapointValues(device.getChannels(), 3, failedChannels);
+        assertOnlyFailed(device, failedChannels, 0, 2);
+        assertEquals(3, client.count("system.multicall"));
+        assertEquals(2 + 2 + 2, client.count("getParamset"));
+        assertEquals(3 + 6, requests);
+    }
+
+    @Test
+    public void testSingleCalls() throws Exception {
+        TestRpcClient client = new TestRpcClient(DEVICE_ADDRESS + ":3");
+        HmDevice device = createDevice(4);
+        Map<HmChannel, IOException> failedChannels = new HashMap<HmChannel, IOException>();
+
+        int requests = client.setChannelDatapointValues(device.getChannels(), 1, failedChannels);
+        assertOnlyFailed(device, failedChannels, 3);
+        assertEquals(0, client.count("system.multicall"));
+        assertEquals(7, client.count("getParamset"));
+        assertEquals(7, requests);
+    }
+}
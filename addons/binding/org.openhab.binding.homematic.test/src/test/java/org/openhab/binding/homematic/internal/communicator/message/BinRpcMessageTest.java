@@ -0,0 +1,206 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.homematic.internal.communicator.message;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+/**
+ * Encode/decode round trips of the BIN-RPC codec for all supported data types.
+ *
+ * @author agent - Initial contribution
+ */
+public class BinRpcMessageTest {
+    private static final String ENCODING = "UTF-8";
+
+    private static Object[] roundTrip(Object... args) throws Exception {
+        BinRpcMessage request = new BinRpcMessage("setValue", ENCODING);
+        for (Object arg : args) {
+            request.addArg(arg);
+        }
+        byte[] data = request.createMessage();
+        BinRpcMessage decoded = new BinRpcMessage(data, true, ENCODING);
+        assertEquals("setValue", decoded.getMethodName());
+        assertEquals(args.length, decoded.getArgCount());
+
+        // decoding and encoding again must not change the message
+        assertArrayEquals(data, decoded.createMessage());
+        return decoded.getResponseData();
+    }
+
+    private static Object roundTripSingle(Object arg) throws Exception {
+        Object[] values = roundTrip(arg);
+        assertEquals(1, values.length);
+        return values[0];
+    }
+
+    @Test
+    public void testInteger() throws Exception {
+        for (int value : new int[] { 0, 1, -1, 42, Integer.MAX_VALUE, Integer.MIN_VALUE }) {
+            assertEquals(Integer.valueOf(value), roundTripSingle(value));
+        }
+    }
+
+    @Test
+    public void testBoolean() throws Exception {
+        assertEquals(Boolean.TRUE, roundTripSingle(Boolean.TRUE));
+        assertEquals(Boolean.FALSE, roundTripSingle(Boolean.FALSE));
+    }
+
+    @Test
+    public void testString() throws Exception {
+        assertEquals("", roundTripSingle(""));
+        assertEquals("LEQ0123456:1", roundTripSingle("LEQ0123456:1"));
+        // byte length differs from the character length
+        assertEquals("Wohnzimmer Lüftung 25°C", roundTripSingle("Wohnzimmer Lüftung 25°C"));
+    }
+
+    @Test
+    public void testDouble() throws Exception {
+        for (double value : new double[] { 0.0, 1.0, -1.0, 0.5, 21.5, -3.25, 0.000123, 1234567.125, -0.75 }) {
+            assertEquals(value, (Double) roundTripSingle(value), 0.0000005);
+        }
+    }
+
+    @Test
+    public void testDate() throws Exception {
+        // BIN-RPC dates have a resolution of one second
+        Date date = new Date(1467374400000L);
+        assertEquals(date, roundTripSingle(date));
+        assertEquals(new Date(1467374400000L), roundTripSingle(new Date(1467374400999L)));
+    }
+
+    @Test
+    public void testArray() throws Exception {
+        Object[] array = (Object[]) roundTripSingle(new Object[] { 1, "two", Boolean.TRUE, 4.5 });
+        assertArrayEquals(new Object[] { 1, "two", Boolean.TRUE, 4.5 }, array);
+
+        assertArrayEquals(new Object[0], (Object[]) roundTripSingle(new Object[0]));
+
+        // lists are sent as arrays as well
+        assertArrayEquals(new Object[] { "a", "b" }, (Object[]) roundTripSingle(Arrays.asList("a", "b")));
+    }
+
+    @Test
+    public void testStruct() throws Exception {
+        Map<String, Object> struct = new TreeMap<String, Object>();
+        struct.put("LEVEL", 0.75);
+        struct.put("STATE", Boolean.TRUE);
+        struct.put("ADDRESS", "LEQ0123456:1");
+        struct.put("VERSION", 12);
+
+        assertEquals(struct, roundTripSingle(struct));
+        assertEquals(new TreeMap<String, Object>(), roundTripSingle(new TreeMap<String, Object>()));
+    }
+
+    @Test
+    public void testNested() throws Exception {
+        Map<String, Object> paramset = new TreeMap<String, Object>();
+        paramset.put("LEVEL", 0.5);
+        paramset.put("WORKING", Boolean.FALSE);
+
+        Map<String, Object> call = new TreeMap<String, Object>();
+        call.put("methodName", "getParamset");
+        call.put("params", new Object[] { "LEQ0123456:1", "VALUES" });
+        call.put("result", new Object[] { paramset, new Object[] { 1, new Object[] { "deep" } } });
+
+        Object[] multicall = new Object[] { call, call };
+        Object[] decoded = (Object[]) roundTripSingle(multicall);
+
+        assertEquals(2, decoded.length);
+        for (Object element : decoded) {
+            @SuppressWarnings("unchecked")
+            Map<String, Object> decodedCall = (Map<String, Object>) element;
+            assertEquals("getParamset", decodedCall.get("methodName"));
+            assertArrayEquals(new Object[] { "LEQ0123456:1", "VALUES" }, (Object[]) decodedCall.get("params"));
+            Object[] result = (Object[]) decodedCall.get("result");
+            assertEquals(paramset, result[0]);
+            assertTrue(Arrays.deepEquals(new Object[] { 1, new Object[] { "deep" } }, (Object[]) result[1]));
+        }
+    }
+
+    @Test
+    public void testMultipleArguments() throws Exception {
+        Date date = new Date(1467374400000L);
+        Object[] values = roundTrip("LEQ0123456:1", "STATE", Boolean.TRUE, 3, 2.5, date);
+        assertArrayEquals(new Object[] { "LEQ0123456:1", "STATE", Boolean.TRUE, 3, 2.5, date }, values);
+    }
+
+    @Test
+    public void testLargeMessage() throws Exception {
+        // larger than the initial encode buffer and the reused receive buffer
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 70000; i++) {
+            sb.append((char) ('a' + i % 26));
+        }
+        String value = sb.toString();
+        assertEquals(value, roundTripSingle(value));
+    }
+
+    @Test
+    public void testResponse() throws Exception {
+        BinRpcMessage response = new BinRpcMessage(null, BinRpcMessage.TYPE.RESPONSE, ENCODING);
+        response.addArg("");
+        byte[] data = response.createMessage();
+        assertEquals(1, data[3]);
+
+        BinRpcMessage decoded = new BinRpcMessage(data, false, ENCODING);
+        assertNull(decoded.getMethodName());
+        assertArrayEquals(new Object[] { "" }, decoded.getResponseData());
+    }
+
+    @Test
+    public void testStreamWithReusedBuffer() throws Exception {
+        BinRpcBuffer buffer = new BinRpcBuffer();
+        StringBuilder large = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            large.append('x');
+        }
+
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        String[] values = { "first", large.toString(), "third" };
+        for (String value : values) {
+            BinRpcMessage message = new BinRpcMessage("event", ENCODING);
+            message.addArg(value);
+            message.writeTo(stream);
+        }
+
+        ByteArrayInputStream is = new ByteArrayInputStream(stream.toByteArray());
+        for (String value : values) {
+            BinRpcMessage decoded = new BinRpcMessage(is, true, ENCODING, buffer);
+            assertEquals("event", decoded.getMethodName());
+            assertArrayEquals(new Object[] { value }, decoded.getResponseData());
+        }
+    }
+
+    @Test(expected = EOFException.class)
+    public void testTruncatedMessage() throws Exception {
+        BinRpcMessage message = new BinRpcMessage("setValue", ENCODING);
+        message.addArg("LEQ0123456:1");
+        byte[] data = message.createMessage();
+        new BinRpcMessage(new ByteArrayInputStream(Arrays.copyOf(data, data.length - 3)), true, ENCODING);
+    }
+
+    @Test(expected = UnsupportedEncodingException.class)
+    public void testInvalidSignature() throws IOException {
+        byte[] data = { 'X', 'm', 'l', 0, 0, 0, 0, 0 };
+        new BinRpcMessage(new ByteArrayInputStream(data), true, ENCODING);
+    }
+}
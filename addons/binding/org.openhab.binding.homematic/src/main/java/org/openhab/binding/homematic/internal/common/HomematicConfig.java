@@ -45,6 +45,9 @@ public class HomematicConfig {
 
     private Integer aliveInterval = 300;
     private int socketMaxAlive = 900;
+    private int socketsPerPort = 3;
+    private int multicallBatchSize = 20;
+    private boolean revalidateMetadata = false;
     private int timeout = 15;
     private int reconnectInterval = 0;
 
@@ -168,6 +171,50 @@ public class HomematicConfig {
         this.socketMaxAlive = socketMaxAlive;
     }
 
+    /**
+     * Returns the number of socket connections per port to a Homematic gateway.
+     */
+    public int getSocketsPerPort() {
+        return socketsPerPort;
+    }
+
+    /**
+     * Sets the number of socket connections per port to a Homematic gateway.
+     */
+    public void setSocketsPerPort(int socketsPerPort) {
+        this.socketsPerPort = socketsPerPort;
+    }
+
+    /**
+     * Returns the maximum number of calls sent within one system.multicall request, multicalls are disabled if lower
+     * than 2.
+     */
+    public int getMulticallBatchSize() {
+        return multicallBatchSize;
+    }
+
+    /**
+     * Sets the maximum number of calls sent within one system.multicall request.
+     */
+    public void setMulticallBatchSize(int multicallBatchSize) {
+        this.multicallBatchSize = multicallBatchSize;
+    }
+
+    /**
+     * Returns true, if the metadata served from the metadata cache should be reloaded from the gateway after
+     * startup.
+     */
+    public boolean isRevalidateMetadata() {
+        return revalidateMetadata;
+    }
+
+    /**
+     * Sets if the metadata served from the metadata cache should be reloaded from the gateway after startup.
+     */
+    public void setRevalidateMetadata(boolean revalidateMetadata) {
+        this.revalidateMetadata = revalidateMetadata;
+    }
+
     /**
      * Returns the timeout for the communication to a Homematic gateway in seconds.
      */
@@ -298,7 +345,10 @@ public class HomematicConfig {
                 .append("gatewayType", gatewayType).append("rfPort", getRfPort()).append("wiredPort", getWiredPort())
                 .append("hmIpPort", getHmIpPort()).append("cuxdPort", getCuxdPort())
                 .append("aliveInterval", aliveInterval).append("reconnectInterval", reconnectInterval)
-                .append("timeout", timeout).append("socketMaxAlive", socketMaxAlive);
+                .append("timeout", timeout).append("socketMaxAlive", socketMaxAlive)
+                .append("socketsPerPort", socketsPerPort)
+                .append("multicallBatchSize", multicallBatchSize)
+                .append("revalidateMetadata", revalidateMetadata);
         return tsb.toString();
     }
 }
@@ -10,6 +10,7 @@ package org.openhab.binding.homematic.internal.communicator;
 
 import static org.openhab.binding.homematic.internal.misc.HomematicConstants.*;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -24,9 +25,11 @@ import java.util.TreeMap;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.lang.ObjectUtils;
 import org.apache.commons.lang.StringUtils;
+import org.eclipse.smarthome.config.core.ConfigConstants;
 import org.eclipse.smarthome.core.common.ThreadPoolManager;
 import org.openhab.binding.homematic.internal.common.HomematicConfig;
 import org.openhab.binding.homematic.internal.communicator.client.BinRpcClient;
@@ -75,6 +78,7 @@ public abstract class AbstractHomematicGateway implements RpcEventListener, Home
     public static final double DEFAULT_DISABLE_DELAY = 2.0;
     private static final long CONNECTION_TRACKER_INTERVAL_SECONDS = 15;
     private static final String GATEWAY_POOL_NAME = "homematicGateway";
+    private static final long METADATA_REVALIDATION_DELAY_SECONDS = 60;
 
     private Map<TransferMode, RpcClient> rpcClients = new HashMap<TransferMode, RpcClient>();
     private Map<TransferMode, RpcServer> rpcServers = new HashMap<TransferMode, RpcServer>();
@@ -88,10 +92,14 @@ public abstract class AbstractHomematicGateway implements RpcEventListener, Home
     private ScheduledFuture<?> eventTrackerThread;
     private ScheduledFuture<?> connectionTrackerThread;
     private ScheduledFuture<?> reconnectThread;
+    private ScheduledFuture<?> metadataRevalidationThread;
     private Map<String, HmDevice> devices = Collections.synchronizedMap(new HashMap<String, HmDevice>());
     private Map<HmInterface, TransferMode> availableInterfaces = new TreeMap<HmInterface, TransferMode>();
     private static List<VirtualDatapointHandler> virtualDatapointHandlers = new ArrayList<VirtualDatapointHandler>();
     private boolean cancelLoadAllMetadata;
+    private DeviceMetadataCache metadataCache;
+    private AtomicLong multicallSavedRequests = new AtomicLong();
+    private AtomicLong multicallSavedMillis = new AtomicLong();
 
     static {
         // loads all virtual datapoints
@@ -111,6 +119,8 @@ public abstract class AbstractHomematicGateway implements RpcEventListener, Home
         this.id = id;
         this.config = config;
         this.eventListener = eventListener;
+        this.metadataCache = new DeviceMetadataCache(new File(ConfigConstants.getUserDataFolder() + File.separator
+                + "homematic" + File.separator + id + ".metadata"));
     }
 
     /**
@@ -156,6 +166,7 @@ public abstract class AbstractHomematicGateway implements RpcEventListener, Home
             sb.setLength(sb.length() - 2);
         }
         logger.info("Used Homematic transfer modes: " + sb.toString());
+        metadataCache.load();
         startClients();
         startServers();
         startWatchdogs();
@@ -167,6 +178,7 @@ public abstract class AbstractHomematicGateway implements RpcEventListener, Home
     @Override
     public void dispose() {
         stopWatchdogs();
+        stopMetadataRevalidation();
         delayedExecutor.stop();
         stopServers();
         stopClients();
@@ -360,6 +372,8 @@ public abstract class AbstractHomematicGateway implements RpcEventListener, Home
         // loading datapoints for all channels
         Set<String> loadedDevices = new HashSet<String>();
         Map<String, Collection<HmDatapoint>> datapointsByChannelIdCache = new HashMap<String, Collection<HmDatapoint>>();
+        Set<String> usedMetadataKeys = new HashSet<String>();
+        Map<String, HmChannel> channelsFromMetadataCache = new HashMap<String, HmChannel>();
         for (HmDevice device : deviceDescriptions) {
             if (!cancelLoadAllMetadata) {
                 try {
@@ -379,10 +393,22 @@ public abstract class AbstractHomematicGateway implements RpcEventListener, Home
                             } else {
                                 String channelId = String.format("%s:%s:%s", channel.getDevice().getType(),
                                         channel.getDevice().getFirmware(), channel.getNumber());
+                                String metadataKey = DeviceMetadataCache.getKey(channel);
+                                usedMetadataKeys.add(metadataKey);
                                 Collection<HmDatapoint> cachedDatapoints = datapointsByChannelIdCache.get(channelId);
+                                List<HmDatapoint> persistedDatapoints = cachedDatapoints == null
+                                        ? metadataCache.get(metadataKey) : null;
                                 if (cachedDatapoints != null) {
                                     // clone all datapoints
                                     cloneAllDatapointsIntoChannel(channel, cachedDatapoints);
+                                } else if (persistedDatapoints != null) {
+                                    // datapoints from the metadata cache, revalidated later
+                                    logger.trace("    Using cached datapoints for channel {}", channel);
+                                    for (HmDatapoint dp : persistedDatapoints) {
+                                        channel.addDatapoint(dp);
+                                    }
+                                    channelsFromMetadataCache.put(metadataKey, channel);
+                                    datapointsByChannelIdCache.put(channelId, channel.getDatapoints().values());
                                 } else {
                                     logger.trace("    Loading datapoints into channel {}", channel);
                                     // load all datapoints from the gateway
@@ -390,6 +416,7 @@ public abstract class AbstractHomematicGateway implements RpcEventListener, Home
                                     getRpcClient(hmInterface).addChannelDatapoints(channel, HmParamsetType.MASTER);
                                     getRpcClient(hmInterface).addChannelDatapoints(channel, HmParamsetType.VALUES);
 
+                                    metadataCache.put(metadataKey, channel.getDatapoints().values());
                                     datapointsByChannelIdCache.put(channelId, channel.getDatapoints().values());
                                 }
                             }
@@ -406,6 +433,35 @@ public abstract class AbstractHomematicGateway implements RpcEventListener, Home
         }
         if (!cancelLoadAllMetadata) {
             devices.keySet().retainAll(loadedDevices);
+            metadataCache.retainAll(usedMetadataKeys);
+        }
+        metadataCache.save();
+        if (!cancelLoadAllMetadata && config.isRevalidateMetadata() && !channelsFromMetadataCache.isEmpty()) {
+            startMetadataRevalidation(channelsFromMetadataCache);
+        }
+        if (logger.isDebugEnabled()) {
+            for (Map.Entry<TransferMode, RpcClient> entry : rpcClients.entrySet()) {
+                logger.debug("{} latencies on gateway '{}' after loading metadata: {}", entry.getKey(), id,
+                        entry.getValue().getLatencyMetrics());
+            }
+        }
+    }
+
+    /**
+     * Starts a thread which reloads the metadata served from the cache and updates changed devices.
+     */
+    private synchronized void startMetadataRevalidation(Map<String, HmChannel> channels) {
+        stopMetadataRevalidation();
+        logger.debug("Revalidating cached metadata of {} channel types in {} seconds on gateway '{}'",
+                channels.size(), METADATA_REVALIDATION_DELAY_SECONDS, id);
+        metadataRevalidationThread = ThreadPoolManager.getScheduledPool(GATEWAY_POOL_NAME).schedule(
+                new MetadataRevalidationThread(channels), METADATA_REVALIDATION_DELAY_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private synchronized void stopMetadataRevalidation() {
+        if (metadataRevalidationThread != null) {
+            metadataRevalidationThread.cancel(true);
+            metadataRevalidationThread = null;
         }
     }
 
@@ -454,6 +510,8 @@ public abstract class AbstractHomematicGateway implements RpcEventListener, Home
                     logger.debug("Loaded {} gateway script(s)", datapoints.size());
                 }
             }
+        } else if (config.getMulticallBatchSize() > 1) {
+            loadUninitializedChannelValues(channel);
         } else {
             logger.debug("Loading values for channel {} of device '{}'", channel, channel.getDevice().getAddress());
             HmInterface hmInterface = channel.getDevice().getHmInterface();
@@ -463,6 +521,56 @@ public abstract class AbstractHomematicGateway implements RpcEventListener, Home
         channel.setInitialized(true);
     }
 
+    /**
+     * Loads the values of the given channel and of all other channels of the device which are not initialized with
+     * system.multicall requests. Every loaded channel is initialized on its own, channels which failed are loaded
+     * again with the next request.
+     *
+     * @throws IOException if the values of the given channel can't be loaded
+     */
+    private void loadUninitializedChannelValues(HmChannel requestedChannel) throws IOException {
+        HmDevice device = requestedChannel.getDevice();
+        List<HmChannel> channels = new ArrayList<HmChannel>();
+        for (HmChannel channel : device.getChannels()) {
+            if (channel == requestedChannel || !channel.isInitialized()) {
+                channels.add(channel);
+            }
+        }
+        logger.debug("Loading values for {} channel(s) of device '{}'", channels.size(), device.getAddress());
+
+        HmInterface hmInterface = device.getHmInterface();
+        RpcClient rpcClient = getRpcClient(hmInterface);
+        long start = System.currentTimeMillis();
+        Map<HmChannel, IOException> failedChannels = new HashMap<HmChannel, IOException>();
+        int requests = rpcClient.setChannelDatapointValues(channels, config.getMulticallBatchSize(), failedChannels);
+        for (HmChannel channel : channels) {
+            IOException ex = failedChannels.get(channel);
+            if (ex == null) {
+                channel.setInitialized(true);
+            } else if (channel != requestedChannel) {
+                logger.debug("Can't load values for channel {} of device '{}': {}", channel, device.getAddress(),
+                        ex.getMessage());
+            }
+        }
+
+        int savedRequests = channels.size() * 2 - requests;
+        if (savedRequests > 0) {
+            long savedMillis = Math.round(savedRequests * rpcClient.getLatencyMetrics()
+                    .getAverageMillis(hmInterface.getName(), false));
+            multicallSavedRequests.addAndGet(savedRequests);
+            multicallSavedMillis.addAndGet(savedMillis);
+            logger.debug(
+                    "Loaded values of device '{}' with {} instead of {} requests in {}ms, saved about {}ms (total saved on gateway '{}': {} requests, about {}ms)",
+                    device.getAddress(), requests, channels.size() * 2, System.currentTimeMillis() - start,
+                    savedMillis, id, multicallSavedRequests.get(), multicallSavedMillis.get());
+        }
+
+        IOException requestedChannelFailure = failedChannels.get(requestedChannel);
+        if (requestedChannelFailure != null) {
+            throw requestedChannelFailure;
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -815,6 +923,83 @@ public abstract class AbstractHomematicGateway implements RpcEventListener, Home
         }
     }
 
+    /**
+     * Thread which reloads the metadata of channels, which has been served from the cache. Devices with changed
+     * metadata are updated.
+     */
+    private class MetadataRevalidationThread implements Runnable {
+        private Map<String, HmChannel> channels;
+
+        public MetadataRevalidationThread(Map<String, HmChannel> channels) {
+            this.channels = channels;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void run() {
+            Set<String> changedKeys = new HashSet<String>();
+            for (Entry<String, HmChannel> entry : channels.entrySet()) {
+                if (Thread.currentThread().isInterrupted()) {
+                    return;
+                }
+                HmChannel cachedChannel = entry.getValue();
+                HmChannel channel = new HmChannel();
+                channel.setNumber(cachedChannel.getNumber());
+                channel.setType(cachedChannel.getType());
+                channel.setDevice(cachedChannel.getDevice());
+                try {
+                    HmInterface hmInterface = channel.getDevice().getHmInterface();
+                    getRpcClient(hmInterface).addChannelDatapoints(channel, HmParamsetType.MASTER);
+                    getRpcClient(hmInterface).addChannelDatapoints(channel, HmParamsetType.VALUES);
+                    if (metadataCache.put(entry.getKey(), channel.getDatapoints().values())) {
+                        changedKeys.add(entry.getKey());
+                    }
+                } catch (IOException ex) {
+                    logger.debug("Can't revalidate metadata of channel {} on gateway '{}': {}", cachedChannel, id,
+                            ex.getMessage());
+                }
+            }
+            metadataCache.save();
+            logger.debug("Revalidated cached metadata on gateway '{}', {} channel types changed", id,
+                    changedKeys.size());
+
+            if (!changedKeys.isEmpty()) {
+                List<HmDevice> loadedDevices;
+                synchronized (devices) {
+                    loadedDevices = new ArrayList<HmDevice>(devices.values());
+                }
+                for (HmDevice device : loadedDevices) {
+                    boolean changed = false;
+                    for (HmChannel channel : device.getChannels()) {
+                        String metadataKey = DeviceMetadataCache.getKey(channel);
+                        List<HmDatapoint> datapoints = changedKeys.contains(metadataKey)
+                                ? metadataCache.get(metadataKey) : null;
+                        if (datapoints != null) {
+                            // virtual datapoints are not cached, they are kept until prepareDevice replaces them
+                            for (HmDatapoint dp : channel.getDatapoints().values()) {
+                                if (dp.isVirtual()) {
+                                    datapoints.add(dp);
+                                }
+                            }
+                            // the channel is in use by event threads, its datapoints must never be incomplete
+                            channel.setDatapoints(datapoints);
+                            changed = true;
+                        }
+                    }
+                    if (changed) {
+                        logger.info("Metadata of device '{}' ({}) has changed on gateway '{}', reloading",
+                                device.getAddress(), device.getType(), id);
+                        prepareDevice(device);
+                        eventListener.onDeviceLoaded(device);
+                        triggerDeviceValuesReload(device);
+                    }
+                }
+            }
+        }
+    }
+
     /**
      * Threads which restarts the RPC server.
      */
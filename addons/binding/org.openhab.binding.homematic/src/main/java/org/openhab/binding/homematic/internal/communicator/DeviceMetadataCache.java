@@ -0,0 +1,296 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.homematic.internal.communicator;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.openhab.binding.homematic.internal.model.HmChannel;
+import org.openhab.binding.homematic.internal.model.HmDatapoint;
+import org.openhab.binding.homematic.internal.model.HmDevice;
+import org.openhab.binding.homematic.internal.model.HmParamsetType;
+import org.openhab.binding.homematic.internal.model.HmValueType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Persistent cache of the datapoint metadata (paramset descriptions) of the device channels.
+ *
+ * The metadata is keyed by interface, device type, firmware, device description version and channel number, so a
+ * firmware update of a device results in a cache miss. The datapoints are stored in a compact binary form, which is
+ * also used to detect changed descriptions when the cache is revalidated.
+ *
+ * @author agent - Initial contribution
+ */
+public class DeviceMetadataCache {
+    private static final Logger logger = LoggerFactory.getLogger(DeviceMetadataCache.class);
+    private static final int FILE_MAGIC = 0x484d4443; // HMDC
+    private static final int FILE_VERSION = 1;
+
+    private static final byte VALUE_NULL = 0;
+    private static final byte VALUE_INTEGER = 1;
+    private static final byte VALUE_DOUBLE = 2;
+    private static final byte VALUE_BOOLEAN = 3;
+    private static final byte VALUE_STRING = 4;
+
+    private static final Comparator<HmDatapoint> DATAPOINT_ORDER = new Comparator<HmDatapoint>() {
+        @Override
+        public int compare(HmDatapoint dp1, HmDatapoint dp2) {
+            int result = dp1.getParamsetType().compareTo(dp2.getParamsetType());
+            return result != 0 ? result : dp1.getName().compareTo(dp2.getName());
+        }
+    };
+
+    private File file;
+    private Map<String, byte[]> entries = new HashMap<String, byte[]>();
+    private boolean dirty;
+
+    public DeviceMetadataCache(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Returns the cache key of the given channel.
+     */
+    public static String getKey(HmChannel channel) {
+        HmDevice device = channel.getDevice();
+        return String.format("%s:%s:%s:%s:%s", device.getHmInterface(), device.getType(), device.getFirmware(),
+                device.getVersion(), channel.getNumber());
+    }
+
+    /**
+     * Loads the cache from the file, an unreadable file is ignored.
+     */
+    public synchronized void load() {
+        entries.clear();
+        dirty = false;
+        if (!file.exists()) {
+            return;
+        }
+        try (DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (dis.readInt() != FILE_MAGIC || dis.readInt() != FILE_VERSION) {
+                logger.debug("Ignoring metadata cache file '{}' with unknown format", file);
+                return;
+            }
+            int count = dis.readInt();
+            for (int i = 0; i < count; i++) {
+                String key = dis.readUTF();
+                byte[] data = new byte[dis.readInt()];
+                dis.readFully(data);
+                entries.put(key, data);
+            }
+            logger.debug("Loaded metadata of {} channel types from '{}'", entries.size(), file);
+        } catch (IOException ex) {
+            logger.warn("Can't read metadata cache file '{}': {}", file, ex.getMessage());
+            entries.clear();
+        }
+    }
+
+    /**
+     * Saves the cache to the file, if it has been changed.
+     */
+    public synchronized void save() {
+        if (!dirty) {
+            return;
+        }
+        File tempFile = new File(file.getPath() + ".tmp");
+        file.getParentFile().mkdirs();
+        try (DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+            dos.writeInt(FILE_MAGIC);
+            dos.writeInt(FILE_VERSION);
+            dos.writeInt(entries.size());
+            for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+                dos.writeUTF(entry.getKey());
+                dos.writeInt(entry.getValue().length);
+                dos.write(entry.getValue());
+            }
+        } catch (IOException ex) {
+            logger.warn("Can't write metadata cache file '{}': {}", file, ex.getMessage());
+            tempFile.delete();
+            return;
+        }
+        file.delete();
+        if (tempFile.renameTo(file)) {
+            dirty = false;
+        } else {
+            logger.warn("Can't write metadata cache file '{}'", file);
+        }
+    }
+
+    /**
+     * Returns new datapoints with the cached metadata for the given key or null, if the key is not cached.
+     */
+    public synchronized List<HmDatapoint> get(String key) {
+        byte[] data = entries.get(key);
+        if (data == null) {
+            return null;
+        }
+        try {
+            return decode(data);
+        } catch (IOException | IllegalArgumentException ex) {
+            logger.debug("Dropping invalid metadata cache entry '{}': {}", key, ex.getMessage());
+            entries.remove(key);
+            dirty = true;
+            return null;
+        }
+    }
+
+    /**
+     * Stores the metadata of the datapoints (virtual datapoints are ignored).
+     *
+     * @return true, if the metadata has been changed
+     */
+    public synchronized boolean put(String key, Collection<HmDatapoint> datapoints) {
+        try {
+            byte[] data = encode(datapoints);
+            byte[] previous = entries.put(key, data);
+            boolean changed = previous == null || !Arrays.equals(previous, data);
+            dirty |= changed;
+            return changed;
+        } catch (IOException ex) {
+            // ByteArrayOutputStream does not throw IOExceptions
+            return false;
+        }
+    }
+
+    /**
+     * Removes all entries with keys not contained in the given set.
+     */
+    public synchronized void retainAll(Set<String> keys) {
+        dirty |= entries.keySet().retainAll(keys);
+    }
+
+    private byte[] encode(Collection<HmDatapoint> datapoints) throws IOException {
+        List<HmDatapoint> sorted = new ArrayList<HmDatapoint>();
+        for (HmDatapoint dp : datapoints) {
+            if (!dp.isVirtual()) {
+                sorted.add(dp);
+            }
+        }
+        Collections.sort(sorted, DATAPOINT_ORDER);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(sorted.size() * 48);
+        DataOutputStream dos = new DataOutputStream(bytes);
+        dos.writeInt(sorted.size());
+        for (HmDatapoint dp : sorted) {
+            dos.writeUTF(dp.getParamsetType().name());
+            dos.writeUTF(dp.getName());
+            writeString(dos, dp.getDescription());
+            writeString(dos, dp.getUnit());
+            dos.writeUTF(dp.getType().name());
+            String[] options = dp.getOptions();
+            dos.writeInt(options == null ? -1 : options.length);
+            if (options != null) {
+                for (String option : options) {
+                    writeString(dos, option);
+                }
+            }
+            writeValue(dos, dp.getMinValue());
+            writeValue(dos, dp.getMaxValue());
+            writeValue(dos, dp.getDefaultValue());
+            dos.writeBoolean(dp.isReadOnly());
+            dos.writeBoolean(dp.isReadable());
+        }
+        return bytes.toByteArray();
+    }
+
+    private List<HmDatapoint> decode(byte[] data) throws IOException {
+        DataInputStream dis = new DataInputStream(new ByteArrayInputStream(data));
+        int count = dis.readInt();
+        List<HmDatapoint> datapoints = new ArrayList<HmDatapoint>(count);
+        for (int i = 0; i < count; i++) {
+            HmDatapoint dp = new HmDatapoint();
+            dp.setParamsetType(HmParamsetType.valueOf(dis.readUTF()));
+            dp.setName(dis.readUTF());
+            dp.setDescription(readString(dis));
+            dp.setUnit(readString(dis));
+            dp.setType(HmValueType.valueOf(dis.readUTF()));
+            int optionCount = dis.readInt();
+            if (optionCount >= 0) {
+                String[] options = new String[optionCount];
+                for (int j = 0; j < optionCount; j++) {
+                    options[j] = readString(dis);
+                }
+                dp.setOptions(options);
+            }
+            dp.setMinValue((Number) readValue(dis));
+            dp.setMaxValue((Number) readValue(dis));
+            dp.setDefaultValue(readValue(dis));
+            dp.setReadOnly(dis.readBoolean());
+            dp.setReadable(dis.readBoolean());
+            dp.setValue(dp.getDefaultValue());
+            datapoints.add(dp);
+        }
+        return datapoints;
+    }
+
+    private void writeString(DataOutputStream dos, String value) throws IOException {
+        dos.writeBoolean(value != null);
+        if (value != null) {
+            dos.writeUTF(value);
+        }
+    }
+
+    private String readString(DataInputStream dis) throws IOException {
+        return dis.readBoolean() ? dis.readUTF() : null;
+    }
+
+    private void writeValue(DataOutputStream dos, Object value) throws IOException {
+        if (value == null) {
+            dos.writeByte(VALUE_NULL);
+        } else if (value instanceof Integer) {
+            dos.writeByte(VALUE_INTEGER);
+            dos.writeInt((Integer) value);
+        } else if (value instanceof Number) {
+            dos.writeByte(VALUE_DOUBLE);
+            dos.writeDouble(((Number) value).doubleValue());
+        } else if (value instanceof Boolean) {
+            dos.writeByte(VALUE_BOOLEAN);
+            dos.writeBoolean((Boolean) value);
+        } else {
+            dos.writeByte(VALUE_STRING);
+            dos.writeUTF(value.toString());
+        }
+    }
+
+    private Object readValue(DataInputStream dis) throws IOException {
+        byte type = dis.readByte();
+        switch (type) {
+            case VALUE_NULL:
+                return null;
+            case VALUE_INTEGER:
+                return dis.readInt();
+            case VALUE_DOUBLE:
+                return dis.readDouble();
+            case VALUE_BOOLEAN:
+                return dis.readBoolean();
+            case VALUE_STRING:
+                return dis.readUTF();
+            default:
+                throw new IOException("Unknown value type " + type);
+        }
+    }
+}
@@ -41,6 +41,7 @@ public class BinRpcClient extends RpcClient {
     @Override
     public void dispose() {
         socketHandler.flush();
+        logger.debug("BIN-RPC latencies: {}", latencyMetrics);
     }
 
     /**
@@ -72,7 +73,7 @@ public class BinRpcClient extends RpcClient {
      * Sends a BIN-RPC message and parses the response to see if there was an error.
      */
     @Override
-    protected synchronized Object[] sendMessage(int port, RpcRequest request) throws IOException {
+    protected Object[] sendMessage(int port, RpcRequest request) throws IOException {
         if (TRACE_ENABLED) {
             logger.trace("Client BinRpcRequest:\n{}", request);
         }
@@ -84,11 +85,26 @@ public class BinRpcClient extends RpcClient {
      */
     private Object[] sendMessage(int port, BinRpcMessage request, int socketRetryCounter) throws IOException {
         BinRpcMessage resp = null;
+        boolean interactive = isInteractive(request);
+        long start = System.nanoTime();
+        long waitNanos = 0;
+        boolean failed = true;
         try {
-            Socket socket = socketHandler.getSocket(port);
-            socket.getOutputStream().write(request.createMessage());
-            resp = new BinRpcMessage(socket.getInputStream(), false, config.getEncoding());
-            return new RpcResponseParser(request).parse(resp.getResponseData());
+            SocketInfo socketInfo = socketHandler.getSocket(port, interactive);
+            waitNanos = System.nanoTime() - start;
+            boolean reusable = false;
+            try {
+                Socket socket = socketInfo.getSocket();
+                request.writeTo(socket.getOutputStream());
+                resp = new BinRpcMessage(socket.getInputStream(), false, config.getEncoding(),
+                        socketInfo.getBuffer());
+                reusable = true;
+            } finally {
+                socketHandler.releaseSocket(port, socketInfo, reusable);
+            }
+            Object[] result = new RpcResponseParser(request).parse(resp.getResponseData());
+            failed = false;
+            return result;
         } catch (UnknownRpcFailureException rpcEx) {
             // throw immediately, don't retry the message
             throw rpcEx;
@@ -103,6 +119,7 @@ public class BinRpcClient extends RpcClient {
                 return sendMessage(port, request, socketRetryCounter);
             }
         } finally {
+            latencyMetrics.record(getInterfaceName(port), interactive, waitNanos, System.nanoTime() - start, failed);
             if (TRACE_ENABLED) {
                 logger.trace("Client BinRpcResponse:\n{}", resp == null ? "null" : resp.toString());
             }
@@ -8,11 +8,21 @@
  */
 package org.openhab.binding.homematic.internal.communicator.client;
 
+import static org.openhab.binding.homematic.internal.misc.HomematicConstants.*;
+
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
+import org.apache.commons.lang.ArrayUtils;
 import org.apache.commons.lang.StringUtils;
 import org.openhab.binding.homematic.internal.common.HomematicConfig;
 import org.openhab.binding.homematic.internal.communicator.message.RpcRequest;
@@ -43,7 +53,28 @@ public abstract class RpcClient {
     private static final Logger logger = LoggerFactory.getLogger(RpcClient.class);
     protected static final boolean TRACE_ENABLED = logger.isTraceEnabled();
 
+    /**
+     * RPC methods triggered by the user, which must not wait for bulk requests.
+     */
+    private static final Set<String> INTERACTIVE_METHODS = new HashSet<String>(Arrays.asList("setValue",
+            "putParamset", "setSystemVariable", "runScript", "setInstallMode", "deleteDevice"));
+
     protected HomematicConfig config;
+    protected RpcLatencyMetrics latencyMetrics = new RpcLatencyMetrics();
+    private Map<Integer, Boolean> multicallSupport = new ConcurrentHashMap<Integer, Boolean>();
+
+    /**
+     * A getParamset call for a channel, sent within a system.multicall request.
+     */
+    private static class ParamsetCall {
+        private HmChannel channel;
+        private HmParamsetType paramsetType;
+
+        public ParamsetCall(HmChannel channel, HmParamsetType paramsetType) {
+            this.channel = channel;
+            this.paramsetType = paramsetType;
+        }
+    }
 
     public RpcClient(HomematicConfig config) {
         this.config = config;
@@ -69,6 +100,32 @@ public abstract class RpcClient {
      */
     protected abstract Object[] sendMessage(int port, RpcRequest request) throws IOException;
 
+    /**
+     * Returns the latencies of the requests sent by this client.
+     */
+    public RpcLatencyMetrics getLatencyMetrics() {
+        return latencyMetrics;
+    }
+
+    /**
+     * Returns true, if the request is triggered by the user and should be sent without delay.
+     */
+    protected boolean isInteractive(RpcRequest request) {
+        return INTERACTIVE_METHODS.contains(request.getMethodName());
+    }
+
+    /**
+     * Returns the name of the interface which is configured with the given port.
+     */
+    protected String getInterfaceName(int port) {
+        for (HmInterface hmInterface : HmInterface.values()) {
+            if (config.getRpcPort(hmInterface) == port) {
+                return hmInterface.getName();
+            }
+        }
+        return String.valueOf(port);
+    }
+
     /**
      * Register a callback for the specified interface where the Homematic gateway can send its events.
      */
@@ -172,6 +229,126 @@ public abstract class RpcClient {
         }
     }
 
+    /**
+     * Sets all datapoint values for the given channels. The getParamset calls are packed into system.multicall
+     * requests with at most batchSize calls each. Calls which can't be sent or answered within a multicall are sent
+     * individually, if a whole multicall fails, all calls of the batch are sent individually. A failing channel does
+     * not stop the loading of the other channels, its first exception is put into failedChannels.
+     *
+     * @return the number of requests sent to the gateway
+     */
+    public int setChannelDatapointValues(Collection<HmChannel> channels, int batchSize,
+            Map<HmChannel, IOException> failedChannels) {
+        Map<Integer, List<ParamsetCall>> callsByPort = new LinkedHashMap<Integer, List<ParamsetCall>>();
+        List<ParamsetCall> singleCalls = new ArrayList<ParamsetCall>();
+        for (HmChannel channel : channels) {
+            for (HmParamsetType paramsetType : new HmParamsetType[] { HmParamsetType.MASTER, HmParamsetType.VALUES }) {
+                ParamsetCall call = new ParamsetCall(channel, paramsetType);
+                boolean isCuxdValues = channel.getDevice().getHmInterface() == HmInterface.CUXD
+                        && paramsetType == HmParamsetType.VALUES;
+                if (batchSize < 2 || isCuxdValues) {
+                    singleCalls.add(call);
+                } else {
+                    int port = config.getRpcPort(channel);
+                    if (!callsByPort.containsKey(port)) {
+                        callsByPort.put(port, new ArrayList<ParamsetCall>());
+                    }
+                    callsByPort.get(port).add(call);
+                }
+            }
+        }
+
+        int requests = 0;
+        for (Map.Entry<Integer, List<ParamsetCall>> entry : callsByPort.entrySet()) {
+            int port = entry.getKey();
+            List<ParamsetCall> calls = entry.getValue();
+            if (calls.size() < 2 || !isMulticallSupported(port)) {
+                singleCalls.addAll(calls);
+                continue;
+            }
+            for (int start = 0; start < calls.size(); start += batchSize) {
+                List<ParamsetCall> batch = calls.subList(start, Math.min(start + batchSize, calls.size()));
+                requests++;
+                try {
+                    singleCalls.addAll(sendParamsetMulticall(port, batch));
+                } catch (IOException | ClassCastException ex) {
+                    logger.debug("Multicall of {} getParamset calls on port {} failed, sending them individually: {}",
+                            batch.size(), port, ex.getMessage());
+                    singleCalls.addAll(batch);
+                }
+            }
+        }
+
+        for (ParamsetCall call : singleCalls) {
+            if (failedChannels.containsKey(call.channel)) {
+                continue;
+            }
+            requests++;
+            try {
+                setChannelDatapointValues(call.channel, call.paramsetType);
+            } catch (IOException ex) {
+                failedChannels.put(call.channel, ex);
+            }
+        }
+        return requests;
+    }
+
+    /**
+     * Sends the getParamset calls within one system.multicall request.
+     *
+     * @return the calls which failed and have to be sent again individually
+     */
+    private List<ParamsetCall> sendParamsetMulticall(int port, List<ParamsetCall> calls) throws IOException {
+        RpcRequest request = createRpcRequest(RPC_METHODNAME_SYSTEM_MULTICALL);
+        List<Map<String, Object>> multicall = new ArrayList<Map<String, Object>>();
+        for (ParamsetCall call : calls) {
+            Map<String, Object> methodCall = new HashMap<String, Object>();
+            methodCall.put("methodName", "getParamset");
+            methodCall.put("params",
+                    Arrays.asList(getRpcAddress(call.channel.getDevice().getAddress()) + ":" + call.channel.getNumber(),
+                            call.paramsetType.toString()));
+            multicall.add(methodCall);
+        }
+        request.addArg(multicall);
+
+        Object[] results = (Object[]) sendMessage(port, request)[0];
+        List<ParamsetCall> failedCalls = new ArrayList<ParamsetCall>();
+        for (int i = 0; i < calls.size(); i++) {
+            ParamsetCall call = calls.get(i);
+            Object result = i < results.length ? results[i] : null;
+            // a successful call returns an array with the result, a failed call a struct with the fault
+            if (result instanceof Object[] && ((Object[]) result).length > 0 && ((Object[]) result)[0] instanceof Map) {
+                new GetParamsetParser(call.channel, call.paramsetType).parse((Object[]) result);
+            } else {
+                logger.trace("Multicall getParamset failed for channel {} ({}), sending it again: {}", call.channel,
+                        call.paramsetType, result);
+                failedCalls.add(call);
+            }
+        }
+        return failedCalls;
+    }
+
+    /**
+     * Returns true, if the Homematic server on the given port supports system.multicall requests.
+     */
+    private boolean isMulticallSupported(int port) {
+        Boolean supported = multicallSupport.get(port);
+        if (supported == null) {
+            try {
+                RpcRequest request = createRpcRequest(RPC_METHODNAME_SYSTEM_LISTMETHODS);
+                Object[] methods = (Object[]) sendMessage(port, request)[0];
+                supported = ArrayUtils.contains(methods, RPC_METHODNAME_SYSTEM_MULTICALL);
+            } catch (IOException | ClassCastException ex) {
+                logger.debug("Can't get the methods of the Homematic server on port {}: {}", port, ex.getMessage());
+                supported = false;
+            }
+            logger.debug("Homematic server on port {} {} system.multicall", port,
+                    supported ? "supports" : "does not support");
+            multicallSupport.put(port, supported);
+        }
+        return supported;
+    }
+
     /**
      * Reads all VALUES datapoints individually, fallback method if setChannelDatapointValues throws a -1 Failure
      * exception.
@@ -0,0 +1,139 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.homematic.internal.communicator.client;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects the latencies of the RPC requests per Homematic interface and lane (interactive/bulk).
+ *
+ * @author agent - Initial contribution
+ */
+public class RpcLatencyMetrics {
+    private ConcurrentMap<String, Latency> latencies = new ConcurrentHashMap<String, Latency>();
+
+    /**
+     * The latencies of one interface and lane.
+     */
+    public static class Latency {
+        private long count;
+        private long errors;
+        private long totalNanos;
+        private long maxNanos;
+        private long waitNanos;
+
+        private synchronized void record(long waitNanos, long nanos, boolean failed) {
+            count++;
+            if (failed) {
+                errors++;
+            }
+            totalNanos += nanos;
+            maxNanos = Math.max(maxNanos, nanos);
+            this.waitNanos += waitNanos;
+        }
+
+        /**
+         * Returns the number of requests.
+         */
+        public synchronized long getCount() {
+            return count;
+        }
+
+        /**
+         * Returns the number of failed requests.
+         */
+        public synchronized long getErrors() {
+            return errors;
+        }
+
+        /**
+         * Returns the average duration of a request in milliseconds, including the time waiting for a connection.
+         */
+        public synchronized double getAverageMillis() {
+            return count == 0 ? 0 : totalNanos / (double) count / TimeUnit.MILLISECONDS.toNanos(1);
+        }
+
+        /**
+         * Returns the maximum duration of a request in milliseconds.
+         */
+        public synchronized double getMaxMillis() {
+            return maxNanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+        }
+
+        /**
+         * Returns the average time in milliseconds a request waited for a connection.
+         */
+        public synchronized double getAverageWaitMillis() {
+            return count == 0 ? 0 : waitNanos / (double) count / TimeUnit.MILLISECONDS.toNanos(1);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public synchronized String toString() {
+            return String.format("count=%d, errors=%d, avg=%.1fms, max=%.1fms, wait=%.1fms", count, errors,
+                    getAverageMillis(), getMaxMillis(), getAverageWaitMillis());
+        }
+    }
+
+    /**
+     * Records a request.
+     *
+     * @param interfaceName the name of the Homematic interface
+     * @param interactive true, if the request has been sent in the interactive lane
+     * @param waitNanos the time waiting for a connection
+     * @param nanos the duration of the whole request, including the wait time
+     * @param failed true, if the request failed
+     */
+    public void record(String interfaceName, boolean interactive, long waitNanos, long nanos, boolean failed) {
+        String key = interfaceName + (interactive ? "/interactive" : "/bulk");
+        Latency latency = latencies.get(key);
+        if (latency == null) {
+            latencies.putIfAbsent(key, new Latency());
+            latency = latencies.get(key);
+        }
+        latency.record(waitNanos, nanos, failed);
+    }
+
+    /**
+     * Returns the average duration in milliseconds of the requests of the given interface and lane, 0 if there was no
+     * request yet.
+     */
+    public double getAverageMillis(String interfaceName, boolean interactive) {
+        Latency latency = latencies.get(interfaceName + (interactive ? "/interactive" : "/bulk"));
+        return latency == null ? 0 : latency.getAverageMillis();
+    }
+
+    /**
+     * Returns the latencies by interface and lane (e.g. BidCos-RF/interactive).
+     */
+    public Map<String, Latency> getLatencies() {
+        return new TreeMap<String, Latency>(latencies);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Latency> entry : getLatencies().entrySet()) {
+            if (sb.length() > 0) {
+                sb.append("; ");
+            }
+            sb.append(entry.getKey()).append(": ").append(entry.getValue());
+        }
+        return sb.length() == 0 ? "no requests" : sb.toString();
+    }
+}
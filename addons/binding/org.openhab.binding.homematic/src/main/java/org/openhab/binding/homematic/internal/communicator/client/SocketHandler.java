@@ -9,9 +9,14 @@
 package org.openhab.binding.homematic.internal.communicator.client;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.openhab.binding.homematic.internal.common.HomematicConfig;
@@ -19,14 +24,18 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Simple socket cache class.
+ * Socket pool with a number of sockets per port.
+ *
+ * Interactive requests (e.g. setValue) may use all sockets of a port, bulk requests (e.g. loading metadata) only all
+ * but one. So there is always a socket left for an interactive request, even if bulk requests are running, and
+ * waiting interactive requests are served before waiting bulk requests.
  *
  * @author Gerhard Riegler - Initial contribution
  */
 public class SocketHandler {
     private static final Logger logger = LoggerFactory.getLogger(SocketHandler.class);
 
-    private Map<Integer, SocketInfo> socketsPerPort = new HashMap<Integer, SocketInfo>();
+    private Map<Integer, SocketPool> poolsPerPort = new HashMap<Integer, SocketPool>();
     private HomematicConfig config;
 
     public SocketHandler(HomematicConfig config) {
@@ -34,40 +43,31 @@ public class SocketHandler {
     }
 
     /**
-     * Returns a socket for the given port, (re)creates it if required.
+     * Returns a socket for the given port, (re)creates it if required. Waits until a socket of the lane is available.
+     * Every socket must be given back with {@link #releaseSocket(int, SocketInfo, boolean)}.
      */
-    public Socket getSocket(int port) throws IOException {
-        SocketInfo socketInfo = socketsPerPort.get(port);
-        if (socketInfo == null) {
-            logger.trace("Creating new socket for port {}", port);
-            Socket socket = new Socket();
-            socket.setSoTimeout(config.getTimeout() * 1000);
-            socket.connect(new InetSocketAddress(config.getGatewayAddress(), port), socket.getSoTimeout());
-            socketInfo = new SocketInfo(socket);
-            socketsPerPort.put(port, socketInfo);
-        } else {
-            boolean isMaxAliveReached = System.currentTimeMillis()
-                    - socketInfo.getCreated() > (config.getSocketMaxAlive() * 1000);
-
-            if (isMaxAliveReached) {
-                logger.debug("Max alive time reached for socket on port {}", port);
-                removeSocket(port);
-                return getSocket(port);
-            }
-            logger.trace("Returning socket for port {}", port);
-        }
-        return socketInfo.getSocket();
+    public SocketInfo getSocket(int port, boolean interactive) throws IOException {
+        return getPool(port).acquire(interactive);
     }
 
     /**
-     * Removes the socket for the given port from the cache.
+     * Gives back a socket to the pool, a socket which is not reusable (e.g. after a communication error) is closed.
+     */
+    public void releaseSocket(int port, SocketInfo socketInfo, boolean reusable) {
+        getPool(port).release(socketInfo, reusable);
+    }
+
+    /**
+     * Closes all sockets for the given port, sockets in use are closed when they are released.
      */
     public void removeSocket(int port) {
-        SocketInfo socketInfo = socketsPerPort.get(port);
-        if (socketInfo != null) {
-            logger.trace("Closing Socket on port {}", port);
-            socketsPerPort.remove(port);
-            closeSilent(socketInfo.getSocket());
+        SocketPool pool;
+        synchronized (poolsPerPort) {
+            pool = poolsPerPort.get(port);
+        }
+        if (pool != null) {
+            logger.trace("Closing sockets on port {}", port);
+            pool.clear();
         }
     }
 
@@ -75,11 +75,152 @@ public class SocketHandler {
      * Removes all cached sockets.
      */
     public void flush() {
-        synchronized (SocketHandler.class) {
-            Integer[] portsToRemove = socketsPerPort.keySet().toArray(new Integer[0]);
-            for (Integer key : portsToRemove) {
-                removeSocket(key);
+        List<SocketPool> pools;
+        synchronized (poolsPerPort) {
+            pools = new ArrayList<SocketPool>(poolsPerPort.values());
+        }
+        for (SocketPool pool : pools) {
+            pool.clear();
+        }
+    }
+
+    private SocketPool getPool(int port) {
+        synchronized (poolsPerPort) {
+            SocketPool pool = poolsPerPort.get(port);
+            if (pool == null) {
+                pool = new SocketPool(port, Math.max(1, config.getSocketsPerPort()));
+                poolsPerPort.put(port, pool);
+            }
+            return pool;
+        }
+    }
+
+    /**
+     * The sockets of one port.
+     */
+    private class SocketPool {
+        private final int port;
+        private final int maxSockets;
+        private final int maxBulkSockets;
+        private final Deque<SocketInfo> idle = new ArrayDeque<SocketInfo>();
+        private int inUse;
+        private int bulkInUse;
+        private int interactiveWaiting;
+        private int generation;
+
+        public SocketPool(int port, int maxSockets) {
+            this.port = port;
+            this.maxSockets = maxSockets;
+            this.maxBulkSockets = Math.max(1, maxSockets - 1);
+        }
+
+        /**
+         * Reserves a socket of the lane and returns an idle one or a new connected one.
+         */
+        public SocketInfo acquire(boolean interactive) throws IOException {
+            SocketInfo socketInfo;
+            int socketGeneration;
+            synchronized (this) {
+                long timeout = config.getTimeout() * 1000L;
+                long deadline = System.currentTimeMillis() + timeout;
+                if (interactive) {
+                    interactiveWaiting++;
+                }
+                try {
+                    while (!isAvailable(interactive)) {
+                        long wait = deadline - System.currentTimeMillis();
+                        if (wait <= 0) {
+                            throw new IOException("Timeout waiting for a free socket on port " + port);
+                        }
+                        wait(wait);
+                    }
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for a free socket on port " + port);
+                } finally {
+                    if (interactive) {
+                        interactiveWaiting--;
+                    }
+                }
+                inUse++;
+                if (!interactive) {
+                    bulkInUse++;
+                }
+                socketInfo = idle.pollFirst();
+                socketGeneration = generation;
+            }
+
+            if (socketInfo != null) {
+                boolean isMaxAliveReached = System.currentTimeMillis()
+                        - socketInfo.getCreated() > (config.getSocketMaxAlive() * 1000L);
+                if (!isMaxAliveReached) {
+                    logger.trace("Returning socket for port {}", port);
+                    return socketInfo.lease(interactive);
+                }
+                logger.debug("Max alive time reached for socket on port {}", port);
+                closeSilent(socketInfo.getSocket());
+            }
+
+            try {
+                logger.trace("Creating new socket for port {}", port);
+                Socket socket = new Socket();
+                socket.setSoTimeout(config.getTimeout() * 1000);
+                socket.connect(new InetSocketAddress(config.getGatewayAddress(), port), socket.getSoTimeout());
+                return new SocketInfo(socket, socketGeneration).lease(interactive);
+            } catch (IOException ex) {
+                synchronized (this) {
+                    free(interactive);
+                }
+                throw ex;
+            }
+        }
+
+        /**
+         * Gives back a socket, closes it if it is not reusable or if the pool has been cleared in the meantime.
+         */
+        public void release(SocketInfo socketInfo, boolean reusable) {
+            boolean close;
+            synchronized (this) {
+                free(socketInfo.isInteractive());
+                close = !reusable || socketInfo.getGeneration() != generation;
+                if (!close) {
+                    idle.offerFirst(socketInfo);
+                }
+            }
+            if (close) {
+                logger.trace("Closing socket on port {}", port);
+                closeSilent(socketInfo.getSocket());
+            }
+        }
+
+        /**
+         * Closes all idle sockets, marks the sockets in use to be closed.
+         */
+        public void clear() {
+            List<SocketInfo> sockets;
+            synchronized (this) {
+                generation++;
+                sockets = new ArrayList<SocketInfo>(idle);
+                idle.clear();
+            }
+            for (SocketInfo socketInfo : sockets) {
+                closeSilent(socketInfo.getSocket());
+            }
+        }
+
+        private boolean isAvailable(boolean interactive) {
+            if (inUse >= maxSockets) {
+                return false;
+            }
+            return interactive || (bulkInUse < maxBulkSockets && interactiveWaiting == 0);
+        }
+
+        private void free(boolean interactive) {
+            inUse--;
+            if (!interactive) {
+                bulkInUse--;
             }
+            notifyAll();
         }
     }
 
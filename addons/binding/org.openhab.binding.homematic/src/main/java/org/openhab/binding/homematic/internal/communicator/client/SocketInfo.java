@@ -10,6 +10,8 @@ package org.openhab.binding.homematic.internal.communicator.client;
 
 import java.net.Socket;
 
+import org.openhab.binding.homematic.internal.communicator.message.BinRpcBuffer;
+
 /**
  * Info class which holds some infos for caching a socket.
  * 
@@ -18,10 +20,18 @@ import java.net.Socket;
 public class SocketInfo {
     private Socket socket;
     private long created;
+    private int generation;
+    private boolean interactive;
+    private BinRpcBuffer buffer = new BinRpcBuffer();
 
     public SocketInfo(Socket socket) {
+        this(socket, 0);
+    }
+
+    public SocketInfo(Socket socket, int generation) {
         this.socket = socket;
         this.created = System.currentTimeMillis();
+        this.generation = generation;
     }
 
     /**
@@ -37,4 +47,33 @@ public class SocketInfo {
     public long getCreated() {
         return created;
     }
+
+    /**
+     * Returns the receive buffer of the socket.
+     */
+    public BinRpcBuffer getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * Returns the generation of the socket pool the socket has been created in.
+     */
+    public int getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Returns true, if the socket is currently used by an interactive request.
+     */
+    public boolean isInteractive() {
+        return interactive;
+    }
+
+    /**
+     * Marks the socket as used by the given lane.
+     */
+    SocketInfo lease(boolean interactive) {
+        this.interactive = interactive;
+        return this;
+    }
 }
@@ -53,6 +53,7 @@ public class XmlRpcClient extends RpcClient {
         if (httpClient != null) {
             httpClient.destroy();
         }
+        logger.debug("XML-RPC latencies: {}", latencyMetrics);
     }
 
     /**
@@ -76,6 +77,8 @@ public class XmlRpcClient extends RpcClient {
      */
     @Override
     protected synchronized Object[] sendMessage(int port, RpcRequest request) throws IOException {
+        long start = System.nanoTime();
+        boolean failed = true;
         try {
             if (TRACE_ENABLED) {
                 logger.trace("Client XmlRpcRequest (port {}):\n{}", port, request);
@@ -94,11 +97,16 @@ public class XmlRpcClient extends RpcClient {
 
             Object[] data = new XmlRpcResponse(new ByteArrayInputStream(result.getBytes(config.getEncoding())),
                     config.getEncoding()).getResponseData();
-            return new RpcResponseParser(request).parse(data);
+            Object[] parsedData = new RpcResponseParser(request).parse(data);
+            failed = false;
+            return parsedData;
         } catch (UnknownRpcFailureException ex) {
             throw ex;
         } catch (Exception ex) {
             throw new IOException(ex.getMessage(), ex);
+        } finally {
+            latencyMetrics.record(getInterfaceName(port), isInteractive(request), 0, System.nanoTime() - start,
+                    failed);
         }
     }
 }
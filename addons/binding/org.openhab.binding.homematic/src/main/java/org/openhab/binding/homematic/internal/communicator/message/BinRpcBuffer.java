@@ -0,0 +1,75 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.homematic.internal.communicator.message;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+
+/**
+ * Reusable receive buffer for BIN-RPC messages, e.g. one per connection. Not thread safe.
+ *
+ * Small messages (events, setValue responses) are read into the same buffer again and again, larger messages (e.g.
+ * listDevices) get a buffer of their own, which is not kept.
+ *
+ * @author agent - Initial contribution
+ */
+public class BinRpcBuffer {
+    private static final int INITIAL_SIZE = 1024;
+    private static final int MAX_REUSED_SIZE = 64 * 1024;
+    private static final int HEADER_SIZE = 8;
+
+    private ByteBuffer buffer = ByteBuffer.allocate(INITIAL_SIZE);
+
+    /**
+     * Reads a complete BIN-RPC message (header and data) from the stream.
+     *
+     * @return the buffer with the message between position 0 and limit, only valid until the next call
+     */
+    public ByteBuffer readMessage(InputStream is) throws IOException {
+        ByteBuffer header = buffer;
+        header.clear();
+        readFully(is, header.array(), 0, HEADER_SIZE, "signature and message length");
+        if (header.get(0) != 'B' || header.get(1) != 'i' || header.get(2) != 'n') {
+            throw new UnsupportedEncodingException("No BinX signature");
+        }
+        int datasize = header.getInt(4);
+        if (datasize < 0) {
+            throw new IOException("Invalid message length " + datasize);
+        }
+
+        int size = HEADER_SIZE + datasize;
+        ByteBuffer message = header;
+        if (size > message.capacity()) {
+            message = ByteBuffer.allocate(size);
+            message.put(header.array(), 0, HEADER_SIZE);
+            if (size <= MAX_REUSED_SIZE) {
+                buffer = message;
+            }
+        }
+        readFully(is, message.array(), HEADER_SIZE, datasize, "message data");
+        message.position(0);
+        message.limit(size);
+        return message;
+    }
+
+    private static void readFully(InputStream is, byte[] data, int offset, int length, String part)
+            throws IOException {
+        int read = 0;
+        while (read < length) {
+            int count = is.read(data, offset + read, length - read);
+            if (count < 0) {
+                throw new EOFException("Only " + read + " bytes received reading " + part);
+            }
+            read += count;
+        }
+    }
+}
@@ -11,22 +11,23 @@ package org.openhab.binding.homematic.internal.communicator.message;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.math.RoundingMode;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
 import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 
-import org.apache.commons.io.IOUtils;
-import org.apache.commons.lang.ArrayUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -43,14 +44,17 @@ public class BinRpcMessage implements RpcRequest, RpcResponse {
         RESPONSE;
     }
 
+    private static final int HEADER_SIZE = 8;
+    private static final int INITIAL_SIZE = 256;
+
     private Object[] messageData;
-    private byte binRpcData[];
-    private int offset;
+    private ByteBuffer binRpcData;
 
     private String methodName;
     private TYPE type;
     private int args;
-    private String encoding;
+    private int argsPosition;
+    private Charset charset;
 
     public BinRpcMessage(String methodName, String encoding) {
         this(methodName, TYPE.REQUEST, encoding);
@@ -62,7 +66,7 @@ public class BinRpcMessage implements RpcRequest, RpcResponse {
     public BinRpcMessage(String methodName, TYPE type, String encoding) {
         this.methodName = methodName;
         this.type = type;
-        this.encoding = encoding;
+        this.charset = getCharset(encoding);
         createHeader();
     }
 
@@ -70,20 +74,16 @@ public class BinRpcMessage implements RpcRequest, RpcResponse {
      * Decodes a BIN-RPC message from the given InputStream.
      */
     public BinRpcMessage(InputStream is, boolean methodHeader, String encoding) throws IOException {
-        this.encoding = encoding;
-        byte sig[] = new byte[8];
-        int length = is.read(sig, 0, 4);
-        if (length != 4) {
-            throw new EOFException("Only " + length + " bytes received reading signature");
-        }
-        validateBinXSignature(sig);
-        length = is.read(sig, 4, 4);
-        if (length != 4) {
-            throw new EOFException("Only " + length + " bytes received reading message length");
-        }
-        int datasize = (new BigInteger(ArrayUtils.subarray(sig, 4, 8))).intValue();
-        byte[] message = ArrayUtils.addAll(sig, IOUtils.toByteArray(is, datasize));
-        decodeMessage(message, methodHeader);
+        this(is, methodHeader, encoding, new BinRpcBuffer());
+    }
+
+    /**
+     * Decodes a BIN-RPC message from the given InputStream, receives the message into the given reusable buffer.
+     */
+    public BinRpcMessage(InputStream is, boolean methodHeader, String encoding, BinRpcBuffer buffer)
+            throws IOException {
+        this.charset = getCharset(encoding);
+        decodeMessage(buffer.readMessage(is), methodHeader);
     }
 
     private void validateBinXSignature(byte[] sig) throws UnsupportedEncodingException {
@@ -96,51 +96,72 @@ public class BinRpcMessage implements RpcRequest, RpcResponse {
      * Decodes a BIN-RPC message from the given byte array.
      */
     public BinRpcMessage(byte[] message, boolean methodHeader, String encoding) throws IOException, ParseException {
-        this.encoding = encoding;
+        this.charset = getCharset(encoding);
         if (message.length < 8) {
             throw new EOFException("Only " + message.length + " bytes received");
         }
         validateBinXSignature(message);
-        decodeMessage(message, methodHeader);
+        decodeMessage(ByteBuffer.wrap(message), methodHeader);
     }
 
-    private void decodeMessage(byte[] message, boolean methodHeader) throws IOException {
-        binRpcData = message;
-
-        offset = 8;
-
-        if (methodHeader) {
-            methodName = readString();
-            readInt();
+    private static Charset getCharset(String encoding) {
+        try {
+            return Charset.forName(encoding);
+        } catch (IllegalArgumentException ex) {
+            return Charset.defaultCharset();
         }
-        generateResponseData();
     }
 
-    public void setType(TYPE type) {
-        binRpcData[3] = type == TYPE.RESPONSE ? (byte) 1 : (byte) 0;
+    /**
+     * Decodes the whole message, the buffer is not referenced afterwards, so it can be reused.
+     */
+    private void decodeMessage(ByteBuffer message, boolean methodHeader) throws IOException {
+        type = message.get(3) == 1 ? TYPE.RESPONSE : TYPE.REQUEST;
+        message.position(HEADER_SIZE);
+        try {
+            if (methodHeader) {
+                methodName = readString(message);
+                args = message.getInt();
+            }
+            List<Object> values = new ArrayList<Object>();
+            while (message.hasRemaining()) {
+                values.add(readRpcValue(message));
+            }
+            messageData = values.toArray();
+        } catch (BufferUnderflowException ex) {
+            throw new EOFException("Incomplete BIN-RPC message");
+        }
     }
 
-    private void generateResponseData() throws IOException {
-        offset = 8 + (methodName != null ? methodName.length() + 8 : 0);
-        List<Object> values = new ArrayList<Object>();
-        while (offset < binRpcData.length) {
-            values.add(readRpcValue());
+    public void setType(TYPE type) {
+        this.type = type;
+        if (binRpcData != null) {
+            binRpcData.put(3, type == TYPE.RESPONSE ? (byte) 1 : (byte) 0);
         }
-        messageData = values.toArray();
-        values.clear();
     }
 
     private void createHeader() {
-        binRpcData = new byte[256];
-        addString("Bin ");
+        args = 0;
+        binRpcData = ByteBuffer.allocate(INITIAL_SIZE);
+        binRpcData.put((byte) 'B').put((byte) 'i').put((byte) 'n').put((byte) 0);
         setType(type);
-        addInt(0); // placeholder content length
+        binRpcData.putInt(0); // placeholder content length
         if (methodName != null) {
-            addInt(methodName.length());
-            addString(methodName);
-            addInt(0); // placeholder arguments
+            addBytes(methodName.getBytes(charset));
+            argsPosition = binRpcData.position();
+            binRpcData.putInt(0); // placeholder arguments
+        }
+        setContentLength();
+    }
+
+    /**
+     * Encodes a decoded message again.
+     */
+    private void encodeMessage() {
+        createHeader();
+        for (Object argument : messageData) {
+            addArg(argument);
         }
-        setInt(4, offset - 8);
     }
 
     /**
@@ -149,10 +170,10 @@ public class BinRpcMessage implements RpcRequest, RpcResponse {
     @Override
     public void addArg(Object argument) {
         addObject(argument);
-        setInt(4, offset - 8);
-
+        setContentLength();
+        args++;
         if (methodName != null) {
-            setInt(12 + methodName.length(), ++args);
+            binRpcData.putInt(argsPosition, args);
         }
     }
 
@@ -170,14 +191,20 @@ public class BinRpcMessage implements RpcRequest, RpcResponse {
      */
     @Override
     public byte[] createMessage() {
-        trimBinRpcData();
-        return binRpcData;
+        if (binRpcData == null) {
+            encodeMessage();
+        }
+        return Arrays.copyOf(binRpcData.array(), binRpcData.position());
     }
 
-    private void trimBinRpcData() {
-        byte[] trimmed = new byte[offset];
-        System.arraycopy(binRpcData, 0, trimmed, 0, offset);
-        binRpcData = trimmed;
+    /**
+     * Writes the encoded message to the stream without copying it.
+     */
+    public void writeTo(OutputStream os) throws IOException {
+        if (binRpcData == null) {
+            encodeMessage();
+        }
+        os.write(binRpcData.array(), 0, binRpcData.position());
     }
 
     /**
@@ -185,86 +212,97 @@ public class BinRpcMessage implements RpcRequest, RpcResponse {
      */
     @Override
     public Object[] getResponseData() {
+        if (messageData == null) {
+            try {
+                // a message created by this binding
+                ByteBuffer message = ByteBuffer.wrap(binRpcData.array(), 0, binRpcData.position());
+                return new BinRpcMessage(message, methodName != null, charset).messageData;
+            } catch (IOException ex) {
+                throw new RuntimeException(ex.getMessage(), ex);
+            }
+        }
         return messageData;
     }
 
-    // read rpc values
-    private int readInt() {
-        byte bi[] = new byte[4];
-        System.arraycopy(binRpcData, offset, bi, 0, 4);
-        offset += 4;
-        return (new BigInteger(bi)).intValue();
+    private BinRpcMessage(ByteBuffer message, boolean methodHeader, Charset charset) throws IOException {
+        this.charset = charset;
+        decodeMessage(message, methodHeader);
     }
 
-    private String readString() throws UnsupportedEncodingException {
-        int len = readInt();
-        offset += len;
-        return new String(binRpcData, offset - len, len, encoding);
+    // read rpc values
+    private String readString(ByteBuffer message) {
+        int len = message.getInt();
+        if (len < 0 || len > message.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        int position = message.position();
+        message.position(position + len);
+        return new String(message.array(), message.arrayOffset() + position, len, charset);
     }
 
-    private Object readRpcValue() throws IOException {
-        int type = readInt();
+    private Object readRpcValue(ByteBuffer message) throws IOException {
+        int type = message.getInt();
         switch (type) {
             case 1:
-                return new Integer(readInt());
+                return Integer.valueOf(message.getInt());
             case 2:
-                return binRpcData[offset++] != 0 ? Boolean.TRUE : Boolean.FALSE;
+                return message.get() != 0 ? Boolean.TRUE : Boolean.FALSE;
             case 3:
-                return readString();
+                return readString(message);
             case 4:
-                int mantissa = readInt();
-                int exponent = readInt();
+                int mantissa = message.getInt();
+                int exponent = message.getInt();
                 BigDecimal bd = new BigDecimal((double) mantissa / (double) (1 << 30) * Math.pow(2, exponent));
                 return bd.setScale(6, RoundingMode.HALF_DOWN).doubleValue();
             case 5:
-                return new Date(readInt() * 1000);
+                return new Date(message.getInt() * 1000L);
             case 0x100:
                 // Array
-                int numElements = readInt();
-                Collection<Object> array = new ArrayList<Object>();
+                int numElements = message.getInt();
+                Collection<Object> array = new ArrayList<Object>(Math.min(Math.max(numElements, 0), 1024));
                 while (numElements-- > 0) {
-                    array.add(readRpcValue());
+                    array.add(readRpcValue(message));
                 }
                 return array.toArray();
             case 0x101:
                 // Struct
-                numElements = readInt();
+                numElements = message.getInt();
                 Map<String, Object> struct = new TreeMap<String, Object>();
                 while (numElements-- > 0) {
-                    String name = readString();
-                    struct.put(name, readRpcValue());
+                    String name = readString(message);
+                    struct.put(name, readRpcValue(message));
                 }
                 return struct;
 
             default:
-                for (int i = 0; i < binRpcData.length; i++) {
-                    logger.info(Integer.toHexString(binRpcData[i]) + " " + (char) binRpcData[i]);
+                for (int i = 0; i < message.limit(); i++) {
+                    byte b = message.get(i);
+                    logger.info(Integer.toHexString(b) + " " + (char) b);
                 }
                 throw new IOException("Unknown data type " + type);
         }
     }
 
-    private void setInt(int position, int value) {
-        int temp = offset;
-        offset = position;
-        addInt(value);
-        offset = temp;
+    private void setContentLength() {
+        binRpcData.putInt(4, binRpcData.position() - HEADER_SIZE);
     }
 
-    private void addByte(byte b) {
-        if (offset == binRpcData.length) {
-            byte newdata[] = new byte[binRpcData.length * 2];
-            System.arraycopy(binRpcData, 0, newdata, 0, binRpcData.length);
-            binRpcData = newdata;
+    /**
+     * Makes sure there is room for the given number of bytes, grows the buffer if required.
+     */
+    private void ensureCapacity(int length) {
+        if (binRpcData.remaining() < length) {
+            int capacity = Math.max(binRpcData.capacity() * 2, binRpcData.position() + length);
+            ByteBuffer newData = ByteBuffer.allocate(capacity);
+            binRpcData.flip();
+            newData.put(binRpcData);
+            binRpcData = newData;
         }
-        binRpcData[offset++] = b;
     }
 
     private void addInt(int value) {
-        addByte((byte) (value >> 24));
-        addByte((byte) (value >> 16));
-        addByte((byte) (value >> 8));
-        addByte((byte) (value));
+        ensureCapacity(4);
+        binRpcData.putInt(value);
     }
 
     private void addDouble(double value) {
@@ -285,70 +323,68 @@ public class BinRpcMessage implements RpcRequest, RpcResponse {
             tmp *= -1;
         }
         int mantissa = (int) Math.round(tmp * 0x40000000);
-        addInt(mantissa);
-        addInt(exp);
+        ensureCapacity(8);
+        binRpcData.putInt(mantissa);
+        binRpcData.putInt(exp);
     }
 
-    private void addString(String string) {
-        byte sd[];
-        try {
-            sd = string.getBytes(encoding);
-        } catch (UnsupportedEncodingException use) {
-            sd = string.getBytes();
-        }
-        for (byte ch : sd) {
-            addByte(ch);
-        }
-    }
-
-    private void addList(Collection<?> collection) {
-        for (Object object : collection) {
-            addObject(object);
-        }
+    /**
+     * Adds the length of the given bytes and the bytes.
+     */
+    private void addBytes(byte[] bytes) {
+        ensureCapacity(4 + bytes.length);
+        binRpcData.putInt(bytes.length);
+        binRpcData.put(bytes);
     }
 
     private void addObject(Object object) {
-        if (object.getClass() == String.class) {
+        if (object instanceof String) {
             addInt(3);
-            String string = (String) object;
-            addInt(string.length());
-            addString(string);
-        } else if (object.getClass() == Boolean.class) {
-            addInt(2);
-            addByte(((Boolean) object).booleanValue() ? (byte) 1 : (byte) 0);
-        } else if (object.getClass() == Integer.class) {
+            addBytes(((String) object).getBytes(charset));
+        } else if (object instanceof Integer) {
             addInt(1);
             addInt(((Integer) object).intValue());
-        } else if (object.getClass() == Double.class) {
+        } else if (object instanceof Boolean) {
+            ensureCapacity(5);
+            binRpcData.putInt(2);
+            binRpcData.put(((Boolean) object).booleanValue() ? (byte) 1 : (byte) 0);
+        } else if (object instanceof Double) {
             addInt(4);
             addDouble(((Double) object).doubleValue());
-        } else if (object.getClass() == Float.class) {
+        } else if (object instanceof Float) {
             addInt(4);
             BigDecimal bd = new BigDecimal((Float) object);
             addDouble(bd.setScale(6, RoundingMode.HALF_DOWN).doubleValue());
-        } else if (object.getClass() == BigDecimal.class) {
+        } else if (object instanceof BigDecimal) {
             addInt(4);
             addDouble(((BigDecimal) object).setScale(6, RoundingMode.HALF_DOWN).doubleValue());
-        } else if (object.getClass() == BigInteger.class) {
+        } else if (object instanceof BigInteger) {
             addInt(4);
             addDouble(((BigInteger) object).doubleValue());
-        } else if (object.getClass() == Date.class) {
+        } else if (object instanceof Date) {
             addInt(5);
-            addInt((int) ((Date) object).getTime() / 1000);
+            addInt((int) (((Date) object).getTime() / 1000));
         } else if (object instanceof List<?>) {
             Collection<?> list = (Collection<?>) object;
             addInt(0x100);
             addInt(list.size());
-            addList(list);
+            for (Object element : list) {
+                addObject(element);
+            }
+        } else if (object instanceof Object[]) {
+            Object[] array = (Object[]) object;
+            addInt(0x100);
+            addInt(array.length);
+            for (Object element : array) {
+                addObject(element);
+            }
         } else if (object instanceof Map<?, ?>) {
             Map<?, ?> map = (Map<?, ?>) object;
             addInt(0x101);
             addInt(map.size());
             for (Map.Entry<?, ?> entry : map.entrySet()) {
-                String key = (String) entry.getKey();
-                addInt(key.length());
-                addString(key);
-                addList(Collections.singleton(entry.getValue()));
+                addBytes(((String) entry.getKey()).getBytes(charset));
+                addObject(entry.getValue());
             }
         }
     }
@@ -359,12 +395,6 @@ public class BinRpcMessage implements RpcRequest, RpcResponse {
 
     @Override
     public String toString() {
-        try {
-            trimBinRpcData();
-            generateResponseData();
-            return RpcUtils.dumpRpcMessage(methodName, messageData);
-        } catch (Exception e) {
-            throw new RuntimeException(e.getMessage(), e);
-        }
+        return RpcUtils.dumpRpcMessage(methodName, getResponseData());
     }
 }
@@ -25,4 +25,9 @@ public interface RpcRequest {
      */
     public byte[] createMessage();
 
+    /**
+     * Returns the name of the RPC method.
+     */
+    public String getMethodName();
+
 }
@@ -70,6 +70,14 @@ public class XmlRpcRequest implements RpcRequest {
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getMethodName() {
+        return methodName;
+    }
+
     /**
      * {@inheritDoc}
      */
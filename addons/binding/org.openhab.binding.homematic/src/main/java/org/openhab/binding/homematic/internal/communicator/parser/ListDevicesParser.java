@@ -52,6 +52,7 @@ public class ListDevicesParser extends CommonRpcParser<Object[], Collection<HmDe
                 device.setType(toString(data.get("TYPE")));
                 device.setHomegearId(toString(data.get("ID")));
                 device.setFirmware(toString(data.get("FIRMWARE")));
+                device.setVersion(toInteger(data.get("VERSION")));
                 device.setHmInterface(hmInterface);
                 device.setGatewayId(config.getGatewayInfo().getId());
 
@@ -17,6 +17,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
+import org.openhab.binding.homematic.internal.communicator.message.BinRpcBuffer;
 import org.openhab.binding.homematic.internal.communicator.message.BinRpcMessage;
 import org.openhab.binding.homematic.internal.communicator.parser.DeleteDevicesParser;
 import org.openhab.binding.homematic.internal.communicator.parser.EventParser;
@@ -39,6 +40,16 @@ public class BinRpcCallbackHandler implements Runnable {
     private static final byte BIN_EMPTY_EVENT_LIST[] = { 'B', 'i', 'n', 1, 0, 0, 0, 21, 0, 0, 1, 0, 0, 0, 0, 1, 0, 0, 0,
             3, 0, 0, 0, 5, 'e', 'v', 'e', 'n', 't' };
 
+    /**
+     * the gateway opens a connection for every event, so the receive buffer is reused per pool thread
+     */
+    private static final ThreadLocal<BinRpcBuffer> buffers = new ThreadLocal<BinRpcBuffer>() {
+        @Override
+        protected BinRpcBuffer initialValue() {
+            return new BinRpcBuffer();
+        }
+    };
+
     private Socket socket;
     private RpcEventListener listener;
     private String encoding;
@@ -55,7 +66,7 @@ public class BinRpcCallbackHandler implements Runnable {
     @Override
     public void run() {
         try {
-            BinRpcMessage message = new BinRpcMessage(socket.getInputStream(), true, encoding);
+            BinRpcMessage message = new BinRpcMessage(socket.getInputStream(), true, encoding, buffers.get());
             if (TRACE_ENABLED) {
                 logger.trace("Event BinRpcMessage: {}", message.toString());
             }
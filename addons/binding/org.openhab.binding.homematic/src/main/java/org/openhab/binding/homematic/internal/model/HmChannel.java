@@ -8,6 +8,7 @@
  */
 package org.openhab.binding.homematic.internal.model;
 
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -32,7 +33,7 @@ public class HmChannel {
     private String type;
     private HmDevice device;
     private boolean initialized;
-    private Map<HmDatapointInfo, HmDatapoint> datapoints = new HashMap<HmDatapointInfo, HmDatapoint>();
+    private volatile Map<HmDatapointInfo, HmDatapoint> datapoints = new HashMap<HmDatapointInfo, HmDatapoint>();
 
     /**
      * Returns the channel number.
@@ -121,6 +122,18 @@ public class HmChannel {
         datapoints.put(new HmDatapointInfo(dp), dp);
     }
 
+    /**
+     * Replaces all datapoints of the channel at once, readers either see the previous or the new datapoints.
+     */
+    public void setDatapoints(Collection<HmDatapoint> dps) {
+        Map<HmDatapointInfo, HmDatapoint> newDatapoints = new HashMap<HmDatapointInfo, HmDatapoint>();
+        for (HmDatapoint dp : dps) {
+            dp.setChannel(this);
+            newDatapoints.put(new HmDatapointInfo(dp), dp);
+        }
+        datapoints = newDatapoints;
+    }
+
     /**
      * Returns the HmDatapoint with the given HmDatapointInfo.
      */
@@ -33,6 +33,7 @@ public class HmDevice {
     private String type;
     private String name;
     private String firmware;
+    private Integer version;
     private String gatewayId;
     private String homegearId;
 
@@ -115,6 +116,20 @@ public class HmDevice {
         this.firmware = firmware;
     }
 
+    /**
+     * Returns the version of the device description.
+     */
+    public Integer getVersion() {
+        return version;
+    }
+
+    /**
+     * Sets the version of the device description.
+     */
+    public void setVersion(Integer version) {
+        this.version = version;
+    }
+
     /**
      * Returns the gatewayId of the device.
      */
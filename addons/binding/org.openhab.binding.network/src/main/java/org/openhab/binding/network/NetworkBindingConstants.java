@@ -40,6 +40,11 @@ public class NetworkBindingConstants {
     public final static String PARAMETER_REFRESH_INTERVAL = "refresh_interval";
     public final static String PARAMETER_USE_SYSTEM_PING = "use_system_ping";
 
+    // List of all discovery service parameters
+    public final static String PARAMETER_DISCOVERY_PORTS = "discoveryPorts";
+    public final static String PARAMETER_DISCOVERY_MAX_CONCURRENT = "discoveryMaxConcurrent";
+    public final static String PARAMETER_DISCOVERY_RATE = "discoveryRate";
+
     public final static Set<ThingTypeUID> SUPPORTED_THING_TYPES_UIDS = Collections.singleton(THING_TYPE_DEVICE);
 
 }
@@ -11,12 +11,10 @@ package org.openhab.binding.network.discovery;
 import static org.openhab.binding.network.NetworkBindingConstants.*;
 
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
 
 import org.eclipse.smarthome.config.discovery.AbstractDiscoveryService;
 import org.eclipse.smarthome.config.discovery.DiscoveryResult;
@@ -31,38 +29,120 @@ import org.slf4j.LoggerFactory;
  * The {@link NetworkDiscoveryService} is responsible for discovering devices on
  * the current Network. It uses every Network Interface which is connected to a network.
  *
+ * Hosts known from the ARP table of the system are reported right away, all other addresses are swept
+ * by the {@link TcpProbeScanner} with a bounded number of non-blocking TCP connection attempts.
+ *
  * @author Marc Mettke - Initial contribution
  */
 public class NetworkDiscoveryService extends AbstractDiscoveryService implements DiscoveryCallback {
     private final Logger logger = LoggerFactory.getLogger(NetworkDiscoveryService.class);
     private ExecutorService executorService = null;
+    private TcpProbeScanner scanner = null;
+
     final static int PING_TIMEOUT_IN_MS = 500;
-    private int scanningNetworkSize = 0;
+    final static int[] DEFAULT_DISCOVERY_PORTS = { 80, 443, 22, 554, 8080 };
+    final static int DEFAULT_MAX_CONCURRENT_PROBES = 256;
+    final static int DEFAULT_PROBES_PER_SECOND = 1000;
+
+    private int[] discoveryPorts = DEFAULT_DISCOVERY_PORTS;
+    private int maxConcurrentProbes = DEFAULT_MAX_CONCURRENT_PROBES;
+    private int probesPerSecond = DEFAULT_PROBES_PER_SECOND;
 
     public NetworkDiscoveryService() {
         super(SUPPORTED_THING_TYPES_UIDS, 900, false);
     }
 
+    @Override
+    protected void activate(Map<String, Object> configProperties) {
+        super.activate(configProperties);
+        applyConfig(configProperties);
+    }
+
+    @Override
+    protected void modified(Map<String, Object> configProperties) {
+        super.modified(configProperties);
+        applyConfig(configProperties);
+    }
+
+    private void applyConfig(Map<String, Object> configProperties) {
+        if (configProperties == null) {
+            return;
+        }
+
+        Object value = configProperties.get(PARAMETER_DISCOVERY_PORTS);
+        if (value != null) {
+            try {
+                String[] portStrings = value.toString().split(",");
+                int[] ports = new int[portStrings.length];
+                for (int i = 0; i < portStrings.length; i++) {
+                    ports[i] = Integer.parseInt(portStrings[i].trim());
+                }
+                if (ports.length > 0) {
+                    discoveryPorts = ports;
+                }
+            } catch (NumberFormatException e) {
+                logger.warn("Invalid discovery port list '{}', using the default ports", value);
+                discoveryPorts = DEFAULT_DISCOVERY_PORTS;
+            }
+        }
+
+        maxConcurrentProbes = parseInt(configProperties.get(PARAMETER_DISCOVERY_MAX_CONCURRENT),
+                DEFAULT_MAX_CONCURRENT_PROBES, PARAMETER_DISCOVERY_MAX_CONCURRENT);
+        probesPerSecond = parseInt(configProperties.get(PARAMETER_DISCOVERY_RATE), DEFAULT_PROBES_PER_SECOND,
+                PARAMETER_DISCOVERY_RATE);
+    }
+
+    private int parseInt(Object value, int defaultValue, String parameter) {
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.toString().trim());
+        } catch (NumberFormatException e) {
+            logger.warn("Invalid value '{}' for {}, using the default {}", value, parameter, defaultValue);
+            return defaultValue;
+        }
+    }
+
     /**
-     * Starts the DiscoveryThread for each IP on each interface on the network
+     * Starts the sweep over each IP on each interface on the network
      *
      */
     @Override
-    protected void startScan() {
+    protected synchronized void startScan() {
         if (executorService != null) {
             stopScan();
         }
 
         logger.debug("Starting Discovery");
         LinkedHashSet<String> networkIPs = NetworkUtils.getNetworkIPs(NetworkUtils.getInterfaceIPs());
-        scanningNetworkSize = networkIPs.size();
-        executorService = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors() * 10);
 
-        for (Iterator<String> it = networkIPs.iterator(); it.hasNext();) {
-            final String ip = it.next();
-            executorService.execute(new PingRunnable(ip, this));
+        final TcpProbeScanner newScanner = new TcpProbeScanner(networkIPs, discoveryPorts, maxConcurrentProbes,
+                probesPerSecond, PING_TIMEOUT_IN_MS, this);
+
+        for (String ip : NetworkUtils.getArpTableIPs()) {
+            if (networkIPs.contains(ip)) {
+                newScanner.hostFound(ip);
+                newDevice(ip);
+            }
+        }
+
+        scanner = newScanner;
+        executorService = Executors.newSingleThreadExecutor();
+        executorService.execute(new Runnable() {
+            @Override
+            public void run() {
+                newScanner.run();
+                scanFinished(newScanner);
+            }
+        });
+    }
+
+    private synchronized void scanFinished(TcpProbeScanner finishedScanner) {
+        if (scanner == finishedScanner) {
+            logger.debug("Discovery finished");
+            stopScan();
         }
-        stopScan();
     }
 
     @Override
@@ -72,17 +152,15 @@ public class NetworkDiscoveryService extends AbstractDiscoveryService implements
             return;
         }
 
-        try {
-            executorService.awaitTermination(PING_TIMEOUT_IN_MS * scanningNetworkSize, TimeUnit.MILLISECONDS);
-        } catch (InterruptedException e) {
-        }
+        scanner.stop();
+        scanner = null;
         executorService.shutdown();
         executorService = null;
-
     }
 
     /**
-     * Submit newly discovered devices. This method is called by the spawned threads in {@link startScan}.
+     * Submit newly discovered devices. This method is called by the {@link TcpProbeScanner} as soon as a
+     * host answers.
      *
      * @param ip The device IP, received by the
      */
@@ -0,0 +1,259 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.network.discovery;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.Channel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+
+import org.openhab.binding.network.service.DiscoveryCallback;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sweeps a set of IP addresses by opening non-blocking TCP connections to a list of ports. All probes are driven
+ * by a single selector, so the number of threads does not depend on the network size. A host counts as present
+ * if a connection is accepted or actively refused, because both require an answer from the host. Hosts are
+ * reported to the {@link DiscoveryCallback} as soon as they answer.
+ *
+ * The number of probes in flight and the number of probes started per second are limited, so the scan time is
+ * bound by the reply window of the probes and the configured budget, not by the blocking time of each probe.
+ *
+ * @author agent - Initial contribution
+ */
+class TcpProbeScanner implements Runnable {
+    private final Logger logger = LoggerFactory.getLogger(TcpProbeScanner.class);
+
+    private final Iterator<String> ips;
+    private final int[] ports;
+    private final int maxInFlight;
+    private final int probesPerSecond;
+    private final int timeoutInMS;
+    private final DiscoveryCallback callback;
+
+    private final Set<String> foundHosts = new HashSet<>();
+    private volatile boolean running = true;
+    private volatile Selector selector;
+
+    private String currentIp;
+    private int currentPortIndex;
+    private int inFlight;
+
+    private static class Probe {
+        final String ip;
+        final long deadline;
+
+        Probe(String ip, long deadline) {
+            this.ip = ip;
+            this.deadline = deadline;
+        }
+    }
+
+    /**
+     * @param ips The addresses to probe
+     * @param ports The TCP ports to try on each address, until the host answers
+     * @param maxInFlight Maximum number of connection attempts at the same time
+     * @param probesPerSecond Maximum number of connection attempts started per second
+     * @param timeoutInMS How long to wait for an answer to a single connection attempt
+     * @param callback Receives every host that answered
+     */
+    TcpProbeScanner(Iterable<String> ips, int[] ports, int maxInFlight, int probesPerSecond, int timeoutInMS,
+            DiscoveryCallback callback) {
+        if (ports.length == 0) {
+            throw new IllegalArgumentException("At least one port is required");
+        }
+        this.ips = ips.iterator();
+        this.ports = ports;
+        this.maxInFlight = Math.max(1, maxInFlight);
+        this.probesPerSecond = Math.max(1, probesPerSecond);
+        this.timeoutInMS = timeoutInMS;
+        this.callback = callback;
+    }
+
+    /**
+     * Marks a host as already found, e.g. from the ARP table, so that it is not probed again.
+     */
+    void hostFound(String ip) {
+        synchronized (foundHosts) {
+            foundHosts.add(ip);
+        }
+    }
+
+    /**
+     * Stops a running scan. All pending connection attempts are closed.
+     */
+    void stop() {
+        running = false;
+        Selector s = selector;
+        if (s != null) {
+            s.wakeup();
+        }
+    }
+
+    @Override
+    public void run() {
+        try (Selector s = Selector.open()) {
+            selector = s;
+            sweep(s);
+        } catch (IOException e) {
+            logger.warn("Network sweep failed: {}", e.getMessage());
+        } finally {
+            selector = null;
+        }
+    }
+
+    private void sweep(Selector s) throws IOException {
+        final long nanosPerProbe = 1000000000L / probesPerSecond;
+        long nextProbeTime = System.nanoTime();
+
+        try {
+            while (running && (inFlight > 0 || hasMoreProbes())) {
+                long now = System.nanoTime();
+
+                // start new probes within the concurrency and rate budget
+                while (inFlight < maxInFlight && now - nextProbeTime >= 0 && hasMoreProbes()) {
+                    startProbe(s, currentIp, ports[currentPortIndex++], now);
+                    nextProbeTime += nanosPerProbe;
+                }
+                if (now - nextProbeTime > nanosPerProbe) {
+                    // do not accumulate budget while the in-flight limit is reached
+                    nextProbeTime = now;
+                }
+
+                long waitNanos = now + timeoutInMS * 1000000L;
+                if (inFlight < maxInFlight && hasMoreProbes()) {
+                    waitNanos = Math.min(waitNanos, nextProbeTime);
+                }
+                for (SelectionKey key : s.keys()) {
+                    Probe probe = (Probe) key.attachment();
+                    if (probe != null) {
+                        waitNanos = Math.min(waitNanos, probe.deadline);
+                    }
+                }
+                long waitMillis = (waitNanos - now) / 1000000L;
+                if (waitMillis > 0) {
+                    s.select(waitMillis);
+                } else {
+                    s.selectNow();
+                }
+
+                for (Iterator<SelectionKey> it = s.selectedKeys().iterator(); it.hasNext();) {
+                    SelectionKey key = it.next();
+                    it.remove();
+                    finishProbe(key);
+                }
+
+                now = System.nanoTime();
+                for (SelectionKey key : s.keys()) {
+                    Probe probe = (Probe) key.attachment();
+                    if (probe != null && now - probe.deadline >= 0) {
+                        closeProbe(key);
+                    }
+                }
+            }
+        } finally {
+            for (SelectionKey key : s.keys()) {
+                closeProbe(key);
+            }
+        }
+    }
+
+    /**
+     * Advances to the next address/port combination, skipping hosts that already answered.
+     */
+    private boolean hasMoreProbes() {
+        while (currentIp == null || currentPortIndex >= ports.length || isFound(currentIp)) {
+            if (!ips.hasNext()) {
+                return false;
+            }
+            currentIp = ips.next();
+            currentPortIndex = 0;
+        }
+        return true;
+    }
+
+    private boolean isFound(String ip) {
+        synchronized (foundHosts) {
+            return foundHosts.contains(ip);
+        }
+    }
+
+    private void startProbe(Selector s, String ip, int port, long now) {
+        SocketChannel channel = null;
+        try {
+            channel = SocketChannel.open();
+            channel.configureBlocking(false);
+            if (channel.connect(new InetSocketAddress(InetAddress.getByName(ip), port))) {
+                channel.close();
+                reportHost(ip);
+                return;
+            }
+            channel.register(s, SelectionKey.OP_CONNECT, new Probe(ip, now + timeoutInMS * 1000000L));
+            inFlight++;
+        } catch (ConnectException e) {
+            closeQuietly(channel);
+            reportHost(ip);
+        } catch (IOException e) {
+            // unreachable network or out of file descriptors, treat as no answer
+            closeQuietly(channel);
+            logger.trace("Cannot probe {}:{}: {}", ip, port, e.getMessage());
+        }
+    }
+
+    private void finishProbe(SelectionKey key) {
+        Probe probe = (Probe) key.attachment();
+        try {
+            ((SocketChannel) key.channel()).finishConnect();
+            reportHost(probe.ip);
+        } catch (ConnectException e) {
+            // an actively refused connection proves that the host is up. Silent hosts never get here, their probe
+            // is closed by the deadline long before the connect attempt of the operating system times out.
+            reportHost(probe.ip);
+        } catch (IOException e) {
+            // no route to host, host unreachable
+        }
+        closeProbe(key);
+    }
+
+    private void closeProbe(SelectionKey key) {
+        // a failed connect already closes the channel and thus invalidates the key
+        if (key.attachment() != null) {
+            key.attach(null);
+            inFlight--;
+        }
+        key.cancel();
+        closeQuietly(key.channel());
+    }
+
+    private void reportHost(String ip) {
+        synchronized (foundHosts) {
+            if (!foundHosts.add(ip)) {
+                return;
+            }
+        }
+        callback.newDevice(ip);
+    }
+
+    private static void closeQuietly(Channel channel) {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+            }
+        }
+    }
+}
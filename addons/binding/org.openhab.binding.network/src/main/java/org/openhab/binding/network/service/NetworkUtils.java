@@ -8,6 +8,9 @@
  */
 package org.openhab.binding.network.service;
 
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
 import java.io.IOException;
 import java.net.Inet4Address;
 import java.net.InetAddress;
@@ -16,8 +19,10 @@ import java.net.NetworkInterface;
 import java.net.SocketException;
 import java.net.UnknownHostException;
 import java.util.Enumeration;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
+import java.util.Set;
 import java.util.TreeSet;
 
 import org.apache.commons.lang.SystemUtils;
@@ -29,6 +34,8 @@ import org.apache.commons.net.util.SubnetUtils;
  * @author David Graeff <david.graeff@web.de>
  */
 public class NetworkUtils {
+    private static final String ARP_TABLE = "/proc/net/arp";
+    private static final String ARP_FLAG_INCOMPLETE = "0x0";
 
     /**
      * Gets every IPv4 Address on each Interface except the loopback
@@ -146,6 +153,35 @@ public class NetworkUtils {
         return (inetAddress2Int(addr) & 0xFFFFFFFFL);
     }
 
+    /**
+     * Reads the IPv4 addresses with a complete entry from the ARP table of the operating system.
+     * Only Linux exposes the table as a file (/proc/net/arp), on other systems an empty set is returned.
+     *
+     * @return The addresses of all hosts the system has recently talked to
+     */
+    public static Set<String> getArpTableIPs() {
+        Set<String> arpIPs = new HashSet<String>();
+        File arpTable = new File(ARP_TABLE);
+        if (!arpTable.canRead()) {
+            return arpIPs;
+        }
+
+        try (BufferedReader reader = new BufferedReader(new FileReader(arpTable))) {
+            // skip the header line
+            String line = reader.readLine();
+            while ((line = reader.readLine()) != null) {
+                // IP address, HW type, Flags, HW address, Mask, Device
+                String[] columns = line.trim().split("\\s+");
+                if (columns.length >= 4 && !ARP_FLAG_INCOMPLETE.equals(columns[2])) {
+                    arpIPs.add(columns[0]);
+                }
+            }
+        } catch (IOException e) {
+        }
+
+        return arpIPs;
+    }
+
     public static boolean nativePing(String hostname, int port, int timeout)
             throws InvalidConfigurationException, IOException, InterruptedException {
         Process proc;
@@ -0,0 +1,422 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.network.service;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.UnresolvedAddressException;
+import java.nio.channels.UnsupportedAddressTypeException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A singleton presence prober for all {@link NetworkService}s. StateUpdate objects can register and unregister.
+ * If the first one is registered, the probe thread is started, if the last one is removed, it is stopped.
+ *
+ * All hosts are kept in one schedule. The first probe of each host is placed at its own phase within the refresh
+ * interval, so the probes of many hosts are spread over the interval instead of running in bursts.
+ * TCP port probes are non-blocking connection attempts driven by one selector in the probe thread. ICMP and
+ * system ping probes block, they run on a pool which is sized from the worst case blocking time of all these hosts
+ * per refresh interval, between {@link #MIN_BLOCKING_PROBES} and {@link #MAX_BLOCKING_PROBES} threads. The host names
+ * of TCP probes are resolved on the same pool, so a slow name server never blocks the selector. Cycles which are
+ * skipped, because the previous probe of a host is still running, are counted and logged.
+ *
+ * The result of each probe cycle is published with {@link StateUpdate#newState(double)}, either the latency
+ * in milliseconds or -1 if the host did not answer after all retries.
+ *
+ * @author agent - Initial contribution
+ */
+public class PresenceProbeScheduler extends Thread {
+    private static final Logger logger = LoggerFactory.getLogger(PresenceProbeScheduler.class);
+
+    static final int MIN_BLOCKING_PROBES = 4;
+    static final int MAX_BLOCKING_PROBES = 64;
+
+    /**
+     * Golden ratio fraction, used to distribute the probe phases evenly over the refresh interval.
+     */
+    private static final double PHASE_STEP = 0.6180339887498949;
+
+    private static PresenceProbeScheduler instance;
+    private static final Map<NetworkService, Target> registeredTargets = new HashMap<>();
+
+    private final Selector selector;
+    private final ThreadPoolExecutor blockingProbes = new ThreadPoolExecutor(MIN_BLOCKING_PROBES,
+            MIN_BLOCKING_PROBES, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+    private final PriorityQueue<Target> schedule = new PriorityQueue<>();
+    private final Queue<Target> resolvedTargets = new ConcurrentLinkedQueue<>();
+    private volatile boolean willbeclosed = false;
+    private int phaseCounter = 0;
+    private double blockingLoad = 0;
+    private final AtomicLong skippedCycles = new AtomicLong();
+
+    private static class Target implements Comparable<Target> {
+        final NetworkService service;
+        final StateUpdate stateUpdate;
+        long nextRun;
+        volatile boolean probing;
+        volatile boolean removed;
+        boolean overrunReported;
+        int attempt;
+        InetAddress address;
+        long probeStart;
+        long deadline;
+
+        Target(NetworkService service, StateUpdate stateUpdate) {
+            this.service = service;
+            this.stateUpdate = stateUpdate;
+        }
+
+        @Override
+        public int compareTo(Target other) {
+            return Long.compare(nextRun, other.nextRun);
+        }
+    }
+
+    public static synchronized void register(NetworkService service, StateUpdate stateUpdate) throws IOException {
+        if (instance == null) {
+            instance = new PresenceProbeScheduler();
+            instance.start();
+        }
+        Target target = new Target(service, stateUpdate);
+        Target previous = registeredTargets.put(service, target);
+        if (previous != null) {
+            instance.removeTarget(previous);
+        }
+        instance.addTarget(target);
+    }
+
+    public static synchronized void unregister(NetworkService service) {
+        Target target = registeredTargets.remove(service);
+        if (instance == null) {
+            return;
+        }
+        if (target != null) {
+            instance.removeTarget(target);
+        }
+        if (registeredTargets.isEmpty()) {
+            instance.willbeclosed = true;
+            instance.selector.wakeup();
+            instance.blockingProbes.shutdownNow();
+            instance = null;
+        }
+    }
+
+    PresenceProbeScheduler() throws IOException {
+        super("network-presence-probe");
+        setDaemon(true);
+        selector = Selector.open();
+        blockingProbes.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * @return the number of probe cycles skipped since the start, because the previous probe was still running
+     */
+    long getSkippedCycles() {
+        return skippedCycles.get();
+    }
+
+    private static long getIntervalNanos(Target target) {
+        return Math.max(1, target.service.getRefreshInterval()) * 1000000L;
+    }
+
+    /**
+     * @return The average number of pool threads a target blocks, if none of its probes gets an answer
+     */
+    private static double getBlockingLoad(Target target) {
+        NetworkService service = target.service;
+        if (service.getPort() > 0 && !service.isUseSystemPing()) {
+            // only the name resolution of TCP probes runs on the pool
+            return 0;
+        }
+        double worstCaseMillis = (double) Math.max(0, service.getTimeout()) * (Math.max(0, service.getRetry()) + 1);
+        return worstCaseMillis / Math.max(1, service.getRefreshInterval());
+    }
+
+    /**
+     * Sizes the pool, so the blocking probes of all targets fit into their refresh intervals. Must be called while
+     * holding the schedule lock.
+     */
+    private void resizeBlockingProbes() {
+        int size = (int) Math.min(MAX_BLOCKING_PROBES, Math.max(MIN_BLOCKING_PROBES, Math.ceil(blockingLoad)));
+        if (size > blockingProbes.getMaximumPoolSize()) {
+            blockingProbes.setMaximumPoolSize(size);
+            blockingProbes.setCorePoolSize(size);
+        } else if (size < blockingProbes.getMaximumPoolSize()) {
+            blockingProbes.setCorePoolSize(size);
+            blockingProbes.setMaximumPoolSize(size);
+        }
+    }
+
+    private void addTarget(Target target) {
+        long interval = getIntervalNanos(target);
+        long now = System.nanoTime();
+        synchronized (schedule) {
+            double phase = (phaseCounter++ * PHASE_STEP) % 1.0;
+            target.nextRun = now + (long) (phase * interval);
+            schedule.add(target);
+            blockingLoad += getBlockingLoad(target);
+            resizeBlockingProbes();
+        }
+        selector.wakeup();
+    }
+
+    private void removeTarget(Target target) {
+        synchronized (schedule) {
+            target.removed = true;
+            if (schedule.remove(target)) {
+                blockingLoad = Math.max(0, blockingLoad - getBlockingLoad(target));
+                resizeBlockingProbes();
+            }
+        }
+        selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+        logger.debug("Presence probe scheduler started");
+        try {
+            while (!willbeclosed) {
+                try {
+                    probeCycle();
+                } catch (RuntimeException e) {
+                    // a single faulty target must not stop the probes of all other hosts
+                    logger.error("Unexpected error in presence probe scheduler", e);
+                }
+            }
+        } catch (IOException e) {
+            logger.error("Presence probe scheduler failed: {}", e.getMessage());
+        } finally {
+            for (SelectionKey key : selector.keys()) {
+                closeTcpProbe(key);
+            }
+            try {
+                selector.close();
+            } catch (IOException e) {
+            }
+        }
+        logger.debug("Presence probe scheduler stopped");
+    }
+
+    private void probeCycle() throws IOException {
+        long now = System.nanoTime();
+        long waitNanos = startDueProbes(now);
+
+        Target resolved;
+        while ((resolved = resolvedTargets.poll()) != null) {
+            connectTcpProbe(resolved);
+        }
+
+        for (SelectionKey key : selector.keys()) {
+            Target target = (Target) key.attachment();
+            if (target != null) {
+                waitNanos = Math.min(waitNanos, target.deadline - now);
+            }
+        }
+
+        long waitMillis = waitNanos / 1000000L;
+        if (waitMillis > 0) {
+            selector.select(waitMillis);
+        } else {
+            selector.selectNow();
+        }
+
+        for (Iterator<SelectionKey> it = selector.selectedKeys().iterator(); it.hasNext();) {
+            SelectionKey key = it.next();
+            it.remove();
+            finishTcpProbe(key);
+        }
+
+        now = System.nanoTime();
+        List<Target> timedOut = new ArrayList<>();
+        for (SelectionKey key : selector.keys()) {
+            Target target = (Target) key.attachment();
+            if (target != null && now - target.deadline >= 0) {
+                closeTcpProbe(key);
+                timedOut.add(target);
+            }
+        }
+        // retries register new channels, so they must not be started while iterating the keys
+        for (Target target : timedOut) {
+            tcpProbeFailed(target);
+        }
+    }
+
+    /**
+     * Starts the probes of all targets which are due and reschedules them for their next cycle.
+     *
+     * @return The time in nanoseconds until the next target is due
+     */
+    private long startDueProbes(long now) {
+        synchronized (schedule) {
+            Target target;
+            while ((target = schedule.peek()) != null && now - target.nextRun >= 0) {
+                schedule.poll();
+                long interval = getIntervalNanos(target);
+                target.nextRun += interval;
+                if (now - target.nextRun >= 0) {
+                    // missed cycles are skipped, but the phase of the target is kept
+                    target.nextRun += ((now - target.nextRun) / interval + 1) * interval;
+                }
+                schedule.add(target);
+
+                if (target.probing) {
+                    long skipped = skippedCycles.incrementAndGet();
+                    if (!target.overrunReported) {
+                        target.overrunReported = true;
+                        logger.warn(
+                                "Previous probe of host '{}' still running, skipping cycle ({} cycles skipped on all hosts, {} probe threads)",
+                                target.service.getHostname(), skipped, blockingProbes.getMaximumPoolSize());
+                    } else {
+                        logger.debug("Previous probe of host '{}' still running, skipping cycle",
+                                target.service.getHostname());
+                    }
+                } else {
+                    target.probing = true;
+                    target.attempt = 0;
+                    startProbe(target);
+                }
+            }
+            return target == null ? Long.MAX_VALUE : target.nextRun - now;
+        }
+    }
+
+    private void startProbe(final Target target) {
+        final NetworkService service = target.service;
+
+        if (service.getPort() <= 0 || service.isUseSystemPing()) {
+            execute(target, new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        publish(target, service.updateDeviceState());
+                    } catch (InvalidConfigurationException e) {
+                        target.probing = false;
+                        target.stateUpdate.invalidConfig();
+                    }
+                }
+            });
+            return;
+        }
+
+        execute(target, new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    target.address = InetAddress.getByName(service.getHostname());
+                } catch (UnknownHostException e) {
+                    logger.debug("Unknown host '{}'", service.getHostname());
+                    target.address = null;
+                }
+                resolvedTargets.add(target);
+                selector.wakeup();
+            }
+        });
+    }
+
+    /**
+     * Runs a blocking part of a probe on the pool. If the pool is already shut down, the probe is dropped.
+     */
+    private void execute(Target target, Runnable runnable) {
+        try {
+            blockingProbes.execute(runnable);
+        } catch (RejectedExecutionException e) {
+            target.probing = false;
+        }
+    }
+
+    /**
+     * Starts the non-blocking connection attempt of a TCP probe, once the host name is resolved.
+     */
+    private void connectTcpProbe(Target target) {
+        if (target.address == null) {
+            tcpProbeFailed(target);
+            return;
+        }
+
+        SocketChannel channel = null;
+        try {
+            target.probeStart = System.nanoTime();
+            target.deadline = target.probeStart + target.service.getTimeout() * 1000000L;
+            channel = SocketChannel.open();
+            channel.configureBlocking(false);
+            if (channel.connect(new InetSocketAddress(target.address, target.service.getPort()))) {
+                channel.close();
+                publish(target, (System.nanoTime() - target.probeStart) / 1000000.0);
+                return;
+            }
+            channel.register(selector, SelectionKey.OP_CONNECT, target);
+        } catch (IOException | UnresolvedAddressException | UnsupportedAddressTypeException e) {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException ignored) {
+                }
+            }
+            tcpProbeFailed(target);
+        }
+    }
+
+    private void finishTcpProbe(SelectionKey key) {
+        Target target = (Target) key.attachment();
+        try {
+            ((SocketChannel) key.channel()).finishConnect();
+            closeTcpProbe(key);
+            publish(target, (System.nanoTime() - target.probeStart) / 1000000.0);
+        } catch (IOException e) {
+            closeTcpProbe(key);
+            tcpProbeFailed(target);
+        }
+    }
+
+    private void closeTcpProbe(SelectionKey key) {
+        key.attach(null);
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException e) {
+        }
+    }
+
+    private void tcpProbeFailed(Target target) {
+        logger.debug("couldn't establish network connection [host '{}' port '{}' timeout '{}']",
+                new Object[] { target.service.getHostname(), target.service.getPort(), target.service.getTimeout() });
+        if (target.attempt++ < target.service.getRetry() && !target.removed) {
+            startProbe(target);
+        } else {
+            publish(target, -1);
+        }
+    }
+
+    private void publish(Target target, double latency) {
+        target.probing = false;
+        if (!target.removed) {
+            target.stateUpdate.newState(latency);
+        }
+    }
+}
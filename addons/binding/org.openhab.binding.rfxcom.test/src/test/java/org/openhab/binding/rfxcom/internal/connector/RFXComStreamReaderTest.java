@@ -0,0 +1,112 @@
+/**
+ * Copyright (c) 2010-2016 by the respective copyright holders.
+ * <p>
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.rfxcom.internal.connector;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.bind.DatatypeConverter;
+
+import org.junit.Test;
+import org.openhab.binding.rfxcom.internal.config.RFXComBridgeConfiguration;
+
+/**
+ * Test for the RFXCOM stream reader framing.
+ *
+ * @author agent
+ */
+public class RFXComStreamReaderTest {
+
+    // recorded stream: padding, temperature, wind and energy messages
+    private static final String STREAM = "00" + "08500110000180BC69" + "0000" + "1056010300A40000000000000000000089"
+            + "115A0100FA0000000000000000000000CE79";
+
+    private static final String[] FRAMES = { "08500110000180BC69", "1056010300A40000000000000000000089",
+            "115A0100FA0000000000000000000000CE79" };
+
+    private static class CapturingConnector extends RFXComBaseConnector {
+        private final List<String> messages = new ArrayList<String>();
+        private final List<String> errors = new ArrayList<String>();
+
+        @Override
+        public void connect(RFXComBridgeConfiguration device) {
+        }
+
+        @Override
+        public void disconnect() {
+        }
+
+        @Override
+        public void sendMessage(byte[] data) {
+        }
+
+        @Override
+        void sendMsgToListeners(byte[] msg) {
+            messages.add(DatatypeConverter.printHexBinary(msg));
+        }
+
+        @Override
+        void sendErrorToListeners(String error) {
+            errors.add(error);
+        }
+    }
+
+    /**
+     * Input stream that returns the data in chunks of the given size to simulate a slow serial line.
+     */
+    private static class ChunkedInputStream extends InputStream {
+        private final ByteArrayInputStream delegate;
+        private final int chunkSize;
+
+        ChunkedInputStream(byte[] data, int chunkSize) {
+            this.delegate = new ByteArrayInputStream(data);
+            this.chunkSize = chunkSize;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return delegate.read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return delegate.read(b, off, Math.min(len, chunkSize));
+        }
+    }
+
+    private void testStream(int chunkSize) {
+        CapturingConnector connector = new CapturingConnector();
+        byte[] data = DatatypeConverter.parseHexBinary(STREAM);
+
+        new RFXComStreamReader(connector, new ChunkedInputStream(data, chunkSize)).run();
+
+        assertEquals("Frames (chunk size " + chunkSize + ")", FRAMES.length, connector.messages.size());
+        for (int i = 0; i < FRAMES.length; i++) {
+            assertEquals("Frame " + i + " (chunk size " + chunkSize + ")", FRAMES[i], connector.messages.get(i));
+        }
+        assertEquals("End of stream reported", 1, connector.errors.size());
+    }
+
+    @Test
+    public void testWholeStream() {
+        testStream(Integer.MAX_VALUE);
+    }
+
+    @Test
+    public void testSplitFrames() {
+        for (int chunkSize = 1; chunkSize < 20; chunkSize++) {
+            testStream(chunkSize);
+        }
+    }
+}
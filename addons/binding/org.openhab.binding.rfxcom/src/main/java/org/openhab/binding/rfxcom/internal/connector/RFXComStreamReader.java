@@ -11,9 +11,6 @@ package org.openhab.binding.rfxcom.internal.connector;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InterruptedIOException;
-import java.util.Arrays;
-
-import javax.xml.bind.DatatypeConverter;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -21,6 +18,10 @@ import org.slf4j.LoggerFactory;
 /**
  * RFXCOM stream reader to parse RFXCOM output into messages.
  *
+ * The first byte of every RFXCOM frame holds the number of bytes that follow, so the reader allocates the frame
+ * array with its final size as soon as the length byte is seen and copies the received bytes straight into it.
+ * The completed array is handed over to the listeners, which may keep it (e.g. as the raw message).
+ *
  * @author James Hewitt-Thomas - New class
  * @author Pauli Anttila - Original read loop
  */
@@ -28,10 +29,17 @@ public class RFXComStreamReader extends Thread {
 
     private static final Logger logger = LoggerFactory.getLogger(RFXComStreamReader.class);
 
-    private boolean interrupted = false;
+    private static final int READ_BUFFER_SIZE = 256;
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    private volatile boolean interrupted = false;
     private RFXComBaseConnector connector;
     private InputStream in;
 
+    private final byte[] readBuffer = new byte[READ_BUFFER_SIZE];
+    private byte[] frame;
+    private int frameIndex;
+
     public RFXComStreamReader(RFXComBaseConnector connector, InputStream in) {
         this.connector = connector;
         this.in = in;
@@ -49,79 +57,81 @@ public class RFXComStreamReader extends Thread {
 
     @Override
     public void run() {
-        final int dataBufferMaxLen = Byte.MAX_VALUE;
-
-        byte[] dataBuffer = new byte[dataBufferMaxLen];
-
-        int msgLen = 0;
-        int index = 0;
-        boolean start_found = false;
-
         logger.debug("Data listener started");
 
         try {
+            int len;
 
-            byte[] tmpData = new byte[20];
-            int len = -1;
-
-            while (interrupted != true) {
-
-                if ((len = in.read(tmpData)) > 0) {
-
-                    byte[] logData = Arrays.copyOf(tmpData, len);
-                    logger.trace("Received data (len={}): {}", len, DatatypeConverter.printHexBinary(logData));
-
-                    for (int i = 0; i < len; i++) {
-
-                        if (index > dataBufferMaxLen) {
-                            // too many bytes received, try to find new
-                            // start
-                            start_found = false;
-                        }
-
-                        if (start_found == false && tmpData[i] > 0) {
-
-                            start_found = true;
-                            index = 0;
-                            dataBuffer[index++] = tmpData[i];
-                            msgLen = tmpData[i] + 1;
-
-                        } else if (start_found) {
-
-                            dataBuffer[index++] = tmpData[i];
-
-                            if (index == msgLen) {
-
-                                // whole message received, send an event
-
-                                byte[] msg = new byte[msgLen];
-
-                                for (int j = 0; j < msgLen; j++) {
-                                    msg[j] = dataBuffer[j];
-                                }
-
-                                connector.sendMsgToListeners(msg);
-
-                                // find new start
-                                start_found = false;
-                            }
-                        }
-                    }
-                } else {
-                    try {
-                        Thread.sleep(100);
-                    } catch (InterruptedException e) {
+            // the connectors configure the streams for blocking reads, so there is no need to poll
+            while (!interrupted && (len = in.read(readBuffer)) >= 0) {
+                if (len > 0) {
+                    if (logger.isTraceEnabled()) {
+                        logger.trace("Received data (len={}): {}", len, toHex(readBuffer, len));
                     }
+                    processData(readBuffer, len);
                 }
             }
+
+            if (!interrupted) {
+                logger.debug("End of stream reached");
+                connector.sendErrorToListeners("End of stream reached");
+            }
         } catch (InterruptedIOException e) {
             Thread.currentThread().interrupt();
             logger.error("Interrupted via InterruptedIOException");
         } catch (IOException e) {
-            logger.error("Reading from serial port failed", e);
-            connector.sendErrorToListeners(e.getMessage());
+            if (!interrupted) {
+                logger.error("Reading from serial port failed", e);
+                connector.sendErrorToListeners(e.getMessage());
+            }
         }
 
         logger.debug("Data listener stopped");
     }
-}
\ No newline at end of file
+
+    /**
+     * Splits the received bytes into frames and sends every completed frame to the listeners.
+     *
+     * @param data
+     *            buffer holding the received bytes
+     * @param len
+     *            number of valid bytes in the buffer
+     */
+    void processData(byte[] data, int len) {
+        int offset = 0;
+
+        while (offset < len) {
+            if (frame == null) {
+                // skip padding until a valid length byte is found
+                byte msgLen = data[offset++];
+                if (msgLen > 0) {
+                    frame = new byte[msgLen + 1];
+                    frame[0] = msgLen;
+                    frameIndex = 1;
+                }
+                continue;
+            }
+
+            int count = Math.min(frame.length - frameIndex, len - offset);
+            System.arraycopy(data, offset, frame, frameIndex, count);
+            frameIndex += count;
+            offset += count;
+
+            if (frameIndex == frame.length) {
+                // whole message received, send an event
+                byte[] msg = frame;
+                frame = null;
+                connector.sendMsgToListeners(msg);
+            }
+        }
+    }
+
+    private static String toHex(byte[] data, int len) {
+        char[] hex = new char[len * 2];
+        for (int i = 0; i < len; i++) {
+            hex[i * 2] = HEX_DIGITS[(data[i] >> 4) & 0x0F];
+            hex[i * 2 + 1] = HEX_DIGITS[data[i] & 0x0F];
+        }
+        return new String(hex);
+    }
+}
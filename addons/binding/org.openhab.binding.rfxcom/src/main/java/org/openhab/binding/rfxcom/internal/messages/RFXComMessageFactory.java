@@ -9,7 +9,9 @@
 package org.openhab.binding.rfxcom.internal.messages;
 
 import java.lang.reflect.Constructor;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -99,15 +101,25 @@ public class RFXComMessageFactory {
     public final static byte[] CMD_START_RECEIVER = new byte[] { 0x0D, 0x00, 0x00, 0x03, 0x07, 0x00, 0x00, 0x00, 0x00,
             0x00, 0x00, 0x00, 0x00, 0x00 };
 
+    /**
+     * Constructors of the implemented message classes, resolved once when the factory is loaded so that received
+     * packets do not need any class lookup.
+     */
+    private static final Map<PacketType, Constructor<? extends RFXComMessage>> messageConstructors =
+            createConstructorTable();
+
+    /**
+     * Packet types indexed by their unsigned packet type byte.
+     */
+    private static final PacketType[] packetTypes = createPacketTypeTable();
+
     public static RFXComMessage createMessage(PacketType packetType) throws RFXComException, RFXComNotImpException {
 
         try {
-            String className = messageClasses.get(packetType);
-            Class<?> cl = Class.forName(classUrl + className);
-            return (RFXComMessage) cl.newInstance();
+            return getConstructor(packetType).getDeclaringClass().newInstance();
 
-        } catch (ClassNotFoundException e) {
-            throw new RFXComNotImpException("Message " + packetType + " not implemented", e);
+        } catch (RFXComNotImpException e) {
+            throw e;
 
         } catch (Exception e) {
             throw new RFXComException(e);
@@ -119,13 +131,10 @@ public class RFXComMessageFactory {
         PacketType packetType = getPacketType(packet[1]);
 
         try {
-            String className = messageClasses.get(packetType);
-            Class<?> cl = Class.forName(classUrl + className);
-            Constructor<?> c = cl.getConstructor(byte[].class);
-            return (RFXComMessage) c.newInstance(packet);
+            return getConstructor(packetType).newInstance(packet);
 
-        } catch (ClassNotFoundException e) {
-            throw new RFXComNotImpException("Message " + packetType + " not implemented, exception: ", e);
+        } catch (RFXComNotImpException e) {
+            throw e;
 
         } catch (Exception e) {
             throw new RFXComException(e);
@@ -144,12 +153,46 @@ public class RFXComMessageFactory {
     }
 
     private static PacketType getPacketType(byte packetType) {
+        return packetTypes[packetType & 0xFF];
+    }
+
+    private static Constructor<? extends RFXComMessage> getConstructor(PacketType packetType)
+            throws RFXComNotImpException {
+        Constructor<? extends RFXComMessage> constructor = messageConstructors.get(packetType);
+        if (constructor == null) {
+            throw new RFXComNotImpException("Message " + packetType + " not implemented");
+        }
+        return constructor;
+    }
+
+    private static Map<PacketType, Constructor<? extends RFXComMessage>> createConstructorTable() {
+        Map<PacketType, Constructor<? extends RFXComMessage>> constructors = new EnumMap<>(PacketType.class);
+
+        for (Map.Entry<PacketType, String> entry : messageClasses.entrySet()) {
+            try {
+                Class<? extends RFXComMessage> cl = Class.forName(classUrl + entry.getValue())
+                        .asSubclass(RFXComMessage.class);
+                constructors.put(entry.getKey(), cl.getConstructor(byte[].class));
+            } catch (ClassNotFoundException e) {
+                // message not implemented
+            } catch (NoSuchMethodException e) {
+                throw new IllegalStateException("Message class " + entry.getValue() + " has no byte[] constructor", e);
+            }
+        }
+
+        return Collections.unmodifiableMap(constructors);
+    }
+
+    private static PacketType[] createPacketTypeTable() {
+        PacketType[] types = new PacketType[256];
+        Arrays.fill(types, PacketType.UNKNOWN);
+
         for (PacketType p : PacketType.values()) {
-            if (p.toByte() == packetType) {
-                return p;
+            if (p != PacketType.UNKNOWN) {
+                types[p.toByte() & 0xFF] = p;
             }
         }
 
-        return PacketType.UNKNOWN;
+        return types;
     }
 }
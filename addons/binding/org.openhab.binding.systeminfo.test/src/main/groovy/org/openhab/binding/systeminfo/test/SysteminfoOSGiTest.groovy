@@ -271,6 +271,15 @@ class SysteminfoOSGiTest extends OSGiTest{
         testItemStateIsNull(acceptedItemType,DEFAULT_TEST_ITEM_NAME,DEFAULT_CHANNEL_TEST_PRIORITY);
     }
 
+    @Test
+    public void 'assert state of channel with unknown ID is not updated' () {
+        String channnelID = "cpu#unknown"
+        String acceptedItemType = "Number";
+
+        initializeThingWithChannel(channnelID,acceptedItemType);
+        testItemStateIsNull(acceptedItemType,DEFAULT_TEST_ITEM_NAME,DEFAULT_CHANNEL_TEST_PRIORITY);
+    }
+
     @Category(PlatformDependentTestsInterface.class)
     @Test
     public void 'assert state of second device is updated' () {
@@ -863,6 +872,35 @@ class SysteminfoOSGiTest extends OSGiTest{
         }
     }
 
+    @Test
+    public void 'assert channel count of process group is updated' () {
+        ThingTypeUID thingTypeUID = SysteminfoBindingConstants.THING_TYPE_PROCESS_GROUP
+        ThingUID thingUID = new ThingUID(thingTypeUID,DEFAULT_TEST_THING_NAME)
+        Configuration thingConfig = new Configuration()
+        thingConfig.put(SysteminfoBindingConstants.PROCESS_GROUP_PATTERN, ".*")
+        thingConfig.put(SysteminfoBindingConstants.PROCESS_GROUP_REFRESH_TIME, new BigDecimal(DEFAULT_TEST_INTERVAL_HIGH))
+
+        ChannelUID channelUID = new ChannelUID(thingUID,SysteminfoBindingConstants.CHANNEL_PROCESS_GROUP_COUNT)
+        ChannelTypeUID channelTypeUID = new ChannelTypeUID(SysteminfoBindingConstants.BINDING_ID,"count_processgroup")
+        Channel channel = new Channel(channelUID,channelTypeUID,"Number",ChannelKind.STATE,new Configuration(),new HashSet(),new HashMap(),null,null)
+
+        systemInfoThing = ThingBuilder.create(thingTypeUID,thingUID).withConfiguration(thingConfig).withChannel(channel).build();
+        managedThingProvider.add(systemInfoThing)
+
+        waitForAssert({
+            assertThat systemInfoThing.getStatus(), is(equalTo(ThingStatus.ONLINE))
+        }, DEFAULT_THING_INITIALIZE_MAX_TIME)
+
+        intializeItem(channelUID,DEFAULT_TEST_ITEM_NAME,"Number")
+
+        waitForAssert({
+            def GenericItem item = itemRegistry.getItem(DEFAULT_TEST_ITEM_NAME) as GenericItem
+            State itemState = item.getState()
+            assertThat itemState, isA (DecimalType)
+            assertThat "The process group contains no processes", ((DecimalType) itemState).intValue() > 0, is (true)
+        }, DEFAULT_TEST_INTERVAL_HIGH * 3000)
+    }
+
     @After
     public void tearDown () {
 
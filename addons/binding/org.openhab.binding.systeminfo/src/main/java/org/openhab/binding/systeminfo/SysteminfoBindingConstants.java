@@ -22,6 +22,8 @@ public class SysteminfoBindingConstants {
 
     public final static ThingTypeUID THING_TYPE_COMPUTER = new ThingTypeUID(BINDING_ID, "computer");
 
+    public final static ThingTypeUID THING_TYPE_PROCESS_GROUP = new ThingTypeUID(BINDING_ID, "processgroup");
+
     // Thing properties
     /**
      * Number of CPU logical cores
@@ -286,6 +288,28 @@ public class SysteminfoBindingConstants {
      */
     public final static String CHANNEL_PROCESS_PATH = "process#path";
 
+    // List of all Channel IDs of the process group
+
+    /**
+     * Number of processes in the group
+     */
+    public final static String CHANNEL_PROCESS_GROUP_COUNT = "count";
+
+    /**
+     * CPU load used from the processes in the group since the previous refresh
+     */
+    public final static String CHANNEL_PROCESS_GROUP_LOAD = "load";
+
+    /**
+     * Size of memory used from the processes in the group in MB
+     */
+    public final static String CHANNEL_PROCESS_GROUP_MEMORY = "used";
+
+    /**
+     * Number of threads, used from the processes in the group
+     */
+    public final static String CHANNEL_PROCESS_GROUP_THREADS = "threads";
+
     // Thing configuraion
     /**
      * Name of the configuration parameter of the thing that defines refresh time for High priority channels
@@ -297,6 +321,17 @@ public class SysteminfoBindingConstants {
      */
     public final static String MEDIUM_PRIORITY_REFRESH_TIME = "interval_medium";
 
+    /**
+     * Name of the configuration parameter of the process group thing that defines the regular expression for the
+     * process name or path
+     */
+    public final static String PROCESS_GROUP_PATTERN = "pattern";
+
+    /**
+     * Name of the configuration parameter of the process group thing that defines its refresh time
+     */
+    public final static String PROCESS_GROUP_REFRESH_TIME = "interval";
+
     // Channel configuration
 
     /**
@@ -0,0 +1,150 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.systeminfo.handler;
+
+import static org.openhab.binding.systeminfo.SysteminfoBindingConstants.*;
+
+import java.math.BigDecimal;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.PatternSyntaxException;
+
+import org.eclipse.smarthome.core.library.types.DecimalType;
+import org.eclipse.smarthome.core.thing.ChannelUID;
+import org.eclipse.smarthome.core.thing.Thing;
+import org.eclipse.smarthome.core.thing.ThingStatus;
+import org.eclipse.smarthome.core.thing.ThingStatusDetail;
+import org.eclipse.smarthome.core.thing.binding.BaseThingHandler;
+import org.eclipse.smarthome.core.types.Command;
+import org.eclipse.smarthome.core.types.RefreshType;
+import org.eclipse.smarthome.core.types.UnDefType;
+import org.openhab.binding.systeminfo.model.ProcessGroup;
+import org.openhab.binding.systeminfo.model.ProcessTableScanner;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The {@link ProcessGroupHandler} is responsible for providing the aggregated information about a group of processes,
+ * selected by a regular expression for the process name or path.
+ *
+ * All process group things share one {@link ProcessTableScanner}, which reads the process table at most once per
+ * refresh interval for all groups.
+ *
+ * @author agent - Initial contribution
+ */
+public class ProcessGroupHandler extends BaseThingHandler {
+
+    /**
+     * Default refresh interval in seconds
+     */
+    private static final int DEFAULT_REFRESH_INTERVAL = 10;
+
+    private ProcessTableScanner processTableScanner;
+    private ProcessGroup processGroup;
+    private int refreshInterval;
+
+    ScheduledFuture<?> refreshTask;
+
+    private Logger logger = LoggerFactory.getLogger(ProcessGroupHandler.class);
+
+    /**
+     * @param thing the thing
+     * @param processTableScanner the scanner shared by all process group things, or null if it is not available
+     */
+    public ProcessGroupHandler(Thing thing, ProcessTableScanner processTableScanner) {
+        super(thing);
+        this.processTableScanner = processTableScanner;
+    }
+
+    @Override
+    public void initialize() {
+        logger.debug("Start initializing process group {}!", getThing().getUID());
+
+        if (processTableScanner == null) {
+            updateStatus(ThingStatus.OFFLINE, ThingStatusDetail.HANDLER_INITIALIZING_ERROR,
+                    "Thing can not be initialized!");
+            return;
+        }
+
+        String pattern;
+        try {
+            pattern = (String) getThing().getConfiguration().get(PROCESS_GROUP_PATTERN);
+            BigDecimal interval = (BigDecimal) getThing().getConfiguration().get(PROCESS_GROUP_REFRESH_TIME);
+            refreshInterval = interval == null ? DEFAULT_REFRESH_INTERVAL : interval.intValue();
+            if (pattern == null || pattern.isEmpty() || refreshInterval <= 0) {
+                throw new IllegalArgumentException("Pattern must not be empty and refresh time must be positive!");
+            }
+            processGroup = new ProcessGroup(pattern);
+        } catch (PatternSyntaxException e) {
+            logger.error("Process pattern is invalid! Please change the thing configuration!", e);
+            updateStatus(ThingStatus.OFFLINE, ThingStatusDetail.CONFIGURATION_ERROR, "Invalid process pattern!");
+            return;
+        } catch (IllegalArgumentException | ClassCastException e) {
+            logger.error("Thing configuration is invalid! Please change the thing configuration!", e);
+            updateStatus(ThingStatus.OFFLINE, ThingStatusDetail.CONFIGURATION_ERROR, "Invalid thing configuration!");
+            return;
+        }
+
+        processTableScanner.addGroup(processGroup);
+        logger.debug("Schedule process group {} every {} s.", pattern, refreshInterval);
+        refreshTask = scheduler.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                refresh();
+            }
+        }, 0, refreshInterval, TimeUnit.SECONDS);
+        updateStatus(ThingStatus.ONLINE);
+    }
+
+    private void refresh() {
+        try {
+            // a scan of another group less than half an interval ago is recent enough
+            processTableScanner.scan(TimeUnit.SECONDS.toMillis(refreshInterval) / 2);
+            publishData();
+        } catch (Exception e) {
+            logger.error("Unexpected error occurred while scanning the processes!", e);
+            updateStatus(ThingStatus.OFFLINE, ThingStatusDetail.COMMUNICATION_ERROR,
+                    "Can not get process information as result of unexpected error.");
+        }
+    }
+
+    private void publishData() {
+        ProcessGroup group = processGroup;
+        if (group == null || !group.isUpdated()) {
+            return;
+        }
+        updateState(CHANNEL_PROCESS_GROUP_COUNT, new DecimalType(group.getProcessCount()));
+        BigDecimal cpuLoad = group.getCpuLoad();
+        updateState(CHANNEL_PROCESS_GROUP_LOAD, cpuLoad == null ? UnDefType.UNDEF : new DecimalType(cpuLoad));
+        updateState(CHANNEL_PROCESS_GROUP_MEMORY, new DecimalType(group.getResidentSetSize() / (1024 * 1024)));
+        updateState(CHANNEL_PROCESS_GROUP_THREADS, new DecimalType(group.getThreadCount()));
+    }
+
+    @Override
+    public void handleCommand(ChannelUID channelUID, Command command) {
+        if (command instanceof RefreshType) {
+            logger.debug("Refresh command received for channel {}!", channelUID);
+            publishData();
+        } else {
+            logger.debug("Unsupported command {}! Supported commands: REFRESH", command);
+        }
+    }
+
+    @Override
+    public void dispose() {
+        if (refreshTask != null) {
+            refreshTask.cancel(true);
+            refreshTask = null;
+        }
+        if (processGroup != null) {
+            processTableScanner.removeGroup(processGroup);
+            processGroup = null;
+        }
+    }
+}
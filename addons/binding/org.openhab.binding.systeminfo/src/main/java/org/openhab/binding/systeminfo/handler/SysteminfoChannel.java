@@ -0,0 +1,331 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.systeminfo.handler;
+
+import static org.openhab.binding.systeminfo.SysteminfoBindingConstants.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.smarthome.core.types.State;
+import org.openhab.binding.systeminfo.model.DeviceNotFoundException;
+import org.openhab.binding.systeminfo.model.SysteminfoInterface;
+
+/**
+ * The {@link SysteminfoChannel} maps the channel IDs (without device index) to the {@link SysteminfoInterface}
+ * methods providing their state. The mapping is resolved once per channel instead of on every refresh.
+ *
+ * @author agent - Initial contribution
+ */
+enum SysteminfoChannel {
+
+    DISPLAY_INFORMATION(CHANNEL_DISPLAY_INFORMATION) {
+        @Override
+        State getState(SysteminfoInterface systeminfo, int deviceIndex) throws DeviceNotFoundException {
+            return systeminfo.getDisplayInformation(deviceIndex);
+        }
+    },
+    BATTERY_NAME(CHANNEL_BATTERY_NAME) {
+        @Override
+        State getState(SysteminfoInterface systeminfo, int deviceIndex) throws DeviceNotFoundException {
+            return systeminfo.getBatteryName(deviceIndex);
+        }
+    },
+    BATTERY_REMAINING_CAPACITY(CHANNEL_BATTERY_REMAINING_CAPACITY) {
+        @Override
+        State getState(SysteminfoInterface systeminfo, int deviceIndex) throws DeviceNotFoundException {
+            return systeminfo.getBatteryRemainingCapacity(deviceIndex);
+        }
+    },
+    BATTERY_REMAINING_TIME(CHANNEL_BATTERY_REMAINING_TIME) {
+        @Override
+        State getState(SysteminfoInterface systeminfo, int deviceIndex) throws DeviceNotFoundException {
+            return systeminfo.getBatteryRemainingTime(deviceIndex);
+        }
+    },
+    SENSORS_CPU_TEMPERATURE(CHANNEL_SENSORS_CPU_TEMPERATURE) {
+        @Override
+        State getState(SysteminfoInterface systeminfo, int deviceIndex) throws DeviceNotFoundException {
+            return systeminfo.getSensorsCpuTemperature();
+        }
+    },
+    SENOSRS_CPU_VOLTAGE(CHANNEL_SENOSRS_CPU_VOLTAGE) {
+        @Override
+        State getState(SysteminfoInterface systeminfo, int deviceIndex) throws DeviceNotFoundException {
+            return systeminfo.getSensorsCpuVoltage();
+        }
+    },
+    SENSORS_FAN_SPEED(CHANNEL_SENSORS_FAN_SPEED) {
+        @Override
+        State getState(SysteminfoInterface systeminfo, int deviceIndex) throws DeviceNotFoundException {
+            return systeminfo.getSensorsFanSpeed(deviceIndex);
+        }
+    },
+    CPU_LOAD(CHANNEL_CPU_LOAD) {
+        @Override
+        State getState(SysteminfoInterface systeminfo, int deviceIndex) throws DeviceNotFoundException {
+            return systeminfo.getCpuLoad();
+        }
+    },
+    CPU_LOAD_1(CHANNEL_CPU_LOAD_1) {
+        @Override
+        State getState(SysteminfoInterface systeminfo, int deviceIndex) throws DeviceNotFoundException {
+            return systeminfo.getCpuLoad1();
+        }
+    },
+    CPU_LOAD_5(CHANNEL_CPU_LOAD_5) {
+        @Override
+        State getState(SysteminfoInterface systeminfo, int deviceIndex) throws DeviceNotFoundException {
+            return systeminfo.getCpuLoad5();
+        }
+    },
+    CPU_LOAD_15(CHANNEL_CPU_LOAD_15) {
+        @Override
+        State getState(SysteminfoInterface systeminfo, int deviceIndex) throws DeviceNotFoundException {
+            return systeminfo.getCpuLoad15();
+        }
+    },
+    CPU_UPTIME(CHANNEL_CPU_UPTIME) {
+        @Override
+        State getState(SysteminfoInterface systeminfo, int deviceIndex) throws DeviceNotFoundException {
+            return systeminfo.getCpuUptime();
+        }
+    },
+    CPU_THREADS(CHANNEL_CPU_THREADS) {
+        @Override
+        State getState(SysteminfoInterface systeminfo, int deviceIndex) throws DeviceNotFoundException {
+            return systeminfo.getCpuThreads();
+        }
+    },
+    CPU_DESCRIPTION(CHANNEL_CPU_DESCRIPTION) {
+        @Override
+        State getState(SysteminfoInterface systeminfo, int deviceIndex) throws DeviceNotFoundException {
+            return systeminfo.getCpuDescription();
+        }
+    },
+    CPU_NAME(CHANNEL_CPU_NAME) {
+        @Override
+        State getState(SysteminfoInterface systeminfo, int deviceIndex) throws DeviceNotFoundException {
+            return systeminfo.getCpuName();
+        }
+    },
+    MEMORY_AVAILABLE(CHANNEL_MEMORY_AVAILABLE) {
+        @Override
+        State getState(SysteminfoInterface systeminfo, int deviceIndex) throws DeviceNotFoundException {
+            return systeminfo.getMemoryAvailable();
+        }
+    },
+    MEMORY_USED(CHANNEL_MEMORY_USED) {
+        @Override
+        State getState(SysteminfoInterface systeminfo, int deviceIndex) throws DeviceNotFoundException {
+            return systeminfo.getMemoryUsed();
+        }
+    },
+    MEMORY_TOTAL(CHANNEL_MEMORY_TOTAL) {
+        @Override
+        State getState(SysteminfoInterface systeminfo, int deviceIndex) throws DeviceNotFoundException {
+            return systeminfo.getMemoryTotal();
+        }
+    },
+    MEMORY_AVAILABLE_PERCENT(CHANNEL_MEMORY_AVAILABLE_PERCENT) {
+        @Override
+        State getState(SysteminfoInterface systeminfo, int deviceIndex) throws DeviceNotFoundException {
+            return systeminfo.getMemoryAvailablePercent();
+        }
+    },
+    SWAP_AVAILABLE(CHANNEL_SWAP_AVAILABLE) {
+        @Override
+        State getState(SysteminfoInterface systeminfo, int deviceIndex) throws DeviceNotFoundException {
+            return systeminfo.getSwapAvailable();
+        }
+    },
+    SWAP_USED(CHANNEL_SWAP_USED) {
+        @Override
+        State getState(SysteminfoInterface systeminfo, int deviceIndex) throws DeviceNotFoundException {
+            return systeminfo.getSwapUsed();
+        }
+    },
+    SWAP_TOTAL(CHANNEL_SWAP_TOTAL) {
+        @Override
+        State getState(SysteminfoInterface systeminfo, int deviceIndex) throws DeviceNotFoundException {
+            return systeminfo.getSwapTotal();
+        }
+    },
+    SWAP_AVAILABLE_PERCENT(CHANNEL_SWAP_AVAILABLE_PERCENT) {
+        @Override
+        State getState(SysteminfoInterface systeminfo, int deviceIndex) throws DeviceNotFoundException {
+            return systeminfo.getSwapAvailablePercent();
+        }
+    },
+    DRIVE_MODEL(CHANNEL_DRIVE_MODEL) {
+        @Override
+        State getState(SysteminfoInterface systeminfo, int deviceIndex) throws DeviceNotFoundException {
+            return systeminfo.getDriveModel(deviceIndex);
+        }
+    },
+    DRIVE_SERIAL(CHANNEL_DRIVE_SERIAL) {
+        @Override
+        State getState(SysteminfoInterface systeminfo, int deviceIndex) throws DeviceNotFoundException {
+            return systeminfo.getDriveSerialNumber(deviceIndex);
+        }
+    },
+    DRIVE_NAME(CHANNEL_DRIVE_NAME) {
+        @Override
+        State getState(SysteminfoInterface systeminfo, int deviceIndex) throws DeviceNotFoundException {
+            return systeminfo.getDriveName(deviceIndex);
+        }
+    },
+    STORAGE_NAME(CHANNEL_STORAGE_NAME) {
+        @Override
+        State getState(SysteminfoInterface systeminfo, int deviceIndex) throws DeviceNotFoundException {
+            return systeminfo.getStorageName(deviceIndex);
+        }
+    },
+    STORAGE_DESCRIPTION(CHANNEL_STORAGE_DESCRIPTION) {
+        @Override
+        State getState(SysteminfoInterface systeminfo, int deviceIndex) throws DeviceNotFoundException {
+            return systeminfo.getStorageDescription(deviceIndex);
+        }
+    },
+    STORAGE_AVAILABLE(CHANNEL_STORAGE_AVAILABLE) {
+        @Override
+        State getState(SysteminfoInterface systeminfo, int deviceIndex) throws DeviceNotFoundException {
+            return systeminfo.getStorageAvailable(deviceIndex);
+        }
+    },
+    STORAGE_USED(CHANNEL_STORAGE_USED) {
+        @Override
+        State getState(SysteminfoInterface systeminfo, int deviceIndex) throws DeviceNotFoundException {
+            return systeminfo.getStorageUsed(deviceIndex);
+        }
+    },
+    STORAGE_TOTAL(CHANNEL_STORAGE_TOTAL) {
+        @Override
+        State getState(SysteminfoInterface systeminfo, int deviceIndex) throws DeviceNotFoundException {
+            return systeminfo.getStorageTotal(deviceIndex);
+        }
+    },
+    STORAGE_TYPE(CHANNEL_STORAGE_TYPE) {
+        @Override
+        State getState(SysteminfoInterface systeminfo, int deviceIndex) throws DeviceNotFoundException {
+            return systeminfo.getStorageType(deviceIndex);
+        }
+    },
+    STORAGE_AVAILABLE_PERCENT(CHANNEL_STORAGE_AVAILABLE_PERCENT) {
+        @Override
+        State getState(SysteminfoInterface systeminfo, int deviceIndex) throws DeviceNotFoundException {
+            return systeminfo.getStorageAvailablePercent(deviceIndex);
+        }
+    },
+    NETWORK_IP(CHANNEL_NETWORK_IP) {
+        @Override
+        State getState(SysteminfoInterface systeminfo, int deviceIndex) throws DeviceNotFoundException {
+            return systeminfo.getNetworkIp(deviceIndex);
+        }
+    },
+    NETWORK_ADAPTER_NAME(CHANNEL_NETWORK_ADAPTER_NAME) {
+        @Override
+        State getState(SysteminfoInterface systeminfo, int deviceIndex) throws DeviceNotFoundException {
+            return systeminfo.getNetworkDisplayName(deviceIndex);
+        }
+    },
+    NETWORK_NAME(CHANNEL_NETWORK_NAME) {
+        @Override
+        State getState(SysteminfoInterface systeminfo, int deviceIndex) throws DeviceNotFoundException {
+            return systeminfo.getNetworkName(deviceIndex);
+        }
+    },
+    NETWORK_MAC(CHANNEL_NETWORK_MAC) {
+        @Override
+        State getState(SysteminfoInterface systeminfo, int deviceIndex) throws DeviceNotFoundException {
+            return systeminfo.getNetworkMac(deviceIndex);
+        }
+    },
+    NETWORK_DATA_SENT(CHANNEL_NETWORK_DATA_SENT) {
+        @Override
+        State getState(SysteminfoInterface systeminfo, int deviceIndex) throws DeviceNotFoundException {
+            return systeminfo.getNetworkDataSent(deviceIndex);
+        }
+    },
+    NETWORK_DATA_RECEIVED(CHANNEL_NETWORK_DATA_RECEIVED) {
+        @Override
+        State getState(SysteminfoInterface systeminfo, int deviceIndex) throws DeviceNotFoundException {
+            return systeminfo.getNetworkDataReceived(deviceIndex);
+        }
+    },
+    NETWORK_PACKAGES_RECEIVED(CHANNEL_NETWORK_PACKAGES_RECEIVED) {
+        @Override
+        State getState(SysteminfoInterface systeminfo, int deviceIndex) throws DeviceNotFoundException {
+            return systeminfo.getNetworkPackageReceived(deviceIndex);
+        }
+    },
+    NETWORK_PACKAGES_SENT(CHANNEL_NETWORK_PACKAGES_SENT) {
+        @Override
+        State getState(SysteminfoInterface systeminfo, int deviceIndex) throws DeviceNotFoundException {
+            return systeminfo.getNetworkPackageSent(deviceIndex);
+        }
+    },
+    PROCESS_LOAD(CHANNEL_PROCESS_LOAD) {
+        @Override
+        State getState(SysteminfoInterface systeminfo, int deviceIndex) throws DeviceNotFoundException {
+            return systeminfo.getProcessCpuUsage(deviceIndex);
+        }
+    },
+    PROCESS_MEMORY(CHANNEL_PROCESS_MEMORY) {
+        @Override
+        State getState(SysteminfoInterface systeminfo, int deviceIndex) throws DeviceNotFoundException {
+            return systeminfo.getProcessMemoryUsage(deviceIndex);
+        }
+    },
+    PROCESS_NAME(CHANNEL_PROCESS_NAME) {
+        @Override
+        State getState(SysteminfoInterface systeminfo, int deviceIndex) throws DeviceNotFoundException {
+            return systeminfo.getProcessName(deviceIndex);
+        }
+    },
+    PROCESS_PATH(CHANNEL_PROCESS_PATH) {
+        @Override
+        State getState(SysteminfoInterface systeminfo, int deviceIndex) throws DeviceNotFoundException {
+            return systeminfo.getProcessPath(deviceIndex);
+        }
+    },
+    PROCESS_THREADS(CHANNEL_PROCESS_THREADS) {
+        @Override
+        State getState(SysteminfoInterface systeminfo, int deviceIndex) throws DeviceNotFoundException {
+            return systeminfo.getProcessThreads(deviceIndex);
+        }
+    };
+
+    private static final Map<String, SysteminfoChannel> BY_ID = new HashMap<String, SysteminfoChannel>();
+
+    static {
+        for (SysteminfoChannel channel : values()) {
+            BY_ID.put(channel.channelID, channel);
+        }
+    }
+
+    private final String channelID;
+
+    private SysteminfoChannel(String channelID) {
+        this.channelID = channelID;
+    }
+
+    /**
+     * Gets the state of the channel for the device with the given index.
+     */
+    abstract State getState(SysteminfoInterface systeminfo, int deviceIndex) throws DeviceNotFoundException;
+
+    /**
+     * Returns the channel for the given ID in the form group#channel, where the group contains no device index, or
+     * null for an unknown ID.
+     */
+    static SysteminfoChannel fromChannelID(String channelID) {
+        return BY_ID.get(channelID);
+    }
+}
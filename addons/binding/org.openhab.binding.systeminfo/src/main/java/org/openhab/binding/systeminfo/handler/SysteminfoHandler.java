@@ -16,6 +16,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
@@ -30,7 +31,6 @@ import org.eclipse.smarthome.core.types.Command;
 import org.eclipse.smarthome.core.types.RefreshType;
 import org.eclipse.smarthome.core.types.State;
 import org.openhab.binding.systeminfo.model.DeviceNotFoundException;
-import org.openhab.binding.systeminfo.model.OshiSysteminfo;
 import org.openhab.binding.systeminfo.model.SysteminfoInterface;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -82,13 +82,33 @@ public class SysteminfoHandler extends BaseThingHandler {
 
     private SysteminfoInterface systeminfo;
 
+    /**
+     * The channel accessor and device index of each refreshed channel, resolved at the first refresh.
+     */
+    private Map<ChannelUID, ChannelAccessor> channelAccessors = new ConcurrentHashMap<ChannelUID, ChannelAccessor>();
+
     ScheduledFuture<?> highPriorityTasks;
     ScheduledFuture<?> mediumPriorityTasks;
 
     private Logger logger = LoggerFactory.getLogger(SysteminfoHandler.class);
 
-    public SysteminfoHandler(Thing thing) {
+    private static class ChannelAccessor {
+        private final SysteminfoChannel channel;
+        private final int deviceIndex;
+
+        private ChannelAccessor(SysteminfoChannel channel, int deviceIndex) {
+            this.channel = channel;
+            this.deviceIndex = deviceIndex;
+        }
+    }
+
+    /**
+     * @param thing the thing
+     * @param systeminfo the system information shared by all systeminfo things, or null if it is not available
+     */
+    public SysteminfoHandler(Thing thing, SysteminfoInterface systeminfo) {
         super(thing);
+        this.systeminfo = systeminfo;
     }
 
     @Override
@@ -108,14 +128,12 @@ public class SysteminfoHandler extends BaseThingHandler {
     }
 
     private boolean instantiateSysteminfoLibrary() {
-        try {
-            this.systeminfo = new OshiSysteminfo();
-            logger.debug("OSHI Systeminfo library is instatiated!");
-            return true;
-        } catch (Exception e) {
-            logger.error("Can not instantate Systeminfo object!", e);
+        if (systeminfo == null) {
+            logger.error("Can not instantate Systeminfo object!");
             return false;
         }
+        logger.debug("Systeminfo library is available!");
+        return true;
     }
 
     private boolean isConfigurationValid() {
@@ -259,170 +277,24 @@ public class SysteminfoHandler extends BaseThingHandler {
 
     /**
      * This method gets the information for specific channel through the {@link SysteminfoInterface}. It uses the
-     * channel ID to call the correct method from the {@link SysteminfoInterface} with deviceIndex parameter (in case of
-     * multiple devices, for reference see {@link #getDeviceIndex(String)}})
+     * {@link SysteminfoChannel} of the channel ID to call the correct method from the {@link SysteminfoInterface} with
+     * deviceIndex parameter (in case of multiple devices, for reference see {@link #getDeviceIndex(String)}})
      *
      * @param channelUID - the UID of the channel
      * @return State object or null, if there is no information for the device with this index
      */
     private State getInfoForChannel(ChannelUID channelUID) {
         State state = null;
-        String channelID = channelUID.getId();
-        String channelIDWithoutGroup = channelUID.getIdWithoutGroup();
-        String channelGroupID = channelUID.getGroupId();
-
-        int deviceIndex = getDeviceIndex(channelUID);
 
-        // The channelGroup may contain deviceIndex. It must be deleted from the channelID, because otherwise the
-        // switch will not find the correct method below.
-        // All digits are deleted from the ID
-        channelID = channelGroupID.replaceAll("\\d+", "") + "#" + channelIDWithoutGroup;
+        ChannelAccessor accessor = getChannelAccessor(channelUID);
+        if (accessor == null) {
+            return null;
+        }
 
         try {
-            switch (channelID) {
-                case CHANNEL_DISPLAY_INFORMATION:
-                    state = systeminfo.getDisplayInformation(deviceIndex);
-                    break;
-                case CHANNEL_BATTERY_NAME:
-                    state = systeminfo.getBatteryName(deviceIndex);
-                    break;
-                case CHANNEL_BATTERY_REMAINING_CAPACITY:
-                    state = systeminfo.getBatteryRemainingCapacity(deviceIndex);
-                    break;
-                case CHANNEL_BATTERY_REMAINING_TIME:
-                    state = systeminfo.getBatteryRemainingTime(deviceIndex);
-                    break;
-                case CHANNEL_SENSORS_CPU_TEMPERATURE:
-                    state = systeminfo.getSensorsCpuTemperature();
-                    break;
-                case CHANNEL_SENOSRS_CPU_VOLTAGE:
-                    state = systeminfo.getSensorsCpuVoltage();
-                    break;
-                case CHANNEL_SENSORS_FAN_SPEED:
-                    state = systeminfo.getSensorsFanSpeed(deviceIndex);
-                    break;
-                case CHANNEL_CPU_LOAD:
-                    state = systeminfo.getCpuLoad();
-                    break;
-                case CHANNEL_CPU_LOAD_1:
-                    state = systeminfo.getCpuLoad1();
-                    break;
-                case CHANNEL_CPU_LOAD_5:
-                    state = systeminfo.getCpuLoad5();
-                    break;
-                case CHANNEL_CPU_LOAD_15:
-                    state = systeminfo.getCpuLoad15();
-                    break;
-                case CHANNEL_CPU_UPTIME:
-                    state = systeminfo.getCpuUptime();
-                    break;
-                case CHANNEL_CPU_THREADS:
-                    state = systeminfo.getCpuThreads();
-                    break;
-                case CHANNEL_CPU_DESCRIPTION:
-                    state = systeminfo.getCpuDescription();
-                    break;
-                case CHANNEL_CPU_NAME:
-                    state = systeminfo.getCpuName();
-                    break;
-                case CHANNEL_MEMORY_AVAILABLE:
-                    state = systeminfo.getMemoryAvailable();
-                    break;
-                case CHANNEL_MEMORY_USED:
-                    state = systeminfo.getMemoryUsed();
-                    break;
-                case CHANNEL_MEMORY_TOTAL:
-                    state = systeminfo.getMemoryTotal();
-                    break;
-                case CHANNEL_MEMORY_AVAILABLE_PERCENT:
-                    state = systeminfo.getMemoryAvailablePercent();
-                    break;
-                case CHANNEL_SWAP_AVAILABLE:
-                    state = systeminfo.getSwapAvailable();
-                    break;
-                case CHANNEL_SWAP_USED:
-                    state = systeminfo.getSwapUsed();
-                    break;
-                case CHANNEL_SWAP_TOTAL:
-                    state = systeminfo.getSwapTotal();
-                    break;
-                case CHANNEL_SWAP_AVAILABLE_PERCENT:
-                    state = systeminfo.getSwapAvailablePercent();
-                    break;
-                case CHANNEL_DRIVE_MODEL:
-                    state = systeminfo.getDriveModel(deviceIndex);
-                    break;
-                case CHANNEL_DRIVE_SERIAL:
-                    state = systeminfo.getDriveSerialNumber(deviceIndex);
-                    break;
-                case CHANNEL_DRIVE_NAME:
-                    state = systeminfo.getDriveName(deviceIndex);
-                    break;
-                case CHANNEL_STORAGE_NAME:
-                    state = systeminfo.getStorageName(deviceIndex);
-                    break;
-                case CHANNEL_STORAGE_DESCRIPTION:
-                    state = systeminfo.getStorageDescription(deviceIndex);
-                    break;
-                case CHANNEL_STORAGE_AVAILABLE:
-                    state = systeminfo.getStorageAvailable(deviceIndex);
-                    break;
-                case CHANNEL_STORAGE_USED:
-                    state = systeminfo.getStorageUsed(deviceIndex);
-                    break;
-                case CHANNEL_STORAGE_TOTAL:
-                    state = systeminfo.getStorageTotal(deviceIndex);
-                    break;
-                case CHANNEL_STORAGE_TYPE:
-                    state = systeminfo.getStorageType(deviceIndex);
-                    break;
-                case CHANNEL_STORAGE_AVAILABLE_PERCENT:
-                    state = systeminfo.getStorageAvailablePercent(deviceIndex);
-                    break;
-                case CHANNEL_NETWORK_IP:
-                    state = systeminfo.getNetworkIp(deviceIndex);
-                    break;
-                case CHANNEL_NETWORK_ADAPTER_NAME:
-                    state = systeminfo.getNetworkDisplayName(deviceIndex);
-                    break;
-                case CHANNEL_NETWORK_NAME:
-                    state = systeminfo.getNetworkName(deviceIndex);
-                    break;
-                case CHANNEL_NETWORK_MAC:
-                    state = systeminfo.getNetworkMac(deviceIndex);
-                    break;
-                case CHANNEL_NETWORK_DATA_SENT:
-                    state = systeminfo.getNetworkDataSent(deviceIndex);
-                    break;
-                case CHANNEL_NETWORK_DATA_RECEIVED:
-                    state = systeminfo.getNetworkDataReceived(deviceIndex);
-                    break;
-                case CHANNEL_NETWORK_PACKAGES_RECEIVED:
-                    state = systeminfo.getNetworkPackageReceived(deviceIndex);
-                    break;
-                case CHANNEL_NETWORK_PACKAGES_SENT:
-                    state = systeminfo.getNetworkPackageSent(deviceIndex);
-                    break;
-                case CHANNEL_PROCESS_LOAD:
-                    state = systeminfo.getProcessCpuUsage(deviceIndex);
-                    break;
-                case CHANNEL_PROCESS_MEMORY:
-                    state = systeminfo.getProcessMemoryUsage(deviceIndex);
-                    break;
-                case CHANNEL_PROCESS_NAME:
-                    state = systeminfo.getProcessName(deviceIndex);
-                    break;
-                case CHANNEL_PROCESS_PATH:
-                    state = systeminfo.getProcessPath(deviceIndex);
-                    break;
-                case CHANNEL_PROCESS_THREADS:
-                    state = systeminfo.getProcessThreads(deviceIndex);
-                    break;
-                default:
-                    logger.error("Channel with unknown ID: {} !", channelID);
-            }
+            state = accessor.channel.getState(systeminfo, accessor.deviceIndex);
         } catch (DeviceNotFoundException e) {
-            logger.error("No information for channel " + channelID + deviceIndex, e);
+            logger.error("No information for channel " + channelUID.getId() + accessor.deviceIndex, e);
         } catch (Exception e) {
             logger.error("Unexpected error occurred while getting system information!", e);
             updateStatus(ThingStatus.OFFLINE, ThingStatusDetail.COMMUNICATION_ERROR,
@@ -431,6 +303,24 @@ public class SysteminfoHandler extends BaseThingHandler {
         return state;
     }
 
+    private ChannelAccessor getChannelAccessor(ChannelUID channelUID) {
+        ChannelAccessor accessor = channelAccessors.get(channelUID);
+        if (accessor == null) {
+            // The channelGroup may contain deviceIndex. It must be deleted from the channelID, because otherwise the
+            // channel will not be found below.
+            // All digits are deleted from the ID
+            String channelID = channelUID.getGroupId().replaceAll("\\d+", "") + "#" + channelUID.getIdWithoutGroup();
+            SysteminfoChannel channel = SysteminfoChannel.fromChannelID(channelID);
+            if (channel == null) {
+                logger.error("Channel with unknown ID: {} !", channelID);
+                return null;
+            }
+            accessor = new ChannelAccessor(channel, getDeviceIndex(channelUID));
+            channelAccessors.put(channelUID, accessor);
+        }
+        return accessor;
+    }
+
     /**
      * The device index is an optional part of the channelID - the last characters of the groupID. It is used to
      * identify unique device, when more than one devices are available (e.g. local disks with names C:\, D:\, E"\ - the
@@ -555,6 +445,8 @@ public class SysteminfoHandler extends BaseThingHandler {
         Object oldValue = configuration.get(parameter);
 
         configuration.put(parameter, newConfig.get(parameter));
+        // the device index may have changed
+        channelAccessors.remove(channel.getUID());
 
         Object newValue = newConfig.get(parameter);
         logger.debug("Channel with UID : {} has changed its {} from {} to {}", channel.getUID(), parameter, oldValue,
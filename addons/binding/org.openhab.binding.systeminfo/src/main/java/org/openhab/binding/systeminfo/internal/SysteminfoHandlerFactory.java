@@ -10,14 +10,21 @@ package org.openhab.binding.systeminfo.internal;
 
 import static org.openhab.binding.systeminfo.SysteminfoBindingConstants.*;
 
-import java.util.Collections;
 import java.util.Set;
 
+import org.openhab.binding.systeminfo.handler.ProcessGroupHandler;
 import org.openhab.binding.systeminfo.handler.SysteminfoHandler;
+import org.openhab.binding.systeminfo.model.OshiSysteminfo;
+import org.openhab.binding.systeminfo.model.ProcessTableScanner;
+import org.openhab.binding.systeminfo.model.SysteminfoInterface;
 import org.eclipse.smarthome.core.thing.Thing;
 import org.eclipse.smarthome.core.thing.ThingTypeUID;
 import org.eclipse.smarthome.core.thing.binding.BaseThingHandlerFactory;
 import org.eclipse.smarthome.core.thing.binding.ThingHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.ImmutableSet;
 
 /**
  * The {@link SysteminfoHandlerFactory} is responsible for creating things and thing 
@@ -27,7 +34,20 @@ import org.eclipse.smarthome.core.thing.binding.ThingHandler;
  */
 public class SysteminfoHandlerFactory extends BaseThingHandlerFactory {
     
-    private final static Set<ThingTypeUID> SUPPORTED_THING_TYPES_UIDS = Collections.singleton(THING_TYPE_COMPUTER);
+    private final static Set<ThingTypeUID> SUPPORTED_THING_TYPES_UIDS = ImmutableSet.of(THING_TYPE_COMPUTER,
+            THING_TYPE_PROCESS_GROUP);
+
+    private Logger logger = LoggerFactory.getLogger(SysteminfoHandlerFactory.class);
+
+    /**
+     * Shared by all handlers, so that the system is sampled only once per refresh cycle
+     */
+    private SysteminfoInterface systeminfo;
+
+    /**
+     * Shared by all process group handlers, so that the process table is read only once per interval
+     */
+    private ProcessTableScanner processTableScanner;
     
     @Override
     public boolean supportsThingType(ThingTypeUID thingTypeUID) {
@@ -40,10 +60,37 @@ public class SysteminfoHandlerFactory extends BaseThingHandlerFactory {
         ThingTypeUID thingTypeUID = thing.getThingTypeUID();
 
         if (thingTypeUID.equals(THING_TYPE_COMPUTER)) {
-            return new SysteminfoHandler(thing);
+            return new SysteminfoHandler(thing, getSysteminfo());
+        }
+
+        if (thingTypeUID.equals(THING_TYPE_PROCESS_GROUP)) {
+            return new ProcessGroupHandler(thing, getProcessTableScanner());
         }
 
         return null;
     }
+
+    private synchronized SysteminfoInterface getSysteminfo() {
+        if (systeminfo == null) {
+            try {
+                systeminfo = new OshiSysteminfo();
+                logger.debug("OSHI Systeminfo library is instatiated!");
+            } catch (Exception e) {
+                logger.error("Can not instantate Systeminfo object!", e);
+            }
+        }
+        return systeminfo;
+    }
+
+    private synchronized ProcessTableScanner getProcessTableScanner() {
+        if (processTableScanner == null) {
+            try {
+                processTableScanner = new ProcessTableScanner();
+            } catch (Exception e) {
+                logger.error("Can not instantate process table scanner!", e);
+            }
+        }
+        return processTableScanner;
+    }
 }
 
@@ -9,6 +9,11 @@
 package org.openhab.binding.systeminfo.model;
 
 import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.lang.ArrayUtils;
 import org.eclipse.smarthome.core.library.types.DecimalType;
@@ -32,6 +37,10 @@ import oshi.util.EdidUtil;
  * This implementation of {@link SysteminfoInterface} is using the open source library OSHI to provide system
  * information. OSHI is a free JNA-based (native) Operating System and Hardware Information library for Java.
  *
+ * The changing values are read from the system once per refresh cycle into a {@link Snapshot}, which is shared by all
+ * channels refreshed during the cycle, so that e.g. the memory, CPU load or process information is not read again for
+ * every channel.
+ *
  * @author Svilen Valkanov
  *
  * @see <a href="https://github.com/oshi/oshi">OSHI github repository</a>
@@ -51,6 +60,121 @@ public class OshiSysteminfo implements SysteminfoInterface {
 
     public final static int PRECISION_AFTER_DECIMAl_SIGN = 1;
 
+    /**
+     * Maximum age of a snapshot in milliseconds. It is less than the shortest refresh interval of one second.
+     */
+    public final static int SNAPSHOT_MAX_AGE = 500;
+
+    private Snapshot snapshot;
+
+    /**
+     * The values sampled from the system during one refresh cycle. Each group of values is sampled on first use.
+     */
+    private class Snapshot {
+        private final long timestamp = System.nanoTime();
+
+        private Double cpuLoad;
+        private double[] loadAverage;
+        private Integer threadCount;
+        private long[] memoryValues;
+        private Double cpuTemperature;
+        private Double cpuVoltage;
+        private int[] fanSpeeds;
+        private final Map<Integer, long[]> fileStoreSpace = new HashMap<Integer, long[]>();
+        private final Set<Integer> updatedNetworks = new HashSet<Integer>();
+        private final Map<Integer, OSProcess> processes = new HashMap<Integer, OSProcess>();
+
+        boolean isExpired() {
+            return System.nanoTime() - timestamp > TimeUnit.MILLISECONDS.toNanos(SNAPSHOT_MAX_AGE);
+        }
+
+        synchronized double getCpuLoad() {
+            if (cpuLoad == null) {
+                cpuLoad = cpu.getSystemCpuLoad();
+            }
+            return cpuLoad;
+        }
+
+        synchronized double[] getLoadAverage() {
+            if (loadAverage == null) {
+                loadAverage = cpu.getSystemLoadAverage(3);
+            }
+            return loadAverage;
+        }
+
+        synchronized int getThreadCount() {
+            if (threadCount == null) {
+                threadCount = operatingSystem.getThreadCount();
+            }
+            return threadCount;
+        }
+
+        /**
+         * @return total, available, swap total and swap used memory in bytes
+         */
+        synchronized long[] getMemory() {
+            if (memoryValues == null) {
+                memoryValues = new long[] { memory.getTotal(), memory.getAvailable(), memory.getSwapTotal(),
+                        memory.getSwapUsed() };
+            }
+            return memoryValues;
+        }
+
+        synchronized double getCpuTemperature() {
+            if (cpuTemperature == null) {
+                cpuTemperature = sensors.getCpuTemperature();
+            }
+            return cpuTemperature;
+        }
+
+        synchronized double getCpuVoltage() {
+            if (cpuVoltage == null) {
+                cpuVoltage = sensors.getCpuVoltage();
+            }
+            return cpuVoltage;
+        }
+
+        synchronized int[] getFanSpeeds() {
+            if (fanSpeeds == null) {
+                fanSpeeds = sensors.getFanSpeeds();
+            }
+            return fanSpeeds;
+        }
+
+        /**
+         * @return total and usable space in bytes
+         */
+        synchronized long[] getFileStoreSpace(int index) throws DeviceNotFoundException {
+            long[] space = fileStoreSpace.get(index);
+            if (space == null) {
+                OSFileStore fileStore = (OSFileStore) getDevice(fileStores, index);
+                space = new long[] { fileStore.getTotalSpace(), fileStore.getUsableSpace() };
+                fileStoreSpace.put(index, space);
+            }
+            return space;
+        }
+
+        synchronized NetworkIF getUpdatedNetwork(int index) throws DeviceNotFoundException {
+            NetworkIF network = (NetworkIF) getDevice(networks, index);
+            if (updatedNetworks.add(index)) {
+                network.updateNetworkStats();
+            }
+            return network;
+        }
+
+        synchronized OSProcess getProcess(int pid) throws DeviceNotFoundException {
+            OSProcess process = processes.get(pid);
+            if (process == null) {
+                process = operatingSystem.getProcess(pid);
+                if (process == null) {
+                    throw new DeviceNotFoundException("Error while getting information for process with PID " + pid);
+                }
+                processes.put(pid, process);
+            }
+            return process;
+        }
+    }
+
     /**
      * Some of the methods used in this constructor execute native code and require execute permissions
      *
@@ -77,12 +201,18 @@ public class OshiSysteminfo implements SysteminfoInterface {
         return devices[index];
     }
 
-    private OSProcess getProcess(int pid) throws DeviceNotFoundException {
-        OSProcess process = operatingSystem.getProcess(pid);
-        if (process == null) {
-            throw new DeviceNotFoundException("Error while getting information for process with PID " + pid);
+    /**
+     * Returns the snapshot of the current refresh cycle, a new one if the previous one is outdated.
+     */
+    private synchronized Snapshot getSnapshot() {
+        if (snapshot == null || snapshot.isExpired()) {
+            snapshot = new Snapshot();
         }
-        return process;
+        return snapshot;
+    }
+
+    private OSProcess getProcess(int pid) throws DeviceNotFoundException {
+        return getSnapshot().getProcess(pid);
     }
 
     @Override
@@ -138,29 +268,30 @@ public class OshiSysteminfo implements SysteminfoInterface {
 
     @Override
     public DecimalType getCpuLoad() {
-        double processorLoad = cpu.getSystemCpuLoad();
+        double processorLoad = getSnapshot().getCpuLoad();
         BigDecimal processorLoadPercent = getPercentsValue(processorLoad);
         return new DecimalType(processorLoadPercent);
     }
 
     @Override
     public DecimalType getMemoryTotal() {
-        long totalMemory = memory.getTotal();
+        long totalMemory = getSnapshot().getMemory()[0];
         totalMemory = getSizeInMB(totalMemory);
         return new DecimalType(totalMemory);
     }
 
     @Override
     public DecimalType getMemoryAvailable() {
-        long availableMemory = memory.getAvailable();
+        long availableMemory = getSnapshot().getMemory()[1];
         availableMemory = getSizeInMB(availableMemory);
         return new DecimalType(availableMemory);
     }
 
     @Override
     public DecimalType getMemoryUsed() {
-        long totalMemory = memory.getTotal();
-        long availableMemory = memory.getAvailable();
+        long[] memoryValues = getSnapshot().getMemory();
+        long totalMemory = memoryValues[0];
+        long availableMemory = memoryValues[1];
         long usedMemory = totalMemory - availableMemory;
         usedMemory = getSizeInMB(usedMemory);
         return new DecimalType(usedMemory);
@@ -168,25 +299,23 @@ public class OshiSysteminfo implements SysteminfoInterface {
 
     @Override
     public DecimalType getStorageTotal(int index) throws DeviceNotFoundException {
-        OSFileStore fileStore = (OSFileStore) getDevice(fileStores, index);
-        long totalSpace = fileStore.getTotalSpace();
+        long totalSpace = getSnapshot().getFileStoreSpace(index)[0];
         totalSpace = getSizeInMB(totalSpace);
         return new DecimalType(totalSpace);
     }
 
     @Override
     public DecimalType getStorageAvailable(int index) throws DeviceNotFoundException {
-        OSFileStore fileStore = (OSFileStore) getDevice(fileStores, index);
-        long freeSpace = fileStore.getUsableSpace();
+        long freeSpace = getSnapshot().getFileStoreSpace(index)[1];
         freeSpace = getSizeInMB(freeSpace);
         return new DecimalType(freeSpace);
     }
 
     @Override
     public DecimalType getStorageUsed(int index) throws DeviceNotFoundException {
-        OSFileStore fileStore = (OSFileStore) getDevice(fileStores, index);
-        long totalSpace = fileStore.getTotalSpace();
-        long freeSpace = fileStore.getUsableSpace();
+        long[] space = getSnapshot().getFileStoreSpace(index);
+        long totalSpace = space[0];
+        long freeSpace = space[1];
         long usedSpace = totalSpace - freeSpace;
         usedSpace = getSizeInMB(usedSpace);
         return new DecimalType(usedSpace);
@@ -194,9 +323,9 @@ public class OshiSysteminfo implements SysteminfoInterface {
 
     @Override
     public DecimalType getStorageAvailablePercent(int deviceIndex) throws DeviceNotFoundException {
-        OSFileStore fileStore = (OSFileStore) getDevice(fileStores, deviceIndex);
-        long freeStorage = fileStore.getUsableSpace();
-        long totalStorage = fileStore.getTotalSpace();
+        long[] space = getSnapshot().getFileStoreSpace(deviceIndex);
+        long freeStorage = space[1];
+        long totalStorage = space[0];
         double freePercentDecimal = (double) freeStorage / (double) totalStorage;
         BigDecimal freePercent = getPercentsValue(freePercentDecimal);
         return new DecimalType(freePercent);
@@ -263,21 +392,21 @@ public class OshiSysteminfo implements SysteminfoInterface {
 
     @Override
     public DecimalType getSensorsCpuTemperature() {
-        BigDecimal cpuTemp = new BigDecimal(sensors.getCpuTemperature());
+        BigDecimal cpuTemp = new BigDecimal(getSnapshot().getCpuTemperature());
         cpuTemp = cpuTemp.setScale(PRECISION_AFTER_DECIMAl_SIGN, BigDecimal.ROUND_HALF_UP);
         return new DecimalType(cpuTemp);
     }
 
     @Override
     public DecimalType getSensorsCpuVoltage() {
-        BigDecimal cpuVoltage = new BigDecimal(sensors.getCpuVoltage());
+        BigDecimal cpuVoltage = new BigDecimal(getSnapshot().getCpuVoltage());
         cpuVoltage = cpuVoltage.setScale(PRECISION_AFTER_DECIMAl_SIGN, BigDecimal.ROUND_HALF_UP);
         return new DecimalType(cpuVoltage);
     }
 
     @Override
     public DecimalType getSensorsFanSpeed(int index) throws DeviceNotFoundException {
-        int[] fanSpeeds = sensors.getFanSpeeds();
+        int[] fanSpeeds = getSnapshot().getFanSpeeds();
         int speed = (int) getDevice(ArrayUtils.toObject(fanSpeeds), index);
         return new DecimalType(speed);
     }
@@ -312,8 +441,9 @@ public class OshiSysteminfo implements SysteminfoInterface {
 
     @Override
     public DecimalType getMemoryAvailablePercent() {
-        long availableMemory = memory.getAvailable();
-        long totalMemory = memory.getTotal();
+        long[] memoryValues = getSnapshot().getMemory();
+        long availableMemory = memoryValues[1];
+        long totalMemory = memoryValues[0];
         BigDecimal freePercent;
         if (totalMemory > 0) {
             double freePercentDecimal = (double) availableMemory / (double) totalMemory;
@@ -347,15 +477,16 @@ public class OshiSysteminfo implements SysteminfoInterface {
 
     @Override
     public DecimalType getSwapTotal() {
-        long swapTotal = memory.getSwapTotal();
+        long swapTotal = getSnapshot().getMemory()[2];
         swapTotal = getSizeInMB(swapTotal);
         return new DecimalType(swapTotal);
     }
 
     @Override
     public DecimalType getSwapAvailable() {
-        long swapTotal = memory.getSwapTotal();
-        long swapUsed = memory.getSwapUsed();
+        long[] memoryValues = getSnapshot().getMemory();
+        long swapTotal = memoryValues[2];
+        long swapUsed = memoryValues[3];
         long swapAvaialble = swapTotal - swapUsed;
         swapAvaialble = getSizeInMB(swapAvaialble);
         return new DecimalType(swapAvaialble);
@@ -363,15 +494,16 @@ public class OshiSysteminfo implements SysteminfoInterface {
 
     @Override
     public DecimalType getSwapUsed() {
-        long swapTotal = memory.getSwapUsed();
+        long swapTotal = getSnapshot().getMemory()[3];
         swapTotal = getSizeInMB(swapTotal);
         return new DecimalType(swapTotal);
     }
 
     @Override
     public DecimalType getSwapAvailablePercent() {
-        long usedSwap = memory.getSwapUsed();
-        long totalSwap = memory.getSwapTotal();
+        long[] memoryValues = getSnapshot().getMemory();
+        long usedSwap = memoryValues[3];
+        long totalSwap = memoryValues[2];
         long freeSwap = totalSwap - usedSwap;
         BigDecimal freePercent;
         if (totalSwap > 0) {
@@ -446,7 +578,7 @@ public class OshiSysteminfo implements SysteminfoInterface {
             default:
                 index = 2;
         }
-        double processorLoads[] = cpu.getSystemLoadAverage(index + 1);
+        double processorLoads[] = getSnapshot().getLoadAverage();
         BigDecimal result = new BigDecimal(processorLoads[index]);
         result = result.setScale(PRECISION_AFTER_DECIMAl_SIGN, BigDecimal.ROUND_HALF_UP);
         return result;
@@ -460,7 +592,7 @@ public class OshiSysteminfo implements SysteminfoInterface {
 
     @Override
     public DecimalType getCpuThreads() {
-        int threadCount = operatingSystem.getThreadCount();
+        int threadCount = getSnapshot().getThreadCount();
         return new DecimalType(threadCount);
     }
 
@@ -473,32 +605,28 @@ public class OshiSysteminfo implements SysteminfoInterface {
 
     @Override
     public DecimalType getNetworkPackageReceived(int networkIndex) throws DeviceNotFoundException {
-        NetworkIF network = (NetworkIF) getDevice(networks, networkIndex);
-        network.updateNetworkStats();
+        NetworkIF network = getSnapshot().getUpdatedNetwork(networkIndex);
         long packRecv = network.getPacketsRecv();
         return new DecimalType(packRecv);
     }
 
     @Override
     public DecimalType getNetworkPackageSent(int networkIndex) throws DeviceNotFoundException {
-        NetworkIF network = (NetworkIF) getDevice(networks, networkIndex);
-        network.updateNetworkStats();
+        NetworkIF network = getSnapshot().getUpdatedNetwork(networkIndex);
         long packSent = network.getPacketsSent();
         return new DecimalType(packSent);
     }
 
     @Override
     public DecimalType getNetworkDataSent(int networkIndex) throws DeviceNotFoundException {
-        NetworkIF network = (NetworkIF) getDevice(networks, networkIndex);
-        network.updateNetworkStats();
+        NetworkIF network = getSnapshot().getUpdatedNetwork(networkIndex);
         long bytesSent = network.getBytesSent();
         return new DecimalType(getSizeInMB(bytesSent));
     }
 
     @Override
     public DecimalType getNetworkDataReceived(int networkIndex) throws DeviceNotFoundException {
-        NetworkIF network = (NetworkIF) getDevice(networks, networkIndex);
-        network.updateNetworkStats();
+        NetworkIF network = getSnapshot().getUpdatedNetwork(networkIndex);
         long bytesRecv = network.getBytesRecv();
         return new DecimalType(getSizeInMB(bytesRecv));
     }
@@ -0,0 +1,94 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.systeminfo.model;
+
+import java.math.BigDecimal;
+import java.util.regex.Pattern;
+
+/**
+ * A group of processes selected by a regular expression, which is matched against the name and the full path of
+ * every process. The aggregated values of the group are updated by the {@link ProcessTableScanner}.
+ *
+ * @author agent - Initial contribution
+ */
+public class ProcessGroup {
+
+    private final Pattern pattern;
+
+    private int processCount;
+    private BigDecimal cpuLoad;
+    private long residentSetSize;
+    private int threadCount;
+    private boolean updated;
+
+    /**
+     * @param regex the regular expression a process name or path must match
+     * @throws java.util.regex.PatternSyntaxException if the regular expression is invalid
+     */
+    public ProcessGroup(String regex) {
+        this.pattern = Pattern.compile(regex);
+    }
+
+    /**
+     * Returns true, if the process with the given name and path belongs to this group.
+     */
+    public boolean matches(String name, String path) {
+        return (name != null && pattern.matcher(name).matches())
+                || (path != null && !path.isEmpty() && pattern.matcher(path).matches());
+    }
+
+    synchronized void update(int processCount, BigDecimal cpuLoad, long residentSetSize, int threadCount) {
+        this.processCount = processCount;
+        this.cpuLoad = cpuLoad;
+        this.residentSetSize = residentSetSize;
+        this.threadCount = threadCount;
+        this.updated = true;
+    }
+
+    /**
+     * Returns true, if the group has been updated by at least one scan.
+     */
+    public synchronized boolean isUpdated() {
+        return updated;
+    }
+
+    /**
+     * Returns the number of processes in the group.
+     */
+    public synchronized int getProcessCount() {
+        return processCount;
+    }
+
+    /**
+     * Returns the CPU load of the processes in the group since the previous scan in percents of one CPU, or null if
+     * it is not known yet.
+     */
+    public synchronized BigDecimal getCpuLoad() {
+        return cpuLoad;
+    }
+
+    /**
+     * Returns the size of the memory used by the processes in the group in bytes.
+     */
+    public synchronized long getResidentSetSize() {
+        return residentSetSize;
+    }
+
+    /**
+     * Returns the number of threads of the processes in the group.
+     */
+    public synchronized int getThreadCount() {
+        return threadCount;
+    }
+
+    @Override
+    public String toString() {
+        return pattern.pattern();
+    }
+}
@@ -0,0 +1,201 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.systeminfo.model;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import oshi.SystemInfo;
+import oshi.software.os.OSProcess;
+import oshi.software.os.OperatingSystem;
+
+/**
+ * The {@link ProcessTableScanner} reads the process table once per interval for all registered
+ * {@link ProcessGroup}s and aggregates the values of the processes in each group.
+ *
+ * The groups a process belongs to are determined when the process is seen for the first time, so a scan only reads
+ * the process table and adds up the values, however many groups are monitored. The CPU load is computed from the
+ * difference of the CPU time of each process to the previous scan.
+ *
+ * @author agent - Initial contribution
+ */
+public class ProcessTableScanner {
+
+    private Logger logger = LoggerFactory.getLogger(ProcessTableScanner.class);
+
+    private final OperatingSystem operatingSystem;
+    private final List<ProcessGroup> groups = new CopyOnWriteArrayList<ProcessGroup>();
+
+    /**
+     * Incremented when a group is added or removed, so that the processes are assigned to the groups again
+     */
+    private volatile int groupsVersion;
+
+    private Map<Integer, ProcessSample> samples = new HashMap<Integer, ProcessSample>();
+    private long lastScanNanos;
+    private long lastScanMillis;
+    private int lastScanVersion = -1;
+    private long scanCount;
+    private long lastScanDuration;
+
+    /**
+     * The values of a process from the previous scan
+     */
+    private static class ProcessSample {
+        final long startTime;
+        final long cpuTime;
+        final ProcessGroup[] groups;
+
+        ProcessSample(long startTime, long cpuTime, ProcessGroup[] groups) {
+            this.startTime = startTime;
+            this.cpuTime = cpuTime;
+            this.groups = groups;
+        }
+    }
+
+    /**
+     * Some of the methods used in this constructor execute native code and require execute permissions
+     */
+    public ProcessTableScanner() {
+        this(new SystemInfo().getOperatingSystem());
+    }
+
+    public ProcessTableScanner(OperatingSystem operatingSystem) {
+        this.operatingSystem = operatingSystem;
+    }
+
+    public void addGroup(ProcessGroup group) {
+        groups.add(group);
+        groupsVersion++;
+    }
+
+    public void removeGroup(ProcessGroup group) {
+        if (groups.remove(group)) {
+            groupsVersion++;
+        }
+    }
+
+    /**
+     * Scans the process table, unless it has been scanned less than the given time ago and no group has been added
+     * since then.
+     *
+     * @param maxAge the maximum age of the previous scan in milliseconds
+     */
+    public synchronized void scan(long maxAge) {
+        int version = groupsVersion;
+        if (version == lastScanVersion && System.nanoTime() - lastScanNanos < TimeUnit.MILLISECONDS.toNanos(maxAge)) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        List<ProcessGroup> currentGroups = new ArrayList<ProcessGroup>(groups);
+        int size = currentGroups.size();
+        int[] processCounts = new int[size];
+        long[] cpuTimes = new long[size];
+        long[] residentSetSizes = new long[size];
+        int[] threadCounts = new int[size];
+        Map<ProcessGroup, Integer> indexes = new HashMap<ProcessGroup, Integer>();
+        for (int i = 0; i < size; i++) {
+            indexes.put(currentGroups.get(i), i);
+        }
+
+        long now = System.currentTimeMillis();
+        boolean isFirstScan = lastScanMillis == 0;
+        OSProcess[] processes = operatingSystem.getProcesses(0, null);
+        Map<Integer, ProcessSample> newSamples = new HashMap<Integer, ProcessSample>(processes.length * 2);
+
+        for (OSProcess process : processes) {
+            long cpuTime = process.getKernelTime() + process.getUserTime();
+            ProcessSample previous = samples.get(process.getProcessID());
+            if (previous != null && previous.startTime != process.getStartTime()) {
+                // the PID has been reused
+                previous = null;
+            }
+
+            ProcessGroup[] processGroups;
+            if (previous != null && version == lastScanVersion) {
+                processGroups = previous.groups;
+            } else {
+                processGroups = match(process, currentGroups);
+            }
+
+            long cpuTimeDelta;
+            if (previous != null) {
+                cpuTimeDelta = Math.max(0, cpuTime - previous.cpuTime);
+            } else if (!isFirstScan && process.getStartTime() >= lastScanMillis) {
+                // started since the previous scan
+                cpuTimeDelta = cpuTime;
+            } else {
+                cpuTimeDelta = 0;
+            }
+
+            for (ProcessGroup group : processGroups) {
+                Integer index = indexes.get(group);
+                if (index != null) {
+                    processCounts[index]++;
+                    cpuTimes[index] += cpuTimeDelta;
+                    residentSetSizes[index] += process.getResidentSetSize();
+                    threadCounts[index] += process.getThreadCount();
+                }
+            }
+            newSamples.put(process.getProcessID(), new ProcessSample(process.getStartTime(), cpuTime, processGroups));
+        }
+
+        long elapsed = now - lastScanMillis;
+        for (int i = 0; i < size; i++) {
+            BigDecimal cpuLoad = null;
+            if (!isFirstScan && elapsed > 0) {
+                cpuLoad = new BigDecimal(cpuTimes[i] * 100.0 / elapsed).setScale(
+                        OshiSysteminfo.PRECISION_AFTER_DECIMAl_SIGN, BigDecimal.ROUND_HALF_UP);
+            }
+            currentGroups.get(i).update(processCounts[i], cpuLoad, residentSetSizes[i], threadCounts[i]);
+        }
+
+        samples = newSamples;
+        lastScanMillis = now;
+        lastScanNanos = System.nanoTime();
+        lastScanVersion = version;
+        lastScanDuration = lastScanNanos - start;
+        scanCount++;
+        logger.trace("Scanned {} processes for {} groups in {} ms", processes.length, size,
+                TimeUnit.NANOSECONDS.toMillis(lastScanDuration));
+    }
+
+    private ProcessGroup[] match(OSProcess process, List<ProcessGroup> currentGroups) {
+        List<ProcessGroup> matching = new ArrayList<ProcessGroup>(1);
+        for (ProcessGroup group : currentGroups) {
+            if (group.matches(process.getName(), process.getPath())) {
+                matching.add(group);
+            }
+        }
+        return matching.toArray(new ProcessGroup[matching.size()]);
+    }
+
+    /**
+     * Returns the number of scans of the process table.
+     */
+    public synchronized long getScanCount() {
+        return scanCount;
+    }
+
+    /**
+     * Returns the duration of the last scan in milliseconds.
+     */
+    public synchronized long getLastScanDuration() {
+        return TimeUnit.NANOSECONDS.toMillis(lastScanDuration);
+    }
+}
@@ -0,0 +1,276 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.tesla.internal.throttler;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * Checks that the {@link TokenBucket}s never accept more calls than configured, also when the
+ * {@link TokenBucketThrottler} is used by many threads at the same time.
+ *
+ * @author agent - Initial contribution
+ */
+public class TokenBucketThrottlerTest {
+
+    private static final String DATA = "data";
+    private static final String COMMAND = "command";
+
+    private static final int THREADS = 8;
+    private static final int TASKS_PER_THREAD = 60;
+
+    /**
+     * A time provider which always returns the same time, so the delay of a task is its call time.
+     */
+    private static final TimeProvider FIXED_TIME = new TimeProvider() {
+        @Override
+        public long getCurrentTimeInMillis() {
+            return 0;
+        }
+    };
+
+    /**
+     * A scheduler which executes the tasks at once on the submitting thread, and tells them the delay they were
+     * scheduled with.
+     */
+    private static class InlineScheduler extends ScheduledThreadPoolExecutor {
+        private final ThreadLocal<Long> delay = new ThreadLocal<Long>();
+
+        public InlineScheduler() {
+            super(1);
+        }
+
+        @Override
+        public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+            this.delay.set(unit.toMillis(delay));
+            command.run();
+            return super.schedule(new Runnable() {
+                @Override
+                public void run() {
+                }
+            }, 0, unit);
+        }
+
+        public long getDelay() {
+            return delay.get();
+        }
+    }
+
+    /**
+     * Asserts that no time length (excluding its end) contains more than numberCalls of the call times.
+     */
+    private static void assertLimit(String message, List<Long> callTimes, int numberCalls, long timeLength) {
+        List<Long> sorted = new ArrayList<Long>(callTimes);
+        Collections.sort(sorted);
+        for (int i = 0; i + numberCalls < sorted.size(); i++) {
+            long window = sorted.get(i + numberCalls) - sorted.get(i);
+            assertTrue(message + ": " + (numberCalls + 1) + " calls within " + window + "ms",
+                    window >= timeLength);
+        }
+    }
+
+    private static List<Long> reserveAll(TokenBucket bucket, long[] arrivals) {
+        List<Long> callTimes = new ArrayList<Long>();
+        for (long arrival : arrivals) {
+            long callTime = bucket.reserve(arrival);
+            assertTrue(callTime >= arrival);
+            callTimes.add(callTime);
+        }
+        return callTimes;
+    }
+
+    @Test
+    public void testBurst() {
+        TokenBucket bucket = new TokenBucket(10, 10, TimeUnit.SECONDS, 4);
+        List<Long> callTimes = reserveAll(bucket, new long[12]);
+        // the burst is executed at once, the remaining calls of the time length are spread over it
+        assertEquals(Arrays.asList(0L, 0L, 0L, 0L, 1429L, 2858L, 4287L, 5716L, 7145L, 8574L, 10003L, 11432L),
+                callTimes);
+        assertLimit("burst", callTimes, 10, 10000);
+    }
+
+    @Test
+    public void testBurstAfterIdle() {
+        TokenBucket bucket = new TokenBucket(20, 1, TimeUnit.MINUTES, 2);
+        long[] arrivals = new long[60];
+        // a call every second, then a long pause and a storm of calls
+        for (int i = 0; i < 30; i++) {
+            arrivals[i] = i * 1000L;
+        }
+        Arrays.fill(arrivals, 30, 60, 200000L);
+        assertLimit("idle", reserveAll(bucket, arrivals), 20, 60000);
+    }
+
+    @Test
+    public void testRandomArrivals() {
+        int[][] configurations = { { 10, 10000, 1 }, { 10, 10000, 2 }, { 10, 10000, 10 }, { 20, 60000, 2 },
+                { 200, 600000, 5 }, { 3, 7, 2 } };
+        Random random = new Random(4711);
+        for (int[] configuration : configurations) {
+            TokenBucket bucket = new TokenBucket(configuration[0], configuration[1], TimeUnit.MILLISECONDS,
+                    configuration[2]);
+            long[] arrivals = new long[2000];
+            long time = 0;
+            for (int i = 0; i < arrivals.length; i++) {
+                // mostly faster than the bucket allows, with a few pauses in which it fills up again
+                time += random.nextInt(10) == 0 ? random.nextInt(configuration[1] * 2)
+                        : random.nextInt((int) bucket.getInterval());
+                arrivals[i] = time;
+            }
+            assertLimit(Arrays.toString(configuration), reserveAll(bucket, arrivals), configuration[0],
+                    configuration[1]);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBurstExceedsNumberCalls() {
+        new TokenBucket(10, 10, TimeUnit.SECONDS, 11);
+    }
+
+    @Test
+    public void testConcurrentReservations() throws Exception {
+        final TokenBucket bucket = new TokenBucket(10, 10, TimeUnit.SECONDS, 3);
+        final ConcurrentLinkedQueue<Long> callTimes = new ConcurrentLinkedQueue<Long>();
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int t = 0; t < THREADS; t++) {
+            Thread thread = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 0; i < 1000; i++) {
+                        callTimes.add(bucket.reserve(0));
+                    }
+                }
+            };
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(THREADS * 1000, callTimes.size());
+        assertLimit("concurrent", new ArrayList<Long>(callTimes), 10, 10000);
+    }
+
+    @Test
+    public void testConcurrentSubmit() throws Exception {
+        final InlineScheduler scheduler = new InlineScheduler();
+        final TokenBucketThrottler throttler = new TokenBucketThrottler(scheduler, FIXED_TIME,
+                THREADS * TASKS_PER_THREAD);
+        // the buckets of the Tesla handler
+        throttler.setChannelBucket(DATA, new TokenBucket(10, 10, TimeUnit.SECONDS, 2));
+        throttler.setChannelBucket(COMMAND, new TokenBucket(20, 1, TimeUnit.MINUTES, 2));
+        throttler.addBucket(new TokenBucket(20, 1, TimeUnit.MINUTES, 2));
+        throttler.addBucket(new TokenBucket(200, 10, TimeUnit.MINUTES, 5));
+
+        // the call times of the tasks per channel, as the time does not advance they are the delays
+        final Map<String, List<Long>> callTimes = new ConcurrentHashMap<String, List<Long>>();
+        final String[] channels = { DATA, COMMAND, "none" };
+        for (String channel : channels) {
+            callTimes.put(channel, Collections.synchronizedList(new ArrayList<Long>()));
+        }
+        final ConcurrentLinkedQueue<Throwable> failures = new ConcurrentLinkedQueue<Throwable>();
+        final CountDownLatch start = new CountDownLatch(1);
+
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int t = 0; t < THREADS; t++) {
+            final String channel = channels[t % channels.length];
+            Thread thread = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        for (int i = 0; i < TASKS_PER_THREAD; i++) {
+                            Future<?> future = throttler.submit("none".equals(channel) ? null : channel,
+                                    new Runnable() {
+                                        @Override
+                                        public void run() {
+                                            callTimes.get(channel).add(scheduler.getDelay());
+                                        }
+                                    });
+                            assertNotNull(future);
+                        }
+                    } catch (Throwable e) {
+                        failures.add(e);
+                    }
+                }
+            };
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        scheduler.shutdown();
+        assertTrue(scheduler.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertTrue(failures.toString(), failures.isEmpty());
+        assertEquals(THREADS * TASKS_PER_THREAD, throttler.getExecutedCount());
+        assertEquals(0, throttler.getPendingCount());
+        assertEquals(0, throttler.getRejectedCount());
+
+        List<Long> allCallTimes = new ArrayList<Long>();
+        for (List<Long> channelCallTimes : callTimes.values()) {
+            allCallTimes.addAll(channelCallTimes);
+        }
+        assertEquals(THREADS * TASKS_PER_THREAD, allCallTimes.size());
+        assertLimit(DATA, callTimes.get(DATA), 10, 10000);
+        assertLimit(COMMAND, callTimes.get(COMMAND), 20, 60000);
+        assertLimit("global", allCallTimes, 20, 60000);
+        assertLimit("global", allCallTimes, 200, 600000);
+    }
+
+    @Test
+    public void testPendingTasksLimit() throws Exception {
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1);
+        try {
+            TokenBucketThrottler throttler = new TokenBucketThrottler(scheduler, FIXED_TIME, 10);
+            TokenBucket bucket = new TokenBucket(1, 1, TimeUnit.HOURS, 1);
+            // an empty bucket, so none of the tasks is executed during the test
+            bucket.reserve(0);
+            throttler.addBucket(bucket);
+            Runnable task = new Runnable() {
+                @Override
+                public void run() {
+                }
+            };
+            for (int i = 0; i < 10; i++) {
+                assertNotNull(throttler.submit(task));
+            }
+            assertNull(throttler.submit(task));
+            assertEquals(10, throttler.getPendingCount());
+            assertEquals(1, throttler.getRejectedCount());
+        } finally {
+            scheduler.shutdownNow();
+        }
+    }
+}
@@ -16,7 +16,6 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.UnsupportedEncodingException;
 import java.net.SocketTimeoutException;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
@@ -54,6 +53,8 @@ import org.glassfish.jersey.client.ClientProperties;
 import org.openhab.binding.tesla.TeslaBindingConstants.EventKeys;
 import org.openhab.binding.tesla.internal.TeslaChannelSelectorProxy;
 import org.openhab.binding.tesla.internal.TeslaChannelSelectorProxy.TeslaChannelSelector;
+import org.openhab.binding.tesla.internal.TeslaEventDecoder;
+import org.openhab.binding.tesla.internal.TeslaEventDecoder.EventFieldListener;
 import org.openhab.binding.tesla.internal.protocol.ChargeState;
 import org.openhab.binding.tesla.internal.protocol.ClimateState;
 import org.openhab.binding.tesla.internal.protocol.DriveState;
@@ -61,8 +62,8 @@ import org.openhab.binding.tesla.internal.protocol.GUIState;
 import org.openhab.binding.tesla.internal.protocol.TokenRequest;
 import org.openhab.binding.tesla.internal.protocol.Vehicle;
 import org.openhab.binding.tesla.internal.protocol.VehicleState;
-import org.openhab.binding.tesla.internal.throttler.QueueChannelThrottler;
-import org.openhab.binding.tesla.internal.throttler.Rate;
+import org.openhab.binding.tesla.internal.throttler.TokenBucket;
+import org.openhab.binding.tesla.internal.throttler.TokenBucketThrottler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -118,7 +119,7 @@ public class TeslaHandler extends BaseThingHandler {
     protected ScheduledFuture<?> eventJob;
     protected ScheduledFuture<?> fastStateJob;
     protected ScheduledFuture<?> slowStateJob;
-    protected QueueChannelThrottler stateThrottler;
+    protected TokenBucketThrottler stateThrottler;
 
     protected long intervalTimestamp = 0;
     protected int intervalErrors = 0;
@@ -149,14 +150,11 @@ public class TeslaHandler extends BaseThingHandler {
                     TimeUnit.MILLISECONDS);
         }
 
-        Map<Object, Rate> channels = new HashMap<Object, Rate>();
-        channels.put(TESLA_DATA_THROTTLE, new Rate(10, 10, TimeUnit.SECONDS));
-        channels.put(TESLA_COMMAND_THROTTLE, new Rate(20, 1, TimeUnit.MINUTES));
-
-        Rate firstRate = new Rate(20, 1, TimeUnit.MINUTES);
-        Rate secondRate = new Rate(200, 10, TimeUnit.MINUTES);
-        stateThrottler = new QueueChannelThrottler(firstRate, scheduler, channels);
-        stateThrottler.addRate(secondRate);
+        stateThrottler = new TokenBucketThrottler(scheduler);
+        stateThrottler.setChannelBucket(TESLA_DATA_THROTTLE, new TokenBucket(10, 10, TimeUnit.SECONDS, 2));
+        stateThrottler.setChannelBucket(TESLA_COMMAND_THROTTLE, new TokenBucket(20, 1, TimeUnit.MINUTES, 2));
+        stateThrottler.addBucket(new TokenBucket(20, 1, TimeUnit.MINUTES, 2));
+        stateThrottler.addBucket(new TokenBucket(200, 10, TimeUnit.MINUTES, 5));
 
         if (fastStateJob == null || fastStateJob.isCancelled()) {
             fastStateJob = scheduler.scheduleWithFixedDelay(fastStateRunnable, 0, FAST_STATUS_REFRESH_INTERVAL,
@@ -188,6 +186,10 @@ public class TeslaHandler extends BaseThingHandler {
             slowStateJob.cancel(true);
             slowStateJob = null;
         }
+
+        if (stateThrottler != null) {
+            logger.debug("Throttled requests of {}: {}", getThing().getUID(), stateThrottler);
+        }
     }
 
     @Override
@@ -781,14 +783,41 @@ public class TeslaHandler extends BaseThingHandler {
         long emptyLineCounter = 0;
         long lastEventSystemTime = 0;
         long lastEventStreamEstablishedTime = 0;
-        String lastEventTimeStamp = "";
         Response eventResponse;
         BufferedReader eventBufferedReader;
         InputStreamReader eventInputStreamReader;
+        TeslaEventDecoder eventDecoder = new TeslaEventDecoder();
+
+        EventFieldListener eventFieldListener = new EventFieldListener() {
+            @Override
+            public void fieldChanged(TeslaChannelSelector selector, String value) {
+                try {
+                    if (!selector.isProperty()) {
+                        State newState = value.equals("") ? null
+                                : teslaChannelSelectorProxy.getState(value, selector, editProperties());
+                        if (newState != null) {
+                            updateState(selector.getChannelID(), newState);
+                        } else {
+                            updateState(selector.getChannelID(), UnDefType.UNDEF);
+                        }
+                    } else {
+                        Map<String, String> properties = editProperties();
+                        properties.put(selector.getChannelID(), (selector.getState(value)).toString());
+                        updateProperties(properties);
+                    }
+                } catch (Exception e) {
+                    logger.warn(
+                            "Event Stream : An exception occurred while processing an event received from the vehicle; '{}'",
+                            e.getMessage());
+                }
+            }
+        };
 
         protected void establishEventStream() {
             try {
                 eventBufferedReader = null;
+                // publish all values of the first event of the new stream
+                eventDecoder.reset();
 
                 if (eventResponse != null) {
                     eventResponse.close();
@@ -867,35 +896,7 @@ public class TeslaHandler extends BaseThingHandler {
                                     emptyLineCounter = 0;
                                     lastEventSystemTime = System.currentTimeMillis();
                                     logger.debug("Event Stream : Received an event: '{}'", line);
-                                    String vals[] = line.split(",");
-                                    if (!vals[0].equals(lastEventTimeStamp)) {
-                                        lastEventTimeStamp = vals[0];
-                                        for (int i = 0; i < EventKeys.values().length; i++) {
-                                            try {
-                                                TeslaChannelSelector selector = TeslaChannelSelector
-                                                        .getValueSelectorFromRESTID((EventKeys.values()[i]).toString());
-                                                if (!selector.isProperty()) {
-                                                    State newState = teslaChannelSelectorProxy.getState(vals[i],
-                                                            selector, editProperties());
-                                                    if (newState != null && !vals[i].equals("")) {
-                                                        updateState(selector.getChannelID(), newState);
-                                                    } else {
-                                                        updateState(selector.getChannelID(), UnDefType.UNDEF);
-
-                                                    }
-                                                } else {
-                                                    Map<String, String> properties = editProperties();
-                                                    properties.put(selector.getChannelID(),
-                                                            (selector.getState(vals[i])).toString());
-                                                    updateProperties(properties);
-                                                }
-                                            } catch (Exception e) {
-                                                logger.warn(
-                                                        "Event Stream : An exception occurred while processing an event received from the vehicle; '{}'",
-                                                        e.getMessage());
-                                            }
-                                        }
-                                    }
+                                    eventDecoder.decode(line, eventFieldListener);
                                 } else {
                                     emptyLineCounter++;
                                     logger.trace("Event Stream : Empty Line # {}", emptyLineCounter);
@@ -12,6 +12,7 @@ import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.Map;
 
 import org.eclipse.smarthome.core.library.types.DateTimeType;
@@ -923,6 +924,21 @@ public class TeslaChannelSelectorProxy {
         },
         WHEEL_TYPE("wheel_type", "wheeltype", StringType.class, true);
 
+        private static final Map<String, TeslaChannelSelector> BY_REST_ID = new HashMap<String, TeslaChannelSelector>();
+        private static final Map<String, TeslaChannelSelector> BY_CHANNEL_ID = new HashMap<String, TeslaChannelSelector>();
+
+        static {
+            // the first selector wins, like the linear search did
+            for (TeslaChannelSelector c : TeslaChannelSelector.values()) {
+                if (c.RESTID != null && !BY_REST_ID.containsKey(c.RESTID)) {
+                    BY_REST_ID.put(c.RESTID, c);
+                }
+                if (!BY_CHANNEL_ID.containsKey(c.channelID)) {
+                    BY_CHANNEL_ID.put(c.channelID, c);
+                }
+            }
+        }
+
         private final String RESTID;
         private final String channelID;
         private Class<? extends Type> typeClass;
@@ -976,10 +992,9 @@ public class TeslaChannelSelectorProxy {
         public static TeslaChannelSelector getValueSelectorFromChannelID(String valueSelectorText)
                 throws IllegalArgumentException {
 
-            for (TeslaChannelSelector c : TeslaChannelSelector.values()) {
-                if (c.channelID.equals(valueSelectorText)) {
-                    return c;
-                }
+            TeslaChannelSelector c = valueSelectorText == null ? null : BY_CHANNEL_ID.get(valueSelectorText);
+            if (c != null) {
+                return c;
             }
 
             throw new IllegalArgumentException("Not valid value selector");
@@ -988,10 +1003,9 @@ public class TeslaChannelSelectorProxy {
         public static TeslaChannelSelector getValueSelectorFromRESTID(String valueSelectorText)
                 throws IllegalArgumentException {
 
-            for (TeslaChannelSelector c : TeslaChannelSelector.values()) {
-                if (c.RESTID != null && c.RESTID.equals(valueSelectorText)) {
-                    return c;
-                }
+            TeslaChannelSelector c = valueSelectorText == null ? null : BY_REST_ID.get(valueSelectorText);
+            if (c != null) {
+                return c;
             }
 
             throw new IllegalArgumentException("Not valid value selector");
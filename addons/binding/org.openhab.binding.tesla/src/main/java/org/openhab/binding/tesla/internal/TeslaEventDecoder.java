@@ -0,0 +1,121 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.tesla.internal;
+
+import org.openhab.binding.tesla.TeslaBindingConstants.EventKeys;
+import org.openhab.binding.tesla.internal.TeslaChannelSelectorProxy.TeslaChannelSelector;
+
+/**
+ * The {@link TeslaEventDecoder} decodes the lines of the Tesla event stream. A line holds the comma separated values
+ * of the {@link EventKeys}, in their order.
+ *
+ * The channel selector of each field is resolved once. A line is scanned in place and only the values which differ
+ * from the previous line are extracted and passed on, so unchanged values are not published again.
+ *
+ * @author agent - Initial contribution
+ */
+public class TeslaEventDecoder {
+
+    /**
+     * Receives the changed values of a decoded event.
+     */
+    public interface EventFieldListener {
+        void fieldChanged(TeslaChannelSelector selector, String value);
+    }
+
+    private final TeslaChannelSelector[] selectors;
+    private final String[] lastValues;
+
+    private long eventCount;
+    private long changedCount;
+    private long suppressedCount;
+
+    public TeslaEventDecoder() {
+        EventKeys[] keys = EventKeys.values();
+        selectors = new TeslaChannelSelector[keys.length];
+        lastValues = new String[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            try {
+                selectors[i] = TeslaChannelSelector.getValueSelectorFromRESTID(keys[i].toString());
+            } catch (IllegalArgumentException e) {
+                // the field is skipped
+            }
+        }
+    }
+
+    /**
+     * Decodes an event line and passes the changed values to the listener.
+     *
+     * @param line the line received from the event stream
+     * @param listener the listener to pass the changed values to
+     * @return false, if the line repeats the time stamp of the previous event and has been ignored
+     */
+    public boolean decode(String line, EventFieldListener listener) {
+        int start = 0;
+        for (int i = 0; i < selectors.length; i++) {
+            int end = start > line.length() ? -1 : line.indexOf(',', start);
+            if (end < 0) {
+                end = Math.max(start, line.length());
+            }
+            if (isUnchanged(line, start, end, lastValues[i])) {
+                if (i == 0) {
+                    // same time stamp, same event
+                    return false;
+                }
+                suppressedCount++;
+            } else {
+                String value = start < line.length() ? line.substring(start, end) : "";
+                lastValues[i] = value;
+                if (selectors[i] != null) {
+                    changedCount++;
+                    listener.fieldChanged(selectors[i], value);
+                }
+            }
+            start = end + 1;
+        }
+        eventCount++;
+        return true;
+    }
+
+    /**
+     * Forgets the previous values, so that all values of the next event are passed on.
+     */
+    public void reset() {
+        for (int i = 0; i < lastValues.length; i++) {
+            lastValues[i] = null;
+        }
+    }
+
+    private boolean isUnchanged(String line, int start, int end, String lastValue) {
+        if (lastValue == null) {
+            return false;
+        }
+        if (start >= line.length()) {
+            return lastValue.isEmpty();
+        }
+        return lastValue.length() == end - start && line.regionMatches(start, lastValue, 0, end - start);
+    }
+
+    public long getEventCount() {
+        return eventCount;
+    }
+
+    public long getChangedCount() {
+        return changedCount;
+    }
+
+    public long getSuppressedCount() {
+        return suppressedCount;
+    }
+
+    @Override
+    public String toString() {
+        return "events=" + eventCount + ", changed=" + changedCount + ", suppressed=" + suppressedCount;
+    }
+}
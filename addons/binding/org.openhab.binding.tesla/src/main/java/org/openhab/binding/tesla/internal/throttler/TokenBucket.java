@@ -0,0 +1,87 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.tesla.internal.throttler;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The {@link TokenBucket} is a lock free rate limiter that accepts a number of calls
+ * in a given time length, of which up to a burst size may be executed back to back.
+ *
+ * The bucket does not count tokens, but keeps the theoretical time at which it will be full again
+ * (generic cell rate algorithm). A call reserves a token by advancing this time with a single
+ * compare and set, and is told when it may be executed.
+ *
+ * The burst is part of the number of calls: a bucket which accepts n calls with a burst of b adds a token every
+ * time length / (n - b + 1), so it never accepts more than n calls within any time length.
+ *
+ * @author agent - Initial contribution
+ */
+public final class TokenBucket {
+
+    private final long interval;
+    private final long tolerance;
+    private final AtomicLong theoreticalArrivalTime = new AtomicLong(Long.MIN_VALUE);
+
+    /**
+     * @param numberCalls the maximum number of calls accepted within the time length
+     * @param timeLength the time length
+     * @param timeUnit the unit of the time length
+     * @param burst the number of calls which may be executed without delay when the bucket is full, at most
+     *            numberCalls
+     */
+    public TokenBucket(int numberCalls, int timeLength, TimeUnit timeUnit, int burst) {
+        if (numberCalls <= 0 || timeLength <= 0 || burst <= 0) {
+            throw new IllegalArgumentException("The number of calls, time length and burst must be positive");
+        }
+        if (burst > numberCalls) {
+            throw new IllegalArgumentException("The burst must not exceed the number of calls");
+        }
+        // rounded up, a shorter interval would accept one call too many
+        long refills = numberCalls - burst + 1;
+        this.interval = Math.max(1, (timeUnit.toMillis(timeLength) + refills - 1) / refills);
+        this.tolerance = (burst - 1) * interval;
+    }
+
+    /**
+     * Returns the time in milliseconds after which a token is added to the bucket.
+     */
+    public long getInterval() {
+        return interval;
+    }
+
+    /**
+     * Reserves a token for a call to be executed not before the given time.
+     *
+     * @param notBefore the earliest time the call would be executed
+     * @return the time at which the call may be executed, not before notBefore
+     */
+    long reserve(long notBefore) {
+        while (true) {
+            long tat = theoreticalArrivalTime.get();
+            long callTime = tat == Long.MIN_VALUE ? notBefore : Math.max(notBefore, tat - tolerance);
+            long next = Math.max(tat, callTime) + interval;
+            if (theoreticalArrivalTime.compareAndSet(tat, next)) {
+                return callTime;
+            }
+        }
+    }
+
+    /**
+     * Moves a reservation made earlier backwards in time, because the call is executed later than reserved.
+     *
+     * @param delay the time in milliseconds the call is executed after the reserved time
+     */
+    void postpone(long delay) {
+        if (delay > 0) {
+            theoreticalArrivalTime.addAndGet(delay);
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.tesla.internal.throttler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The {@link TokenBucketThrottler} implements a throttler with any number of global
+ * {@link TokenBucket}s and a {@link TokenBucket} per channel.
+ *
+ * A submitted task reserves a token in the global buckets and in the bucket of its channel, and is scheduled on the
+ * given (shared) scheduler for the time all of them allow. No thread is blocked while waiting, and the tasks are
+ * executed in the order they are submitted.
+ *
+ * @author agent - Initial contribution
+ */
+public final class TokenBucketThrottler implements ChannelThrottler {
+
+    private Logger logger = LoggerFactory.getLogger(TokenBucketThrottler.class);
+
+    private final static int MAX_PENDING_TASKS = 150;
+
+    private final ScheduledExecutorService scheduler;
+    private final TimeProvider timeProvider;
+    private final int maxPendingTasks;
+    private final List<TokenBucket> buckets = new CopyOnWriteArrayList<TokenBucket>();
+    private final Map<Object, TokenBucket> channels = new ConcurrentHashMap<Object, TokenBucket>();
+
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicLong executed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    public TokenBucketThrottler(ScheduledExecutorService scheduler) {
+        this(scheduler, TimeProvider.SYSTEM_PROVIDER, MAX_PENDING_TASKS);
+    }
+
+    public TokenBucketThrottler(ScheduledExecutorService scheduler, TimeProvider timeProvider, int maxPendingTasks) {
+        this.scheduler = scheduler;
+        this.timeProvider = timeProvider;
+        this.maxPendingTasks = maxPendingTasks;
+    }
+
+    /**
+     * Adds a bucket which limits all tasks, whatever their channel.
+     */
+    public void addBucket(TokenBucket bucket) {
+        buckets.add(bucket);
+    }
+
+    /**
+     * Sets the bucket which limits the tasks of the given channel.
+     */
+    public void setChannelBucket(Object channelKey, TokenBucket bucket) {
+        channels.put(channelKey, bucket);
+    }
+
+    @Override
+    public Future<?> submit(Runnable task) {
+        return submit(null, task);
+    }
+
+    @Override
+    public Future<?> submit(Object channelKey, final Runnable task) {
+        if (pending.incrementAndGet() > maxPendingTasks) {
+            pending.decrementAndGet();
+            rejected.incrementAndGet();
+            logger.warn("The throttler can not take the task '{}' at this point in time", task);
+            return null;
+        }
+
+        List<TokenBucket> taskBuckets = new ArrayList<TokenBucket>(buckets);
+        TokenBucket channel = channelKey == null ? null : channels.get(channelKey);
+        if (channel != null) {
+            taskBuckets.add(channel);
+        }
+
+        long now = timeProvider.getCurrentTimeInMillis();
+        long[] reserved = new long[taskBuckets.size()];
+        long callTime = now;
+        for (int i = 0; i < reserved.length; i++) {
+            reserved[i] = taskBuckets.get(i).reserve(callTime);
+            callTime = Math.max(callTime, reserved[i]);
+        }
+        // a later bucket may have delayed the call beyond what an earlier one reserved
+        for (int i = 0; i < reserved.length; i++) {
+            taskBuckets.get(i).postpone(callTime - reserved[i]);
+        }
+
+        try {
+            return scheduler.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    pending.decrementAndGet();
+                    executed.incrementAndGet();
+                    task.run();
+                }
+            }, callTime - now, TimeUnit.MILLISECONDS);
+        } catch (RuntimeException e) {
+            pending.decrementAndGet();
+            rejected.incrementAndGet();
+            logger.warn("An exception occurred while scheduling a new task: '{}'", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Returns the number of tasks waiting to be executed.
+     */
+    public int getPendingCount() {
+        return pending.get();
+    }
+
+    /**
+     * Returns the number of tasks which have been started.
+     */
+    public long getExecutedCount() {
+        return executed.get();
+    }
+
+    /**
+     * Returns the number of tasks which have not been accepted.
+     */
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("pending=%d, executed=%d, rejected=%d", pending.get(), executed.get(), rejected.get());
+    }
+}
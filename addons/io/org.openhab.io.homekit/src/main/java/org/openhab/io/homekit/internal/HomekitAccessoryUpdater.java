@@ -8,9 +8,15 @@
  */
 package org.openhab.io.homekit.internal;
 
+import java.util.Iterator;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.eclipse.smarthome.core.common.ThreadPoolManager;
 import org.eclipse.smarthome.core.items.GenericItem;
 import org.eclipse.smarthome.core.items.Item;
 import org.eclipse.smarthome.core.items.StateChangeListener;
@@ -26,12 +32,31 @@ import com.beowulfe.hap.HomekitCharacteristicChangeCallback;
  * Homekit library takes care of insuring only a single subscription exists for
  * each accessory.
  *
+ * Changes are coalesced per characteristic: all characteristics changed within the notification window are
+ * notified together once at the end of the window, so a dimmer ramp or a group update results in a single event
+ * per characteristic and window instead of one per state change.
+ *
  * @author Andy Lintner
  */
 public class HomekitAccessoryUpdater {
 
+    private static final String THREADPOOL_HOMEKIT = "homekit";
+
     private Logger logger = LoggerFactory.getLogger(HomekitAccessoryUpdater.class);
     private final ConcurrentMap<ItemKey, Subscription> subscriptionsByName = new ConcurrentHashMap<>();
+    private final Set<HomekitCharacteristicChangeCallback> pendingCallbacks = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final AtomicLong changeCount = new AtomicLong();
+    private final AtomicLong notificationCount = new AtomicLong();
+    private volatile int notificationWindow = HomekitSettings.DEFAULT_NOTIFICATION_WINDOW;
+
+    /**
+     * Sets the window in milliseconds in which the changes of a characteristic are coalesced, 0 notifies every change
+     * immediately.
+     */
+    public void setNotificationWindow(int notificationWindow) {
+        this.notificationWindow = Math.max(0, notificationWindow);
+    }
 
     public void subscribe(GenericItem item, HomekitCharacteristicChangeCallback callback) {
         subscribe(item, null, callback);
@@ -50,7 +75,7 @@ public class HomekitAccessoryUpdater {
                 logger.error("Received duplicate subscription on " + item.getName());
                 unsubscribe(item, key);
             }
-            Subscription subscription = (changedItem, oldState, newState) -> callback.changed();
+            Subscription subscription = new Subscription(callback);
             item.addStateChangeListener(subscription);
             return subscription;
         });
@@ -66,18 +91,81 @@ public class HomekitAccessoryUpdater {
         }
         subscriptionsByName.computeIfPresent(new ItemKey(item, key), (k, v) -> {
             item.removeStateChangeListener(v);
+            pendingCallbacks.remove(v.callback);
             return null;
         });
     }
 
-    @FunctionalInterface
-    private static interface Subscription extends StateChangeListener {
+    /**
+     * Drops the pending notifications and logs how many changes have been coalesced.
+     */
+    public void stop() {
+        pendingCallbacks.clear();
+        logger.debug("Notified {} of {} characteristic changes", notificationCount.get(), changeCount.get());
+    }
+
+    /**
+     * Returns the number of item state changes of subscribed characteristics.
+     */
+    public long getChangeCount() {
+        return changeCount.get();
+    }
+
+    /**
+     * Returns the number of characteristic change notifications sent to the Homekit clients.
+     */
+    public long getNotificationCount() {
+        return notificationCount.get();
+    }
+
+    private void changed(HomekitCharacteristicChangeCallback callback) {
+        changeCount.incrementAndGet();
+        int window = notificationWindow;
+        if (window == 0) {
+            notify(callback);
+            return;
+        }
+        pendingCallbacks.add(callback);
+        if (flushScheduled.compareAndSet(false, true)) {
+            ThreadPoolManager.getScheduledPool(THREADPOOL_HOMEKIT).schedule(this::flush, window,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void flush() {
+        // changes from now on schedule the next flush
+        flushScheduled.set(false);
+        Iterator<HomekitCharacteristicChangeCallback> it = pendingCallbacks.iterator();
+        while (it.hasNext()) {
+            HomekitCharacteristicChangeCallback callback = it.next();
+            it.remove();
+            notify(callback);
+        }
+    }
+
+    private void notify(HomekitCharacteristicChangeCallback callback) {
+        notificationCount.incrementAndGet();
+        try {
+            callback.changed();
+        } catch (Exception e) {
+            logger.debug("Could not notify Homekit clients: {}", e.getMessage(), e);
+        }
+    }
+
+    private class Subscription implements StateChangeListener {
+        private final HomekitCharacteristicChangeCallback callback;
+
+        public Subscription(HomekitCharacteristicChangeCallback callback) {
+            this.callback = callback;
+        }
 
         @Override
-        public abstract void stateChanged(Item item, State oldState, State newState);
+        public void stateChanged(Item item, State oldState, State newState) {
+            changed(callback);
+        }
 
         @Override
-        default public void stateUpdated(Item item, State state) {
+        public void stateUpdated(Item item, State state) {
             // Do nothing on non-change update
         }
     }
@@ -21,6 +21,8 @@ import org.osgi.framework.FrameworkUtil;
  */
 public class HomekitSettings {
 
+    public final static int DEFAULT_NOTIFICATION_WINDOW = 100;
+
     private final static String NAME = "openHAB";
     private final static String MANUFACTURER = "openHAB";
     private final static String SERIAL_NUMBER = "none";
@@ -35,6 +37,7 @@ public class HomekitSettings {
     private String thermostatAutoMode = "Auto";
     private String thermostatOffMode = "Off";
     private InetAddress networkInterface;
+    private int notificationWindow = DEFAULT_NOTIFICATION_WINDOW;
 
     public void fill(Dictionary<String, ?> properties) throws UnknownHostException {
         Object port = properties.get("port");
@@ -69,6 +72,13 @@ public class HomekitSettings {
         this.thermostatAutoMode = (String) properties.get("thermostatAutoMode");
         this.thermostatOffMode = (String) properties.get("thermostatOffMode");
 
+        Object notificationWindow = properties.get("notificationWindow");
+        if (notificationWindow instanceof Number) {
+            this.notificationWindow = ((Number) notificationWindow).intValue();
+        } else if (notificationWindow instanceof String) {
+            this.notificationWindow = Integer.parseInt((String) notificationWindow);
+        }
+
         String networkInterface = (String) properties.get("networkInterface");
         if (networkInterface == null) {
             this.networkInterface = InetAddress.getLocalHost();
@@ -112,6 +122,10 @@ public class HomekitSettings {
         return pin;
     }
 
+    public int getNotificationWindow() {
+        return notificationWindow;
+    }
+
     public boolean useFahrenheitTemperature() {
         return useFahrenheitTemperature;
     }
@@ -149,6 +163,7 @@ public class HomekitSettings {
         result = prime * result + (int) (temp ^ (temp >>> 32));
         temp = Double.doubleToLongBits(minimumTemperature);
         result = prime * result + (int) (temp ^ (temp >>> 32));
+        result = prime * result + notificationWindow;
         result = prime * result + ((pin == null) ? 0 : pin.hashCode());
         result = prime * result + port;
         result = prime * result + ((thermostatAutoMode == null) ? 0 : thermostatAutoMode.hashCode());
@@ -177,6 +192,9 @@ public class HomekitSettings {
         if (Double.doubleToLongBits(minimumTemperature) != Double.doubleToLongBits(other.minimumTemperature)) {
             return false;
         }
+        if (notificationWindow != other.notificationWindow) {
+            return false;
+        }
         if (pin == null) {
             if (other.pin != null) {
                 return false;
@@ -0,0 +1,256 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.io.hueemulation.internal;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.lang.ArrayUtils;
+import org.eclipse.smarthome.core.items.Item;
+import org.eclipse.smarthome.core.items.ItemRegistry;
+import org.eclipse.smarthome.core.items.ItemRegistryChangeListener;
+import org.eclipse.smarthome.core.library.types.DecimalType;
+import org.eclipse.smarthome.core.library.types.HSBType;
+import org.eclipse.smarthome.core.library.types.OnOffType;
+import org.eclipse.smarthome.core.types.State;
+import org.openhab.io.hueemulation.internal.api.HueDataStore;
+import org.openhab.io.hueemulation.internal.api.HueDevice;
+import org.openhab.io.hueemulation.internal.api.HueState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.gson.Gson;
+
+/**
+ * Keeps an index of the items with a supported Hue tag and caches the serialized JSON responses built from them.
+ *
+ * The index is maintained from the item registry events, so a request does not have to scan all items and their
+ * tags. The device names JSON is dropped when a tagged item is added, removed or updated, the data store JSON
+ * additionally when the state of a tagged item changes.
+ *
+ * @author agent
+ *
+ */
+public class HueDeviceCache implements ItemRegistryChangeListener {
+    private final Logger logger = LoggerFactory.getLogger(HueDeviceCache.class);
+
+    private static final String[] SUPPORTED_TAGS = new String[] { "Switchable", "Lighting", "TargetTemperature" };
+
+    private final Gson gson = new Gson();
+    private final Map<String, Item> taggedItems = new ConcurrentHashMap<String, Item>();
+    private ItemRegistry itemRegistry;
+
+    private volatile byte[] deviceNamesJson;
+    private volatile byte[] dataStoreJson;
+
+    /**
+     * incremented on every change, so that a response built from outdated items is not kept
+     */
+    private volatile long revision = 0;
+
+    /**
+     * Starts listening to the given registry and indexes its tagged items.
+     */
+    public synchronized void setItemRegistry(ItemRegistry itemRegistry) {
+        unsetItemRegistry();
+        this.itemRegistry = itemRegistry;
+        itemRegistry.addRegistryChangeListener(this);
+        rebuild();
+    }
+
+    /**
+     * Stops listening to the registry and clears the index.
+     */
+    public synchronized void unsetItemRegistry() {
+        if (itemRegistry != null) {
+            itemRegistry.removeRegistryChangeListener(this);
+            itemRegistry = null;
+        }
+        taggedItems.clear();
+        invalidate();
+    }
+
+    /**
+     * Returns the items that match one of our tags.
+     */
+    public Collection<Item> getTaggedItems() {
+        return new ArrayList<Item>(taggedItems.values());
+    }
+
+    /**
+     * Returns true, if the item is tagged with one of our tags.
+     */
+    public boolean isTagged(String itemName) {
+        return taggedItems.containsKey(itemName);
+    }
+
+    /**
+     * Returns the item name and label of each tagged item.
+     *
+     * @return
+     *         Map<item name, item label>
+     */
+    public Map<String, String> getHueDeviceNames() {
+        Map<String, String> devices = new HashMap<String, String>();
+        for (Item item : taggedItems.values()) {
+            devices.put(item.getName(), item.getLabel());
+        }
+        return devices;
+    }
+
+    /**
+     * Returns the JSON of the device names (see {@link #getHueDeviceNames()}) as UTF-8 bytes.
+     */
+    public byte[] getHueDeviceNamesJson() {
+        byte[] json = deviceNamesJson;
+        if (json == null) {
+            long generationRevision = revision;
+            json = gson.toJson(getHueDeviceNames()).getBytes(StandardCharsets.UTF_8);
+            synchronized (this) {
+                if (generationRevision == revision) {
+                    deviceNamesJson = json;
+                }
+            }
+        }
+        return json;
+    }
+
+    /**
+     * Returns the JSON of the data store with all tagged devices and their state as UTF-8 bytes.
+     */
+    public byte[] getDataStoreJson() {
+        byte[] json = dataStoreJson;
+        if (json == null) {
+            long generationRevision = revision;
+            HueDataStore ds = new HueDataStore();
+            ds.lights = getHueDevices();
+            json = gson.toJson(ds).getBytes(StandardCharsets.UTF_8);
+            synchronized (this) {
+                if (generationRevision == revision) {
+                    dataStoreJson = json;
+                }
+            }
+        }
+        return json;
+    }
+
+    /**
+     * Drops the cached state dependent responses, if the item is one of ours.
+     */
+    public void stateChanged(String itemName) {
+        if (taggedItems.containsKey(itemName)) {
+            synchronized (this) {
+                revision++;
+                dataStoreJson = null;
+            }
+        }
+    }
+
+    /**
+     * Converts an Item to a HueDevice
+     *
+     * @param item
+     * @return
+     *         HueDevice
+     */
+    public HueDevice itemToDevice(Item item) {
+        State itemState = item.getState();
+        HueState hueState;
+        if (itemState instanceof HSBType) {
+            HSBType color = (HSBType) itemState;
+            hueState = new HueState(color);
+        } else if (itemState instanceof DecimalType) {
+            short bri = (short) ((((DecimalType) itemState).intValue() * 255) / 100);
+            hueState = new HueState(bri);
+        } else if (itemState instanceof OnOffType) {
+            short bri = (short) (((OnOffType) itemState) == OnOffType.ON ? 255 : 0);
+            hueState = new HueState(bri);
+        } else {
+            hueState = new HueState((short) 0);
+        }
+
+        HueDevice d = new HueDevice(hueState, item.getLabel(), item.getName());
+        return d;
+    }
+
+    @Override
+    public synchronized void added(Item item) {
+        if (isSupported(item)) {
+            taggedItems.put(item.getName(), item);
+            invalidate();
+        }
+    }
+
+    @Override
+    public synchronized void removed(Item item) {
+        if (taggedItems.remove(item.getName()) != null) {
+            invalidate();
+        }
+    }
+
+    @Override
+    public synchronized void updated(Item oldItem, Item item) {
+        if (!oldItem.getName().equals(item.getName())) {
+            removed(oldItem);
+        }
+        if (isSupported(item)) {
+            added(item);
+        } else {
+            removed(item);
+        }
+    }
+
+    @Override
+    public synchronized void allItemsChanged(Collection<String> oldItemNames) {
+        rebuild();
+    }
+
+    private synchronized void rebuild() {
+        Map<String, Item> items = new HashMap<String, Item>();
+        if (itemRegistry != null) {
+            for (Item item : itemRegistry.getItems()) {
+                if (isSupported(item)) {
+                    items.put(item.getName(), item);
+                }
+            }
+        }
+        // no clear(), a concurrent request should not see an empty index
+        taggedItems.keySet().retainAll(items.keySet());
+        taggedItems.putAll(items);
+        invalidate();
+        logger.debug("Indexed {} Hue tagged items", taggedItems.size());
+    }
+
+    private synchronized void invalidate() {
+        revision++;
+        deviceNamesJson = null;
+        dataStoreJson = null;
+    }
+
+    private Map<String, HueDevice> getHueDevices() {
+        Map<String, HueDevice> devices = new HashMap<String, HueDevice>();
+        for (Item item : taggedItems.values()) {
+            devices.put(item.getName(), itemToDevice(item));
+        }
+        return devices;
+    }
+
+    private boolean isSupported(Item item) {
+        for (String tag : item.getTags()) {
+            if (ArrayUtils.contains(SUPPORTED_TAGS, tag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -12,16 +12,16 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.net.InetAddress;
-import java.util.Collection;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Dictionary;
-import java.util.HashMap;
 import java.util.Hashtable;
-import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CopyOnWriteArrayList;
 
@@ -31,22 +31,20 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.apache.commons.io.IOUtils;
-import org.apache.commons.lang.ArrayUtils;
 import org.eclipse.smarthome.config.core.ConfigConstants;
+import org.eclipse.smarthome.core.events.Event;
+import org.eclipse.smarthome.core.events.EventFilter;
 import org.eclipse.smarthome.core.events.EventPublisher;
+import org.eclipse.smarthome.core.events.EventSubscriber;
 import org.eclipse.smarthome.core.items.Item;
 import org.eclipse.smarthome.core.items.ItemNotFoundException;
 import org.eclipse.smarthome.core.items.ItemRegistry;
 import org.eclipse.smarthome.core.items.events.ItemEventFactory;
-import org.eclipse.smarthome.core.library.types.DecimalType;
+import org.eclipse.smarthome.core.items.events.ItemStateChangedEvent;
 import org.eclipse.smarthome.core.library.types.HSBType;
-import org.eclipse.smarthome.core.library.types.OnOffType;
 import org.eclipse.smarthome.core.types.Command;
-import org.eclipse.smarthome.core.types.State;
 import org.eclipse.smarthome.core.types.TypeParser;
 import org.openhab.io.hueemulation.internal.api.HueCreateUser;
-import org.openhab.io.hueemulation.internal.api.HueDataStore;
-import org.openhab.io.hueemulation.internal.api.HueDevice;
 import org.openhab.io.hueemulation.internal.api.HueErrorResponse;
 import org.openhab.io.hueemulation.internal.api.HueGroup;
 import org.openhab.io.hueemulation.internal.api.HueState;
@@ -64,7 +62,7 @@ import com.google.gson.Gson;
  *
  */
 @SuppressWarnings("serial")
-public class HueEmulationServlet extends HttpServlet {
+public class HueEmulationServlet extends HttpServlet implements EventSubscriber {
     private Logger logger = LoggerFactory.getLogger(HueEmulationServlet.class);
     private static final String CONFIG_PAIRING_ENABLED = "pairingEnabled";
     private static final String CONFIG_DISCOVERY_IP = "discoveryIp";
@@ -81,16 +79,16 @@ public class HueEmulationServlet extends HttpServlet {
     private static final File UDN_FILE = new File(
             ConfigConstants.getUserDataFolder() + File.separator + "hueemulation" + File.separator + "udn");
 
-    private static final String[] SUPPORTED_TAGS = new String[] { "Switchable", "Lighting", "TargetTemperature" };
-
     private Gson gson = new Gson();
     private HttpService httpService;
     private ItemRegistry itemRegistry;
+    private HueDeviceCache deviceCache = new HueDeviceCache();
     private EventPublisher eventPublisher;
     private HueEmulationUpnpServer disco;
     private String udn;
     private String xmlDoc;
     private CopyOnWriteArrayList<String> userNames = new CopyOnWriteArrayList<String>();
+    private volatile List<String> discoveryIps = Collections.emptyList();
 
     private boolean pairingEnabled = false;
 
@@ -123,6 +121,15 @@ public class HueEmulationServlet extends HttpServlet {
 
         Object obj = config.get(CONFIG_DISCOVERY_IP);
         String ip = obj != null ? (String) obj : null;
+        List<String> ips = new ArrayList<String>();
+        if (ip != null) {
+            for (String configuredIp : ip.split(",")) {
+                if (configuredIp.trim().length() > 0) {
+                    ips.add(configuredIp.trim());
+                }
+            }
+        }
+        discoveryIps = ips;
         try {
             disco = new HueEmulationUpnpServer(PATH + "/discovery.xml", getUDN(), ip);
             disco.start();
@@ -155,9 +162,11 @@ public class HueEmulationServlet extends HttpServlet {
 
     protected void setItemRegistry(ItemRegistry itemRegistry) {
         this.itemRegistry = itemRegistry;
+        deviceCache.setItemRegistry(itemRegistry);
     }
 
     protected void unsetItemRegistry(ItemRegistry itemRegistry) {
+        deviceCache.unsetItemRegistry();
         this.itemRegistry = null;
     }
 
@@ -346,7 +355,7 @@ public class HueEmulationServlet extends HttpServlet {
         try {
             Item item = itemRegistry.getItem(id);
             PrintWriter out = resp.getWriter();
-            out.write(gson.toJson(itemToDevice(item)));
+            out.write(gson.toJson(deviceCache.itemToDevice(item)));
             out.close();
         } catch (ItemNotFoundException e) {
             logger.debug("Item not found: " + id);
@@ -362,9 +371,7 @@ public class HueEmulationServlet extends HttpServlet {
      * @throws IOException
      */
     public void apiLights(HttpServletRequest req, HttpServletResponse resp) throws IOException {
-        PrintWriter out = resp.getWriter();
-        out.write(gson.toJson(getHueDeviceNames()));
-        out.close();
+        writeJson(resp, deviceCache.getHueDeviceNamesJson());
     }
 
     /**
@@ -376,7 +383,7 @@ public class HueEmulationServlet extends HttpServlet {
      */
     public void apiGroupZero(HttpServletRequest req, HttpServletResponse resp) throws IOException {
         PrintWriter out = resp.getWriter();
-        String[] lights = getHueDeviceNames().keySet().toArray(new String[0]);
+        String[] lights = deviceCache.getHueDeviceNames().keySet().toArray(new String[0]);
         HueState action = new HueState();
         out.write(gson.toJson(new HueGroup("0", lights, action)));
         out.close();
@@ -390,10 +397,7 @@ public class HueEmulationServlet extends HttpServlet {
      * @throws IOException
      */
     public void apiDataStore(HttpServletRequest req, HttpServletResponse resp) throws IOException {
-        PrintWriter out = resp.getWriter();
-        HueDataStore ds = new HueDataStore();
-        ds.lights = getHueDevices();
-        out.write(gson.toJson(ds));
+        writeJson(resp, deviceCache.getDataStoreJson());
     }
 
     /**
@@ -462,12 +466,12 @@ public class HueEmulationServlet extends HttpServlet {
             xmlDoc = IOUtils.toString(getClass().getClassLoader().getResourceAsStream("discovery.xml"), "UTF-8");
         }
 
-        InetAddress address = disco.getAddress();
+        String address = getAdvertisedAddress(req);
         if (address == null) {
             return;
         }
 
-        String formattedXML = String.format(xmlDoc, address.getHostAddress(),
+        String formattedXML = String.format(xmlDoc, address,
                 System.getProperty("org.osgi.service.http.port"), getUDN());
         resp.setContentType(APPLICATION_XML);
         PrintWriter out = resp.getWriter();
@@ -476,84 +480,46 @@ public class HueEmulationServlet extends HttpServlet {
     }
 
     /**
-     * Returns a map of all our items that have voice tags.
-     *
-     * @param username
-     * @return
-     *         Map <item name, HueDevice>
+     * Returns the configured discovery address the client has reached us on or the first configured one. Without a
+     * configured address, the address the client has reached us on is used, as the UPNP server may answer on several
+     * interfaces.
      */
-    private Map<String, HueDevice> getHueDevices() {
-        Collection<Item> items = getTaggedItems();
-        Map<String, HueDevice> devices = new HashMap<String, HueDevice>();
-        Iterator<Item> it = items.iterator();
-        while (it.hasNext()) {
-            Item item = it.next();
-            devices.put(item.getName(), itemToDevice(item));
+    private String getAdvertisedAddress(HttpServletRequest req) {
+        String localAddress = req.getLocalAddr();
+        List<String> ips = discoveryIps;
+        if (!ips.isEmpty()) {
+            return ips.contains(localAddress) ? localAddress : ips.get(0);
         }
-        return devices;
+        if (localAddress != null && !localAddress.contains(":")) {
+            return localAddress;
+        }
+        InetAddress discoveryAddress = disco != null ? disco.getAddress() : null;
+        return discoveryAddress != null ? discoveryAddress.getHostAddress() : null;
     }
 
     /**
      * Returns the item name and voice name of each item
      *
-     * @param username
      * @return
      *         Map<item name, item voice tag>
      */
     public Map<String, String> getHueDeviceNames() {
-        Collection<Item> items = getTaggedItems();
-        Map<String, String> devices = new HashMap<String, String>();
-        Iterator<Item> it = items.iterator();
-        while (it.hasNext()) {
-            Item item = it.next();
-            devices.put(item.getName(), item.getLabel());
-        }
-        return devices;
-    }
-
-    /**
-     * Converts an Item to a HueDevice
-     *
-     * @param item
-     * @return
-     *         HueDevice
-     */
-    private HueDevice itemToDevice(Item item) {
-        State itemState = item.getState();
-        HueState hueState;
-        if (itemState instanceof HSBType) {
-            HSBType color = (HSBType) itemState;
-            hueState = new HueState(color);
-        } else if (itemState instanceof DecimalType) {
-            short bri = (short) ((((DecimalType) itemState).intValue() * 255) / 100);
-            hueState = new HueState(bri);
-        } else if (itemState instanceof OnOffType) {
-            short bri = (short) (((OnOffType) itemState) == OnOffType.ON ? 255 : 0);
-            hueState = new HueState(bri);
-        } else {
-            hueState = new HueState((short) 0);
-        }
-
-        HueDevice d = new HueDevice(hueState, item.getLabel(), item.getName());
-        return d;
+        return deviceCache.getHueDeviceNames();
     }
 
     /**
-     * Gets all items that match our tag
+     * Writes an already serialized JSON response
      *
-     * @return
+     * @param resp
+     * @param json
+     *            UTF-8 encoded JSON
+     * @throws IOException
      */
-    private Collection<Item> getTaggedItems() {
-        Collection<Item> items = new LinkedList<Item>();
-        for (Item item : itemRegistry.getItems()) {
-            for (String tag : item.getTags()) {
-                if (ArrayUtils.contains(SUPPORTED_TAGS, tag)) {
-                    items.add(item);
-                    break;
-                }
-            }
-        }
-        return items;
+    private void writeJson(HttpServletResponse resp, byte[] json) throws IOException {
+        resp.setContentLength(json.length);
+        OutputStream out = resp.getOutputStream();
+        out.write(json);
+        out.close();
     }
 
     /**
@@ -636,4 +602,19 @@ public class HueEmulationServlet extends HttpServlet {
     public boolean getPairingEnabled() {
         return pairingEnabled;
     }
+
+    @Override
+    public Set<String> getSubscribedEventTypes() {
+        return Collections.singleton(ItemStateChangedEvent.TYPE);
+    }
+
+    @Override
+    public EventFilter getEventFilter() {
+        return null;
+    }
+
+    @Override
+    public void receive(Event event) {
+        deviceCache.stateChanged(((ItemStateChangedEvent) event).getItemName());
+    }
 }
@@ -9,15 +9,26 @@
 package org.openhab.io.hueemulation.internal;
 
 import java.io.IOException;
-import java.net.DatagramPacket;
-import java.net.DatagramSocket;
 import java.net.Inet4Address;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
-import java.net.MulticastSocket;
+import java.net.InterfaceAddress;
 import java.net.NetworkInterface;
-import java.net.SocketException;
-import java.util.Enumeration;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
@@ -26,6 +37,10 @@ import org.slf4j.LoggerFactory;
 /**
  * Advertises a Hue UPNP compatible bridge
  *
+ * A single non blocking channel joins the SSDP multicast group on every configured interface. M-SEARCH requests are
+ * answered with a response prebuilt for the interface address in the subnet of the searching device. To survive
+ * discovery floods, the number of responses per device and in total is limited per second.
+ *
  * @author Dan Cunningham
  *
  */
@@ -35,16 +50,53 @@ public class HueEmulationUpnpServer extends Thread {
     // jUPNP shares port 1900, but since this is multicast, we can also bind to it
     static final private int UPNP_PORT_RECV = 1900;
     static final private String MULTI_ADDR = "239.255.255.250";
-    private boolean running;
+    static final private byte[] M_SEARCH = "M-SEARCH".getBytes(StandardCharsets.US_ASCII);
+    static final private int MAX_RESPONSES_PER_SOURCE = 10;
+    static final private int MAX_RESPONSES = 200;
+    static final private long RETRY_DELAY = TimeUnit.SECONDS.toMillis(3);
+
+    private volatile boolean running;
     private String discoPath;
     private String usn;
-    private InetAddress address;
+    private volatile InetAddress address;
     private String discoveryIp;
+    private volatile Selector selector;
 
     private String discoString = "HTTP/1.1 200 OK\r\n" + "CACHE-CONTROL: max-age=100\r\n" + "EXT:\r\n"
             + "LOCATION: %s\r\n" + "SERVER: FreeRTOS/7.4.2 UPnP/1.0 IpBridge/1.10.0\r\n"
             + "ST: urn:schemas-upnp-org:device:basic:1\r\n" + "USN: uuid:%s::urn:Belkin:device:**\r\n\r\n";
 
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong answered = new AtomicLong();
+    private final AtomicLong throttled = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    /**
+     * A local address and the discovery response advertising it.
+     */
+    private static class Responder {
+        final InetAddress address;
+        final int network;
+        final int netmask;
+        final ByteBuffer response;
+
+        Responder(InetAddress address, short prefixLength, byte[] response) {
+            this.address = address;
+            this.netmask = prefixLength <= 0 ? 0 : -1 << (32 - Math.min(prefixLength, 32));
+            this.network = toInt(address) & netmask;
+            this.response = ByteBuffer.wrap(response);
+        }
+
+        boolean isInSubnet(InetAddress source) {
+            return source instanceof Inet4Address && (toInt(source) & netmask) == network;
+        }
+
+        static int toInt(InetAddress address) {
+            byte[] bytes = address.getAddress();
+            return (bytes[0] & 0xff) << 24 | (bytes[1] & 0xff) << 16 | (bytes[2] & 0xff) << 8 | (bytes[3] & 0xff);
+        }
+    }
+
     /**
      * Server to send UDP packets onto the network when requested by a Hue API compatible device.
      *
@@ -53,9 +105,11 @@ public class HueEmulationUpnpServer extends Thread {
      * @param usn
      *            The unique USN id for this server
      * @param discoveryIP
-     *            Optional IP to use advertise for UPNP, if null the first available non localhost IP will be used
+     *            Optional comma separated IPs to use advertise for UPNP, if null all available non localhost IPs will
+     *            be used
      */
     public HueEmulationUpnpServer(String discoPath, String usn, String discoveryIP) {
+        super("HueEmulationUpnpServer");
         this.running = true;
         this.discoPath = discoPath;
         this.usn = usn;
@@ -67,70 +121,52 @@ public class HueEmulationUpnpServer extends Thread {
      */
     public void shutdown() {
         this.running = false;
+        Selector s = selector;
+        if (s != null) {
+            s.wakeup();
+        }
+        logger.debug("UPNP server stopped: {}", this);
     }
 
     @Override
     public void run() {
-        MulticastSocket recvSocket = null;
-        // since jupnp shares port 1900, lets use a different port to send UDP packets on just to be safe.
-        DatagramSocket sendSocket = null;
-        byte[] buf = new byte[1000];
-        DatagramPacket recv = new DatagramPacket(buf, buf.length);
         while (running) {
+            DatagramChannel recvChannel = null;
+            // since jupnp shares port 1900, lets use a different port to send UDP packets on just to be safe.
+            DatagramChannel sendChannel = null;
             try {
-                if (discoveryIp != null && discoveryIp.trim().length() > 0) {
-                    address = InetAddress.getByName(discoveryIp);
-                } else {
-                    Enumeration<NetworkInterface> interfaces = NetworkInterface.getNetworkInterfaces();
-                    while (interfaces.hasMoreElements()) {
-                        NetworkInterface ni = interfaces.nextElement();
-                        Enumeration<InetAddress> addresses = ni.getInetAddresses();
-                        while (addresses.hasMoreElements()) {
-                            InetAddress addr = addresses.nextElement();
-                            if (addr instanceof Inet4Address && !addr.isLoopbackAddress()) {
-                                address = addr;
-                                break;
-                            }
-                        }
-                    }
-                }
-                InetSocketAddress socketAddr = new InetSocketAddress(MULTI_ADDR, UPNP_PORT_RECV);
-                recvSocket = new MulticastSocket(UPNP_PORT_RECV);
-                recvSocket.joinGroup(socketAddr, NetworkInterface.getByInetAddress(address));
-                sendSocket = new DatagramSocket();
-                while (running) {
-                    recvSocket.receive(recv);
-                    if (recv.getLength() > 0) {
-                        String data = new String(recv.getData());
-                        logger.trace("Got SSDP Discovery packet from " + recv.getAddress().getHostAddress() + ":"
-                                + recv.getPort());
-                        if (data.startsWith("M-SEARCH")) {
-                            String msg = String
-                                    .format(discoString,
-                                            "http://" + address.getHostAddress().toString() + ":"
-                                                    + System.getProperty("org.osgi.service.http.port") + discoPath,
-                                            usn);
-                            DatagramPacket response = new DatagramPacket(msg.getBytes(), msg.length(),
-                                    recv.getAddress(), recv.getPort());
-                            try {
-                                logger.trace("Sending to " + recv.getAddress().getHostAddress() + " : " + msg);
-                                sendSocket.send(response);
-                            } catch (IOException e) {
-                                logger.error("Could not send UPNP response", e);
-                            }
-                        }
-                    }
+                List<Responder> responders = createResponders();
+                if (responders.isEmpty()) {
+                    throw new IOException("No IPv4 interface address for UPNP discovery found");
                 }
-            } catch (SocketException e) {
-                logger.error("Socket error with UPNP server", e);
+                address = responders.get(0).address;
+
+                selector = Selector.open();
+                recvChannel = DatagramChannel.open(StandardProtocolFamily.INET);
+                recvChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+                recvChannel.bind(new InetSocketAddress(UPNP_PORT_RECV));
+                recvChannel.configureBlocking(false);
+                List<NetworkInterface> joined = joinGroup(recvChannel, responders);
+                recvChannel.register(selector, SelectionKey.OP_READ);
+
+                sendChannel = DatagramChannel.open(StandardProtocolFamily.INET);
+                sendChannel.bind(null);
+                sendChannel.configureBlocking(false);
+                logger.debug("UPNP server listening on {} advertising {}", joined, getAddresses(responders));
+
+                serve(recvChannel, sendChannel, responders);
             } catch (IOException e) {
-                logger.error("IO Error with UPNP server", e);
+                if (running) {
+                    logger.error("IO Error with UPNP server", e);
+                }
             } finally {
-                IOUtils.closeQuietly(recvSocket);
-                IOUtils.closeQuietly(sendSocket);
+                IOUtils.closeQuietly(recvChannel);
+                IOUtils.closeQuietly(sendChannel);
+                IOUtils.closeQuietly(selector);
+                selector = null;
                 if (running) {
                     try {
-                        Thread.sleep(3000);
+                        Thread.sleep(RETRY_DELAY);
                     } catch (InterruptedException e) {
                     }
                 }
@@ -138,7 +174,219 @@ public class HueEmulationUpnpServer extends Thread {
         }
     }
 
+    /**
+     * Answers the M-SEARCH requests until the server is stopped.
+     */
+    private void serve(DatagramChannel recvChannel, DatagramChannel sendChannel, List<Responder> responders)
+            throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(1024);
+        Map<InetAddress, Integer> responsesPerSource = new HashMap<InetAddress, Integer>();
+        int responses = 0;
+        long windowStart = System.nanoTime();
+
+        while (running) {
+            selector.select(1000);
+            selector.selectedKeys().clear();
+
+            long now = System.nanoTime();
+            if (now - windowStart >= TimeUnit.SECONDS.toNanos(1)) {
+                windowStart = now;
+                responses = 0;
+                responsesPerSource.clear();
+            }
+
+            SocketAddress source;
+            buf.clear();
+            while (running && (source = recvChannel.receive(buf)) != null) {
+                buf.flip();
+                received.incrementAndGet();
+                InetSocketAddress sender = (InetSocketAddress) source;
+                if (isSearch(buf)) {
+                    Integer count = responsesPerSource.get(sender.getAddress());
+                    int sourceResponses = count == null ? 0 : count;
+                    if (responses >= MAX_RESPONSES || sourceResponses >= MAX_RESPONSES_PER_SOURCE) {
+                        throttled.incrementAndGet();
+                    } else {
+                        responses++;
+                        responsesPerSource.put(sender.getAddress(), sourceResponses + 1);
+                        respond(sendChannel, getResponder(responders, sender.getAddress()), sender);
+                    }
+                }
+                buf.clear();
+            }
+        }
+    }
+
+    /**
+     * Joins the SSDP multicast group on the interfaces of the advertised addresses. If an address is not bound to a
+     * local interface (e.g. the public address of a NAT or Docker host), the group is joined on all multicast capable
+     * interfaces instead.
+     */
+    private List<NetworkInterface> joinGroup(DatagramChannel recvChannel, List<Responder> responders)
+            throws IOException {
+        InetAddress group = InetAddress.getByName(MULTI_ADDR);
+        List<NetworkInterface> joined = new ArrayList<NetworkInterface>();
+        boolean unboundAddress = false;
+        for (Responder responder : responders) {
+            NetworkInterface ni = NetworkInterface.getByInetAddress(responder.address);
+            if (ni == null) {
+                logger.debug("Address {} is not bound to a local interface", responder.address.getHostAddress());
+                unboundAddress = true;
+            } else if (!joined.contains(ni)) {
+                recvChannel.join(group, ni);
+                joined.add(ni);
+            }
+        }
+        if (unboundAddress) {
+            for (NetworkInterface ni : Collections.list(NetworkInterface.getNetworkInterfaces())) {
+                if (!ni.isUp() || ni.isLoopback() || !ni.supportsMulticast() || joined.contains(ni)) {
+                    continue;
+                }
+                try {
+                    recvChannel.join(group, ni);
+                    joined.add(ni);
+                } catch (IOException e) {
+                    logger.debug("Could not join the UPNP multicast group on {}: {}", ni.getName(), e.getMessage());
+                }
+            }
+        }
+        if (joined.isEmpty()) {
+            throw new IOException("No multicast capable interface for UPNP discovery found");
+        }
+        return joined;
+    }
+
+    private void respond(DatagramChannel sendChannel, Responder responder, InetSocketAddress target) {
+        if (logger.isTraceEnabled()) {
+            logger.trace("Sending to {} : {}", target,
+                    new String(responder.response.array(), StandardCharsets.UTF_8));
+        }
+        try {
+            if (sendChannel.send(responder.response.duplicate(), target) > 0) {
+                answered.incrementAndGet();
+            } else {
+                // the send buffer is full, the device will search again
+                failed.incrementAndGet();
+            }
+        } catch (IOException e) {
+            failed.incrementAndGet();
+            logger.debug("Could not send UPNP response to {}: {}", target, e.getMessage());
+        }
+    }
+
+    private boolean isSearch(ByteBuffer buf) {
+        if (buf.remaining() < M_SEARCH.length) {
+            return false;
+        }
+        for (int i = 0; i < M_SEARCH.length; i++) {
+            if (buf.get(buf.position() + i) != M_SEARCH[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Responder getResponder(List<Responder> responders, InetAddress source) {
+        for (Responder responder : responders) {
+            if (responder.isInSubnet(source)) {
+                return responder;
+            }
+        }
+        return responders.get(0);
+    }
+
+    /**
+     * Creates the responders of the configured addresses or of all non loopback IPv4 addresses.
+     */
+    private List<Responder> createResponders() throws IOException {
+        List<Responder> responders = new ArrayList<Responder>();
+        if (discoveryIp != null && discoveryIp.trim().length() > 0) {
+            for (String ip : discoveryIp.split(",")) {
+                if (ip.trim().length() > 0) {
+                    InetAddress addr = InetAddress.getByName(ip.trim());
+                    responders.add(new Responder(addr, getPrefixLength(addr), createResponse(addr)));
+                }
+            }
+        } else {
+            for (NetworkInterface ni : Collections.list(NetworkInterface.getNetworkInterfaces())) {
+                if (!ni.isUp() || ni.isLoopback() || !ni.supportsMulticast()) {
+                    continue;
+                }
+                for (InterfaceAddress ia : ni.getInterfaceAddresses()) {
+                    InetAddress addr = ia.getAddress();
+                    if (addr instanceof Inet4Address && !addr.isLoopbackAddress()) {
+                        responders.add(new Responder(addr, ia.getNetworkPrefixLength(), createResponse(addr)));
+                    }
+                }
+            }
+        }
+        return responders;
+    }
+
+    private short getPrefixLength(InetAddress addr) throws IOException {
+        NetworkInterface ni = NetworkInterface.getByInetAddress(addr);
+        if (ni != null) {
+            for (InterfaceAddress ia : ni.getInterfaceAddresses()) {
+                if (addr.equals(ia.getAddress())) {
+                    return ia.getNetworkPrefixLength();
+                }
+            }
+        }
+        return 32;
+    }
+
+    private byte[] createResponse(InetAddress addr) {
+        String msg = String.format(discoString, "http://" + addr.getHostAddress() + ":"
+                + System.getProperty("org.osgi.service.http.port") + discoPath, usn);
+        return msg.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private List<String> getAddresses(List<Responder> responders) {
+        List<String> addresses = new ArrayList<String>();
+        for (Responder responder : responders) {
+            addresses.add(responder.address.getHostAddress());
+        }
+        return addresses;
+    }
+
+    /**
+     * Returns the first advertised address
+     */
     public InetAddress getAddress() {
         return address;
     }
+
+    /**
+     * Returns the number of received SSDP packets
+     */
+    public long getReceivedCount() {
+        return received.get();
+    }
+
+    /**
+     * Returns the number of sent discovery responses
+     */
+    public long getAnsweredCount() {
+        return answered.get();
+    }
+
+    /**
+     * Returns the number of M-SEARCH requests not answered because of the rate limit
+     */
+    public long getThrottledCount() {
+        return throttled.get();
+    }
+
+    /**
+     * Returns the number of discovery responses which could not be sent
+     */
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("received=%d, answered=%d, throttled=%d, failed=%d", received.get(), answered.get(),
+                throttled.get(), failed.get());
+    }
 }
@@ -8,9 +8,11 @@
  */
 package org.openhab.io.imperihome.internal.handler;
 
+import java.io.IOException;
 import java.util.Collection;
 
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 
 import org.openhab.io.imperihome.internal.model.device.AbstractDevice;
 import org.openhab.io.imperihome.internal.model.device.DeviceList;
@@ -18,8 +20,11 @@ import org.openhab.io.imperihome.internal.processor.DeviceRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.gson.Gson;
+
 /**
- * Device list request handler.
+ * Device list request handler. The serialized list is cached until the device registry changes, and is served with an
+ * ETag so unchanged lists are not transferred again.
  *
  * @author Pepijn de Geus - Initial contribution
  */
@@ -28,23 +33,61 @@ public class DevicesListHandler {
     private final Logger logger = LoggerFactory.getLogger(DevicesListHandler.class);
 
     private final DeviceRegistry deviceRegistry;
+    private final Gson gson;
+
+    /**
+     * Distinguishes the ETags of this instance from those of an earlier run with the same registry revision.
+     */
+    private final String eTagPrefix = Long.toHexString(System.currentTimeMillis());
+
+    private CachedDeviceList cachedList;
 
-    public DevicesListHandler(DeviceRegistry deviceRegistry) {
+    private static class CachedDeviceList {
+        final long revision;
+        final String json;
+        final String eTag;
+
+        CachedDeviceList(long revision, String json, String eTag) {
+            this.revision = revision;
+            this.json = json;
+            this.eTag = eTag;
+        }
+    }
+
+    public DevicesListHandler(DeviceRegistry deviceRegistry, Gson gson) {
         this.deviceRegistry = deviceRegistry;
+        this.gson = gson;
     }
 
-    public DeviceList handle(HttpServletRequest req) {
-        DeviceList response = new DeviceList();
+    public void handle(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        CachedDeviceList list = getDeviceList();
 
-        Collection<AbstractDevice> devices = deviceRegistry.getDevices().values();
-        for (AbstractDevice device : devices) {
-            device.updateParams();
+        resp.setHeader("ETag", list.eTag);
+        if (list.eTag.equals(req.getHeader("If-None-Match"))) {
+            resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
         }
+        resp.getWriter().write(list.json);
+    }
+
+    private synchronized CachedDeviceList getDeviceList() {
+        // read before updating, a change during serialization leads to a new list on the next request
+        long revision = deviceRegistry.getRevision();
+        if (cachedList == null || cachedList.revision != revision) {
+            DeviceList response = new DeviceList();
 
-        response.setDevices(devices);
+            Collection<AbstractDevice> devices = deviceRegistry.getDevices().values();
+            for (AbstractDevice device : devices) {
+                device.updateParams();
+            }
 
-        logger.debug("Device list response: {}", response);
-        return response;
+            response.setDevices(devices);
+
+            logger.debug("Device list response: {}", response);
+            cachedList = new CachedDeviceList(revision, gson.toJson(response),
+                    "\"" + eTagPrefix + "-" + revision + "\"");
+        }
+        return cachedList;
     }
 
 }
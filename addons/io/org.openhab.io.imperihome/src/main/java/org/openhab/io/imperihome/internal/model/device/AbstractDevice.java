@@ -49,6 +49,30 @@ public abstract class AbstractDevice implements StateChangeListener {
 
     private transient DeviceRegistry deviceRegistry;
     private transient ActionRegistry actionRegistry;
+    private transient boolean derivedStateChanged;
+
+    /**
+     * Forwards the Item state events to this device and notifies the registry, if the update has changed the params or
+     * the state the params are derived from in {@link #updateParams()}.
+     */
+    private final transient StateChangeListener stateListener = new StateChangeListener() {
+        @Override
+        public void stateChanged(Item item, State oldState, State newState) {
+            AbstractDevice.this.stateChanged(item, oldState, newState);
+        }
+
+        @Override
+        public void stateUpdated(Item item, State newState) {
+            // params are replaced, not modified, so a shallow copy is enough to detect changes
+            Map<ParamType, DeviceParam> previousParams = new HashMap<>(params);
+            derivedStateChanged = false;
+            AbstractDevice.this.stateUpdated(item, newState);
+            DeviceRegistry registry = deviceRegistry;
+            if (registry != null && (derivedStateChanged || !params.equals(previousParams))) {
+                registry.deviceChanged(AbstractDevice.this);
+            }
+        }
+    };
 
     public AbstractDevice(DeviceType type, Item item) {
         this.type = type;
@@ -57,13 +81,13 @@ public abstract class AbstractDevice implements StateChangeListener {
         links = new HashMap<>();
 
         if (item instanceof GenericItem) {
-            ((GenericItem) item).addStateChangeListener(this);
+            ((GenericItem) item).addStateChangeListener(stateListener);
         }
     }
 
     public void destroy() {
         if (item instanceof GenericItem) {
-            ((GenericItem) item).removeStateChangeListener(this);
+            ((GenericItem) item).removeStateChangeListener(stateListener);
         }
 
         deviceRegistry = null;
@@ -171,12 +195,21 @@ public abstract class AbstractDevice implements StateChangeListener {
     /**
      * Can be implemented by Devices that require their state to be updated manually, instead of relying (only) on Item
      * state change events.
-     * This method is called just before serializing the device to JSON.
+     * This method is called just before serializing the device to JSON, whenever the device list has changed since the
+     * last serialization.
      */
     public void updateParams() {
         logger.trace("updateParams on {}", this);
     }
 
+    /**
+     * Must be called by Devices from {@link #stateUpdated(Item, State)}, if the update has changed state which is only
+     * turned into params by {@link #updateParams()}.
+     */
+    protected void setDerivedStateChanged() {
+        derivedStateChanged = true;
+    }
+
     /**
      * Performs an action on this device.
      * 
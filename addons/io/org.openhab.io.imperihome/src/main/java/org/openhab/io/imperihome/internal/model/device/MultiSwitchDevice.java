@@ -60,7 +60,12 @@ public class MultiSwitchDevice extends AbstractDevice {
 
         State state = item.getStateAs(DecimalType.class);
         if (state instanceof DecimalType) {
-            itemValue = String.valueOf(((DecimalType) state).intValue());
+            String value = String.valueOf(((DecimalType) state).intValue());
+            if (!value.equals(itemValue)) {
+                itemValue = value;
+                // MULTISWITCH_VALUE is only set by updateParams
+                setDerivedStateChanged();
+            }
         }
     }
 
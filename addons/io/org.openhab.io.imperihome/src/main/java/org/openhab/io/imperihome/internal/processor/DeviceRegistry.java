@@ -13,21 +13,24 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map;
-import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.openhab.io.imperihome.internal.model.Room;
 import org.openhab.io.imperihome.internal.model.device.AbstractDevice;
 
 /**
- * The device registry stores created devices by ID.
+ * The device registry stores created devices by ID. The rooms are maintained along with the devices, and a revision
+ * is incremented on every change of the devices or their state, so responses built from the devices can be cached.
  *
  * @author Pepijn de Geus - Initial contribution
  */
 public class DeviceRegistry implements Iterable<AbstractDevice> {
 
     private final Map<String, AbstractDevice> devices;
-    private Set<Room> rooms;
+    private final Map<String, Room> rooms = new HashMap<>();
+    private final Map<String, Integer> roomDeviceCounts = new HashMap<>();
+    private final AtomicLong revision = new AtomicLong();
 
     public DeviceRegistry() {
         devices = new ConcurrentHashMap<>();
@@ -41,8 +44,8 @@ public class DeviceRegistry implements Iterable<AbstractDevice> {
         return new HashMap<>(devices);
     }
 
-    public Collection<Room> getRooms() {
-        return new HashSet<>(rooms);
+    public synchronized Collection<Room> getRooms() {
+        return new HashSet<>(rooms.values());
     }
 
     public boolean hasDevices() {
@@ -53,39 +56,77 @@ public class DeviceRegistry implements Iterable<AbstractDevice> {
         return devices.containsKey(deviceId);
     }
 
-    public void add(AbstractDevice device) {
-        devices.put(device.getId(), device);
-        updateRooms();
+    public synchronized void add(AbstractDevice device) {
+        device.setDeviceRegistry(this);
+        AbstractDevice replaced = devices.put(device.getId(), device);
+        if (replaced != null) {
+            removeRoom(replaced);
+        }
+        addRoom(device);
+        revision.incrementAndGet();
     }
 
-    public AbstractDevice remove(String deviceId) {
+    public synchronized AbstractDevice remove(String deviceId) {
         AbstractDevice removed = devices.remove(deviceId);
-        updateRooms();
+        if (removed != null) {
+            removeRoom(removed);
+            revision.incrementAndGet();
+        }
         return removed;
     }
 
+    /**
+     * Called by a device after its parameters have been changed by an Item state update.
+     */
+    public void deviceChanged(AbstractDevice device) {
+        revision.incrementAndGet();
+    }
+
+    /**
+     * @return the revision of the devices, incremented on every change.
+     */
+    public long getRevision() {
+        return revision.get();
+    }
+
     @Override
     public Iterator<AbstractDevice> iterator() {
         return devices.values().iterator();
     }
 
-    public void clear() {
+    public synchronized void clear() {
         devices.clear();
-
-        if (rooms != null) {
-            rooms.clear();
-        }
+        rooms.clear();
+        roomDeviceCounts.clear();
+        revision.incrementAndGet();
     }
 
-    private void updateRooms() {
-        Set<Room> newRooms = new HashSet<>();
-        for (AbstractDevice device : devices.values()) {
+    private void addRoom(AbstractDevice device) {
+        String roomId = device.getRoom();
+        Integer count = roomDeviceCounts.get(roomId);
+        if (count == null) {
             Room room = new Room();
-            room.setId(device.getRoom());
+            room.setId(roomId);
             room.setName(device.getRoomName());
-            newRooms.add(room);
+            rooms.put(roomId, room);
+            roomDeviceCounts.put(roomId, 1);
+        } else {
+            roomDeviceCounts.put(roomId, count + 1);
+        }
+    }
+
+    private void removeRoom(AbstractDevice device) {
+        String roomId = device.getRoom();
+        Integer count = roomDeviceCounts.get(roomId);
+        if (count == null) {
+            return;
+        }
+        if (count <= 1) {
+            rooms.remove(roomId);
+            roomDeviceCounts.remove(roomId);
+        } else {
+            roomDeviceCounts.put(roomId, count - 1);
         }
-        rooms = newRooms;
     }
 
 }
@@ -8,24 +8,27 @@
  */
 package org.openhab.io.openhabcloud.internal;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URLEncoder;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
 import org.eclipse.jetty.client.HttpClient;
 import org.eclipse.jetty.client.api.Request;
 import org.eclipse.jetty.client.api.Request.FailureListener;
 import org.eclipse.jetty.client.api.Response;
-import org.eclipse.jetty.client.api.Response.ContentListener;
+import org.eclipse.jetty.client.api.Response.AsyncContentListener;
 import org.eclipse.jetty.client.api.Response.HeadersListener;
 import org.eclipse.jetty.client.api.Result;
 import org.eclipse.jetty.client.util.BytesContentProvider;
@@ -34,6 +37,7 @@ import org.eclipse.jetty.http.HttpFields;
 import org.eclipse.jetty.http.HttpMethod;
 import org.eclipse.jetty.http.HttpStatus;
 import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.Callback;
 import org.eclipse.jetty.util.URIUtil;
 import org.eclipse.smarthome.core.common.ThreadPoolManager;
 import org.json.JSONException;
@@ -47,6 +51,7 @@ import io.socket.client.Manager;
 import io.socket.client.Socket;
 import io.socket.emitter.Emitter;
 import io.socket.engineio.client.Transport;
+import io.socket.thread.EventThread;
 
 /**
  * This class provides communication between openHAB and the openHAB Cloud service.
@@ -77,6 +82,31 @@ public class CloudClient {
      */
     private static final int HTTP_CLIENT_TIMEOUT = 30000;
 
+    private static final String THREADPOOL_OPENHABCLOUD = "openhabcloud";
+
+    /*
+     * These constants limit the number of concurrently running local requests, in total and per remote client,
+     * and the number of requests waiting for a free slot
+     */
+    private static final int PROXY_MAX_RUNNING_REQUESTS = 100;
+    private static final int PROXY_MAX_RUNNING_REQUESTS_PER_CLIENT = 20;
+    private static final int PROXY_MAX_QUEUED_REQUESTS = 500;
+
+    /*
+     * Response content is aggregated into chunks of up to this size before it is sent to the openHAB Cloud
+     */
+    private static final int CONTENT_FLUSH_SIZE = 64 * 1024;
+
+    /*
+     * Aggregated response content smaller than CONTENT_FLUSH_SIZE is sent after this time in milliseconds
+     */
+    private static final int CONTENT_FLUSH_DELAY = 20;
+
+    /*
+     * Item updates are collected for this time in milliseconds, only the last state of an item is sent
+     */
+    private static final int ITEM_UPDATE_INTERVAL = 100;
+
     /*
      * This variable holds base URL for the openHAB Cloud connections
      */
@@ -103,9 +133,10 @@ public class CloudClient {
     private HttpClient jettyClient;
 
     /*
-     * This hashmap holds HTTP requests to local openHAB which are currently running
+     * This multiplexer holds HTTP requests to local openHAB which are currently running or waiting
      */
-    private HashMap<Integer, Request> runningRequests;
+    private final CloudRequestMultiplexer runningRequests = new CloudRequestMultiplexer(PROXY_MAX_RUNNING_REQUESTS,
+            PROXY_MAX_RUNNING_REQUESTS_PER_CLIENT, PROXY_MAX_QUEUED_REQUESTS);
 
     /*
      * This variable indicates if connection to the openHAB Cloud is currently in an established state
@@ -131,6 +162,24 @@ public class CloudClient {
     private boolean remoteAccessEnabled;
     private Set<String> exposedItems;
 
+    /*
+     * This map holds the item updates which have not been sent yet, by item name
+     */
+    private final Map<String, String> pendingItemUpdates = new LinkedHashMap<String, String>();
+    private boolean itemUpdatesScheduled = false;
+
+    /*
+     * This list holds the open Socket.IO transports, two while the transport is upgraded. It is only accessed on the
+     * Socket.IO event thread.
+     */
+    private final List<Transport> transports = new ArrayList<Transport>();
+
+    /*
+     * This list holds the Jetty callbacks of response content which has been emitted but not written to the
+     * transport yet, it is only accessed on the Socket.IO event thread.
+     */
+    private final List<Callback> unwrittenContentCallbacks = new ArrayList<Callback>();
+
     /**
      * Constructor of CloudClient
      *
@@ -148,7 +197,6 @@ public class CloudClient {
         this.localBaseUrl = localBaseUrl;
         this.remoteAccessEnabled = remoteAccessEnabled;
         this.exposedItems = exposedItems;
-        runningRequests = new HashMap<Integer, Request>();
         jettyClient = new HttpClient();
         jettyClient.setMaxConnectionsPerDestination(HTTP_CLIENT_MAX_CONNECTIONS_PER_DEST);
         jettyClient.setConnectTimeout(HTTP_CLIENT_TIMEOUT);
@@ -168,7 +216,28 @@ public class CloudClient {
             @Override
             public void call(Object... args) {
                 logger.trace("Manager.EVENT_TRANSPORT");
-                Transport transport = (Transport) args[0];
+                final Transport transport = (Transport) args[0];
+                transports.add(transport);
+                transport.on(Transport.EVENT_DRAIN, new Emitter.Listener() {
+                    @Override
+                    public void call(Object... args) {
+                        // the engine writes the packets emitted meanwhile in its own drain listener, the content is
+                        // written completely if the transport is still writable afterwards
+                        EventThread.nextTick(new Runnable() {
+                            @Override
+                            public void run() {
+                                completeWrittenContent();
+                            }
+                        });
+                    }
+                });
+                transport.on(Transport.EVENT_CLOSE, new Emitter.Listener() {
+                    @Override
+                    public void call(Object... args) {
+                        transports.remove(transport);
+                        completeWrittenContent();
+                    }
+                });
                 transport.on(Transport.EVENT_REQUEST_HEADERS, new Emitter.Listener() {
                     @Override
                     public void call(Object... args) {
@@ -196,6 +265,7 @@ public class CloudClient {
             public void call(Object... args) {
                 logger.debug("Socket.IO disconnected");
                 isConnected = false;
+                failUnwrittenContent();
                 onDisconnect();
             }
         }).on(Socket.EVENT_ERROR, new Emitter.Listener() {
@@ -240,6 +310,55 @@ public class CloudClient {
         }
     }
 
+    /**
+     * Called on the Socket.IO event thread after response content has been emitted. The Jetty callback is completed
+     * once the content has been written to the transport.
+     */
+    private void contentEmitted(Callback callback) {
+        if (!isConnected) {
+            callback.failed(new IOException("Not connected to the openHAB Cloud"));
+            return;
+        }
+        unwrittenContentCallbacks.add(callback);
+        completeWrittenContent();
+    }
+
+    /**
+     * Completes the Jetty callbacks of the emitted content, if the transports have written all packets. Jetty reads
+     * the next content on the openHAB Cloud thread pool, so local requests do not block the Socket.IO event thread.
+     */
+    private void completeWrittenContent() {
+        if (unwrittenContentCallbacks.isEmpty() || transports.isEmpty()) {
+            return;
+        }
+        for (Transport transport : transports) {
+            if (!transport.writable) {
+                return;
+            }
+        }
+        final List<Callback> callbacks = new ArrayList<Callback>(unwrittenContentCallbacks);
+        unwrittenContentCallbacks.clear();
+        ThreadPoolManager.getPool(THREADPOOL_OPENHABCLOUD).execute(new Runnable() {
+            @Override
+            public void run() {
+                for (Callback callback : callbacks) {
+                    callback.succeeded();
+                }
+            }
+        });
+    }
+
+    /**
+     * Fails the Jetty callbacks of the emitted content, which will not be written anymore.
+     */
+    private void failUnwrittenContent() {
+        IOException failure = new IOException("Disconnected from the openHAB Cloud");
+        for (Callback callback : unwrittenContentCallbacks) {
+            callback.failed(failure);
+        }
+        unwrittenContentCallbacks.clear();
+    }
+
     /**
      * Callback method for socket.io client which is called when disconnect occurs
      */
@@ -257,9 +376,8 @@ public class CloudClient {
             }
         }
         // And clean up the list of running requests
-        if (runningRequests != null) {
-            runningRequests.clear();
-        }
+        logger.debug("Proxied requests: {}", runningRequests);
+        runningRequests.clear();
     }
 
     /**
@@ -345,10 +463,12 @@ public class CloudClient {
                 return;
             }
             ResponseListener listener = new ResponseListener(requestId);
-            request.onResponseHeaders(listener).onResponseContent(listener).onRequestFailure(listener).send(listener);
-            // If successfully submitted request to http client, add it to the list of currently
-            // running requests to be able to cancel it if needed
-            runningRequests.put(requestId, request);
+            request.onResponseHeaders(listener).onResponseContentAsync(listener).onRequestFailure(listener);
+            // Add the request to the list of currently running requests to be able to cancel it if needed,
+            // it is sent to the http client as soon as the concurrency limits allow it
+            if (!runningRequests.submit(requestId, getClientId(requestHeadersJson), request, listener)) {
+                sendResponseError(requestId, "openHAB is busy, too many requests");
+            }
         } catch (JSONException e) {
             logger.error(e.getMessage());
         } catch (IOException e) {
@@ -358,6 +478,29 @@ public class CloudClient {
         }
     }
 
+    /**
+     * Identifies the remote client of a request by the address the openHAB Cloud has forwarded the request for.
+     */
+    private String getClientId(JSONObject requestHeadersJson) {
+        String forwardedFor = requestHeadersJson.optString("x-forwarded-for", null);
+        if (forwardedFor != null) {
+            int separator = forwardedFor.indexOf(',');
+            return (separator < 0 ? forwardedFor : forwardedFor.substring(0, separator)).trim();
+        }
+        return requestHeadersJson.optString("x-real-ip", "");
+    }
+
+    private void sendResponseError(int requestId, String statusText) {
+        JSONObject responseJson = new JSONObject();
+        try {
+            responseJson.put("id", requestId);
+            responseJson.put("responseStatusText", statusText);
+            socket.emit("responseError", responseJson);
+        } catch (JSONException e) {
+            logger.error(e.getMessage());
+        }
+    }
+
     private void setRequestHeaders(Request request, JSONObject requestHeadersJson) {
         @SuppressWarnings("unchecked")
         Iterator<String> headersIterator = requestHeadersJson.keys();
@@ -381,12 +524,8 @@ public class CloudClient {
         try {
             int requestId = data.getInt("id");
             logger.debug("Received cancel for request {}", requestId);
-            // Find and abort running request
-            if (runningRequests.containsKey(requestId)) {
-                Request request = runningRequests.get(requestId);
-                request.abort(new InterruptedException());
-                runningRequests.remove(requestId);
-            }
+            // Find and abort running request or drop it if it is still waiting
+            runningRequests.cancel(requestId);
         } catch (JSONException e) {
             logger.error(e.getMessage());
         }
@@ -483,7 +622,8 @@ public class CloudClient {
     }
 
     /**
-     * Send item update to openHAB Cloud
+     * Send item update to openHAB Cloud. Updates are collected for ITEM_UPDATE_INTERVAL and sent together, only the
+     * last state of each item is sent.
      *
      * @param itemName the name of the item
      * @param itemState updated item state
@@ -491,17 +631,44 @@ public class CloudClient {
      */
     public void sendItemUpdate(String itemName, String itemState) {
         if (isConnected()) {
-            logger.debug("Sending update '{}' for item '{}'", itemState, itemName);
+            synchronized (pendingItemUpdates) {
+                pendingItemUpdates.put(itemName, itemState);
+                if (!itemUpdatesScheduled) {
+                    itemUpdatesScheduled = true;
+                    ThreadPoolManager.getScheduledPool(THREADPOOL_OPENHABCLOUD).schedule(new Runnable() {
+                        @Override
+                        public void run() {
+                            flushItemUpdates();
+                        }
+                    }, ITEM_UPDATE_INTERVAL, TimeUnit.MILLISECONDS);
+                }
+            }
+        } else {
+            logger.debug("No connection, Item update is not sent");
+        }
+    }
+
+    private void flushItemUpdates() {
+        Map<String, String> itemUpdates;
+        synchronized (pendingItemUpdates) {
+            itemUpdates = new LinkedHashMap<String, String>(pendingItemUpdates);
+            pendingItemUpdates.clear();
+            itemUpdatesScheduled = false;
+        }
+        if (!isConnected()) {
+            logger.debug("No connection, {} Item updates are not sent", itemUpdates.size());
+            return;
+        }
+        for (Map.Entry<String, String> itemUpdate : itemUpdates.entrySet()) {
+            logger.debug("Sending update '{}' for item '{}'", itemUpdate.getValue(), itemUpdate.getKey());
             JSONObject itemUpdateMessage = new JSONObject();
             try {
-                itemUpdateMessage.put("itemName", itemName);
-                itemUpdateMessage.put("itemStatus", itemState);
+                itemUpdateMessage.put("itemName", itemUpdate.getKey());
+                itemUpdateMessage.put("itemStatus", itemUpdate.getValue());
                 socket.emit("itemupdate", itemUpdateMessage);
             } catch (JSONException e) {
                 logger.error(e.getMessage());
             }
-        } else {
-            logger.debug("No connection, Item update is not sent");
         }
     }
 
@@ -517,6 +684,7 @@ public class CloudClient {
      */
     public void shutdown() {
         logger.info("Shutting down openHAB Cloud service connection");
+        logger.debug("Proxied requests: {}", runningRequests);
         try {
             jettyClient.stop();
         } catch (Exception e) {
@@ -537,15 +705,26 @@ public class CloudClient {
         this.listener = listener;
     }
 
+    /**
+     * Returns the tracker of the proxied requests, which provides the queue depth and latency metrics
+     */
+    public CloudRequestMultiplexer getRunningRequests() {
+        return runningRequests;
+    }
+
     /*
-     * An internal class which forwards response headers and data back to the openHAB Cloud
+     * An internal class which forwards response headers and data back to the openHAB Cloud.
+     * The response content is aggregated up to CONTENT_FLUSH_SIZE or CONTENT_FLUSH_DELAY. Jetty is asked for more
+     * content after a full chunk only when the Socket.IO transport has written it, so a slow uplink slows down the
+     * local request instead of filling up the Socket.IO write queue.
      */
     private class ResponseListener
-            implements Response.CompleteListener, HeadersListener, ContentListener, FailureListener {
+            implements Response.CompleteListener, HeadersListener, AsyncContentListener, FailureListener {
 
-        private static final String THREADPOOL_OPENHABCLOUD = "openhabcloud";
         private int mRequestId;
         private boolean mHeadersSent = false;
+        private final ByteArrayOutputStream mPendingContent = new ByteArrayOutputStream();
+        private ScheduledFuture<?> mFlushJob;
 
         public ResponseListener(int requestId) {
             mRequestId = requestId;
@@ -565,8 +744,10 @@ public class CloudClient {
 
         @Override
         public void onComplete(Result result) {
-            // Remove this request from list of running requests
-            runningRequests.remove(mRequestId);
+            // Remove this request from list of running requests, starts a waiting request
+            runningRequests.completed(mRequestId);
+            // Send the remaining content before the response is finished
+            flushContent();
             if (result.isFailed() && result.getResponse().getStatus() != HttpStatus.OK_200) {
                 logger.warn("Jetty request {} failed: {}", mRequestId, result.getFailure().getMessage());
                 logger.warn(result.getRequestFailure().getMessage());
@@ -597,28 +778,67 @@ public class CloudClient {
         @Override
         public synchronized void onFailure(Request request, Throwable failure) {
             logger.error(failure.getMessage());
-            JSONObject responseJson = new JSONObject();
-            try {
-                responseJson.put("id", mRequestId);
-                responseJson.put("responseStatusText", "openHAB connection error: " + failure.getMessage());
-                socket.emit("responseError", responseJson);
-            } catch (JSONException e) {
-                logger.error(e.getMessage());
-            }
+            // Content not sent yet is dropped, the response is an error
+            mPendingContent.reset();
+            sendResponseError(mRequestId, "openHAB connection error: " + failure.getMessage());
         }
 
         @Override
-        public void onContent(Response response, ByteBuffer content) {
+        public void onContent(Response response, ByteBuffer content, final Callback callback) {
             logger.debug("Jetty received response content of size " + String.valueOf(content.remaining()));
+            boolean flushed;
+            synchronized (this) {
+                // the buffer is reused by Jetty once the callback has been completed
+                if (content.hasArray()) {
+                    mPendingContent.write(content.array(), content.arrayOffset() + content.position(),
+                            content.remaining());
+                } else {
+                    byte[] bytes = BufferUtil.toArray(content);
+                    mPendingContent.write(bytes, 0, bytes.length);
+                }
+                flushed = mPendingContent.size() >= CONTENT_FLUSH_SIZE;
+                if (flushed) {
+                    flushContent();
+                } else if (mFlushJob == null) {
+                    mFlushJob = ThreadPoolManager.getScheduledPool(THREADPOOL_OPENHABCLOUD).schedule(new Runnable() {
+                        @Override
+                        public void run() {
+                            flushContent();
+                        }
+                    }, CONTENT_FLUSH_DELAY, TimeUnit.MILLISECONDS);
+                }
+            }
+            if (flushed) {
+                // emit only queues the chunk on the Socket.IO event thread, this runs after it has been queued
+                EventThread.exec(new Runnable() {
+                    @Override
+                    public void run() {
+                        contentEmitted(callback);
+                    }
+                });
+            } else {
+                callback.succeeded();
+            }
+        }
+
+        private synchronized void flushContent() {
+            if (mFlushJob != null) {
+                mFlushJob.cancel(false);
+                mFlushJob = null;
+            }
+            if (mPendingContent.size() == 0) {
+                return;
+            }
             JSONObject responseJson = new JSONObject();
             try {
                 responseJson.put("id", mRequestId);
-                responseJson.put("body", BufferUtil.toArray(content));
+                responseJson.put("body", mPendingContent.toByteArray());
                 socket.emit("responseContentBinary", responseJson);
-                logger.debug("Sent content to request {}", mRequestId);
+                logger.debug("Sent {} bytes of content to request {}", mPendingContent.size(), mRequestId);
             } catch (JSONException e) {
                 logger.error(e.getMessage());
             }
+            mPendingContent.reset();
         }
 
         @Override
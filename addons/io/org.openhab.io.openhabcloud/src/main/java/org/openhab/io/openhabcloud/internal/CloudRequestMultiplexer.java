@@ -0,0 +1,262 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.io.openhabcloud.internal;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.client.api.Request;
+import org.eclipse.jetty.client.api.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class keeps track of the requests proxied from the openHAB Cloud to the local openHAB.
+ * It limits the number of concurrently running local requests, in total and per remote client, and queues
+ * the requests exceeding these limits. Requests cancelled by the openHAB Cloud are removed from the queue
+ * or aborted if they are already running.
+ *
+ * @author agent - Initial contribution
+ *
+ */
+public class CloudRequestMultiplexer {
+    private static Logger logger = LoggerFactory.getLogger(CloudRequestMultiplexer.class);
+
+    private final int maxRunning;
+    private final int maxRunningPerClient;
+    private final int maxQueued;
+
+    /*
+     * All known requests, queued and running, by request id
+     */
+    private final Map<Integer, ProxyRequest> requests = new HashMap<Integer, ProxyRequest>();
+
+    /*
+     * Requests waiting for a free slot, in the order of arrival
+     */
+    private final LinkedList<ProxyRequest> queue = new LinkedList<ProxyRequest>();
+
+    /*
+     * Number of running requests by client
+     */
+    private final Map<String, Integer> runningPerClient = new HashMap<String, Integer>();
+    private int running;
+
+    private long completedCount;
+    private long cancelledCount;
+    private long rejectedCount;
+    private int maxQueueDepth;
+    private long totalWaitNanos;
+    private long totalLatencyNanos;
+    private long maxLatencyNanos;
+
+    private static class ProxyRequest {
+        final int id;
+        final String clientId;
+        final Request request;
+        final Response.CompleteListener listener;
+        final long queuedNanos = System.nanoTime();
+        long startedNanos;
+        boolean running;
+
+        ProxyRequest(int id, String clientId, Request request, Response.CompleteListener listener) {
+            this.id = id;
+            this.clientId = clientId;
+            this.request = request;
+            this.listener = listener;
+        }
+    }
+
+    /**
+     * Constructor of CloudRequestMultiplexer
+     *
+     * @param maxRunning maximum number of running local requests
+     * @param maxRunningPerClient maximum number of running local requests of one remote client
+     * @param maxQueued maximum number of requests waiting to be run
+     */
+    public CloudRequestMultiplexer(int maxRunning, int maxRunningPerClient, int maxQueued) {
+        this.maxRunning = maxRunning;
+        this.maxRunningPerClient = maxRunningPerClient;
+        this.maxQueued = maxQueued;
+    }
+
+    /**
+     * Sends the request to the local openHAB as soon as the limits allow it.
+     *
+     * @param id the id of the request assigned by the openHAB Cloud
+     * @param clientId identifies the remote client for the per client limit
+     * @param request the prepared local request
+     * @param listener the listener the request is sent with
+     * @return false, if the request has been rejected because the queue is full or the id is in use
+     */
+    public boolean submit(int id, String clientId, Request request, Response.CompleteListener listener) {
+        synchronized (this) {
+            if (requests.containsKey(id)) {
+                logger.warn("Request {} is already running", id);
+                rejectedCount++;
+                return false;
+            }
+            if (queue.size() >= maxQueued) {
+                logger.warn("Rejecting request {}, {} requests are waiting", id, queue.size());
+                rejectedCount++;
+                return false;
+            }
+            ProxyRequest proxyRequest = new ProxyRequest(id, clientId, request, listener);
+            requests.put(id, proxyRequest);
+            queue.add(proxyRequest);
+            maxQueueDepth = Math.max(maxQueueDepth, queue.size());
+        }
+        dispatch();
+        return true;
+    }
+
+    /**
+     * Called when a local request has been completed, successfully or not, frees its slot.
+     */
+    public void completed(int id) {
+        synchronized (this) {
+            ProxyRequest proxyRequest = requests.remove(id);
+            if (proxyRequest == null || !proxyRequest.running) {
+                // already removed by clear()
+                return;
+            }
+            releaseSlot(proxyRequest);
+            long latency = System.nanoTime() - proxyRequest.queuedNanos;
+            completedCount++;
+            totalLatencyNanos += latency;
+            maxLatencyNanos = Math.max(maxLatencyNanos, latency);
+        }
+        dispatch();
+    }
+
+    /**
+     * Cancels a request: a waiting request is dropped, a running request is aborted.
+     *
+     * @return true, if the request was known
+     */
+    public boolean cancel(int id) {
+        ProxyRequest proxyRequest;
+        synchronized (this) {
+            proxyRequest = requests.get(id);
+            if (proxyRequest == null) {
+                return false;
+            }
+            cancelledCount++;
+            if (!proxyRequest.running) {
+                requests.remove(id);
+                queue.remove(proxyRequest);
+                return true;
+            }
+        }
+        // completed() is called by the listener of the aborted request
+        proxyRequest.request.abort(new InterruptedException());
+        return true;
+    }
+
+    /**
+     * Forgets all requests, e.g. on disconnect when the running requests are aborted by stopping the HTTP client.
+     */
+    public synchronized void clear() {
+        cancelledCount += requests.size();
+        requests.clear();
+        queue.clear();
+        runningPerClient.clear();
+        running = 0;
+    }
+
+    /**
+     * Returns the number of requests waiting for a free slot.
+     */
+    public synchronized int getQueueDepth() {
+        return queue.size();
+    }
+
+    /**
+     * Returns the maximum number of requests which have been waiting for a free slot at the same time.
+     */
+    public synchronized int getMaxQueueDepth() {
+        return maxQueueDepth;
+    }
+
+    /**
+     * Returns the number of running local requests.
+     */
+    public synchronized int getRunning() {
+        return running;
+    }
+
+    /**
+     * Returns the average time in milliseconds from receiving a request until its completion.
+     */
+    public synchronized double getAverageLatencyMillis() {
+        return completedCount == 0 ? 0 : toMillis(totalLatencyNanos / completedCount);
+    }
+
+    /**
+     * Returns the average time in milliseconds a request has been waiting for a free slot.
+     */
+    public synchronized double getAverageWaitMillis() {
+        long started = completedCount + running;
+        return started == 0 ? 0 : toMillis(totalWaitNanos / started);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format(
+                "running=%d, queued=%d, maxQueued=%d, completed=%d, cancelled=%d, rejected=%d, avgLatency=%.1fms, maxLatency=%.1fms, avgWait=%.1fms",
+                running, queue.size(), maxQueueDepth, completedCount, cancelledCount, rejectedCount,
+                getAverageLatencyMillis(), toMillis(maxLatencyNanos), getAverageWaitMillis());
+    }
+
+    /**
+     * Starts the waiting requests for which the limits allow it, in the order of arrival.
+     */
+    private void dispatch() {
+        List<ProxyRequest> startable = new ArrayList<ProxyRequest>();
+        synchronized (this) {
+            Iterator<ProxyRequest> it = queue.iterator();
+            while (running < maxRunning && it.hasNext()) {
+                ProxyRequest proxyRequest = it.next();
+                Integer clientRunning = runningPerClient.get(proxyRequest.clientId);
+                if (clientRunning == null || clientRunning < maxRunningPerClient) {
+                    it.remove();
+                    proxyRequest.running = true;
+                    proxyRequest.startedNanos = System.nanoTime();
+                    totalWaitNanos += proxyRequest.startedNanos - proxyRequest.queuedNanos;
+                    running++;
+                    runningPerClient.put(proxyRequest.clientId, clientRunning == null ? 1 : clientRunning + 1);
+                    startable.add(proxyRequest);
+                }
+            }
+        }
+        for (ProxyRequest proxyRequest : startable) {
+            logger.debug("Sending request {} to openHAB", proxyRequest.id);
+            proxyRequest.request.send(proxyRequest.listener);
+        }
+    }
+
+    private void releaseSlot(ProxyRequest proxyRequest) {
+        running--;
+        Integer clientRunning = runningPerClient.get(proxyRequest.clientId);
+        if (clientRunning == null || clientRunning <= 1) {
+            runningPerClient.remove(proxyRequest.clientId);
+        } else {
+            runningPerClient.put(proxyRequest.clientId, clientRunning - 1);
+        }
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
@@ -12,8 +12,10 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.text.DecimalFormat;
-import java.text.NumberFormat;
+import java.text.DecimalFormatSymbols;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -21,7 +23,6 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.TreeMap;
 
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
@@ -45,6 +46,7 @@ import org.eclipse.smarthome.core.persistence.PersistenceService;
 import org.eclipse.smarthome.core.persistence.QueryablePersistenceService;
 import org.eclipse.smarthome.io.rest.RESTResource;
 import org.openhab.ui.cometvisu.internal.Config;
+import org.openhab.ui.cometvisu.internal.persistence.PersistenceQueryExecutor;
 import org.rrd4j.ConsolFun;
 import org.rrd4j.core.FetchData;
 import org.rrd4j.core.FetchRequest;
@@ -68,16 +70,25 @@ public class ChartResource implements RESTResource {
     // pattern RRDTool uses to format doubles in XML files
     static final String PATTERN = "0.0000000000E00";
 
-    static final DecimalFormat df;
+    // DecimalFormat is not thread safe, so every request thread gets its own instance
+    static final ThreadLocal<DecimalFormat> df = new ThreadLocal<DecimalFormat>() {
+        @Override
+        protected DecimalFormat initialValue() {
+            return new DecimalFormat(PATTERN, DecimalFormatSymbols.getInstance(Locale.ENGLISH));
+        }
+    };
 
     protected final static String RRD_FOLDER = org.eclipse.smarthome.config.core.ConfigConstants.getUserDataFolder()
             + File.separator + "persistence" + File.separator + "rrd4j";
 
-    static {
-        df = (DecimalFormat) NumberFormat.getNumberInstance(Locale.ENGLISH);
-        df.applyPattern(PATTERN);
-        // df.setPositivePrefix("+");
-    }
+    // file systems may store modification times in whole seconds, younger files can still change unnoticed
+    private static final long MODIFICATION_TIME_GRANULARITY = 2000L;
+
+    // responses of recent requests, e.g. multiple clients showing the same diagram
+    private static final int MAX_CACHED_SERIES = 32;
+    private static final int MAX_CACHED_SERIES_SIZE = 512 * 1024;
+
+    private final RrdSeriesCache seriesCache = new RrdSeriesCache(MAX_CACHED_SERIES, MAX_CACHED_SERIES_SIZE);
 
     static protected Map<String, QueryablePersistenceService> persistenceServices = new HashMap<String, QueryablePersistenceService>();
 
@@ -108,6 +119,10 @@ public class ChartResource implements RESTResource {
         this.itemRegistry = null;
     }
 
+    protected void deactivate() {
+        seriesCache.clear();
+    }
+
     @GET
     @Produces({ MediaType.APPLICATION_JSON })
     public Response getChartSeries(@Context HttpHeaders headers, @QueryParam("rrd") String itemName,
@@ -171,40 +186,77 @@ public class ChartResource implements RESTResource {
         return Response.serverError().build();
     }
 
+    /**
+     * returns the series data of a generic persistence service, an array of [[timestamp,[data1,data2,...]]]
+     *
+     * The members of a group are queried in parallel, their results are merged by timestamp. Every row has one value
+     * per member in the order of the members, "null" if the member has no sample at this time. Members whose query
+     * does not finish within {@link PersistenceQueryExecutor#DEFAULT_DEADLINE} only get "null" values.
+     *
+     * @param persistenceService
+     * @param item
+     * @param timeBegin
+     * @param timeEnd
+     * @param resolution
+     * @return
+     */
     public Object getPersistenceSeries(QueryablePersistenceService persistenceService, Item item, Date timeBegin,
             Date timeEnd, long resolution) {
-        Map<Long, ArrayList<String>> data = new HashMap<Long, ArrayList<String>>();
-
         // Define the data filter
         FilterCriteria filter = new FilterCriteria();
         filter.setBeginDate(timeBegin);
         filter.setEndDate(timeEnd);
-        filter.setItemName(item.getName());
         filter.setOrdering(Ordering.ASCENDING);
 
-        // Get the data from the persistence store
-        Iterable<HistoricItem> result = persistenceService.query(filter);
-        Iterator<HistoricItem> it = result.iterator();
-
-        // Iterate through the data
-        int dataCounter = 0;
-        while (it.hasNext()) {
-            dataCounter++;
-            HistoricItem historicItem = it.next();
-            org.eclipse.smarthome.core.types.State state = historicItem.getState();
-            if (state instanceof DecimalType) {
-                ArrayList<String> vals = new ArrayList<String>();
-                vals.add(formatDouble(((DecimalType) state).doubleValue(), "null", true));
-                data.put(historicItem.getTimestamp().getTime(), vals);
+        final List<String> itemNames = getSeriesItemNames(item);
+        List<List<HistoricItem>> results = PersistenceQueryExecutor.query(itemNames,
+                Collections.singletonList(persistenceService), filter, PersistenceQueryExecutor.DEFAULT_DEADLINE);
+
+        final ArrayList<Object> rrd = new ArrayList<Object>();
+        PersistenceQueryExecutor.merge(results, Ordering.ASCENDING, new PersistenceQueryExecutor.MergeHandler() {
+            private long lastTime = -1;
+            private String[] vals;
+
+            @Override
+            public void handle(int index, HistoricItem historicItem) {
+                org.eclipse.smarthome.core.types.State state = historicItem.getState();
+                if (!(state instanceof DecimalType)) {
+                    return;
+                }
+                long time = historicItem.getTimestamp().getTime();
+                if (vals == null || time != lastTime) {
+                    // one column per member, so a value never ends up in the column of another member
+                    vals = new String[itemNames.size()];
+                    Arrays.fill(vals, "null");
+                    lastTime = time;
+                    rrd.add(new Object[] { time, Arrays.asList(vals) });
+                }
+                vals[index] = formatDouble(((DecimalType) state).doubleValue(), "null", true);
+            }
+        });
+        return rrd;
+    }
+
+    private List<String> getSeriesItemNames(Item item) {
+        List<String> itemNames = new ArrayList<String>();
+        if (item instanceof GroupItem) {
+            GroupItem groupItem = (GroupItem) item;
+            for (Item member : groupItem.getMembers()) {
+                itemNames.add(member.getName());
             }
+        } else {
+            itemNames.add(item.getName());
         }
-        logger.debug("'{}' querying item '{}' from '{}' to '{}' => '{}' results", persistenceService.getId(),
-                filter.getItemName(), filter.getBeginDate(), filter.getEndDate(), dataCounter);
-        return convertToRrd(data);
+        return itemNames;
     }
 
     /**
-     * returns a rrd series data, an array of [[timestamp,data1,data2,...]]
+     * returns a rrd series data, an array of [[timestamp,[data1,data2,...]]]
+     *
+     * The series of all rrd files are fetched before the response is written, so that a missing or broken file can
+     * still fall back to the generic persistence service. The merged series is then streamed from the fetched
+     * arrays. Identical requests are answered from the {@link RrdSeriesCache} until one of the files is modified.
+     * The rrd files are opened for each request, because an open {@link RrdDb} does not notice new samples.
      *
      * @param persistenceService
      * @param item
@@ -216,21 +268,45 @@ public class ChartResource implements RESTResource {
      */
     public Object getRrdSeries(QueryablePersistenceService persistenceService, Item item,
             ConsolFun consilidationFunction, Date timeBegin, Date timeEnd, long resolution) {
-        Map<Long, ArrayList<String>> data = new TreeMap<Long, ArrayList<String>>();
+        List<String> itemNames = getSeriesItemNames(item);
+        long start = Util.getTimestamp(timeBegin);
+        long end = Util.getTimestamp(timeEnd);
+        List<RrdDb> rrdDbs = new ArrayList<RrdDb>(itemNames.size());
         try {
-            List<String> itemNames = new ArrayList<String>();
+            long now = System.currentTimeMillis();
+            boolean cacheable = true;
+            long[] lastModified = new long[itemNames.size()];
+            for (int i = 0; i < itemNames.size(); i++) {
+                lastModified[i] = new File(RRD_FOLDER + File.separator + itemNames.get(i) + ".rrd").lastModified();
+                cacheable &= lastModified[i] != 0 && now - lastModified[i] >= MODIFICATION_TIME_GRANULARITY;
+            }
 
-            if (item instanceof GroupItem) {
-                GroupItem groupItem = (GroupItem) item;
-                for (Item member : groupItem.getMembers()) {
-                    itemNames.add(member.getName());
-                }
-            } else {
-                itemNames.add(item.getName());
+            // requests within the same resolution step return the same rows
+            long step = Math.max(1, resolution);
+            String cacheKey = item.getName() + ":" + consilidationFunction + ":" + (start / step) + ":" + (end / step)
+                    + ":" + resolution;
+            byte[] cached = seriesCache.get(cacheKey, lastModified);
+            if (cached != null) {
+                logger.debug("returning cached series for '{}'", item.getName());
+                return cached;
             }
+
             for (String itemName : itemNames) {
-                addRrdData(data, itemName, consilidationFunction, timeBegin, timeEnd, resolution);
+                rrdDbs.add(new RrdDb(RRD_FOLDER + File.separator + itemName + ".rrd", true));
+            }
+
+            long[][] timestamps = new long[rrdDbs.size()][];
+            double[][][] values = new double[rrdDbs.size()][][];
+            for (int i = 0; i < rrdDbs.size(); i++) {
+                FetchRequest fetchRequest = rrdDbs.get(i).createFetchRequest(consilidationFunction, start, end,
+                        resolution);
+                FetchData fetchData = fetchRequest.fetchData();
+                logger.debug("RRD fetch returned '{}' rows and '{}' columns", fetchData.getRowCount(),
+                        fetchData.getColumnCount());
+                timestamps[i] = fetchData.getTimestamps();
+                values[i] = fetchData.getValues();
             }
+            return new RrdSeriesOutput(timestamps, values, cacheable ? seriesCache : null, cacheKey, lastModified);
 
         } catch (FileNotFoundException e) {
             // rrd file does not exist, fallback to generic persistance service
@@ -239,52 +315,15 @@ public class ChartResource implements RESTResource {
         } catch (Exception e) {
             logger.error(e.getLocalizedMessage() + ": fallback to generic persistance service");
             return getPersistenceSeries(persistenceService, item, timeBegin, timeEnd, resolution);
-        }
-        return convertToRrd(data);
-    }
-
-    private ArrayList<Object> convertToRrd(Map<Long, ArrayList<String>> data) {
-        // sort data by key
-        Map<Long, ArrayList<String>> treeMap = new TreeMap<Long, ArrayList<String>>(data);
-        ArrayList<Object> rrd = new ArrayList<Object>();
-        for (Long time : treeMap.keySet()) {
-            Object[] entry = new Object[2];
-            entry[0] = time;
-            entry[1] = data.get(time);
-            rrd.add(entry);
-        }
-        return rrd;
-    }
-
-    private Map<Long, ArrayList<String>> addRrdData(Map<Long, ArrayList<String>> data, String itemName,
-            ConsolFun consilidationFunction, Date timeBegin, Date timeEnd, long resolution) throws IOException {
-        RrdDb rrdDb = new RrdDb(RRD_FOLDER + File.separator + itemName + ".rrd");
-        FetchRequest fetchRequest = rrdDb.createFetchRequest(consilidationFunction, Util.getTimestamp(timeBegin),
-                Util.getTimestamp(timeEnd), resolution);
-        FetchData fetchData = fetchRequest.fetchData();
-        // logger.info(fetchData.toString());
-        long[] timestamps = fetchData.getTimestamps();
-        double[][] values = fetchData.getValues();
-
-        logger.debug("RRD fetch returned '{}' rows and '{}' columns", fetchData.getRowCount(),
-                fetchData.getColumnCount());
-
-        for (int row = 0; row < fetchData.getRowCount(); row++) {
-            // change to microseconds
-            long time = timestamps[row] * 1000;
-
-            if (!data.containsKey(time)) {
-                data.put(time, new ArrayList<String>());
-            }
-            ArrayList<String> vals = data.get(time);
-            int indexOffset = vals.size();
-            for (int dsIndex = 0; dsIndex < fetchData.getColumnCount(); dsIndex++) {
-                vals.add(dsIndex + indexOffset, formatDouble(values[dsIndex][row], "null", true));
+        } finally {
+            for (RrdDb rrdDb : rrdDbs) {
+                try {
+                    rrdDb.close();
+                } catch (IOException e) {
+                    logger.debug("Error closing rrd file '{}': {}", rrdDb.getPath(), e.getMessage());
+                }
             }
         }
-        rrdDb.close();
-
-        return data;
     }
 
     static String formatDouble(double x, String nanString, boolean forceExponents) {
@@ -292,7 +331,7 @@ public class ChartResource implements RESTResource {
             return nanString;
         }
         if (forceExponents) {
-            return df.format(x);
+            return df.get().format(x);
         }
         return "" + x;
     }
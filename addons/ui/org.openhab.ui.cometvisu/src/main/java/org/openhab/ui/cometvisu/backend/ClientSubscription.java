@@ -0,0 +1,178 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.ui.cometvisu.backend;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+import org.eclipse.smarthome.core.types.State;
+import org.glassfish.jersey.media.sse.EventOutput;
+import org.glassfish.jersey.media.sse.OutboundEvent;
+import org.openhab.ui.cometvisu.internal.StateBeanMessageBodyWriter;
+import org.openhab.ui.cometvisu.internal.util.SseUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The item subscription of one CometVisu client (one SSE connection).
+ *
+ * State updates are queued per client as serialized entries and written by a shared executor. While a write to a
+ * slow client is in progress, further updates of the same CometVisu address replace the queued ones, so a client
+ * that cannot keep up receives the latest states in one event instead of a growing backlog. Idle clients get
+ * keep-alive comments, so a lost connection is noticed even if none of the subscribed items changes.
+ *
+ * @author agent
+ * @since 2.0.0
+ */
+class ClientSubscription {
+    private static final Logger logger = LoggerFactory.getLogger(ClientSubscription.class);
+
+    /**
+     * Gets notified once the connection of a client has been closed.
+     */
+    interface CloseListener {
+        void subscriptionClosed(ClientSubscription subscription);
+    }
+
+    private final EventOutput eventOutput;
+
+    /**
+     * openHAB item name -> (CometVisu address -> requested state type or null)
+     */
+    private final Map<String, Map<String, Class<? extends State>>> items = new HashMap<>();
+
+    /**
+     * CometVisu address -> serialized state entry, waiting to be written
+     */
+    private final Map<String, String> pending = new LinkedHashMap<>();
+
+    private final Executor executor;
+
+    private final CloseListener closeListener;
+
+    private boolean writeScheduled = false;
+
+    private boolean keepAlivePending = false;
+
+    private volatile boolean closed = false;
+
+    private final Runnable writer = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    ClientSubscription(EventOutput eventOutput, Executor executor, CloseListener closeListener) {
+        this.eventOutput = eventOutput;
+        this.executor = executor;
+        this.closeListener = closeListener;
+    }
+
+    void addItem(String itemName, String cvAddress, Class<? extends State> stateClass) {
+        Map<String, Class<? extends State>> addresses = items.get(itemName);
+        if (addresses == null) {
+            addresses = new HashMap<>();
+            items.put(itemName, addresses);
+        }
+        addresses.put(cvAddress, stateClass);
+    }
+
+    Set<String> getItemNames() {
+        return items.keySet();
+    }
+
+    /**
+     * @return the CometVisu addresses (with their requested state type) this client uses for the given item
+     */
+    Map<String, Class<? extends State>> getAddresses(String itemName) {
+        return items.get(itemName);
+    }
+
+    boolean isClosed() {
+        return closed || eventOutput.isClosed();
+    }
+
+    /**
+     * Queues a serialized state entry for this client. A pending entry for the same address is replaced.
+     */
+    void offer(String cvAddress, String serializedEntry) {
+        if (isClosed()) {
+            return;
+        }
+        synchronized (pending) {
+            pending.put(cvAddress, serializedEntry);
+            if (writeScheduled) {
+                return;
+            }
+            writeScheduled = true;
+        }
+        executor.execute(writer);
+    }
+
+    /**
+     * Sends a keep-alive comment, unless a write is already in progress. A failed write closes the subscription.
+     */
+    void keepAlive() {
+        synchronized (pending) {
+            if (writeScheduled) {
+                return;
+            }
+            keepAlivePending = true;
+            writeScheduled = true;
+        }
+        executor.execute(writer);
+    }
+
+    private void flush() {
+        while (true) {
+            OutboundEvent event;
+            synchronized (pending) {
+                if (isClosed() || (pending.isEmpty() && !keepAlivePending)) {
+                    pending.clear();
+                    keepAlivePending = false;
+                    writeScheduled = false;
+                    return;
+                }
+                if (pending.isEmpty()) {
+                    event = SseUtil.buildKeepAliveEvent();
+                } else {
+                    event = SseUtil.buildSerializedEvent(StateBeanMessageBodyWriter.serializeEntries(pending.values()));
+                    pending.clear();
+                }
+                keepAlivePending = false;
+            }
+
+            try {
+                eventOutput.write(event);
+            } catch (IOException e) {
+                logger.debug("client connection closed: {}", e.getMessage());
+                close();
+            }
+        }
+    }
+
+    void close() {
+        synchronized (pending) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        try {
+            eventOutput.close();
+        } catch (IOException e) {
+        }
+        closeListener.subscriptionClosed(this);
+    }
+}
@@ -9,14 +9,19 @@
 package org.openhab.ui.cometvisu.backend;
 
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -27,6 +32,7 @@ import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.UriInfo;
 
+import org.eclipse.smarthome.core.common.ThreadPoolManager;
 import org.eclipse.smarthome.core.items.GenericItem;
 import org.eclipse.smarthome.core.items.Item;
 import org.eclipse.smarthome.core.items.ItemFactory;
@@ -35,12 +41,10 @@ import org.eclipse.smarthome.core.items.ItemRegistry;
 import org.eclipse.smarthome.core.types.State;
 import org.eclipse.smarthome.io.rest.RESTResource;
 import org.glassfish.jersey.media.sse.EventOutput;
-import org.glassfish.jersey.media.sse.SseBroadcaster;
 import org.glassfish.jersey.media.sse.SseFeature;
-import org.openhab.ui.cometvisu.backend.beans.StateBean;
 import org.openhab.ui.cometvisu.internal.Config;
+import org.openhab.ui.cometvisu.internal.StateBeanMessageBodyWriter;
 import org.openhab.ui.cometvisu.internal.listeners.StateEventListener;
-import org.openhab.ui.cometvisu.internal.util.SseUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -55,7 +59,12 @@ import org.slf4j.LoggerFactory;
 public class ReadResource implements EventBroadcaster, RESTResource {
     private static final Logger logger = LoggerFactory.getLogger(ReadResource.class);
 
-    private SseBroadcaster broadcaster = new SseBroadcaster();
+    private static final int WRITER_THREADS = 4;
+
+    private static final String POOL_NAME = "cometvisu";
+
+    // idle connections are checked with a keep-alive comment, so closed clients are dropped
+    private static final long KEEP_ALIVE_INTERVAL = 30;
 
     private final ExecutorService executorService;
 
@@ -63,8 +72,24 @@ public class ReadResource implements EventBroadcaster, RESTResource {
 
     private StateEventListener stateEventListener;
 
-    private List<String> itemNames = new ArrayList<String>();
-    private Map<Item, Map<String, Class<? extends State>>> items = new HashMap<Item, Map<String, Class<? extends State>>>();
+    /**
+     * openHAB item name -> subscriptions of all clients that requested this item
+     */
+    private final ConcurrentMap<String, Set<ClientSubscription>> subscribers = new ConcurrentHashMap<>();
+
+    /**
+     * subscriptions of all connected clients
+     */
+    private final Set<ClientSubscription> subscriptions = new CopyOnWriteArraySet<>();
+
+    private final ClientSubscription.CloseListener closeListener = new ClientSubscription.CloseListener() {
+        @Override
+        public void subscriptionClosed(ClientSubscription subscription) {
+            removeSubscription(subscription);
+        }
+    };
+
+    private ScheduledFuture<?> keepAliveJob;
 
     @Context
     private UriInfo uriInfo;
@@ -78,7 +103,7 @@ public class ReadResource implements EventBroadcaster, RESTResource {
     private Collection<ItemFactory> itemFactories = new CopyOnWriteArrayList<ItemFactory>();
 
     public ReadResource() {
-        this.executorService = Executors.newSingleThreadExecutor();
+        this.executorService = Executors.newFixedThreadPool(WRITER_THREADS);
         this.stateEventListener = new StateEventListener();
         this.stateEventListener.setEventBroadcaster(this);
     }
@@ -100,10 +125,11 @@ public class ReadResource implements EventBroadcaster, RESTResource {
     }
 
     /**
-     * Subscribes the connecting client to the stream of events filtered by the
-     * given eventFilter.
+     * Subscribes the connecting client to the state changes of the requested
+     * items.
      *
-     * @param eventFilter
+     * @param itemNames
+     *            - the CometVisu addresses of the requested items
      * @return {@link EventOutput} object associated with the incoming
      *         connection.
      * @throws IOException
@@ -114,16 +140,10 @@ public class ReadResource implements EventBroadcaster, RESTResource {
     public Object getStates(@QueryParam("a") List<String> itemNames, @QueryParam("i") long index,
             @QueryParam("t") long time) throws IOException, InterruptedException {
         final EventOutput eventOutput = new EventOutput();
-
-        this.itemNames = itemNames;
-
-        broadcaster.add(eventOutput);
+        final ClientSubscription subscription = new ClientSubscription(eventOutput, executorService, closeListener);
 
         // get all requested items and send their states to the client
-        items = new HashMap<Item, Map<String, Class<? extends State>>>();
-        // send the current states of all items to the client
         if (this.itemRegistry != null) {
-            List<StateBean> states = new ArrayList<StateBean>();
             for (String cvItemName : itemNames) {
                 try {
                     String[] parts = cvItemName.split(":");
@@ -141,42 +161,90 @@ public class ReadResource implements EventBroadcaster, RESTResource {
                         ohItemName = parts[1];
                     }
                     Item item = this.itemRegistry.getItem(ohItemName);
-                    if (!items.containsKey(item)) {
-                        items.put(item, new HashMap<String, Class<? extends State>>());
-                    }
-                    items.get(item).put(cvItemName, stateClass);
-                    StateBean itemState = new StateBean();
-                    itemState.name = cvItemName;
+                    subscription.addItem(item.getName(), cvItemName, stateClass);
 
+                    String state;
                     if (stateClass != null) {
-                        itemState.state = item.getStateAs(stateClass).toString();
-                        logger.trace("get state of '{}' as '{}' == '{}'", item, stateClass, itemState.state);
+                        state = item.getStateAs(stateClass).toString();
+                        logger.trace("get state of '{}' as '{}' == '{}'", item, stateClass, state);
                     } else {
-                        itemState.state = item.getState().toString();
+                        state = item.getState().toString();
                     }
-                    states.add(itemState);
+                    subscription.offer(cvItemName, StateBeanMessageBodyWriter.serializeEntry(cvItemName, state));
                 } catch (ItemNotFoundException e) {
                     logger.error(e.getLocalizedMessage());
                 }
             }
-            logger.debug("initially broadcasting " + states.size() + "/" + itemNames.size() + " item states");
-            broadcaster.broadcast(SseUtil.buildEvent(states));
+            logger.debug("initially sending " + subscription.getItemNames().size() + "/" + itemNames.size()
+                    + " item states");
         }
+
         // listen to state changes of the requested items
-        registerItems();
+        for (String itemName : subscription.getItemNames()) {
+            Set<ClientSubscription> itemSubscribers = subscribers.get(itemName);
+            if (itemSubscribers == null) {
+                Set<ClientSubscription> newSubscribers = new CopyOnWriteArraySet<>();
+                itemSubscribers = subscribers.putIfAbsent(itemName, newSubscribers);
+                if (itemSubscribers == null) {
+                    itemSubscribers = newSubscribers;
+                }
+            }
+            itemSubscribers.add(subscription);
+            registerItem(itemName);
+        }
+        subscriptions.add(subscription);
+        startKeepAlive();
 
         return eventOutput;
     }
 
+    private synchronized void startKeepAlive() {
+        if (keepAliveJob != null) {
+            return;
+        }
+        keepAliveJob = ThreadPoolManager.getScheduledPool(POOL_NAME).scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                for (ClientSubscription subscription : subscriptions) {
+                    if (subscription.isClosed()) {
+                        removeSubscription(subscription);
+                    } else {
+                        subscription.keepAlive();
+                    }
+                }
+                stopKeepAliveIfIdle();
+            }
+        }, KEEP_ALIVE_INTERVAL, KEEP_ALIVE_INTERVAL, TimeUnit.SECONDS);
+    }
+
+    private synchronized void stopKeepAliveIfIdle() {
+        if (keepAliveJob != null && subscriptions.isEmpty()) {
+            keepAliveJob.cancel(false);
+            keepAliveJob = null;
+        }
+    }
+
+    private void registerItem(String itemName) {
+        if (itemRegistry == null) {
+            return;
+        }
+        try {
+            Item item = itemRegistry.getItem(itemName);
+            if (item instanceof GenericItem) {
+                ((GenericItem) item).addStateChangeListener(stateEventListener);
+            }
+        } catch (ItemNotFoundException e) {
+            logger.debug("item '{}' not found", itemName);
+        }
+    }
+
     /**
      * listen for state changes from the requested items
      */
     @Override
     public void registerItems() {
-        for (Item item : items.keySet()) {
-            if (item instanceof GenericItem) {
-                ((GenericItem) item).addStateChangeListener(stateEventListener);
-            }
+        for (String itemName : subscribers.keySet()) {
+            registerItem(itemName);
         }
     }
 
@@ -189,52 +257,76 @@ public class ReadResource implements EventBroadcaster, RESTResource {
      */
     @Override
     public void registerItem(Item item) {
-        if (item == null || items.containsKey(item) || !itemNames.contains(item.getName()))
+        if (item == null || !subscribers.containsKey(item.getName())) {
             return;
+        }
         if (item instanceof GenericItem) {
             ((GenericItem) item).addStateChangeListener(stateEventListener);
         }
     }
 
     /**
-     * listens to state changes of the given item, if it is part of the
-     * requested items
+     * stops listening to state changes of the given item
      *
      * @param item
-     *            - the new item, that should be listened to
+     *            - the item, that should not be listened to anymore
      */
     @Override
     public void unregisterItem(Item item) {
-        if (item == null || items.containsKey(item) || !itemNames.contains(item.getName()))
-            return;
         if (item instanceof GenericItem) {
             ((GenericItem) item).removeStateChangeListener(stateEventListener);
-            items.remove(item);
         }
     }
 
     /**
-     * Broadcasts an event described by the given parameters to all currently
-     * listening clients.
+     * Sends the current state of the given item to all clients that requested
+     * it. Each CometVisu address is serialized once and the result is queued
+     * for every client that uses this address.
      *
      * @param item
      *            - the item which has changed
-     * @param eventObject
-     *            - bean that can be converted to a JSON object.
+     * @param typedOnly
+     *            - only notify the addresses which request the state as a
+     *            specific type
      */
     @Override
-    public void broadcastEvent(final Object eventObject) {
-        executorService.execute(new Runnable() {
+    public void broadcastItemState(Item item, boolean typedOnly) {
+        Set<ClientSubscription> itemSubscribers = subscribers.get(item.getName());
+        if (itemSubscribers == null) {
+            return;
+        }
 
-            @Override
-            public void run() {
-                broadcaster.broadcast(SseUtil.buildEvent(eventObject));
+        Map<String, String> serializedEntries = new HashMap<>();
+        for (ClientSubscription subscription : itemSubscribers) {
+            if (subscription.isClosed()) {
+                removeSubscription(subscription);
+                continue;
             }
-        });
+            Map<String, Class<? extends State>> addresses = subscription.getAddresses(item.getName());
+            for (Map.Entry<String, Class<? extends State>> address : addresses.entrySet()) {
+                Class<? extends State> stateClass = address.getValue();
+                if (typedOnly && stateClass == null) {
+                    continue;
+                }
+                String cvItemName = address.getKey();
+                String entry = serializedEntries.get(cvItemName);
+                if (entry == null) {
+                    State state = stateClass != null ? item.getStateAs(stateClass) : item.getState();
+                    entry = StateBeanMessageBodyWriter.serializeEntry(cvItemName, String.valueOf(state));
+                    serializedEntries.put(cvItemName, entry);
+                }
+                subscription.offer(cvItemName, entry);
+            }
+        }
     }
 
-    @Override
-    public Map<String, Class<? extends State>> getClientItems(Item item) {
-        return items.get(item);
+    private void removeSubscription(ClientSubscription subscription) {
+        subscriptions.remove(subscription);
+        for (String itemName : subscription.getItemNames()) {
+            Set<ClientSubscription> itemSubscribers = subscribers.get(itemName);
+            if (itemSubscribers != null) {
+                itemSubscribers.remove(subscription);
+            }
+        }
     }
 }
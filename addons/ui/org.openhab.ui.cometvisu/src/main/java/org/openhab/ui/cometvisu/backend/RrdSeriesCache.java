@@ -0,0 +1,83 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.ui.cometvisu.backend;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps the serialized responses of recent chart requests.
+ *
+ * An entry is stored together with the modification times of the RRD files it was read from and is only returned
+ * as long as none of these files has been written since.
+ *
+ * @author agent
+ * @since 2.0.0
+ */
+class RrdSeriesCache {
+
+    private static class Entry {
+        final long[] lastModified;
+        final byte[] body;
+
+        Entry(long[] lastModified, byte[] body) {
+            this.lastModified = lastModified;
+            this.body = body;
+        }
+    }
+
+    private final int maxEntrySize;
+    private final Map<String, Entry> entries;
+
+    /**
+     * @param maxEntries number of responses to keep
+     * @param maxEntrySize maximum size of a single cached response in bytes, larger responses are not cached
+     */
+    RrdSeriesCache(final int maxEntries, int maxEntrySize) {
+        this.maxEntrySize = maxEntrySize;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    int getMaxEntrySize() {
+        return maxEntrySize;
+    }
+
+    /**
+     * @return the cached response or null, if there is none or the RRD files have been modified since
+     */
+    synchronized byte[] get(String key, long[] lastModified) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (!Arrays.equals(entry.lastModified, lastModified)) {
+            entries.remove(key);
+            return null;
+        }
+        return entry.body;
+    }
+
+    synchronized void put(String key, long[] lastModified, byte[] body) {
+        if (body.length <= maxEntrySize) {
+            entries.put(key, new Entry(lastModified, body));
+        }
+    }
+
+    synchronized void clear() {
+        entries.clear();
+    }
+}
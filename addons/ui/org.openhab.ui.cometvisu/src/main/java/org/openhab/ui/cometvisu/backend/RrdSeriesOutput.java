@@ -0,0 +1,172 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.ui.cometvisu.backend;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.StreamingOutput;
+
+/**
+ * Writes the fetched series of one or more RRD files as the JSON array the CometVisu diagram plugin expects:
+ * [[timestamp,["value1","value2",...]],...]
+ *
+ * The rows of all files are merged by timestamp while writing, so no intermediate map or list of strings is built.
+ * For each timestamp the values of all files containing it are written in the order of the files. If a cache is
+ * given, the written response is stored in it, unless it exceeds the maximum entry size.
+ *
+ * @author agent
+ * @since 2.0.0
+ */
+class RrdSeriesOutput implements StreamingOutput {
+
+    /**
+     * [file][row]
+     */
+    private final long[][] timestamps;
+
+    /**
+     * [file][datasource][row]
+     */
+    private final double[][][] values;
+
+    private final RrdSeriesCache cache;
+    private final String cacheKey;
+    private final long[] lastModified;
+
+    RrdSeriesOutput(long[][] timestamps, double[][][] values, RrdSeriesCache cache, String cacheKey,
+            long[] lastModified) {
+        this.timestamps = timestamps;
+        this.values = values;
+        this.cache = cache;
+        this.cacheKey = cacheKey;
+        this.lastModified = lastModified;
+    }
+
+    @Override
+    public void write(OutputStream output) throws IOException, WebApplicationException {
+        CapturingOutputStream capture = null;
+        if (cache != null) {
+            capture = new CapturingOutputStream(output, cache.getMaxEntrySize());
+            output = capture;
+        }
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+        write(writer);
+        writer.flush();
+
+        if (capture != null && capture.isComplete()) {
+            cache.put(cacheKey, lastModified, capture.toByteArray());
+        }
+    }
+
+    void write(Writer writer) throws IOException {
+        // DecimalFormat is not thread safe, every response uses its own instance
+        DecimalFormat df = new DecimalFormat(ChartResource.PATTERN, DecimalFormatSymbols.getInstance(Locale.ENGLISH));
+        int[] rows = new int[timestamps.length];
+        boolean first = true;
+
+        writer.write('[');
+        while (true) {
+            // next timestamp over all files
+            long time = Long.MAX_VALUE;
+            for (int file = 0; file < timestamps.length; file++) {
+                if (rows[file] < timestamps[file].length) {
+                    time = Math.min(time, timestamps[file][rows[file]]);
+                }
+            }
+            if (time == Long.MAX_VALUE) {
+                break;
+            }
+
+            if (!first) {
+                writer.write(',');
+            }
+            first = false;
+            writer.write('[');
+            // change to milliseconds
+            writer.write(Long.toString(time * 1000));
+            writer.write(",[");
+            boolean firstValue = true;
+            for (int file = 0; file < timestamps.length; file++) {
+                int row = rows[file];
+                if (row < timestamps[file].length && timestamps[file][row] == time) {
+                    for (double[] dsValues : values[file]) {
+                        if (!firstValue) {
+                            writer.write(',');
+                        }
+                        firstValue = false;
+                        writer.write('"');
+                        double value = dsValues[row];
+                        writer.write(Double.isNaN(value) ? "null" : df.format(value));
+                        writer.write('"');
+                    }
+                    rows[file]++;
+                }
+            }
+            writer.write("]]");
+        }
+        writer.write(']');
+    }
+
+    /**
+     * Passes everything through and keeps a copy, as long as it does not exceed the given size.
+     */
+    private static class CapturingOutputStream extends FilterOutputStream {
+        private final int limit;
+        private ByteArrayOutputStream copy = new ByteArrayOutputStream();
+
+        CapturingOutputStream(OutputStream out, int limit) {
+            super(out);
+            this.limit = limit;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            if (copy != null) {
+                copy.write(b);
+                checkLimit();
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            if (copy != null) {
+                copy.write(b, off, len);
+                checkLimit();
+            }
+        }
+
+        private void checkLimit() {
+            if (copy.size() > limit) {
+                copy = null;
+            }
+        }
+
+        boolean isComplete() {
+            return copy != null;
+        }
+
+        byte[] toByteArray() {
+            return copy.toByteArray();
+        }
+    }
+}
@@ -14,6 +14,7 @@ import java.io.OutputStream;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 import javax.ws.rs.Produces;
@@ -69,23 +70,42 @@ public class StateBeanMessageBodyWriter implements MessageBodyWriter<Object> {
      *         - CV-Protocol state update json format {d:{item:state,...}}
      */
     public String serialize(Object bean) {
-        String msg = "{\"d\":{";
+        List<String> states = new ArrayList<String>();
         if (bean instanceof StateBean) {
             StateBean stateBean = (StateBean) bean;
-            msg += "\"" + stateBean.name + "\":\"" + stateBean.state + "\"";
+            states.add(serializeEntry(stateBean.name, stateBean.state));
         } else if (bean instanceof List<?>) {
-            List<String> states = new ArrayList<String>();
             for (Object bo : (List<?>) bean) {
                 if (bo instanceof StateBean) {
                     StateBean stateBean = (StateBean) bo;
-                    states.add("\"" + stateBean.name + "\":\"" + stateBean.state + "\"");
+                    states.add(serializeEntry(stateBean.name, stateBean.state));
                 }
             }
-            if (states.size() > 0) {
-                msg += StringUtils.join(states, ",");
-            }
         }
-        msg += "}}";
-        return msg;
+        return serializeEntries(states);
+    }
+
+    /**
+     *
+     * @param name
+     *            - CometVisu item address
+     * @param state
+     *            - item state
+     * @return String
+     *         - a single state entry in CV-Protocol format "item":"state"
+     */
+    public static String serializeEntry(String name, String state) {
+        return "\"" + name + "\":\"" + state + "\"";
+    }
+
+    /**
+     *
+     * @param entries
+     *            - state entries created by {@link #serializeEntry(String, String)}
+     * @return String
+     *         - CV-Protocol state update json format {d:{item:state,...}}
+     */
+    public static String serializeEntries(Collection<String> entries) {
+        return "{\"d\":{" + StringUtils.join(entries, ",") + "}}";
     }
 }
@@ -12,6 +12,10 @@ import java.io.File;
 import java.io.StringWriter;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.xml.XMLConstants;
@@ -71,6 +75,9 @@ import org.xml.sax.SAXException;
  * benefit from all the features the CometVisu offers (e.g.
  * multi-column-layouts)
  *
+ * The JAXB context and the parsed XSD schema are shared between all instances, the generated XML is cached by the
+ * {@link VisuConfigCache}.
+ *
  * @author Tobias Bräutigam
  * @since 2.0.0
  *
@@ -92,6 +99,15 @@ public class VisuConfig {
 
     private ObjectFactory factory = new ObjectFactory();
 
+    /**
+     * names of all items the generated config depends on
+     */
+    private final Set<String> itemNames = new HashSet<String>();
+
+    // JAXBContext and Schema are thread safe and expensive to create, so they are created once
+    private static JAXBContext jaxbContext;
+    private static final Map<String, Schema> schemas = new ConcurrentHashMap<String, Schema>();
+
     public VisuConfig(Sitemap sitemap, CometVisuApp app, File rootFolder) {
         this.sitemap = sitemap;
         this.app = app;
@@ -113,32 +129,63 @@ public class VisuConfig {
         pagesBean.setLibVersion(BigInteger.valueOf(LibVersion.no));
         pagesBean.setScrollSpeed(new BigDecimal(0));
 
-        // set relative path to XSD file
+        pagesBean.setNoNamespaceSchemaLocation(getSchemaLocation(req));
+
+        Meta meta = new Meta();
+        pagesBean.setMeta(meta);
+
+        configHelper = new ConfigHelper(pagesBean, app, sitemap.getName());
+        createPages(pagesBean);
+
+        return marshal(pagesBean, rootFolder.getAbsolutePath() + File.separator + schemaFile);
+    }
+
+    /**
+     * @return the path to the XSD file relative to the requested config
+     */
+    public String getSchemaLocation(HttpServletRequest req) {
         int requestFolders = req.getPathInfo().substring(1).split("/").length;
         logger.debug("requestPath '{}' has '{}' parts", req.getPathInfo(), requestFolders);
         String relXsd = "";
         for (int i = 1; i < requestFolders; i++) {
             relXsd += "../";
         }
-        pagesBean.setNoNamespaceSchemaLocation(relXsd + schemaFile);
+        return relXsd + schemaFile;
+    }
 
-        Meta meta = new Meta();
-        pagesBean.setMeta(meta);
+    /**
+     * @return the names of the items used by the sitemap, available after {@link #getConfigXml(HttpServletRequest)}
+     */
+    public Set<String> getItemNames() {
+        return itemNames;
+    }
 
-        configHelper = new ConfigHelper(pagesBean, app, sitemap.getName());
-        createPages(pagesBean);
+    private static synchronized JAXBContext getJaxbContext() throws JAXBException {
+        if (jaxbContext == null) {
+            jaxbContext = JAXBContext.newInstance(SchemaPages.class);
+        }
+        return jaxbContext;
+    }
 
-        return marshal(pagesBean, rootFolder.getAbsolutePath() + File.separator + schemaFile);
+    private static Schema getSchema(String xsdSchema) throws SAXException {
+        File xsdFile = new File(xsdSchema);
+        // the schema is parsed again when the CometVisu gets updated
+        String key = xsdFile.getAbsolutePath() + ":" + xsdFile.lastModified();
+        Schema schema = schemas.get(key);
+        if (schema == null) {
+            SchemaFactory schemaFactory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
+            schema = schemaFactory.newSchema(xsdFile);
+            schemas.clear();
+            schemas.put(key, schema);
+        }
+        return schema;
     }
 
     private String marshal(Pages bean, String xsdSchema) {
         String res = "";
         try {
-            JAXBContext jaxbContext = JAXBContext.newInstance(bean.getClass());
-            SchemaFactory schemaFactory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
-            Schema schema = (xsdSchema == null || xsdSchema.trim().length() == 0) ? null
-                    : schemaFactory.newSchema(new File(xsdSchema));
-            Marshaller marshaller = jaxbContext.createMarshaller();
+            Schema schema = (xsdSchema == null || xsdSchema.trim().length() == 0) ? null : getSchema(xsdSchema);
+            Marshaller marshaller = getJaxbContext().createMarshaller();
             marshaller.setSchema(schema);
             marshaller.setProperty(Marshaller.JAXB_ENCODING, "UTF-8");
             marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.TRUE);
@@ -189,6 +236,7 @@ public class VisuConfig {
     private void processWidget(Object rootPage, Widget widget, Pages pages, int level) {
         Item item = null;
         if (widget.getItem() != null) {
+            itemNames.add(widget.getItem());
             try {
                 item = app.getItemUIRegistry().getItem(widget.getItem());
             } catch (ItemNotFoundException e) {
@@ -382,6 +430,7 @@ public class VisuConfig {
 
             if (item instanceof GroupItem) {
                 for (Item member : ((GroupItem) item).getMembers()) {
+                    itemNames.add(member.getName());
                     Rrd rrd = new Rrd();
                     rrd.setValue(member.getName());
                     if (member instanceof NumberItem) {
@@ -0,0 +1,134 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.ui.cometvisu.internal.config;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.eclipse.smarthome.core.items.Item;
+import org.eclipse.smarthome.core.items.ItemRegistryChangeListener;
+import org.eclipse.smarthome.model.sitemap.Sitemap;
+import org.openhab.ui.cometvisu.servlet.CometVisuApp;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Caches the config XML generated by {@link VisuConfig} per sitemap.
+ *
+ * A cached config is used as long as the sitemap model has not been reloaded and none of the items it uses (directly
+ * or as member of a used group) has been added, removed or updated. As navbars, mappings and stylings are shared by
+ * all pages of the config, a change always regenerates the config of the whole sitemap.
+ *
+ * @author agent
+ * @since 2.0.0
+ */
+public class VisuConfigCache implements ItemRegistryChangeListener {
+    private final Logger logger = LoggerFactory.getLogger(VisuConfigCache.class);
+
+    private static class CachedConfig {
+        final Sitemap sitemap;
+        final Set<String> itemNames;
+        final String xml;
+
+        CachedConfig(Sitemap sitemap, Set<String> itemNames, String xml) {
+            this.sitemap = sitemap;
+            this.itemNames = itemNames;
+            this.xml = xml;
+        }
+    }
+
+    /**
+     * sitemap name + schema location -> generated config
+     */
+    private final Map<String, CachedConfig> configs = new ConcurrentHashMap<String, CachedConfig>();
+
+    /**
+     * incremented on every change, so that a config generated from outdated items is not kept
+     */
+    private volatile long revision = 0;
+
+    /**
+     * returns the config XML for the given sitemap, generates it if there is no valid cached one
+     */
+    public String getConfigXml(Sitemap sitemap, CometVisuApp app, File rootFolder, HttpServletRequest req) {
+        VisuConfig config = new VisuConfig(sitemap, app, rootFolder);
+        String key = sitemap.getName() + ":" + config.getSchemaLocation(req);
+
+        CachedConfig cached = configs.get(key);
+        // a reloaded sitemap model is a new object
+        if (cached != null && cached.sitemap == sitemap) {
+            logger.debug("returning cached config for sitemap '{}'", sitemap.getName());
+            return cached.xml;
+        }
+
+        long generationRevision = revision;
+        String xml = config.getConfigXml(req);
+        synchronized (this) {
+            if (!xml.isEmpty() && generationRevision == revision) {
+                configs.put(key, new CachedConfig(sitemap, config.getItemNames(), xml));
+            }
+        }
+        return xml;
+    }
+
+    public synchronized void clear() {
+        revision++;
+        configs.clear();
+    }
+
+    private synchronized void invalidate(Item item) {
+        revision++;
+        for (Iterator<CachedConfig> it = configs.values().iterator(); it.hasNext();) {
+            CachedConfig cached = it.next();
+            if (uses(cached, item)) {
+                it.remove();
+            }
+        }
+    }
+
+    private boolean uses(CachedConfig cached, Item item) {
+        if (cached.itemNames.contains(item.getName())) {
+            return true;
+        }
+        // membership changes of groups used by the config
+        for (String groupName : item.getGroupNames()) {
+            if (cached.itemNames.contains(groupName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void added(Item element) {
+        invalidate(element);
+    }
+
+    @Override
+    public void removed(Item element) {
+        invalidate(element);
+    }
+
+    @Override
+    public void updated(Item oldElement, Item element) {
+        invalidate(oldElement);
+        invalidate(element);
+    }
+
+    @Override
+    public void allItemsChanged(Collection<String> oldItemNames) {
+        clear();
+    }
+}
@@ -0,0 +1,229 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.ui.cometvisu.internal.persistence;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.smarthome.core.common.ThreadPoolManager;
+import org.eclipse.smarthome.core.persistence.FilterCriteria;
+import org.eclipse.smarthome.core.persistence.FilterCriteria.Ordering;
+import org.eclipse.smarthome.core.persistence.HistoricItem;
+import org.eclipse.smarthome.core.persistence.QueryablePersistenceService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Queries the persisted states of several items in parallel and merges the results by timestamp.
+ *
+ * The queries run on the shared thread pool {@link #POOL_NAME}, which limits the number of concurrent queries.
+ * Queries which have not finished when the deadline is reached are cancelled, their items are left out of the
+ * result, so the client gets the series which could be loaded in time instead of no answer.
+ *
+ * @author agent
+ * @since 2.0.0
+ */
+public class PersistenceQueryExecutor {
+    private static final Logger logger = LoggerFactory.getLogger(PersistenceQueryExecutor.class);
+
+    public static final String POOL_NAME = "cometvisu-persistence";
+
+    /**
+     * Maximum time in milliseconds to wait for the queries of one request
+     */
+    public static final long DEFAULT_DEADLINE = 5000L;
+
+    /**
+     * Receives the merged results.
+     */
+    public interface MergeHandler {
+        /**
+         * @param index the index of the item in the list of queried item names
+         * @param historicItem the persisted state
+         */
+        void handle(int index, HistoricItem historicItem);
+    }
+
+    private static final Comparator<HistoricItem> ASCENDING = new Comparator<HistoricItem>() {
+        @Override
+        public int compare(HistoricItem o1, HistoricItem o2) {
+            return o1.getTimestamp().compareTo(o2.getTimestamp());
+        }
+    };
+
+    private static final Comparator<HistoricItem> DESCENDING = Collections.reverseOrder(ASCENDING);
+
+    private PersistenceQueryExecutor() {
+        // utility class
+    }
+
+    /**
+     * Queries the persisted states of each item. For every item the services are tried in the given order, the
+     * first one returning data is used.
+     *
+     * @param itemNames the items to query
+     * @param services the persistence services to ask
+     * @param filter the filter to apply, the item name is replaced for every item
+     * @param deadline maximum time in milliseconds to wait for all queries
+     * @return the states of each item in the order of the item names, sorted as requested by the filter.
+     *         The list of an item is empty, if no data was found or the query did not finish in time.
+     */
+    public static List<List<HistoricItem>> query(List<String> itemNames,
+            final Collection<QueryablePersistenceService> services, FilterCriteria filter, long deadline) {
+        final Ordering ordering = filter.getOrdering();
+        List<Callable<List<HistoricItem>>> tasks = new ArrayList<>(itemNames.size());
+        for (String itemName : itemNames) {
+            final FilterCriteria itemFilter = copy(filter, itemName);
+            tasks.add(new Callable<List<HistoricItem>>() {
+                @Override
+                public List<HistoricItem> call() throws Exception {
+                    return queryItem(services, itemFilter, ordering);
+                }
+            });
+        }
+
+        List<List<HistoricItem>> results = new ArrayList<>(itemNames.size());
+        if (tasks.size() == 1) {
+            // no need to hand a single query over to another thread
+            try {
+                results.add(tasks.get(0).call());
+            } catch (Exception e) {
+                logger.error("Querying persisted states of item '{}' failed: {}", itemNames.get(0), e.getMessage());
+                results.add(Collections.<HistoricItem> emptyList());
+            }
+            return results;
+        }
+
+        List<Future<List<HistoricItem>>> futures;
+        try {
+            futures = ThreadPoolManager.getPool(POOL_NAME).invokeAll(tasks, deadline, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            futures = Collections.emptyList();
+        }
+
+        for (int i = 0; i < itemNames.size(); i++) {
+            List<HistoricItem> result = Collections.emptyList();
+            if (i < futures.size()) {
+                try {
+                    result = futures.get(i).get();
+                } catch (CancellationException e) {
+                    logger.warn("Querying persisted states of item '{}' took longer than {}ms, it is left out",
+                            itemNames.get(i), deadline);
+                } catch (ExecutionException e) {
+                    logger.error("Querying persisted states of item '{}' failed: {}", itemNames.get(i),
+                            e.getCause().getMessage());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            results.add(result);
+        }
+        return results;
+    }
+
+    private static List<HistoricItem> queryItem(Collection<QueryablePersistenceService> services,
+            FilterCriteria filter, Ordering ordering) {
+        for (QueryablePersistenceService service : services) {
+            List<HistoricItem> result = new ArrayList<>();
+            for (HistoricItem historicItem : service.query(filter)) {
+                result.add(historicItem);
+            }
+            logger.debug("querying item '{}' from '{}' to '{}' => '{}' results on service '{}'",
+                    new Object[] { filter.getItemName(), filter.getBeginDate(), filter.getEndDate(), result.size(),
+                            service.getId() });
+            if (!result.isEmpty()) {
+                sort(result, ordering == Ordering.DESCENDING ? DESCENDING : ASCENDING);
+                return result;
+            }
+        }
+        return Collections.emptyList();
+    }
+
+    /**
+     * Brings the result into the requested order. Not every service supports both orderings (e.g. rrd4j always
+     * returns ascending data), so a reversed result is just turned around and only an unordered one gets sorted.
+     */
+    private static void sort(List<HistoricItem> result, Comparator<HistoricItem> comparator) {
+        if (isSorted(result, comparator)) {
+            return;
+        }
+        if (isSorted(result, Collections.reverseOrder(comparator))) {
+            Collections.reverse(result);
+        } else {
+            Collections.sort(result, comparator);
+        }
+    }
+
+    private static boolean isSorted(List<HistoricItem> result, Comparator<HistoricItem> comparator) {
+        for (int i = 1; i < result.size(); i++) {
+            if (comparator.compare(result.get(i - 1), result.get(i)) > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Merges the sorted results of {@link #query} into one sequence with a k-way merge. States with the same
+     * timestamp are handed over in the order of the items.
+     *
+     * @param results the results of {@link #query}
+     * @param ordering the ordering of the results
+     * @param handler receives the merged states
+     */
+    public static void merge(final List<List<HistoricItem>> results, Ordering ordering, MergeHandler handler) {
+        final Comparator<HistoricItem> comparator = ordering == Ordering.DESCENDING ? DESCENDING : ASCENDING;
+        final int[] positions = new int[results.size()];
+
+        PriorityQueue<Integer> heads = new PriorityQueue<>(Math.max(1, results.size()), new Comparator<Integer>() {
+            @Override
+            public int compare(Integer o1, Integer o2) {
+                int result = comparator.compare(results.get(o1).get(positions[o1]),
+                        results.get(o2).get(positions[o2]));
+                return result != 0 ? result : Integer.compare(o1, o2);
+            }
+        });
+        for (int i = 0; i < results.size(); i++) {
+            if (!results.get(i).isEmpty()) {
+                heads.add(i);
+            }
+        }
+
+        Integer index;
+        while ((index = heads.poll()) != null) {
+            handler.handle(index, results.get(index).get(positions[index]));
+            if (++positions[index] < results.get(index).size()) {
+                heads.add(index);
+            }
+        }
+    }
+
+    private static FilterCriteria copy(FilterCriteria filter, String itemName) {
+        FilterCriteria copy = new FilterCriteria();
+        copy.setItemName(itemName);
+        copy.setBeginDate(filter.getBeginDate());
+        copy.setEndDate(filter.getEndDate());
+        copy.setPageNumber(filter.getPageNumber());
+        copy.setPageSize(filter.getPageSize());
+        copy.setOperator(filter.getOperator());
+        copy.setOrdering(filter.getOrdering());
+        copy.setState(filter.getState());
+        return copy;
+    }
+}
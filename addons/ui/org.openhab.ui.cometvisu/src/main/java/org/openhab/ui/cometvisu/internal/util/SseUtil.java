@@ -36,15 +36,32 @@ public class SseUtil {
      * @return a new OutboundEvent.
      */
     public static OutboundEvent buildEvent(Object eventObject) {
+        StateBeanMessageBodyWriter writer = new StateBeanMessageBodyWriter();
+        return buildSerializedEvent(writer.serialize(eventObject));
+    }
 
+    /**
+     * Creates a new {@link OutboundEvent} object for an already serialized
+     * state update message.
+     *
+     * @param data
+     *            - the serialized state update message
+     * @return a new OutboundEvent.
+     */
+    public static OutboundEvent buildSerializedEvent(String data) {
         OutboundEvent.Builder eventBuilder = new OutboundEvent.Builder();
-        StateBeanMessageBodyWriter writer = new StateBeanMessageBodyWriter();
-        // OutboundEvent event = eventBuilder.mediaType(MediaType.APPLICATION_JSON_TYPE).data(eventObject).build();
-        java.util.Date date = new java.util.Date();
-        OutboundEvent event = eventBuilder.mediaType(MediaType.APPLICATION_JSON_TYPE)
-                .data(writer.serialize(eventObject)).id(String.valueOf(date.getTime())).build();
+        return eventBuilder.mediaType(MediaType.APPLICATION_JSON_TYPE).data(data)
+                .id(String.valueOf(System.currentTimeMillis())).build();
+    }
 
-        return event;
+    /**
+     * Creates a new {@link OutboundEvent} object containing only a comment,
+     * which is ignored by the client but detects closed connections.
+     *
+     * @return a new OutboundEvent.
+     */
+    public static OutboundEvent buildKeepAliveEvent() {
+        return new OutboundEvent.Builder().comment("keep-alive").build();
     }
 
     /**
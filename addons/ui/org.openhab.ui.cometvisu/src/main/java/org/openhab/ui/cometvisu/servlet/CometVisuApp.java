@@ -27,6 +27,7 @@ import org.eclipse.smarthome.model.sitemap.SitemapProvider;
 import org.eclipse.smarthome.ui.icon.IconProvider;
 import org.eclipse.smarthome.ui.items.ItemUIRegistry;
 import org.openhab.ui.cometvisu.internal.Config;
+import org.openhab.ui.cometvisu.internal.config.VisuConfigCache;
 import org.openhab.ui.cometvisu.php.PHProvider;
 import org.osgi.framework.BundleContext;
 import org.osgi.service.cm.ConfigurationException;
@@ -61,6 +62,8 @@ public class CometVisuApp {
 
     private PHProvider phpProvider;
 
+    private final VisuConfigCache visuConfigCache = new VisuConfigCache();
+
     static protected Map<String, QueryablePersistenceService> persistenceServices = new HashMap<String, QueryablePersistenceService>();
 
     protected void setEventPublisher(EventPublisher eventPublisher) {
@@ -103,6 +106,7 @@ public class CometVisuApp {
 
     protected void setItemRegistry(ItemRegistry itemRegistry) {
         this.itemRegistry = itemRegistry;
+        this.itemRegistry.addRegistryChangeListener(visuConfigCache);
     }
 
     public ItemRegistry getItemRegistry() {
@@ -110,7 +114,9 @@ public class CometVisuApp {
     }
 
     protected void unsetItemRegistry(ItemRegistry itemRegistry) {
+        this.itemRegistry.removeRegistryChangeListener(visuConfigCache);
         this.itemRegistry = null;
+        visuConfigCache.clear();
     }
 
     public void setItemUIRegistry(ItemUIRegistry itemUIRegistry) {
@@ -123,10 +129,16 @@ public class CometVisuApp {
 
     public void addSitemapProvider(SitemapProvider provider) {
         sitemapProviders.add(provider);
+        visuConfigCache.clear();
     }
 
     public void removeSitemapProvider(SitemapProvider provider) {
         sitemapProviders.remove(provider);
+        visuConfigCache.clear();
+    }
+
+    public VisuConfigCache getVisuConfigCache() {
+        return visuConfigCache;
     }
 
     public ItemUIRegistry getItemUIRegistry() {
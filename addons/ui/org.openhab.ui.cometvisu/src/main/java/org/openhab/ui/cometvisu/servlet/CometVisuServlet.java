@@ -13,21 +13,20 @@ import java.io.File;
 import java.io.FilenameFilter;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.io.RandomAccessFile;
 import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.Date;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
-import java.util.Map.Entry;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.zip.GZIPOutputStream;
@@ -54,10 +53,8 @@ import org.eclipse.smarthome.core.types.Command;
 import org.eclipse.smarthome.model.sitemap.Sitemap;
 import org.eclipse.smarthome.model.sitemap.SitemapProvider;
 import org.openhab.ui.cometvisu.internal.Config;
-import org.openhab.ui.cometvisu.internal.config.ConfigHelper.Transform;
-import org.openhab.ui.cometvisu.internal.config.VisuConfig;
-import org.openhab.ui.cometvisu.internal.editor.dataprovider.beans.DataBean;
 import org.openhab.ui.cometvisu.internal.editor.dataprovider.beans.ItemBean;
+import org.openhab.ui.cometvisu.internal.persistence.PersistenceQueryExecutor;
 import org.openhab.ui.cometvisu.internal.rrs.beans.Feed;
 import org.openhab.ui.cometvisu.php.PHProvider;
 import org.slf4j.Logger;
@@ -102,6 +99,9 @@ public class CometVisuServlet extends HttpServlet {
 
     private CometVisuApp cometVisuApp;
 
+    private final StaticAssetCache assetCache;
+    private final DataProviderIndex dataProviderIndex;
+
     public CometVisuServlet(String filesystemDir, CometVisuApp cometVisuApp) {
         root = filesystemDir;
         rootFolder = new File(root);
@@ -109,6 +109,8 @@ public class CometVisuServlet extends HttpServlet {
                 + Config.COMETVISU_WEBAPP_USERFILE_FOLDER);
         defaultUserDir = System.getProperty("user.dir");
         this.cometVisuApp = cometVisuApp;
+        assetCache = new StaticAssetCache(userFileFolder, rootFolder);
+        dataProviderIndex = new DataProviderIndex(rootFolder, assetCache);
 
         PHProvider prov = cometVisuApp.getPHProvider();
         if (prov != null) {
@@ -153,6 +155,14 @@ public class CometVisuServlet extends HttpServlet {
             this.engine.init(rootFolder.getAbsolutePath(), defaultUserDir, _servletContext);
             phpEnabled = true;
         }
+        assetCache.start();
+        dataProviderIndex.build();
+    }
+
+    @Override
+    public void destroy() {
+        assetCache.stop();
+        super.destroy();
     }
 
     /**
@@ -207,11 +217,11 @@ public class CometVisuServlet extends HttpServlet {
                 Sitemap sitemap = getSitemap(matcher.group(2));
                 if (sitemap != null) {
                     logger.debug("reading sitemap '{}'", sitemap);
-                    VisuConfig config = new VisuConfig(sitemap, cometVisuApp, rootFolder);
+                    String configXml = cometVisuApp.getVisuConfigCache().getConfigXml(sitemap, cometVisuApp,
+                            rootFolder, req);
 
-                    // logger.info("response: "+config.getConfigXml());
                     resp.setContentType(MediaType.APPLICATION_XML);
-                    resp.getWriter().write(config.getConfigXml(req));
+                    resp.getWriter().write(configXml);
                     resp.flushBuffer();
 
                     return;
@@ -250,7 +260,11 @@ public class CometVisuServlet extends HttpServlet {
 
     protected File getRequestedFile(HttpServletRequest req) throws UnsupportedEncodingException {
         String requestedFile = req.getPathInfo();
-        File file = null;
+        String cacheKey = requestedFile != null ? requestedFile : "";
+        File file = assetCache.getResolvedFile(cacheKey);
+        if (file != null) {
+            return file;
+        }
 
         // check services folder if a file exists there
         if (requestedFile != null) {
@@ -274,9 +288,39 @@ public class CometVisuServlet extends HttpServlet {
                 break;
             }
         }
+        assetCache.putResolvedFile(cacheKey, file);
         return file;
     }
 
+    private org.openhab.ui.cometvisu.internal.rrs.beans.Entry createRssLogEntry(HistoricItem historicItem) {
+        org.openhab.ui.cometvisu.internal.rrs.beans.Entry entry = new org.openhab.ui.cometvisu.internal.rrs.beans.Entry();
+        entry.publishedDate = historicItem.getTimestamp().getTime();
+        if (logger.isDebugEnabled()) {
+            logger.debug("{}: {}", rssPubDateFormat.format(entry.publishedDate), historicItem.getState());
+        }
+        entry.tags = historicItem.getName();
+        String[] content = historicItem.getState().toString().split(rssLogMessageSeparator);
+        if (content.length == 0) {
+            entry.content = historicItem.getState().toString();
+        } else if (content.length == 1) {
+            entry.content = content[0];
+        } else if (content.length == 2) {
+            entry.title = content[0];
+            entry.content = content[1];
+        } else if (content.length == 3) {
+            entry.title = content[0];
+            entry.content = content[1];
+            entry.state = content[2];
+        } else if (content.length == 4) {
+            entry.title = content[0];
+            entry.content = content[1];
+            entry.state = content[2];
+            // ignore tags in content[3] as is is already known
+            // by item name
+        }
+        return entry;
+    }
+
     /**
      * serves an RSS-Feed from a persisted string item backend for the CometVisu
      * rrslog-plugin
@@ -350,7 +394,7 @@ public class CometVisuServlet extends HttpServlet {
                         "Cannot execute query: It is not possible to delete data from openHAB PersistenceService");
                 response.flushBuffer();
             } else {
-                Feed feed = new Feed();
+                final Feed feed = new Feed();
                 feed.feedUrl = request.getRequestURL().toString();
                 feed.title = "RSS supplied logs";
                 feed.link = request.getRequestURL().toString();
@@ -368,78 +412,25 @@ public class CometVisuServlet extends HttpServlet {
                 filter.setPageSize(25);
                 filter.setOrdering(Ordering.DESCENDING);
 
+                List<String> names = new ArrayList<String>(items.size());
                 for (Item item : items) {
-                    filter.setItemName(item.getName());
-                    Iterator<Entry<String, QueryablePersistenceService>> pit = CometVisuApp.getPersistenceServices()
-                            .entrySet().iterator();
-                    QueryablePersistenceService persistenceService = pit.next().getValue();
-                    // Get the data from the persistence store
-                    Iterable<HistoricItem> result = persistenceService.query(filter);
-                    Iterator<HistoricItem> it = result.iterator();
-                    boolean forceStop = false;
-                    while (!forceStop && !it.hasNext()) {
-                        if (pit.hasNext()) {
-                            persistenceService = pit.next().getValue();
-                            result = persistenceService.query(filter);
-                        } else {
-                            // no persisted data found for this item in any of
-                            // the available persistence services
-                            forceStop = true;
-                        }
-                    }
-                    if (it.hasNext()) {
-                        logger.debug("persisted data for item {} found in service {}", item.getName(),
-                                persistenceService.getId());
-                    }
-
-                    // Iterate through the data
-                    int i = 0;
-                    while (it.hasNext()) {
-                        i++;
-                        HistoricItem historicItem = it.next();
-                        if (historicItem.getState() == null || historicItem.getState().toString().isEmpty()) {
-                            continue;
-                        }
-                        org.openhab.ui.cometvisu.internal.rrs.beans.Entry entry = new org.openhab.ui.cometvisu.internal.rrs.beans.Entry();
-                        entry.publishedDate = historicItem.getTimestamp().getTime();
-                        logger.info(rssPubDateFormat.format(entry.publishedDate) + ": " + historicItem.getState());
-                        entry.tags = historicItem.getName();
-                        String[] content = historicItem.getState().toString().split(rssLogMessageSeparator);
-                        if (content.length == 0) {
-                            entry.content = historicItem.getState().toString();
-                        } else if (content.length == 1) {
-                            entry.content = content[0];
-                        } else if (content.length == 2) {
-                            entry.title = content[0];
-                            entry.content = content[1];
-                        } else if (content.length == 3) {
-                            entry.title = content[0];
-                            entry.content = content[1];
-                            entry.state = content[2];
-                        } else if (content.length == 4) {
-                            entry.title = content[0];
-                            entry.content = content[1];
-                            entry.state = content[2];
-                            // ignore tags in content[3] as is is already known
-                            // by item name
-                        }
-                        feed.entries.add(entry);
-                    }
-                    if ("rrd4j".equals(persistenceService.getId())
-                            && FilterCriteria.Ordering.DESCENDING.equals(filter.getOrdering())) {
-                        // the RRD4j PersistenceService does not support descending ordering so we do it manually
-                        Collections.sort(feed.entries,
-                                new Comparator<org.openhab.ui.cometvisu.internal.rrs.beans.Entry>() {
-                                    @Override
-                                    public int compare(org.openhab.ui.cometvisu.internal.rrs.beans.Entry o1,
-                                            org.openhab.ui.cometvisu.internal.rrs.beans.Entry o2) {
-                                        return Long.compare(o2.publishedDate, o1.publishedDate);
-                                    }
-                                });
-                    }
-                    logger.debug("querying {} item from {} to {} => {} results on service {}", filter.getItemName(),
-                            filter.getBeginDate(), filter.getEndDate(), i, persistenceService.getId());
+                    names.add(item.getName());
                 }
+                // the items are queried in parallel, every item uses the first service which has data for it
+                List<List<HistoricItem>> results = PersistenceQueryExecutor.query(names,
+                        new ArrayList<QueryablePersistenceService>(CometVisuApp.getPersistenceServices().values()),
+                        filter, PersistenceQueryExecutor.DEFAULT_DEADLINE);
+
+                PersistenceQueryExecutor.merge(results, filter.getOrdering(),
+                        new PersistenceQueryExecutor.MergeHandler() {
+                            @Override
+                            public void handle(int index, HistoricItem historicItem) {
+                                if (historicItem.getState() == null || historicItem.getState().toString().isEmpty()) {
+                                    return;
+                                }
+                                feed.entries.add(createRssLogEntry(historicItem));
+                            }
+                        });
                 if (request.getParameter("j") != null) {
                     // request data in JSON format
                     response.setContentType("application/json");
@@ -518,7 +509,8 @@ public class CometVisuServlet extends HttpServlet {
             file = new File(rootFolder, URLDecoder.decode(requestedFile, "UTF-8"));
         }
         // Check if file actually exists in filesystem.
-        if (!file.exists()) {
+        StaticAssetCache.Asset asset = assetCache.getAsset(file);
+        if (asset == null) {
             // Do your thing if the file appears to be non-existing.
             // Throw an exception, or send 404, or show default/warning page, or
             // just ignore it.
@@ -528,11 +520,63 @@ public class CometVisuServlet extends HttpServlet {
 
         // Prepare some variables. The ETag is an unique identifier of the file.
         String fileName = file.getName();
-        long length = file.length();
-        long lastModified = file.lastModified();
-        String eTag = fileName + "_" + length + "_" + lastModified;
+        long length = asset.length;
+        long lastModified = asset.lastModified;
         long expires = System.currentTimeMillis() + DEFAULT_EXPIRE_TIME;
 
+        // Get content type by file name and set default GZIP support and
+        // content disposition.
+        String contentType = getServletContext().getMimeType(fileName);
+        boolean acceptsGzip = false;
+        boolean acceptsBrotli = false;
+        String disposition = "inline";
+
+        // If content type is unknown, then set the default value.
+        // For all content types, see:
+        // http://www.w3schools.com/media/media_mimeref.asp
+        // To add new content types, add new mime-mapping entry in web.xml.
+        if (contentType == null) {
+            contentType = "application/octet-stream";
+        }
+
+        // If content type is text, then determine whether GZIP content encoding
+        // is supported by
+        // the browser and expand content type with the one and right character
+        // encoding.
+        if (contentType.startsWith("text")) {
+            String acceptEncoding = request.getHeader("Accept-Encoding");
+            acceptsGzip = acceptEncoding != null && accepts(acceptEncoding, "gzip");
+            acceptsBrotli = acceptEncoding != null && accepts(acceptEncoding, "br");
+            contentType += ";charset=UTF-8";
+            response.setHeader("Vary", "Accept-Encoding");
+        }
+
+        // Else, expect for images, determine content disposition. If content
+        // type is supported by
+        // the browser, then set to inline, else attachment which will pop a
+        // 'save as' dialogue.
+        else if (!contentType.startsWith("image")) {
+            String accept = request.getHeader("Accept");
+            disposition = accept != null && accepts(accept, contentType) ? "inline" : "attachment";
+        }
+
+        // Byte ranges always refer to the file itself, so they are never
+        // served with a content encoding.
+        String range = request.getHeader("Range");
+        if (range != null) {
+            acceptsGzip = false;
+            acceptsBrotli = false;
+        }
+
+        // Every content encoding is a different representation of the file, so
+        // it needs its own ETag.
+        String eTag = asset.eTag;
+        if (acceptsBrotli && asset.brotliFile != null) {
+            eTag += "_br";
+        } else if (acceptsGzip) {
+            eTag += "_gzip";
+        }
+
         // Validate request headers for caching
         // ---------------------------------------------------
 
@@ -585,7 +629,6 @@ public class CometVisuServlet extends HttpServlet {
         List<Range> ranges = new ArrayList<Range>();
 
         // Validate and process Range and If-Range headers.
-        String range = request.getHeader("Range");
         if (range != null) {
 
             // Range header should match format "bytes=n-n,n-n,n-n...". If not,
@@ -653,39 +696,6 @@ public class CometVisuServlet extends HttpServlet {
         // Prepare and initialize response
         // --------------------------------------------------------
 
-        // Get content type by file name and set default GZIP support and
-        // content disposition.
-        String contentType = getServletContext().getMimeType(fileName);
-        boolean acceptsGzip = false;
-        String disposition = "inline";
-
-        // If content type is unknown, then set the default value.
-        // For all content types, see:
-        // http://www.w3schools.com/media/media_mimeref.asp
-        // To add new content types, add new mime-mapping entry in web.xml.
-        if (contentType == null) {
-            contentType = "application/octet-stream";
-        }
-
-        // If content type is text, then determine whether GZIP content encoding
-        // is supported by
-        // the browser and expand content type with the one and right character
-        // encoding.
-        if (contentType.startsWith("text")) {
-            String acceptEncoding = request.getHeader("Accept-Encoding");
-            acceptsGzip = acceptEncoding != null && accepts(acceptEncoding, "gzip");
-            contentType += ";charset=UTF-8";
-        }
-
-        // Else, expect for images, determine content disposition. If content
-        // type is supported by
-        // the browser, then set to inline, else attachment which will pop a
-        // 'save as' dialogue.
-        else if (!contentType.startsWith("image")) {
-            String accept = request.getHeader("Accept");
-            disposition = accept != null && accepts(accept, contentType) ? "inline" : "attachment";
-        }
-
         response.setBufferSize(DEFAULT_BUFFER_SIZE);
         response.setHeader("Content-Disposition", disposition + ";filename=\"" + fileName + "\"");
         response.setHeader("Accept-Ranges", "bytes");
@@ -697,13 +707,16 @@ public class CometVisuServlet extends HttpServlet {
         // ------------------------------------------------
 
         // Prepare streams.
-        RandomAccessFile input = null;
+        FileChannel input = null;
         OutputStream output = null;
 
         try {
-            // Open streams.
-            input = new RandomAccessFile(file, "r");
             output = response.getOutputStream();
+            // small files are served from memory, all others straight from the file
+            byte[] data = asset.getContent(assetCache);
+            if (data == null) {
+                input = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            }
 
             if (ranges.isEmpty() || ranges.get(0) == full) {
 
@@ -713,20 +726,35 @@ public class CometVisuServlet extends HttpServlet {
                 response.setHeader("Content-Range", "bytes " + r.start + "-" + r.end + "/" + r.total);
 
                 if (content) {
-                    if (acceptsGzip) {
+                    byte[] gzipped = null;
+                    if (acceptsBrotli && asset.brotliFile != null) {
+                        // A precompressed variant is shipped with the file.
+                        response.setHeader("Content-Encoding", "br");
+                        response.setHeader("Content-Length", String.valueOf(asset.brotliFile.length()));
+                        copy(asset.brotliFile, output);
+                    } else if (acceptsGzip && asset.gzipFile != null) {
+                        response.setHeader("Content-Encoding", "gzip");
+                        response.setHeader("Content-Length", String.valueOf(asset.gzipFile.length()));
+                        copy(asset.gzipFile, output);
+                    } else if (acceptsGzip && (gzipped = asset.getGzipped(assetCache)) != null) {
+                        // The gzip variant has been compressed before.
+                        response.setHeader("Content-Encoding", "gzip");
+                        response.setHeader("Content-Length", String.valueOf(gzipped.length));
+                        output.write(gzipped);
+                    } else if (acceptsGzip) {
                         // The browser accepts GZIP, so GZIP the content.
                         response.setHeader("Content-Encoding", "gzip");
                         output = new GZIPOutputStream(output, DEFAULT_BUFFER_SIZE);
+                        copy(input, data, output, r.start, r.length);
                     } else {
                         // Content length is not directly predictable in case of
                         // GZIP.
                         // So only add it if there is no means of GZIP, else
                         // browser will hang.
                         response.setHeader("Content-Length", String.valueOf(r.length));
+                        // Copy full range.
+                        copy(input, data, output, r.start, r.length);
                     }
-
-                    // Copy full range.
-                    copy(input, output, r.start, r.length);
                 }
 
             } else if (ranges.size() == 1) {
@@ -740,7 +768,7 @@ public class CometVisuServlet extends HttpServlet {
 
                 if (content) {
                     // Copy single part range.
-                    copy(input, output, r.start, r.length);
+                    copy(input, data, output, r.start, r.length);
                 }
 
             } else {
@@ -764,7 +792,7 @@ public class CometVisuServlet extends HttpServlet {
                         sos.println("Content-Range: bytes " + r.start + "-" + r.end + "/" + r.total);
 
                         // Copy single part range of multi part range.
-                        copy(input, output, r.start, r.length);
+                        copy(input, data, output, r.start, r.length);
                     }
 
                     // End with multipart boundary.
@@ -849,79 +877,38 @@ public class CometVisuServlet extends HttpServlet {
     private final void dataProviderService(File file, HttpServletRequest request, HttpServletResponse response)
             throws ServletException, IOException {
         logger.debug("dataprovider '{}' requested", file.getName());
-        List<Object> beans = new ArrayList<Object>();
-        if (file.getName().equals("dpt_list.json")) {
-            // return all transforms available for openhab
-            for (Transform transform : Transform.values()) {
-                DataBean bean = new DataBean();
-                bean.label = transform.toString().toLowerCase();
-                bean.value = "OH:" + bean.label;
-                beans.add(bean);
-            }
-        } else if (file.getName().equals("list_all_addresses.php")) {
-            // all item names
-            for (Item item : this.cometVisuApp.getItemRegistry().getItems()) {
-                ItemBean bean = new ItemBean();
-                bean.value = item.getName();
-                bean.label = item.getName();
-                // TODO handle other types
-                bean.hints.put("transform", "OH:string");
-                beans.add(bean);
-            }
-
-        } else if (file.getName().equals("list_all_icons.php")) {
-            // all item names
-            File iconDir = new File(rootFolder, "icon/knx-uf-iconset/128x128_white/");
-            FilenameFilter filter = new FilenameFilter() {
-                @Override
-                public boolean accept(File dir, String name) {
-                    // TODO Auto-generated method stub
-                    return name.endsWith(".png");
-                }
-            };
-            File[] icons = iconDir.listFiles(filter);
-            Arrays.sort(icons);
-            for (File iconFile : icons) {
-                if (iconFile.isFile()) {
-                    String iconName = iconFile.getName().replace(".png", "");
-                    DataBean bean = new DataBean();
-                    bean.label = iconName;
-                    bean.value = iconName;
+        // the file based listings are prepared by the index, only the items are listed on request
+        DataProviderIndex.Payload payload = dataProviderIndex.getPayload(file.getName());
+        if (payload == null) {
+            List<Object> beans = new ArrayList<Object>();
+            if (file.getName().equals("list_all_addresses.php")) {
+                // all item names
+                for (Item item : this.cometVisuApp.getItemRegistry().getItems()) {
+                    ItemBean bean = new ItemBean();
+                    bean.value = item.getName();
+                    bean.label = item.getName();
+                    // TODO handle other types
+                    bean.hints.put("transform", "OH:string");
                     beans.add(bean);
                 }
-            }
-        } else if (file.getName().equals("list_all_plugins.php")) {
-            // all plugins
-            // all item names
-            File pluginDir = new File(rootFolder, "plugins/");
-            File[] plugins = pluginDir.listFiles();
-            Arrays.sort(plugins);
-            for (File icon : plugins) {
-                if (icon.isDirectory()) {
-                    DataBean bean = new DataBean();
-                    bean.label = icon.getName();
-                    bean.value = icon.getName();
-                    beans.add(bean);
-                }
-            }
 
-        } else if (file.getName().equals("get_designs.php")) {
-            // all designs
-            File designDir = new File(rootFolder, "designs/");
-            File[] designs = designDir.listFiles();
-            Arrays.sort(designs);
-            for (File design : designs) {
-                if (design.isDirectory()) {
-                    beans.add(design.getName());
-                }
-            }
+            } else if (file.getName().equals("list_all_rrds.php")) {
+                // all item names
 
-        } else if (file.getName().equals("list_all_rrds.php")) {
-            // all item names
+            }
+            payload = new DataProviderIndex.Payload(file.getName(), marshalJson(beans));
+        }
 
+        String ifNoneMatch = request.getHeader("If-None-Match");
+        response.setHeader("ETag", payload.eTag);
+        if (ifNoneMatch != null && matches(ifNoneMatch, payload.eTag)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
         }
         response.setContentType(MediaType.APPLICATION_JSON);
-        response.getWriter().write(marshalJson(beans));
+        response.setCharacterEncoding("UTF-8");
+        response.setContentLength(payload.body.length);
+        response.getOutputStream().write(payload.body);
         response.flushBuffer();
     }
 
@@ -986,6 +973,8 @@ public class CometVisuServlet extends HttpServlet {
      *
      * @param input
      *            The input to copy the given range to the given output for.
+     * @param data
+     *            The content of the input, if it is held in memory, otherwise null.
      * @param output
      *            The output to copy the given range from the given input for.
      * @param start
@@ -995,28 +984,30 @@ public class CometVisuServlet extends HttpServlet {
      * @throws IOException
      *             If something fails at I/O level.
      */
-    private static void copy(RandomAccessFile input, OutputStream output, long start, long length) throws IOException {
-        byte[] buffer = new byte[DEFAULT_BUFFER_SIZE];
-        int read;
-
-        if (input.length() == length) {
-            // Write full range.
-            while ((read = input.read(buffer)) > 0) {
-                output.write(buffer, 0, read);
+    private static void copy(FileChannel input, byte[] data, OutputStream output, long start, long length)
+            throws IOException {
+        if (data != null) {
+            output.write(data, (int) start, (int) length);
+            return;
+        }
+        WritableByteChannel target = Channels.newChannel(output);
+        long position = start;
+        long end = start + length;
+        while (position < end) {
+            long transferred = input.transferTo(position, end - position, target);
+            if (transferred <= 0) {
+                break;
             }
-        } else {
-            // Write partial range.
-            input.seek(start);
-            long toRead = length;
+            position += transferred;
+        }
+    }
 
-            while ((read = input.read(buffer)) > 0) {
-                if ((toRead -= read) > 0) {
-                    output.write(buffer, 0, read);
-                } else {
-                    output.write(buffer, 0, (int) toRead + read);
-                    break;
-                }
-            }
+    /**
+     * Copy the given file completely to the given output.
+     */
+    private static void copy(File file, OutputStream output) throws IOException {
+        try (FileChannel input = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            copy(input, null, output, 0, input.size());
         }
     }
 
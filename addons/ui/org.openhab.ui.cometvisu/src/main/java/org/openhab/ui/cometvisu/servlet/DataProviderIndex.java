@@ -0,0 +1,178 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.ui.cometvisu.servlet;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.openhab.ui.cometvisu.internal.config.ConfigHelper.Transform;
+import org.openhab.ui.cometvisu.internal.editor.dataprovider.beans.DataBean;
+
+import com.google.gson.Gson;
+
+/**
+ * Index of the file based data provider listings of the CometVisu editor (icons, plugins, designs).
+ *
+ * The listings are built once and kept as serialized JSON together with an ETag. A listing is rebuilt on the next
+ * request after the {@link StaticAssetCache} reported a change in its folder. As long as the folders are not watched,
+ * the listings are built for every request.
+ *
+ * @author agent
+ * @since 2.0.0
+ */
+class DataProviderIndex implements StaticAssetCache.ChangeListener {
+
+    static final String TRANSFORMS = "dpt_list.json";
+    static final String ICONS = "list_all_icons.php";
+    static final String PLUGINS = "list_all_plugins.php";
+    static final String DESIGNS = "get_designs.php";
+
+    /**
+     * A serialized data provider response.
+     */
+    static class Payload {
+        final byte[] body;
+        final String eTag;
+
+        Payload(String name, String json) {
+            this.body = json.getBytes(StandardCharsets.UTF_8);
+            this.eTag = name + "_" + body.length + "_" + Integer.toHexString(Arrays.hashCode(body));
+        }
+    }
+
+    private final StaticAssetCache assetCache;
+    private final Gson gson = new Gson();
+
+    /**
+     * data provider name -> folder the listing is built from
+     */
+    private final Map<String, File> folders = new HashMap<>();
+
+    private final ConcurrentMap<String, Payload> payloads = new ConcurrentHashMap<>();
+
+    /**
+     * incremented on every change, so that a listing built from an outdated folder content is not kept
+     */
+    private volatile long generation = 0;
+
+    DataProviderIndex(File rootFolder, StaticAssetCache assetCache) {
+        this.assetCache = assetCache;
+        folders.put(ICONS, new File(rootFolder, "icon/knx-uf-iconset/128x128_white"));
+        folders.put(PLUGINS, new File(rootFolder, "plugins"));
+        folders.put(DESIGNS, new File(rootFolder, "designs"));
+        assetCache.addChangeListener(this);
+    }
+
+    /**
+     * Builds all listings in advance.
+     */
+    void build() {
+        for (String name : Arrays.asList(TRANSFORMS, ICONS, PLUGINS, DESIGNS)) {
+            getPayload(name);
+        }
+    }
+
+    /**
+     * @return the listing of the given data provider or null if it is not file based
+     */
+    Payload getPayload(String name) {
+        Payload payload = payloads.get(name);
+        if (payload != null) {
+            return payload;
+        }
+        long buildGeneration = generation;
+        Object beans = createBeans(name);
+        if (beans == null) {
+            return null;
+        }
+        payload = new Payload(name, gson.toJson(beans));
+        synchronized (this) {
+            if (assetCache.isWatching() && buildGeneration == generation) {
+                payloads.put(name, payload);
+            }
+        }
+        return payload;
+    }
+
+    @Override
+    public synchronized void fileChanged(File file) {
+        generation++;
+        if (file == null || file.getParentFile() == null) {
+            payloads.clear();
+            return;
+        }
+        for (Map.Entry<String, File> entry : folders.entrySet()) {
+            String folder = entry.getValue().getAbsolutePath();
+            String changed = file.getAbsolutePath();
+            // changes of the folder itself, its entries or one of its parents
+            if (folder.equals(file.getParentFile().getAbsolutePath()) || folder.startsWith(changed)) {
+                payloads.remove(entry.getKey());
+            }
+        }
+    }
+
+    private Object createBeans(String name) {
+        List<Object> beans = new ArrayList<Object>();
+        if (name.equals(TRANSFORMS)) {
+            // return all transforms available for openhab
+            for (Transform transform : Transform.values()) {
+                DataBean bean = new DataBean();
+                bean.label = transform.toString().toLowerCase();
+                bean.value = "OH:" + bean.label;
+                beans.add(bean);
+            }
+        } else if (name.equals(ICONS)) {
+            for (File iconFile : listFiles(folders.get(name), false)) {
+                if (iconFile.getName().endsWith(".png")) {
+                    String iconName = iconFile.getName().replace(".png", "");
+                    DataBean bean = new DataBean();
+                    bean.label = iconName;
+                    bean.value = iconName;
+                    beans.add(bean);
+                }
+            }
+        } else if (name.equals(PLUGINS)) {
+            for (File plugin : listFiles(folders.get(name), true)) {
+                DataBean bean = new DataBean();
+                bean.label = plugin.getName();
+                bean.value = plugin.getName();
+                beans.add(bean);
+            }
+        } else if (name.equals(DESIGNS)) {
+            for (File design : listFiles(folders.get(name), true)) {
+                beans.add(design.getName());
+            }
+        } else {
+            return null;
+        }
+        return beans;
+    }
+
+    private static File[] listFiles(File folder, final boolean directories) {
+        File[] files = folder.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File file) {
+                return directories ? file.isDirectory() : file.isFile();
+            }
+        });
+        if (files == null) {
+            return new File[0];
+        }
+        Arrays.sort(files);
+        return files;
+    }
+}
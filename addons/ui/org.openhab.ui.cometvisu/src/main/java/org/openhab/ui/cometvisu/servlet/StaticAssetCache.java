@@ -0,0 +1,414 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.ui.cometvisu.servlet;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.zip.GZIPOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Cache for the static files served by the {@link CometVisuServlet}.
+ *
+ * For every requested file the metadata (length, last modification, ETag) is kept, small files are also kept in
+ * memory together with their gzip compressed variant. Precompressed variants shipped next to a file (file.gz,
+ * file.br) are served instead of compressing at runtime. The resolution of the most recent request paths to files is
+ * cached as well.
+ *
+ * The served folders are watched for changes, every change drops the affected entries and is passed on to the
+ * registered {@link ChangeListener}s. If the folders cannot be watched, nothing is cached and every request reads
+ * the file system as before.
+ *
+ * @author agent
+ * @since 2.0.0
+ */
+class StaticAssetCache implements Runnable {
+    private static final Logger logger = LoggerFactory.getLogger(StaticAssetCache.class);
+
+    /**
+     * files up to this size are kept in memory
+     */
+    static final int MAX_CACHED_FILE_SIZE = 256 * 1024;
+
+    /**
+     * maximum number of bytes kept in memory for all files together
+     */
+    static final long MAX_CACHE_SIZE = 32 * 1024 * 1024;
+
+    /**
+     * maximum number of request paths whose resolution is kept
+     */
+    static final int MAX_RESOLVED_PATHS = 1024;
+
+    /**
+     * Gets notified about changes in the watched folders.
+     */
+    interface ChangeListener {
+        /**
+         * @param file the changed, created or deleted file or folder, null if the changes are unknown (e.g. too
+         *            many changes at once)
+         */
+        void fileChanged(File file);
+    }
+
+    /**
+     * A file served by the servlet.
+     */
+    static class Asset {
+        final File file;
+        final long length;
+        final long lastModified;
+        final String eTag;
+        final File gzipFile;
+        final File brotliFile;
+
+        // cleared once the memory budget has rejected the data, so the file is not read or compressed in vain again
+        private volatile boolean cacheable;
+        private volatile boolean gzipCacheable;
+
+        // only set while holding the lock of the cache, so the cached bytes always match the content of its assets
+        private volatile byte[] content;
+        private volatile byte[] gzipped;
+        private boolean dropped;
+
+        private Asset(File file, boolean cacheable) {
+            this.file = file;
+            this.length = file.length();
+            this.lastModified = file.lastModified();
+            this.eTag = file.getName() + "_" + length + "_" + lastModified;
+            this.gzipFile = getVariant(file, ".gz");
+            this.brotliFile = getVariant(file, ".br");
+            this.cacheable = cacheable && length <= MAX_CACHED_FILE_SIZE;
+            this.gzipCacheable = this.cacheable;
+        }
+
+        private static File getVariant(File file, String extension) {
+            File variant = new File(file.getPath() + extension);
+            return variant.isFile() && variant.lastModified() >= file.lastModified() ? variant : null;
+        }
+
+        /**
+         * @return the content of the file, if it is small enough to be kept in memory, otherwise null
+         */
+        byte[] getContent(StaticAssetCache cache) throws IOException {
+            byte[] result = content;
+            if (result == null) {
+                if (!cacheable || !cache.hasRoom(length)) {
+                    return null;
+                }
+                result = Files.readAllBytes(file.toPath());
+                if (result.length != length) {
+                    // changed since the metadata has been read, the watcher will drop this asset
+                    return null;
+                }
+                result = cache.store(this, result, false);
+            }
+            return result;
+        }
+
+        /**
+         * @return the gzip compressed content of the file, if it is small enough to be kept in memory, otherwise null
+         */
+        byte[] getGzipped(StaticAssetCache cache) throws IOException {
+            byte[] result = gzipped;
+            if (result == null) {
+                if (!gzipCacheable) {
+                    return null;
+                }
+                byte[] data = getContent(cache);
+                if (data == null) {
+                    return null;
+                }
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream(data.length / 2 + 32);
+                try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+                    gzip.write(data);
+                }
+                result = cache.store(this, bytes.toByteArray(), true);
+            }
+            return result;
+        }
+
+        private long getCachedSize() {
+            byte[] c = content;
+            byte[] g = gzipped;
+            return (c != null ? c.length : 0) + (g != null ? g.length : 0);
+        }
+    }
+
+    private final File[] folders;
+    private final ConcurrentMap<String, Asset> assets = new ConcurrentHashMap<>();
+    private final Map<String, File> resolvedPaths = Collections
+            .synchronizedMap(new LinkedHashMap<String, File>(16, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, File> eldest) {
+                    return size() > MAX_RESOLVED_PATHS;
+                }
+            });
+    private final Object sizeLock = new Object();
+    private long cachedBytes;
+    private long generation;
+    private final List<ChangeListener> listeners = new CopyOnWriteArrayList<>();
+
+    private volatile WatchService watchService;
+    private Thread watcher;
+    private volatile boolean watching = false;
+
+    /**
+     * @param folders the folders the servlet serves files from
+     */
+    StaticAssetCache(File... folders) {
+        this.folders = folders;
+    }
+
+    /**
+     * Starts watching the folders, only then files are cached.
+     */
+    synchronized void start() {
+        if (watcher != null) {
+            return;
+        }
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            for (File folder : folders) {
+                if (folder.isDirectory()) {
+                    register(folder.toPath());
+                }
+            }
+            watching = true;
+            watcher = new Thread(this, "CometVisu file watcher");
+            watcher.setDaemon(true);
+            watcher.start();
+        } catch (IOException e) {
+            logger.warn("Cannot watch the CometVisu folders, static files are not cached: {}", e.getMessage());
+            stop();
+        }
+    }
+
+    synchronized void stop() {
+        watching = false;
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+            }
+            watchService = null;
+        }
+        watcher = null;
+        clear();
+        notifyListeners(null);
+    }
+
+    /**
+     * @return true, if the folders are watched, i.e. cached data can be trusted
+     */
+    boolean isWatching() {
+        return watching;
+    }
+
+    void addChangeListener(ChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * @return the file a request path has been resolved to before, or null
+     */
+    File getResolvedFile(String path) {
+        return watching ? resolvedPaths.get(path) : null;
+    }
+
+    void putResolvedFile(String path, File file) {
+        if (watching && file.isFile()) {
+            resolvedPaths.put(path, file);
+        }
+    }
+
+    /**
+     * @return the asset for the given file or null if the file does not exist
+     */
+    Asset getAsset(File file) {
+        String key = file.getAbsolutePath();
+        if (watching) {
+            Asset asset = assets.get(key);
+            if (asset != null) {
+                return asset;
+            }
+        }
+        long assetGeneration;
+        synchronized (sizeLock) {
+            assetGeneration = generation;
+        }
+        if (!file.isFile()) {
+            return null;
+        }
+        Asset asset = new Asset(file, watching);
+        if (watching) {
+            synchronized (sizeLock) {
+                if (assetGeneration != generation) {
+                    // the file changed while its metadata was read, serve it once without caching
+                    asset.dropped = true;
+                    return asset;
+                }
+                Asset previous = assets.putIfAbsent(key, asset);
+                if (previous != null) {
+                    return previous;
+                }
+            }
+        }
+        return asset;
+    }
+
+    /**
+     * Keeps the content or the compressed content of an asset in memory, if it is still cached and the memory budget
+     * allows it.
+     *
+     * @return the data to serve, or null if it is not kept in memory
+     */
+    private byte[] store(Asset asset, byte[] data, boolean compressed) {
+        synchronized (sizeLock) {
+            byte[] current = compressed ? asset.gzipped : asset.content;
+            if (current != null) {
+                // another request has been faster
+                return current;
+            }
+            if (asset.dropped || cachedBytes + data.length > MAX_CACHE_SIZE) {
+                if (compressed) {
+                    asset.gzipCacheable = false;
+                } else {
+                    asset.cacheable = false;
+                    asset.gzipCacheable = false;
+                }
+                return null;
+            }
+            cachedBytes += data.length;
+            if (compressed) {
+                asset.gzipped = data;
+            } else {
+                asset.content = data;
+            }
+            return data;
+        }
+    }
+
+    /**
+     * @return true, if the memory budget can take the given number of bytes right now
+     */
+    private boolean hasRoom(long size) {
+        synchronized (sizeLock) {
+            return cachedBytes + size <= MAX_CACHE_SIZE;
+        }
+    }
+
+    private void drop(Asset asset) {
+        asset.dropped = true;
+        cachedBytes -= asset.getCachedSize();
+        asset.content = null;
+        asset.gzipped = null;
+    }
+
+    private void register(Path folder) throws IOException {
+        Files.walkFileTree(folder, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                dir.register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    @Override
+    public void run() {
+        try {
+            WatchService service;
+            while ((service = watchService) != null) {
+                WatchKey key = service.take();
+                Path dir = (Path) key.watchable();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == OVERFLOW) {
+                        clear();
+                        notifyListeners(null);
+                        continue;
+                    }
+                    Path changed = dir.resolve((Path) event.context());
+                    logger.trace("'{}' changed, dropping it from the cache", changed);
+                    invalidate(changed.toFile().getAbsolutePath());
+                    notifyListeners(changed.toFile());
+                    if (event.kind() == ENTRY_CREATE && Files.isDirectory(changed)) {
+                        register(changed);
+                    }
+                }
+                key.reset();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // stopped
+        } catch (IOException e) {
+            logger.warn("Watching the CometVisu folders failed, static files are not cached anymore: {}",
+                    e.getMessage());
+            stop();
+        }
+    }
+
+    private void notifyListeners(File file) {
+        for (ChangeListener listener : listeners) {
+            listener.fileChanged(file);
+        }
+    }
+
+    private void invalidate(String path) {
+        // new files may change the resolution of request paths (e.g. user files overriding CometVisu files)
+        resolvedPaths.clear();
+        synchronized (sizeLock) {
+            generation++;
+            for (Iterator<Asset> it = assets.values().iterator(); it.hasNext();) {
+                Asset asset = it.next();
+                String assetPath = asset.file.getAbsolutePath();
+                // the path might be a folder, a file or a precompressed variant of a file
+                if (assetPath.startsWith(path) || path.startsWith(assetPath)) {
+                    it.remove();
+                    drop(asset);
+                }
+            }
+        }
+    }
+
+    private void clear() {
+        resolvedPaths.clear();
+        synchronized (sizeLock) {
+            generation++;
+            for (Asset asset : assets.values()) {
+                drop(asset);
+            }
+            assets.clear();
+        }
+    }
+}